@@ -1,13 +1,25 @@
 package com.example.demo.chatbot.control;
 
 import com.example.demo.chatbot.model.Answer;
+import com.example.demo.chatbot.model.AnswerChunk;
 import com.example.demo.chatbot.model.Question;
+import com.example.demo.chatbot.model.EntityType;
+import com.example.demo.chatbot.model.ResponseType;
+import com.example.demo.chatbot.service.EmbeddingService;
 import com.example.demo.chatbot.service.IChatbotService;
+import com.example.demo.chatbot.service.VectorIndexService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
+import reactor.core.publisher.Flux;
+
 @RestController
 @RequestMapping("/api/chatbot")
 public class ChatbotController {
@@ -17,6 +29,12 @@ public class ChatbotController {
     @Autowired
     private IChatbotService chatbotService;
 
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
     @PostMapping("/ask")
     public Answer askQuestion(@RequestBody Question question) {
         log.info("Pregunta recibida: '{}', tipo: {}", question.question(), question.entityType());
@@ -39,4 +57,65 @@ public class ChatbotController {
                             com.example.demo.chatbot.model.ResponseType.ERROR);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Igual que /ask pero enviando la respuesta como server-sent events según la genera
+     * el modelo: eventos "token" con el texto y un evento final "fin" con el tipo de
+     * respuesta. El hilo del servlet queda libre en cuanto se devuelve el Flux.
+     */
+    @PostMapping(value = "/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AnswerChunk>> askQuestionStream(@RequestBody Question question) {
+        log.info("Pregunta recibida (streaming): '{}', tipo: {}", question.question(), question.entityType());
+        
+        if (question.question() == null || question.question().trim().isEmpty()) {
+            log.warn("Se recibió una pregunta vacía");
+            return Flux.just(
+                    evento(AnswerChunk.token("Por favor, formula una pregunta válida.")),
+                    evento(AnswerChunk.fin(ResponseType.ERROR)));
+        }
+        
+        return chatbotService.streamAnswer(question.question(), question.entityType())
+                .map(this::evento);
+    }
+
+    private ServerSentEvent<AnswerChunk> evento(AnswerChunk chunk) {
+        return ServerSentEvent.builder(chunk)
+                .event(chunk.isFin() ? "fin" : "token")
+                .build();
+    }
+
+    /**
+     * Compara recall y latencia del índice vectorial con la búsqueda exacta
+     * para varios valores de ef_search / probes
+     */
+    @GetMapping("/indices/benchmark")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public List<VectorIndexService.ResultadoBenchmark> benchmarkIndice(
+            @RequestParam(defaultValue = "property") String entityType,
+            @RequestParam(defaultValue = "20") int consultas,
+            @RequestParam(defaultValue = "5") int k,
+            @RequestParam(defaultValue = "10,20,40,80,160") List<Integer> precisiones) {
+        return vectorIndexService.evaluarRecall(EntityType.fromCode(entityType), consultas, k, precisiones);
+    }
+
+    /**
+     * Compara el envío del vector de consulta como literal de texto y como parámetro binario
+     */
+    @GetMapping("/vectores/benchmark-enlace")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public List<EmbeddingService.ResultadoEnlaceVector> benchmarkEnlaceVector(
+            @RequestParam(defaultValue = "property") String entityType,
+            @RequestParam(defaultValue = "200") int repeticiones,
+            @RequestParam(defaultValue = "5") int k) {
+        return embeddingService.compararEnlaceVector(EntityType.fromCode(entityType), repeticiones, k);
+    }
+
+    /**
+     * Crea los índices vectoriales que falten (y recalcula los IVFFlat)
+     */
+    @PostMapping("/indices/reconstruir")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public void reconstruirIndices() {
+        vectorIndexService.asegurarIndices();
+    }
+}
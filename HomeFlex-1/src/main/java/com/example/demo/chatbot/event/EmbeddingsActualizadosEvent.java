@@ -0,0 +1,25 @@
+package com.example.demo.chatbot.event;
+
+import java.util.Set;
+
+/**
+ * Se publica cuando se han escrito o borrado los embeddings de unas propiedades.
+ * nuevas indica si alguna no tenía embedding hasta ahora.
+ */
+public class EmbeddingsActualizadosEvent {
+    private final Set<Long> propiedadIds;
+    private final boolean nuevas;
+
+    public EmbeddingsActualizadosEvent(Set<Long> propiedadIds, boolean nuevas) {
+        this.propiedadIds = propiedadIds;
+        this.nuevas = nuevas;
+    }
+
+    public Set<Long> getPropiedadIds() {
+        return propiedadIds;
+    }
+
+    public boolean isNuevas() {
+        return nuevas;
+    }
+}
@@ -5,29 +5,33 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
 
-import com.example.demo.chatbot.service.IChatbotService;
+import com.example.demo.chatbot.service.EmbeddingPipelineService;
 import com.example.demo.propiedad.event.PropiedadCreatedEvent;
 import com.example.demo.propiedad.event.PropiedadDeletedEvent;
 import com.example.demo.propiedad.event.PropiedadUpdatedEvent;
 
+/**
+ * Encola los cambios de propiedades para regenerar sus embeddings una vez
+ * confirmada la transacción; la llamada al modelo se hace en segundo plano.
+ */
 @Component
 public class ChatbotDataListener {
 
     @Autowired
-    private IChatbotService chatbotService;
+    private EmbeddingPipelineService embeddingPipeline;
     
-    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     public void handlePropiedadCreatedEvent(PropiedadCreatedEvent event) {
-        chatbotService.updatePropertyInVectorStore(event.getPropiedadId());
+        embeddingPipeline.encolarActualizacion(event.getPropiedadId());
     }
     
-    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     public void handlePropiedadUpdatedEvent(PropiedadUpdatedEvent event) {
-        chatbotService.updatePropertyInVectorStore(event.getPropiedadId());
+        embeddingPipeline.encolarActualizacion(event.getPropiedadId());
     }
     
-    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     public void handlePropiedadDeletedEvent(PropiedadDeletedEvent event) {
-        chatbotService.removePropertyFromVectorStore(event.getPropiedadId());
+        embeddingPipeline.encolarEliminacion(event.getPropiedadId());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package com.example.demo.chatbot.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.chatbot.event.EmbeddingsActualizadosEvent;
+import com.example.demo.chatbot.model.EntityType;
+import com.example.demo.chatbot.service.RespuestaCacheService;
+
+/**
+ * Descarta las respuestas del chatbot que dependen de propiedades modificadas.
+ *
+ * Las respuestas se generan a partir de los embeddings, que la cola asíncrona escribe
+ * después del commit del cambio. Por eso se invalida al terminar esa escritura y no en
+ * el commit: antes se podría volver a cachear una respuesta con el texto anterior.
+ */
+@Component
+public class RespuestaCacheListener {
+
+    @Autowired
+    private RespuestaCacheService respuestaCache;
+    
+    // Una propiedad nueva puede responder preguntas que antes no tenían resultado
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleEmbeddingsActualizadosEvent(EmbeddingsActualizadosEvent event) {
+        if (event.isNuevas()) {
+            respuestaCache.invalidarTipo(EntityType.PROPERTY);
+            return;
+        }
+        event.getPropiedadIds().forEach(respuestaCache::invalidarPropiedad);
+    }
+}
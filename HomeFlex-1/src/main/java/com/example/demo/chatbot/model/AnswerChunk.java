@@ -0,0 +1,23 @@
+package com.example.demo.chatbot.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Fragmento de una respuesta en streaming: los fragmentos intermedios llevan texto
+ * y el último solo el tipo de respuesta, que se calcula con el texto completo.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AnswerChunk(String token, ResponseType responseType) {
+
+    public static AnswerChunk token(String token) {
+        return new AnswerChunk(token, null);
+    }
+
+    public static AnswerChunk fin(ResponseType responseType) {
+        return new AnswerChunk(null, responseType);
+    }
+
+    public boolean isFin() {
+        return responseType != null;
+    }
+}
@@ -30,6 +30,10 @@ public class DocumentEmbedding {
     @Column(columnDefinition = "TEXT", nullable = false)
     private String content;
 
+    // SHA-256 del contenido: si el texto no cambia no se regenera el vector
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Convert(converter = EntityTypeConverter.class)
     @Column(name = "entity_type", nullable = false)
     private EntityType entityType;
@@ -1,5 +1,6 @@
 package com.example.demo.chatbot.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -13,7 +14,8 @@ import com.example.demo.chatbot.model.DocumentEmbedding;
 import com.example.demo.chatbot.model.EntityType;
 
 @Repository
-public interface DocumentEmbeddingRepository extends JpaRepository<DocumentEmbedding, Long> {
+public interface DocumentEmbeddingRepository extends JpaRepository<DocumentEmbedding, Long>,
+                                                     DocumentEmbeddingRepositoryCustom {
 
 	  // Borra embeddings de una entidad
     @Modifying
@@ -27,37 +29,43 @@ public interface DocumentEmbeddingRepository extends JpaRepository<DocumentEmbed
         @Param("entityType") EntityType entityType,
         @Param("entityId")   Long       entityId
     );
-	
-    /**
-     * Vecinos más cercanos dentro de un tipo (consulta nativa).
-     * @param entityType     el nombre del enum (p.ej. "property")
-     * @param vectorLiteral  el literal "[v1,v2,…]" casteado luego a vector
-     * @param limit          cuántos vecinos devolver
-     */
-    @Query(value = """
-        SELECT *
-          FROM document_embeddings
-         WHERE entity_type = :entityType
-         ORDER BY embedding <-> CAST(:vectorLiteral AS vector)
-         LIMIT :limit
-        """, nativeQuery = true)
-    List<DocumentEmbedding> findNearestByEntityTypeNative(
-        @Param("entityType")    String entityType,
-        @Param("vectorLiteral") String vectorLiteral,
-        @Param("limit")         int    limit
+
+    // Borra embeddings de varias entidades del mismo tipo
+    @Modifying
+    @Transactional
+    @Query("""
+        DELETE FROM DocumentEmbedding d
+         WHERE d.entityType = :entityType
+           AND d.entityId IN :entityIds
+        """)
+    void deleteByEntityTypeAndEntityIdIn(
+        @Param("entityType") EntityType       entityType,
+        @Param("entityIds")  Collection<Long> entityIds
     );
 
-    /**
-     * Vecinos más cercanos en toda la tabla (consulta nativa).
-     */
-    @Query(value = """
-        SELECT *
-          FROM document_embeddings
-         ORDER BY embedding <-> CAST(:vectorLiteral AS vector)
-         LIMIT :limit
-        """, nativeQuery = true)
-    List<DocumentEmbedding> findNearestNative(
-        @Param("vectorLiteral") String vectorLiteral,
-        @Param("limit")         int    limit
+    // Huellas del contenido ya embebido: filas [entityId, contentHash]
+    @Query("""
+        SELECT d.entityId, d.contentHash
+          FROM DocumentEmbedding d
+         WHERE d.entityType = :entityType
+           AND d.entityId IN :entityIds
+        """)
+    List<Object[]> findContentHashes(
+        @Param("entityType") EntityType       entityType,
+        @Param("entityIds")  Collection<Long> entityIds
+    );
+
+    // Entidades con embedding que ya no son propiedades activas (borradas o desactivadas)
+    @Query("""
+        SELECT DISTINCT d.entityId
+          FROM DocumentEmbedding d
+         WHERE d.entityType = :entityType
+           AND NOT EXISTS (SELECT p.id
+                             FROM com.example.demo.propiedad.model.PropiedadVO p
+                            WHERE p.id = d.entityId
+                              AND p.activo = true)
+        """)
+    List<Long> findEntityIdsSinPropiedadActiva(
+        @Param("entityType") EntityType entityType
     );
 }
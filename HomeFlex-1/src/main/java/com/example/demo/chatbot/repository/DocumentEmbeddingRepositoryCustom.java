@@ -0,0 +1,28 @@
+package com.example.demo.chatbot.repository;
+
+import java.util.List;
+
+import com.example.demo.chatbot.model.DocumentEmbedding;
+import com.example.demo.chatbot.model.EntityType;
+
+/**
+ * Búsquedas vectoriales que enlazan el vector de consulta como parámetro binario
+ * (real[]) en lugar de como literal de texto.
+ */
+public interface DocumentEmbeddingRepositoryCustom {
+
+    /**
+     * Vecinos más cercanos al vector, opcionalmente dentro de un tipo de entidad.
+     * Los resultados no incluyen el vector (embedding queda a null).
+     * @param vector      vector de consulta
+     * @param entityType  tipo de entidad, o null / ALL para toda la tabla
+     * @param limit       cuántos vecinos devolver
+     */
+    List<DocumentEmbedding> findNearest(float[] vector, EntityType entityType, int limit);
+
+    /**
+     * Misma consulta que findNearest pero con el vector como literal "[v1,v2,…]";
+     * se mantiene para comparar ambos caminos en el benchmark.
+     */
+    List<DocumentEmbedding> findNearestLiteral(String vectorLiteral, EntityType entityType, int limit);
+}
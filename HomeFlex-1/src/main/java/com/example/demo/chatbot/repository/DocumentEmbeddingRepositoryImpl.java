@@ -0,0 +1,65 @@
+package com.example.demo.chatbot.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.example.demo.chatbot.model.DocumentEmbedding;
+import com.example.demo.chatbot.model.EntityType;
+
+/**
+ * Implementación JDBC de las búsquedas vectoriales.
+ *
+ * El controlador de PostgreSQL envía un float[] como real[] en formato binario
+ * (4 bytes por componente, sin pasar por texto), y pgvector lo convierte a vector
+ * con el cast real[] → vector. Solo se leen las columnas que usa el chatbot,
+ * así que el vector de cada resultado tampoco viaja de vuelta como texto.
+ *
+ * El tipo de entidad va como literal (es el código de un enum, no entrada del
+ * usuario) para que el planificador pueda usar el índice parcial de ese tipo.
+ */
+public class DocumentEmbeddingRepositoryImpl implements DocumentEmbeddingRepositoryCustom {
+
+    private static final String COLUMNAS =
+            "id, content, content_hash, entity_type, entity_id, created_at, updated_at";
+
+    private static final RowMapper<DocumentEmbedding> MAPPER = DocumentEmbeddingRepositoryImpl::mapear;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<DocumentEmbedding> findNearest(float[] vector, EntityType entityType, int limit) {
+        return jdbcTemplate.query(sqlVecinos(entityType, "CAST(? AS real[])"), MAPPER, vector, limit);
+    }
+
+    @Override
+    public List<DocumentEmbedding> findNearestLiteral(String vectorLiteral, EntityType entityType, int limit) {
+        return jdbcTemplate.query(sqlVecinos(entityType, "?"), MAPPER, vectorLiteral, limit);
+    }
+
+    private static String sqlVecinos(EntityType entityType, String parametroVector) {
+        String filtro = entityType != null && entityType != EntityType.ALL
+                ? " WHERE entity_type = '" + entityType.getCode() + "'"
+                : "";
+        return "SELECT " + COLUMNAS + " FROM document_embeddings" + filtro
+             + " ORDER BY embedding <-> CAST(" + parametroVector + " AS vector) LIMIT ?";
+    }
+
+    private static DocumentEmbedding mapear(ResultSet rs, int fila) throws SQLException {
+        DocumentEmbedding doc = new DocumentEmbedding();
+        doc.setId(rs.getLong("id"));
+        doc.setContent(rs.getString("content"));
+        doc.setContentHash(rs.getString("content_hash"));
+        doc.setEntityType(EntityType.fromCode(rs.getString("entity_type")));
+        long entityId = rs.getLong("entity_id");
+        doc.setEntityId(rs.wasNull() ? null : entityId);
+        doc.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        doc.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        return doc;
+    }
+}
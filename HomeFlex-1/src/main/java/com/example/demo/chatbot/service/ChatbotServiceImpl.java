@@ -1,6 +1,7 @@
 package com.example.demo.chatbot.service;
 
 import com.example.demo.chatbot.model.Answer;
+import com.example.demo.chatbot.model.AnswerChunk;
 import com.example.demo.chatbot.model.DocumentEmbedding;
 import com.example.demo.chatbot.model.EntityType;
 import com.example.demo.chatbot.model.ResponseType;
@@ -15,8 +16,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,6 +35,9 @@ public class ChatbotServiceImpl implements IChatbotService {
     @Autowired
     private EmbeddingService embeddingService;
 
+    @Autowired
+    private RespuestaCacheService respuestaCache;
+
     @Value("classpath:/templates/chatbot/propertyPrompt.st")
     private Resource propertyPromptTemplate;
 
@@ -39,50 +48,33 @@ public class ChatbotServiceImpl implements IChatbotService {
         this.chatModel = chatModel;
     }
 
+    /**
+     * Resultado de preparar una pregunta: o bien una respuesta que no necesita al modelo
+     * (caché o sin documentos), o bien el prompt listo para enviarle
+     */
+    private record Contexto(Answer respuestaDirecta, EntityType entityType, float[] questionVector,
+                            List<DocumentEmbedding> documentos, Prompt prompt) {
+
+        static Contexto directo(Answer respuesta) {
+            return new Contexto(respuesta, null, null, null, null);
+        }
+    }
+
     @Override
     public Answer getAnswer(String question, EntityType entityType) {
         logger.info("→ Procesando pregunta [{}] para entidad [{}]", question, entityType);
         try {
-            // Aseguramos que entityType no sea null
-            if (entityType == null) {
-                entityType = EntityType.PROPERTY; // Valor por defecto
+            Contexto contexto = preparar(question, entityType);
+            if (contexto.respuestaDirecta() != null) {
+                return contexto.respuestaDirecta();
             }
-            
-            // Busca documentos similares en la base de datos vectorial
-            List<DocumentEmbedding> similarDocs = embeddingService.similaritySearch(question, entityType, 5);
-            logger.debug("  • Documentos similares encontrados: {}", similarDocs.size());
-
-            if (similarDocs.isEmpty()) {
-                logger.warn("  • No se encontraron documentos relevantes para la consulta");
-                return new Answer("Lo siento, no tengo información sobre esa consulta en nuestra base de datos de propiedades.", ResponseType.NO_INFORMATION);
-            }
-
-            List<String> contentList = similarDocs.stream()
-                    .map(DocumentEmbedding::getContent)
-                    .collect(Collectors.toList());
-            logger.debug("  • Contenido de documentos: {}", contentList);
-
-            // Seleccionamos la plantilla adecuada según el tipo de entidad
-            Resource template = (entityType == EntityType.PROPERTY)
-                    ? propertyPromptTemplate
-                    : generalPromptTemplate;
-
-            // Creamos el prompt basado en la plantilla
-            PromptTemplate pt = new PromptTemplate(template);
-            Prompt prompt = pt.create(Map.of(
-                    "input", question,
-                    "documents", String.join("\n\n", contentList)
-            ));
 
             // Llamamos al modelo de IA para obtener respuesta
-            ChatResponse response = chatModel.call(prompt);
+            ChatResponse response = chatModel.call(contexto.prompt());
             String responseText = response.getResult().getOutput().getText();
             logger.info("← Texto de respuesta: {}", responseText);
 
-            ResponseType responseType = determineResponseType(responseText);
-            logger.debug("  • Tipo de respuesta: {}", responseType);
-
-            return new Answer(responseText, responseType);
+            return finalizar(contexto, question, responseText);
         } catch (Exception e) {
             logger.error("⚠️ Error al procesar la pregunta", e);
             return new Answer("Lo siento, ocurrió un error al procesar tu consulta: " + e.getMessage(),
@@ -90,6 +82,123 @@ public class ChatbotServiceImpl implements IChatbotService {
         }
     }
 
+    @Override
+    public Flux<AnswerChunk> streamAnswer(String question, EntityType entityType) {
+        logger.info("→ Procesando pregunta en streaming [{}] para entidad [{}]", question, entityType);
+
+        // La caché, el embedding y la búsqueda vectorial son bloqueantes: van al pool elástico,
+        // no al hilo del servlet ni a los hilos del cliente HTTP
+        return Mono.fromCallable(() -> preparar(question, entityType))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(contexto -> {
+                    if (contexto.respuestaDirecta() != null) {
+                        Answer respuesta = contexto.respuestaDirecta();
+                        return Flux.just(AnswerChunk.token(respuesta.answer()),
+                                         AnswerChunk.fin(respuesta.responseType()));
+                    }
+
+                    StringBuilder texto = new StringBuilder();
+                    return chatModel.stream(contexto.prompt())
+                            .mapNotNull(this::textoFragmento)
+                            .doOnNext(texto::append)
+                            .map(AnswerChunk::token)
+                            .concatWith(Mono.fromCallable(() -> {
+                                logger.info("← Texto de respuesta (streaming): {}", texto);
+                                return AnswerChunk.fin(finalizar(contexto, question, texto.toString()).responseType());
+                            }));
+                })
+                .onErrorResume(e -> {
+                    logger.error("⚠️ Error al procesar la pregunta en streaming", e);
+                    return Flux.just(
+                            AnswerChunk.token("Lo siento, ocurrió un error al procesar tu consulta: " + e.getMessage()),
+                            AnswerChunk.fin(ResponseType.ERROR));
+                });
+    }
+
+    /**
+     * Consulta la caché y, si no hay respuesta guardada, busca los documentos
+     * relevantes y construye el prompt
+     */
+    private Contexto preparar(String question, EntityType entityType) {
+        // Aseguramos que entityType no sea null
+        if (entityType == null) {
+            entityType = EntityType.PROPERTY; // Valor por defecto
+        }
+        
+        // 1er nivel de caché: la misma pregunta ya respondida
+        Answer cached = respuestaCache.buscarExacta(entityType, question);
+        if (cached != null) {
+            logger.info("← Respuesta servida desde caché (pregunta idéntica)");
+            return Contexto.directo(cached);
+        }
+
+        // 2º nivel: una pregunta con embedding muy parecido
+        float[] questionVector = embeddingService.embed(question);
+        cached = respuestaCache.buscarSimilar(entityType, question, questionVector);
+        if (cached != null) {
+            logger.info("← Respuesta servida desde caché (pregunta similar)");
+            return Contexto.directo(cached);
+        }
+
+        // Busca documentos similares en la base de datos vectorial
+        List<DocumentEmbedding> similarDocs = embeddingService.similaritySearch(questionVector, entityType, 5, null);
+        logger.debug("  • Documentos similares encontrados: {}", similarDocs.size());
+
+        if (similarDocs.isEmpty()) {
+            logger.warn("  • No se encontraron documentos relevantes para la consulta");
+            return Contexto.directo(new Answer("Lo siento, no tengo información sobre esa consulta en nuestra base de datos de propiedades.", ResponseType.NO_INFORMATION));
+        }
+
+        List<String> contentList = similarDocs.stream()
+                .map(DocumentEmbedding::getContent)
+                .collect(Collectors.toList());
+        logger.debug("  • Contenido de documentos: {}", contentList);
+
+        // Seleccionamos la plantilla adecuada según el tipo de entidad
+        Resource template = (entityType == EntityType.PROPERTY)
+                ? propertyPromptTemplate
+                : generalPromptTemplate;
+
+        // Creamos el prompt basado en la plantilla
+        PromptTemplate pt = new PromptTemplate(template);
+        Prompt prompt = pt.create(Map.of(
+                "input", question,
+                "documents", String.join("\n\n", contentList)
+        ));
+
+        return new Contexto(null, entityType, questionVector, similarDocs, prompt);
+    }
+
+    /**
+     * Clasifica la respuesta completa del modelo y la guarda en la caché
+     */
+    private Answer finalizar(Contexto contexto, String question, String responseText) {
+        ResponseType responseType = determineResponseType(responseText);
+        logger.debug("  • Tipo de respuesta: {}", responseType);
+
+        Answer answer = new Answer(responseText, responseType);
+        respuestaCache.guardar(contexto.entityType(), question, contexto.questionVector(), answer,
+                               propiedadesCitadas(contexto.documentos()));
+        return answer;
+    }
+
+    /** Texto de un fragmento del stream; los fragmentos sin texto (p. ej. solo uso de tokens) se descartan */
+    private String textoFragmento(ChatResponse response) {
+        if (response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        String texto = response.getResult().getOutput().getText();
+        return texto == null || texto.isEmpty() ? null : texto;
+    }
+
+    /** IDs de las propiedades cuyos documentos se han usado en la respuesta */
+    private Set<Long> propiedadesCitadas(List<DocumentEmbedding> docs) {
+        return docs.stream()
+                .filter(d -> d.getEntityType() == EntityType.PROPERTY && d.getEntityId() != null)
+                .map(DocumentEmbedding::getEntityId)
+                .collect(Collectors.toSet());
+    }
+
     private ResponseType determineResponseType(String response) {
         String lower = response.toLowerCase();
         if (lower.contains("no tengo información") ||
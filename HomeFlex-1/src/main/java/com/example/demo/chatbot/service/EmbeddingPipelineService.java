@@ -0,0 +1,290 @@
+package com.example.demo.chatbot.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.chatbot.model.EntityType;
+import com.example.demo.chatbot.repository.DocumentEmbeddingRepository;
+import com.example.demo.propiedad.repository.PropiedadRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Cola de trabajo para mantener los embeddings de las propiedades fuera de las
+ * transacciones de negocio. Los listeners encolan el ID de la propiedad después del
+ * commit; varios cambios seguidos de la misma propiedad se funden en una sola tarea
+ * (gana la última operación) y los hilos de trabajo procesan lotes con una única
+ * llamada al modelo de embeddings. Los lotes fallidos se reintentan con espera
+ * exponencial hasta un máximo de intentos.
+ *
+ * La cola vive en memoria: las tareas que se pierden (reinicio con tareas pendientes
+ * o reintentos agotados) las recupera el repaso periódico reconciliar(), que vuelve a
+ * encolar todas las propiedades activas y el borrado de los embeddings huérfanos.
+ */
+@Service
+public class EmbeddingPipelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingPipelineService.class);
+
+    public enum Operacion { ACTUALIZAR, ELIMINAR }
+
+    private record Tarea(Long propiedadId, Operacion operacion, int intento) {
+    }
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private DocumentEmbeddingRepository embeddingRepository;
+
+    @Autowired
+    private PropiedadRepository propiedadRepository;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${homeflex.embeddings.hilos:2}")
+    private int hilos;
+
+    @Value("${homeflex.embeddings.tamano-lote:32}")
+    private int tamanoLote;
+
+    // Espera antes de vaciar la cola para agrupar cambios que llegan seguidos
+    @Value("${homeflex.embeddings.espera-lote-ms:200}")
+    private long esperaLoteMs;
+
+    @Value("${homeflex.embeddings.max-intentos:5}")
+    private int maxIntentos;
+
+    @Value("${homeflex.embeddings.backoff-inicial-ms:1000}")
+    private long backoffInicialMs;
+
+    @Value("${homeflex.embeddings.backoff-max-ms:60000}")
+    private long backoffMaxMs;
+
+    // propiedadId → última operación pendiente, en orden de llegada
+    private final LinkedHashMap<Long, Tarea> cola = new LinkedHashMap<>();
+    // Propiedades que algún hilo está procesando; no se toman en otro lote a la vez
+    private final Set<Long> enProceso = new HashSet<>();
+    private final AtomicInteger enEspera = new AtomicInteger();
+    private final AtomicLong procesadas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+
+    private ExecutorService trabajadores;
+    private ScheduledExecutorService reintentos;
+    private volatile boolean activo;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger contador = new AtomicInteger();
+        trabajadores = Executors.newFixedThreadPool(hilos, r -> {
+            Thread t = new Thread(r, "embeddings-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        reintentos = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "embeddings-reintentos");
+            t.setDaemon(true);
+            return t;
+        });
+
+        activo = true;
+        for (int i = 0; i < hilos; i++) {
+            trabajadores.submit(this::bucleTrabajo);
+        }
+
+        meterRegistry.ifAvailable(registry ->
+                Gauge.builder("homeflex.embeddings.cola", this, EmbeddingPipelineService::getProfundidadCola)
+                     .description("Propiedades pendientes de generar o borrar su embedding")
+                     .register(registry));
+    }
+
+    @PreDestroy
+    public void detener() {
+        activo = false;
+        synchronized (cola) {
+            cola.notifyAll();
+        }
+        trabajadores.shutdownNow();
+        reintentos.shutdownNow();
+        if (getProfundidadCola() > 0) {
+            logger.warn("Se detiene la cola de embeddings con {} tareas pendientes", getProfundidadCola());
+        }
+    }
+
+    /**
+     * Encola la regeneración del embedding de una propiedad
+     */
+    public void encolarActualizacion(Long propiedadId) {
+        encolar(new Tarea(propiedadId, Operacion.ACTUALIZAR, 0));
+    }
+
+    /**
+     * Encola el borrado del embedding de una propiedad
+     */
+    public void encolarEliminacion(Long propiedadId) {
+        encolar(new Tarea(propiedadId, Operacion.ELIMINAR, 0));
+    }
+
+    /**
+     * Repaso periódico de consistencia. Encola todas las propiedades activas: las que
+     * tienen embedding al día no vuelven al modelo (misma huella), así que solo se
+     * regeneran las que no lo tienen o cuyo texto cambió sin llegar a procesarse.
+     * También encola el borrado de los embeddings de propiedades eliminadas o inactivas.
+     */
+    @Scheduled(cron = "${homeflex.embeddings.reconciliacion.cron:0 30 4 * * *}")
+    public void reconciliar() {
+        try {
+            List<Long> activas = propiedadRepository.findIdsActivos();
+            List<Long> huerfanas = embeddingRepository.findEntityIdsSinPropiedadActiva(EntityType.PROPERTY);
+            activas.forEach(this::encolarActualizacion);
+            huerfanas.forEach(this::encolarEliminacion);
+            logger.info("Reconciliación de embeddings: {} propiedades activas y {} embeddings huérfanos encolados",
+                        activas.size(), huerfanas.size());
+        } catch (Exception e) {
+            logger.error("Error en la reconciliación de embeddings: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Tareas pendientes: en cola, en proceso y esperando reintento
+     */
+    public int getProfundidadCola() {
+        synchronized (cola) {
+            return cola.size() + enProceso.size() + enEspera.get();
+        }
+    }
+
+    public long getProcesadas() {
+        return procesadas.get();
+    }
+
+    public long getDescartadas() {
+        return descartadas.get();
+    }
+
+    private void encolar(Tarea tarea) {
+        synchronized (cola) {
+            // Sobrescribir conserva la posición original: una propiedad que se edita
+            // continuamente no pierde su turno
+            cola.put(tarea.propiedadId(), tarea);
+            cola.notifyAll();
+        }
+    }
+
+    private void bucleTrabajo() {
+        while (activo) {
+            List<Tarea> lote;
+            try {
+                lote = tomarLote();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!lote.isEmpty()) {
+                procesar(lote);
+            }
+        }
+    }
+
+    private List<Tarea> tomarLote() throws InterruptedException {
+        synchronized (cola) {
+            while (activo && !hayDisponibles()) {
+                cola.wait();
+            }
+            if (activo && cola.size() < tamanoLote) {
+                cola.wait(esperaLoteMs);
+            }
+
+            List<Tarea> lote = new ArrayList<>();
+            Iterator<Tarea> it = cola.values().iterator();
+            while (it.hasNext() && lote.size() < tamanoLote) {
+                Tarea tarea = it.next();
+                if (enProceso.add(tarea.propiedadId())) {
+                    it.remove();
+                    lote.add(tarea);
+                }
+            }
+            return lote;
+        }
+    }
+
+    private boolean hayDisponibles() {
+        for (Long propiedadId : cola.keySet()) {
+            if (!enProceso.contains(propiedadId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void procesar(List<Tarea> lote) {
+        List<Long> actualizar = new ArrayList<>();
+        List<Long> eliminar = new ArrayList<>();
+        for (Tarea tarea : lote) {
+            (tarea.operacion() == Operacion.ACTUALIZAR ? actualizar : eliminar).add(tarea.propiedadId());
+        }
+
+        try {
+            embeddingService.removePropertyEmbeddings(eliminar);
+            embeddingService.updatePropertyEmbeddings(actualizar);
+            procesadas.addAndGet(lote.size());
+            logger.debug("Lote de embeddings procesado: {} actualizadas, {} eliminadas, {} pendientes",
+                         actualizar.size(), eliminar.size(), getProfundidadCola());
+        } catch (Exception e) {
+            logger.warn("Error al procesar un lote de {} embeddings: {}", lote.size(), e.getMessage());
+            lote.forEach(this::programarReintento);
+        } finally {
+            synchronized (cola) {
+                lote.forEach(t -> enProceso.remove(t.propiedadId()));
+                cola.notifyAll();
+            }
+        }
+    }
+
+    private void programarReintento(Tarea tarea) {
+        int intento = tarea.intento() + 1;
+        if (intento >= maxIntentos) {
+            descartadas.incrementAndGet();
+            logger.error("Se descarta el embedding de la propiedad {} tras {} intentos",
+                         tarea.propiedadId(), intento);
+            return;
+        }
+
+        long espera = Math.min(backoffMaxMs, backoffInicialMs << Math.min(intento - 1, 20));
+        espera += ThreadLocalRandom.current().nextLong(espera / 4 + 1);
+
+        Tarea reintento = new Tarea(tarea.propiedadId(), tarea.operacion(), intento);
+        enEspera.incrementAndGet();
+        reintentos.schedule(() -> {
+            enEspera.decrementAndGet();
+            synchronized (cola) {
+                // Si mientras tanto llegó un cambio nuevo de la propiedad, ese ya la cubre
+                cola.putIfAbsent(reintento.propiedadId(), reintento);
+                cola.notifyAll();
+            }
+        }, espera, TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,7 +1,19 @@
 package com.example.demo.chatbot.service;
 
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -9,9 +21,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.demo.chatbot.event.EmbeddingsActualizadosEvent;
 import com.example.demo.chatbot.model.DocumentEmbedding;
 import com.example.demo.chatbot.model.EntityType;
 import com.example.demo.chatbot.repository.DocumentEmbeddingRepository;
@@ -35,54 +51,149 @@ public class EmbeddingService {
     @Autowired
     private ChatbotDataService chatbotDataService;
 
-    @Transactional
-    public void updateAllPropertyEmbeddings() {
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    // Textos por llamada al modelo de embeddings
+    @Value("${homeflex.embeddings.tamano-lote:32}")
+    private int tamanoLote;
+
+    // Dimensiones de la columna vector(1536)
+    private static final int DIMENSIONES = 1536;
+
+    /** Resultado de un reindexado completo */
+    public record ResultadoReindexado(int total, int regenerados, int sinCambios, int fallidos) {
+    }
+
+    public ResultadoReindexado updateAllPropertyEmbeddings() {
         logger.info("Actualizando embeddings de todas las propiedades activas");
         
-        List<PropiedadVO> propiedadesActivas = propiedadRepository.findByActivoTrue();
-        logger.info("Se encontraron {} propiedades activas para actualizar", propiedadesActivas.size());
+        List<Long> idsActivos = propiedadRepository.findIdsActivos();
+        logger.info("Se encontraron {} propiedades activas para actualizar", idsActivos.size());
         
-        for (PropiedadVO propiedad : propiedadesActivas) {
+        int sinCambios = 0;
+        int fallidos = 0;
+        for (int desde = 0; desde < idsActivos.size(); desde += tamanoLote) {
+            List<Long> lote = idsActivos.subList(desde, Math.min(desde + tamanoLote, idsActivos.size()));
             try {
-                updatePropertyEmbedding(propiedad.getId());
+                sinCambios += updatePropertyEmbeddings(lote);
             } catch (Exception e) {
-                logger.error("Error al actualizar embedding para propiedad ID {}: {}", propiedad.getId(), e.getMessage());
+                fallidos += lote.size();
+                logger.error("Error al actualizar embeddings del lote {}-{}: {}",
+                             lote.get(0), lote.get(lote.size() - 1), e.getMessage());
             }
         }
+        
+        ResultadoReindexado resultado = new ResultadoReindexado(idsActivos.size(),
+                idsActivos.size() - sinCambios - fallidos, sinCambios, fallidos);
+        logger.info("Reindexado de embeddings terminado: {} regenerados, {} sin cambios, {} con error",
+                    resultado.regenerados(), resultado.sinCambios(), resultado.fallidos());
+        return resultado;
     }
 
-    @Transactional
-    public void updatePropertyEmbedding(Long propiedadId) {
-        logger.info("Actualizando embedding para propiedad ID: {}", propiedadId);
-        
-        try {
-            PropiedadVO propiedad = propiedadRepository.findById(propiedadId)
-                .orElseThrow(() -> new RuntimeException("Propiedad no encontrada con ID: " + propiedadId));
+    /**
+     * Genera y guarda los embeddings de varias propiedades con una sola llamada al modelo.
+     * Las propiedades cuyo texto no ha cambiado desde el último embedding (misma huella)
+     * no se vuelven a enviar al modelo. La llamada remota se hace fuera de transacción;
+     * el reemplazo de los embeddings anteriores se hace en una transacción corta.
+     * Las propiedades que ya no existen se quedan sin embedding. Al terminar se publica
+     * EmbeddingsActualizadosEvent con las propiedades cuyo embedding ha cambiado.
+     * @return número de propiedades omitidas por no haber cambiado su texto
+     */
+    public int updatePropertyEmbeddings(Collection<Long> propiedadIds) {
+        if (propiedadIds.isEmpty()) {
+            return 0;
+        }
+        Map<Long, String> huellasGuardadas = new HashMap<>();
+        for (Object[] fila : embeddingRepository.findContentHashes(EntityType.PROPERTY, propiedadIds)) {
+            huellasGuardadas.put((Long) fila[0], (String) fila[1]);
+        }
 
-            // Borrar embeddings anteriores
-            logger.debug("Eliminando embeddings anteriores para la propiedad");
-            embeddingRepository.deleteByEntityTypeAndEntityId(
-                EntityType.PROPERTY, propiedadId);
+        Set<Long> existentes = new HashSet<>();
+        List<Long> cambiadas = new ArrayList<>();
+        List<String> textos = new ArrayList<>();
+        List<String> huellas = new ArrayList<>();
+        for (PropiedadVO propiedad : propiedadRepository.findAllById(propiedadIds)) {
+            existentes.add(propiedad.getId());
+            String texto = chatbotDataService.convertPropertyToText(propiedad);
+            String huella = calcularHuella(texto);
+            if (!huella.equals(huellasGuardadas.get(propiedad.getId()))) {
+                cambiadas.add(propiedad.getId());
+                textos.add(texto);
+                huellas.add(huella);
+            }
+        }
+        int sinCambios = existentes.size() - cambiadas.size();
 
-            // Generar texto para el embedding
-            String text = chatbotDataService.convertPropertyToText(propiedad);
-            logger.debug("Texto generado para embedding: {}", text);
-            
-            // Generar vector de embedding
-            float[] vector = embeddingModel.embed(text);
-            logger.debug("Vector de embedding generado con {} dimensiones", vector.length);
+        // Se borran los embeddings de las propiedades que cambian y de las que ya no existen
+        List<Long> aBorrar = new ArrayList<>(cambiadas);
+        propiedadIds.stream().filter(id -> !existentes.contains(id)).forEach(aBorrar::add);
+        if (aBorrar.isEmpty()) {
+            logger.debug("Embeddings sin cambios para {} propiedades", sinCambios);
+            return sinCambios;
+        }
 
-            // Guardar nuevo embedding
+        List<float[]> vectores = textos.isEmpty() ? List.of() : embeddingModel.embed(textos);
+        if (vectores.size() != textos.size()) {
+            throw new RuntimeException("El modelo devolvió " + vectores.size()
+                    + " embeddings para " + textos.size() + " textos");
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<DocumentEmbedding> documentos = new ArrayList<>(cambiadas.size());
+        for (int i = 0; i < cambiadas.size(); i++) {
             DocumentEmbedding doc = new DocumentEmbedding();
-            doc.setContent(text);
+            doc.setContent(textos.get(i));
+            doc.setContentHash(huellas.get(i));
             doc.setEntityType(EntityType.PROPERTY);
-            doc.setEntityId(propiedadId);
-            doc.setEmbedding(vector);
-            doc.setCreatedAt(LocalDateTime.now());
-            doc.setUpdatedAt(LocalDateTime.now());
+            doc.setEntityId(cambiadas.get(i));
+            doc.setEmbedding(vectores.get(i));
+            doc.setCreatedAt(ahora);
+            doc.setUpdatedAt(ahora);
+            documentos.add(doc);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            embeddingRepository.deleteByEntityTypeAndEntityIdIn(EntityType.PROPERTY, aBorrar);
+            embeddingRepository.saveAll(documentos);
+        });
+        boolean nuevas = cambiadas.stream().anyMatch(id -> !huellasGuardadas.containsKey(id));
+        applicationEventPublisher.publishEvent(new EmbeddingsActualizadosEvent(Set.copyOf(aBorrar), nuevas));
+        logger.info("Embeddings guardados para {} propiedades ({} sin cambios)", documentos.size(), sinCambios);
+        return sinCambios;
+    }
+
+    /**
+     * Elimina los embeddings de varias propiedades
+     */
+    public void removePropertyEmbeddings(Collection<Long> propiedadIds) {
+        if (!propiedadIds.isEmpty()) {
+            embeddingRepository.deleteByEntityTypeAndEntityIdIn(EntityType.PROPERTY, propiedadIds);
+            applicationEventPublisher.publishEvent(new EmbeddingsActualizadosEvent(Set.copyOf(propiedadIds), false));
+        }
+    }
+
+    @Transactional
+    public void updatePropertyEmbedding(Long propiedadId) {
+        logger.info("Actualizando embedding para propiedad ID: {}", propiedadId);
+        
+        try {
+            if (!propiedadRepository.existsById(propiedadId)) {
+                throw new RuntimeException("Propiedad no encontrada con ID: " + propiedadId);
+            }
             
-            embeddingRepository.save(doc);
-            logger.info("Embedding guardado correctamente para propiedad ID: {}", propiedadId);
+            // Solo se llama al modelo si el texto de la propiedad ha cambiado
+            if (updatePropertyEmbeddings(List.of(propiedadId)) > 0) {
+                logger.debug("Texto sin cambios, se conserva el embedding de la propiedad ID: {}", propiedadId);
+            } else {
+                logger.info("Embedding guardado correctamente para propiedad ID: {}", propiedadId);
+            }
         } catch (Exception e) {
             logger.error("Error al actualizar embedding: {}", e.getMessage(), e);
             throw new RuntimeException("Error al actualizar embedding para propiedad: " + e.getMessage(), e);
@@ -94,40 +205,122 @@ public class EmbeddingService {
         logger.info("Eliminando embedding para propiedad ID: {}", propiedadId);
         embeddingRepository.deleteByEntityTypeAndEntityId(
             EntityType.PROPERTY, propiedadId);
+        applicationEventPublisher.publishEvent(new EmbeddingsActualizadosEvent(Set.of(propiedadId), false));
     }
 
     public List<DocumentEmbedding> similaritySearch(
             String query, EntityType entityType, int limit) {
+        return similaritySearch(query, entityType, limit, null);
+    }
+
+    /**
+     * Búsqueda por similitud usando el índice vectorial del tipo de entidad.
+     * @param precision ef_search (HNSW) o probes (IVFFlat) para esta consulta;
+     *                  null para el valor configurado
+     */
+    public List<DocumentEmbedding> similaritySearch(
+            String query, EntityType entityType, int limit, Integer precision) {
         logger.info("Realizando búsqueda por similitud. Query: '{}', EntityType: {}, Limit: {}", 
                    query, entityType, limit);
 
         try {
-            // Generar vector de la consulta
+            // Generar vector de la consulta; se envía en binario, sin convertirlo a texto
             float[] queryVector = embeddingModel.embed(query);
-            String pgVectorLiteral = toPgVectorLiteral(queryVector);
-            logger.debug("Vector PG generado para consulta");
-
-            List<DocumentEmbedding> results;
-            
-            // Realizar la búsqueda según el tipo de entidad
-            if (entityType != null && entityType != EntityType.ALL) {
-                logger.debug("Buscando embeddings solo para tipo: {}", entityType);
-                results = embeddingRepository.findNearestByEntityTypeNative(
-                    entityType.getCode(), pgVectorLiteral, limit
-                );
-            } else {
-                logger.debug("Buscando embeddings para todos los tipos");
-                results = embeddingRepository.findNearestNative(pgVectorLiteral, limit);
-            }
-            
-            logger.info("Búsqueda completada. Encontrados {} resultados", results.size());
-            return results;
+            return similaritySearch(queryVector, entityType, limit, precision);
         } catch (Exception e) {
             logger.error("Error en búsqueda por similitud: {}", e.getMessage(), e);
             throw new RuntimeException("Error en búsqueda por similitud: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Búsqueda por similitud con un vector de consulta ya calculado
+     */
+    public List<DocumentEmbedding> similaritySearch(
+            float[] queryVector, EntityType entityType, int limit, Integer precision) {
+        // Los parámetros del índice (SET LOCAL) solo valen dentro de la misma transacción
+        List<DocumentEmbedding> results = transactionTemplate.execute(status -> {
+            vectorIndexService.aplicarParametrosBusqueda(precision, limit);
+            logger.debug("Buscando embeddings para tipo: {}", entityType);
+            return embeddingRepository.findNearest(queryVector, entityType, limit);
+        });
+        
+        logger.info("Búsqueda completada. Encontrados {} resultados", results.size());
+        return results;
+    }
+
+    /**
+     * Genera el embedding de un texto
+     */
+    public float[] embed(String texto) {
+        return embeddingModel.embed(texto);
+    }
+
+    /** Tiempo medio y memoria asignada por consulta con cada forma de enviar el vector */
+    public record ResultadoEnlaceVector(String modo, double mediaMs, long bytesPorConsulta) {
+    }
+
+    /**
+     * Micro-benchmark del envío del vector de consulta: literal de texto frente a
+     * parámetro binario. Usa un vector aleatorio (no llama al modelo) y ejecuta la
+     * misma búsqueda de vecinos con ambos caminos, alternándolos tras un calentamiento.
+     */
+    public List<ResultadoEnlaceVector> compararEnlaceVector(EntityType entityType, int repeticiones, int limit) {
+        float[] vector = new float[DIMENSIONES];
+        Random random = new Random(42);
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+
+        // Calentamiento: JIT y planes de ambas consultas
+        for (int i = 0; i < Math.min(repeticiones, 10); i++) {
+            medirBusqueda(() -> embeddingRepository.findNearestLiteral(toPgVectorLiteral(vector), entityType, limit));
+            medirBusqueda(() -> embeddingRepository.findNearest(vector, entityType, limit));
+        }
+
+        long[] literal = new long[2];
+        long[] binario = new long[2];
+        for (int i = 0; i < repeticiones; i++) {
+            acumular(literal, medirBusqueda(
+                    () -> embeddingRepository.findNearestLiteral(toPgVectorLiteral(vector), entityType, limit)));
+            acumular(binario, medirBusqueda(
+                    () -> embeddingRepository.findNearest(vector, entityType, limit)));
+        }
+
+        List<ResultadoEnlaceVector> resultados = List.of(
+                new ResultadoEnlaceVector("literal", literal[0] / 1e6 / repeticiones, literal[1] / repeticiones),
+                new ResultadoEnlaceVector("binario", binario[0] / 1e6 / repeticiones, binario[1] / repeticiones));
+        logger.info("Benchmark de enlace de vectores ({} repeticiones): {}", repeticiones, resultados);
+        return resultados;
+    }
+
+    /** Ejecuta la búsqueda y devuelve {nanosegundos, bytes asignados por el hilo} */
+    private long[] medirBusqueda(Runnable busqueda) {
+        com.sun.management.ThreadMXBean hilos =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().getId();
+        long bytes0 = hilos.getThreadAllocatedBytes(hilo);
+        long t0 = System.nanoTime();
+        busqueda.run();
+        long nanos = System.nanoTime() - t0;
+        return new long[] { nanos, hilos.getThreadAllocatedBytes(hilo) - bytes0 };
+    }
+
+    private static void acumular(long[] total, long[] medida) {
+        total[0] += medida[0];
+        total[1] += medida[1];
+    }
+
+    /** Huella SHA-256 (hex) del texto del que se genera el embedding */
+    static String calcularHuella(String texto) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(texto.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
     /** Convierte float[] → "[v1,v2,v3,...]" */
     private String toPgVectorLiteral(float[] emb) {
         String inside = IntStream.range(0, emb.length)
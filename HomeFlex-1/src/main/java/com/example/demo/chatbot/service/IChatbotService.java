@@ -1,11 +1,20 @@
 package com.example.demo.chatbot.service;
 
 import com.example.demo.chatbot.model.Answer;
+import com.example.demo.chatbot.model.AnswerChunk;
 import com.example.demo.chatbot.model.EntityType;
 
+import reactor.core.publisher.Flux;
+
 public interface IChatbotService {
     Answer getAnswer(String question, EntityType entityType);
     
+    /**
+     * Respuesta en streaming: fragmentos de texto según los genera el modelo y,
+     * al final, un fragmento con el tipo de respuesta
+     */
+    Flux<AnswerChunk> streamAnswer(String question, EntityType entityType);
+    
     void updateVectorStore();
     
     void updatePropertyInVectorStore(Long propertyId);
@@ -0,0 +1,289 @@
+package com.example.demo.chatbot.service;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.chatbot.model.Answer;
+import com.example.demo.chatbot.model.EntityType;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Caché de respuestas del chatbot en dos niveles, separada por tipo de entidad:
+ * <ol>
+ *   <li>Coincidencia exacta de la pregunta normalizada (minúsculas, sin tildes ni
+ *       signos de puntuación, espacios colapsados).</li>
+ *   <li>Similitud coseno entre el embedding de la pregunta y los de las preguntas
+ *       ya respondidas, por encima de un umbral configurable.</li>
+ * </ol>
+ * Cada entrada recuerda las propiedades cuyos documentos se usaron para generar la
+ * respuesta; cuando una de ellas cambia la entrada se descarta. Las entradas caducan
+ * además por tiempo y, al superar el máximo, se expulsa la menos usada.
+ *
+ * La búsqueda por similitud recorre todas las entradas, así que no se hace con el
+ * cerrojo tomado: usa una copia inmutable que se rehace tras cada cambio y solo
+ * bloquea para anotar el acierto.
+ */
+@Service
+public class RespuestaCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RespuestaCacheService.class);
+
+    @Value("${homeflex.chatbot.cache.max-entradas:1000}")
+    private int maxEntradas;
+
+    @Value("${homeflex.chatbot.cache.ttl-minutos:60}")
+    private long ttlMinutos;
+
+    // Similitud coseno mínima para reutilizar la respuesta de otra pregunta
+    @Value("${homeflex.chatbot.cache.umbral-similitud:0.95}")
+    private double umbralSimilitud;
+
+    private static final class Entrada {
+        final long id;
+        final EntityType tipo;
+        final float[] vector;
+        final Answer respuesta;
+        final Set<Long> propiedades;
+        final Set<String> preguntas = new HashSet<>();
+        final long caducaEn;
+
+        Entrada(long id, EntityType tipo, float[] vector, Answer respuesta, Set<Long> propiedades, long caducaEn) {
+            this.id = id;
+            this.tipo = tipo;
+            this.vector = vector;
+            this.respuesta = respuesta;
+            this.propiedades = propiedades;
+            this.caducaEn = caducaEn;
+        }
+    }
+
+    // Entradas en orden de uso (la primera es la menos usada recientemente)
+    private LinkedHashMap<Long, Entrada> entradas;
+    // Pregunta normalizada (con su tipo) → entrada
+    private final Map<String, Long> porPregunta = new HashMap<>();
+    // Propiedad citada → entradas que la usan
+    private final Map<Long, Set<Long>> porPropiedad = new HashMap<>();
+    // Copia de las entradas para recorrerlas sin bloquear; null cuando hay que rehacerla
+    private volatile Entrada[] instantanea;
+    private long siguienteId;
+    private long aciertosExactos;
+    private long aciertosSimilares;
+    private long fallos;
+
+    @PostConstruct
+    public void init() {
+        entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entrada> eldest) {
+                if (size() > maxEntradas) {
+                    desindexar(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Primer nivel: respuesta guardada para la misma pregunta normalizada
+     */
+    public synchronized Answer buscarExacta(EntityType tipo, String pregunta) {
+        Long id = porPregunta.get(clave(tipo, pregunta));
+        Entrada entrada = id != null ? vigente(id) : null;
+        if (entrada == null) {
+            return null;
+        }
+        aciertosExactos++;
+        return entrada.respuesta;
+    }
+
+    /**
+     * Segundo nivel: respuesta de la pregunta más parecida del mismo tipo, si supera el umbral.
+     * La pregunta se registra como alias de esa entrada para que la próxima vez acierte en el primer nivel.
+     */
+    public Answer buscarSimilar(EntityType tipo, String pregunta, float[] vector) {
+        float[] consulta = normalizar(vector);
+        Entrada mejor = null;
+        double mejorSimilitud = umbralSimilitud;
+        long ahora = System.nanoTime();
+
+        for (Entrada entrada : instantanea()) {
+            if (entrada.tipo != tipo || ahora - entrada.caducaEn >= 0) {
+                continue;
+            }
+            double similitud = productoEscalar(consulta, entrada.vector);
+            if (similitud >= mejorSimilitud) {
+                mejorSimilitud = similitud;
+                mejor = entrada;
+            }
+        }
+
+        synchronized (this) {
+            // La copia puede ser anterior a una invalidación: solo vale si la entrada sigue
+            if (mejor == null || !entradas.containsKey(mejor.id)) {
+                fallos++;
+                return null;
+            }
+            entradas.get(mejor.id); // marca como usada
+            String clave = clave(tipo, pregunta);
+            mejor.preguntas.add(clave);
+            porPregunta.put(clave, mejor.id);
+            aciertosSimilares++;
+        }
+        logger.debug("Respuesta reutilizada por similitud {} para '{}'", mejorSimilitud, pregunta);
+        return mejor.respuesta;
+    }
+
+    /**
+     * Guarda una respuesta junto con el embedding de la pregunta y las propiedades que cita
+     */
+    public synchronized void guardar(EntityType tipo, String pregunta, float[] vector,
+                                     Answer respuesta, Set<Long> propiedades) {
+        String clave = clave(tipo, pregunta);
+        Long anterior = porPregunta.get(clave);
+        if (anterior != null) {
+            eliminar(anterior);
+        }
+
+        long caducaEn = System.nanoTime() + ttlMinutos * 60_000_000_000L;
+        Entrada entrada = new Entrada(siguienteId++, tipo, normalizar(vector), respuesta,
+                                      Set.copyOf(propiedades), caducaEn);
+        entrada.preguntas.add(clave);
+        porPregunta.put(clave, entrada.id);
+        for (Long propiedadId : entrada.propiedades) {
+            porPropiedad.computeIfAbsent(propiedadId, p -> new HashSet<>()).add(entrada.id);
+        }
+        entradas.put(entrada.id, entrada);
+        instantanea = null;
+    }
+
+    /**
+     * Descarta las respuestas que citan la propiedad
+     */
+    public synchronized void invalidarPropiedad(Long propiedadId) {
+        Set<Long> ids = porPropiedad.get(propiedadId);
+        if (ids == null) {
+            return;
+        }
+        int total = ids.size();
+        for (Long id : Set.copyOf(ids)) {
+            eliminar(id);
+        }
+        logger.debug("Descartadas {} respuestas en caché que citaban la propiedad {}", total, propiedadId);
+    }
+
+    /**
+     * Descarta todas las respuestas de un tipo de entidad (p. ej. al publicarse una
+     * propiedad nueva, que podría responder preguntas ya cacheadas). Las respuestas
+     * generales (ALL) buscan en todos los tipos, así que también se descartan.
+     */
+    public synchronized void invalidarTipo(EntityType tipo) {
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (it.hasNext()) {
+            Entrada entrada = it.next();
+            if (entrada.tipo == tipo || entrada.tipo == EntityType.ALL) {
+                desindexar(entrada);
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized Map<String, Long> getEstadisticas() {
+        return Map.of("entradas", (long) entradas.size(),
+                      "aciertosExactos", aciertosExactos,
+                      "aciertosSimilares", aciertosSimilares,
+                      "fallos", fallos);
+    }
+
+    private Entrada[] instantanea() {
+        Entrada[] vista = instantanea;
+        if (vista == null) {
+            synchronized (this) {
+                vista = instantanea;
+                if (vista == null) {
+                    vista = entradas.values().toArray(new Entrada[0]);
+                    instantanea = vista;
+                }
+            }
+        }
+        return vista;
+    }
+
+    /** Entrada no caducada (y la marca como usada); las caducadas se eliminan */
+    private Entrada vigente(Long id) {
+        Entrada entrada = entradas.get(id);
+        if (entrada != null && System.nanoTime() - entrada.caducaEn >= 0) {
+            eliminar(id);
+            return null;
+        }
+        return entrada;
+    }
+
+    private void eliminar(Long id) {
+        Entrada entrada = entradas.remove(id);
+        if (entrada != null) {
+            desindexar(entrada);
+        }
+    }
+
+    private void desindexar(Entrada entrada) {
+        instantanea = null;
+        entrada.preguntas.forEach(porPregunta::remove);
+        for (Long propiedadId : entrada.propiedades) {
+            Set<Long> ids = porPropiedad.get(propiedadId);
+            if (ids != null) {
+                ids.remove(entrada.id);
+                if (ids.isEmpty()) {
+                    porPropiedad.remove(propiedadId);
+                }
+            }
+        }
+    }
+
+    private static String clave(EntityType tipo, String pregunta) {
+        String normalizada = Normalizer.normalize(pregunta.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .replaceAll("[^\\p{L}\\p{N}]+", " ")
+                .trim();
+        return tipo.getCode() + "|" + normalizada;
+    }
+
+    /** Copia del vector con norma 1, para que el producto escalar sea la similitud coseno */
+    private static float[] normalizar(float[] vector) {
+        double norma = 0;
+        for (float v : vector) {
+            norma += (double) v * v;
+        }
+        norma = Math.sqrt(norma);
+        float[] unitario = new float[vector.length];
+        if (norma > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                unitario[i] = (float) (vector[i] / norma);
+            }
+        }
+        return unitario;
+    }
+
+    private static double productoEscalar(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double suma = 0;
+        for (int i = 0; i < a.length; i++) {
+            suma += a[i] * b[i];
+        }
+        return suma;
+    }
+}
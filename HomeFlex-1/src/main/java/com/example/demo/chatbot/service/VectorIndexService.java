@@ -0,0 +1,240 @@
+package com.example.demo.chatbot.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.chatbot.model.EntityType;
+
+/**
+ * Gestión de los índices de vecinos aproximados (pgvector) de document_embeddings.
+ *
+ * Se crea un índice parcial por tipo de entidad (WHERE entity_type = '...'), HNSW o
+ * IVFFlat según configuración, con la métrica L2 que usan las búsquedas (operador <->).
+ * Las consultas fijan ef_search / probes en su propia transacción (SET LOCAL), y el
+ * modo benchmark compara recall y latencia frente a la búsqueda exacta.
+ */
+@Service
+public class VectorIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorIndexService.class);
+
+    private static final String TABLA = "document_embeddings";
+
+    public enum TipoIndice { HNSW, IVFFLAT }
+
+    /** Resultado de una configuración en el benchmark; parametro es null en la búsqueda exacta */
+    public record ResultadoBenchmark(String modo, Integer parametro, double recall, double latenciaMediaMs) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${homeflex.vector-index.tipo:HNSW}")
+    private TipoIndice tipoIndice;
+
+    @Value("${homeflex.vector-index.crear-al-arrancar:true}")
+    private boolean crearAlArrancar;
+
+    @Value("${homeflex.vector-index.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${homeflex.vector-index.hnsw.ef-construction:64}")
+    private int hnswEfConstruction;
+
+    // Candidatos explorados por consulta HNSW: más alto, más recall y más latencia
+    @Value("${homeflex.vector-index.hnsw.ef-search:40}")
+    private int hnswEfSearch;
+
+    @Value("${homeflex.vector-index.ivfflat.listas:100}")
+    private int ivfflatListas;
+
+    // Listas visitadas por consulta IVFFlat
+    @Value("${homeflex.vector-index.ivfflat.probes:10}")
+    private int ivfflatProbes;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        if (crearAlArrancar) {
+            asegurarIndices();
+        }
+    }
+
+    /**
+     * Crea los índices que falten para el tipo configurado, vuelve a crear los que hayan
+     * quedado inválidos y elimina los del otro tipo.
+     * Cada noche se vuelve a ejecutar para crear los IVFFlat que esperaban datos y
+     * recalcular sus centroides.
+     */
+    @Scheduled(cron = "${homeflex.vector-index.cron:0 30 3 * * *}")
+    public void asegurarIndices() {
+        for (EntityType entidad : EntityType.values()) {
+            if (entidad == EntityType.ALL) {
+                continue;
+            }
+            try {
+                asegurarIndice(entidad);
+            } catch (Exception e) {
+                logger.error("Error al preparar el índice vectorial de {}: {}", entidad.getCode(), e.getMessage());
+            }
+        }
+    }
+
+    private void asegurarIndice(EntityType entidad) {
+        for (TipoIndice otro : TipoIndice.values()) {
+            if (otro != tipoIndice) {
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + nombreIndice(entidad, otro));
+            }
+        }
+
+        String nombre = nombreIndice(entidad, tipoIndice);
+        List<Boolean> valido = jdbcTemplate.queryForList(
+                "SELECT i.indisvalid FROM pg_index i"
+                + " JOIN pg_class c ON c.oid = i.indexrelid"
+                + " JOIN pg_class t ON t.oid = i.indrelid"
+                + " WHERE t.relname = ? AND c.relname = ?",
+                Boolean.class, TABLA, nombre);
+        boolean existe = !valido.isEmpty();
+        if (existe && !Boolean.TRUE.equals(valido.get(0))) {
+            // Un CREATE INDEX CONCURRENTLY interrumpido deja el índice inválido: no se usa en
+            // las consultas pero se mantiene en cada escritura, y IF NOT EXISTS no lo repara
+            logger.warn("Índice vectorial {} inválido, se vuelve a crear", nombre);
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + nombre);
+            existe = false;
+        }
+
+        if (tipoIndice == TipoIndice.IVFFLAT) {
+            // IVFFlat calcula los centroides con los datos existentes: sin filas suficientes
+            // el índice sería peor que la búsqueda secuencial
+            Long filas = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM " + TABLA + " WHERE entity_type = ?", Long.class, entidad.getCode());
+            if (filas == null || filas < ivfflatListas) {
+                logger.debug("Índice {} pendiente: {} filas para {} listas", nombre, filas, ivfflatListas);
+                return;
+            }
+            if (existe) {
+                jdbcTemplate.execute("REINDEX INDEX CONCURRENTLY " + nombre);
+                logger.info("Índice vectorial {} recalculado ({} filas)", nombre, filas);
+                return;
+            }
+        } else if (existe) {
+            return;
+        }
+
+        long inicio = System.currentTimeMillis();
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + nombre
+                + " ON " + TABLA + " USING " + tipoIndice.name().toLowerCase()
+                + " (embedding vector_l2_ops) WITH (" + opcionesIndice() + ")"
+                + " WHERE entity_type = '" + entidad.getCode() + "'");
+        logger.info("Índice vectorial {} creado en {} ms", nombre, System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Fija los parámetros de búsqueda del índice para la transacción en curso.
+     * Debe llamarse dentro de la misma transacción que la consulta de vecinos.
+     * @param precision ef_search (HNSW) o probes (IVFFlat); null para el valor configurado
+     * @param limite    vecinos pedidos; HNSW no puede devolver más de ef_search
+     */
+    public void aplicarParametrosBusqueda(Integer precision, int limite) {
+        if (tipoIndice == TipoIndice.HNSW) {
+            int efSearch = Math.max(precision != null ? precision : hnswEfSearch, limite);
+            jdbcTemplate.queryForObject("SELECT set_config('hnsw.ef_search', ?, true)",
+                                        String.class, String.valueOf(efSearch));
+        } else {
+            int probes = Math.min(precision != null ? precision : ivfflatProbes, ivfflatListas);
+            jdbcTemplate.queryForObject("SELECT set_config('ivfflat.probes', ?, true)",
+                                        String.class, String.valueOf(probes));
+        }
+    }
+
+    /**
+     * Compara la búsqueda aproximada con la exacta usando como consultas embeddings
+     * ya guardados elegidos al azar.
+     * @param entidad    tipo de entidad a evaluar
+     * @param consultas  número de consultas de prueba
+     * @param k          vecinos por consulta
+     * @param precisiones valores de ef_search / probes a evaluar
+     */
+    public List<ResultadoBenchmark> evaluarRecall(EntityType entidad, int consultas, int k, List<Integer> precisiones) {
+        List<String> muestras = jdbcTemplate.queryForList(
+                "SELECT embedding::text FROM " + TABLA
+                + " WHERE entity_type = ? AND embedding IS NOT NULL ORDER BY random() LIMIT ?",
+                String.class, entidad.getCode(), consultas);
+        List<ResultadoBenchmark> resultados = new ArrayList<>();
+        if (muestras.isEmpty()) {
+            return resultados;
+        }
+
+        // Referencia: búsqueda exacta sin índices
+        List<Set<Long>> exactos = new ArrayList<>();
+        long nanos = 0;
+        for (String vector : muestras) {
+            long t0 = System.nanoTime();
+            exactos.add(new HashSet<>(buscarIds(entidad, vector, k, null)));
+            nanos += System.nanoTime() - t0;
+        }
+        resultados.add(new ResultadoBenchmark("exacta", null, 1.0, nanos / 1e6 / muestras.size()));
+
+        String modo = tipoIndice.name().toLowerCase();
+        for (Integer precision : precisiones) {
+            double recall = 0;
+            nanos = 0;
+            for (int i = 0; i < muestras.size(); i++) {
+                long t0 = System.nanoTime();
+                List<Long> aproximados = buscarIds(entidad, muestras.get(i), k, precision);
+                nanos += System.nanoTime() - t0;
+
+                Set<Long> exacto = exactos.get(i);
+                if (!exacto.isEmpty()) {
+                    recall += (double) aproximados.stream().filter(exacto::contains).count() / exacto.size();
+                } else {
+                    recall += 1.0;
+                }
+            }
+            resultados.add(new ResultadoBenchmark(modo, precision, recall / muestras.size(),
+                                                  nanos / 1e6 / muestras.size()));
+        }
+        logger.info("Benchmark de índice vectorial para {}: {}", entidad.getCode(), resultados);
+        return resultados;
+    }
+
+    /** Vecinos de un vector; con precision null se desactivan los índices para obtener el resultado exacto */
+    private List<Long> buscarIds(EntityType entidad, String vector, int k, Integer precision) {
+        return transactionTemplate.execute(status -> {
+            if (precision == null) {
+                jdbcTemplate.queryForObject("SELECT set_config('enable_indexscan', 'off', true)", String.class);
+            } else {
+                aplicarParametrosBusqueda(precision, k);
+            }
+            return jdbcTemplate.queryForList(
+                    "SELECT id FROM " + TABLA + " WHERE entity_type = '" + entidad.getCode() + "'"
+                    + " ORDER BY embedding <-> CAST(? AS vector) LIMIT ?",
+                    Long.class, vector, k);
+        });
+    }
+
+    private String opcionesIndice() {
+        return tipoIndice == TipoIndice.HNSW
+                ? "m = " + hnswM + ", ef_construction = " + hnswEfConstruction
+                : "lists = " + ivfflatListas;
+    }
+
+    private static String nombreIndice(EntityType entidad, TipoIndice tipo) {
+        return "idx_" + TABLA + "_" + entidad.getCode() + "_" + tipo.name().toLowerCase();
+    }
+}
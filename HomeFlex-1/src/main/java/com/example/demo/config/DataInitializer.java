@@ -67,8 +67,9 @@ public class DataInitializer implements CommandLineRunner {
         long existing = embeddingRepository.count();
         if (existing == 0 && propiedadRepository.countByActivoTrue() > 0) {
             System.out.println("▶ La tabla document_embeddings está vacía. Generando embeddings para todas las propiedades activas...");
-            embeddingService.updateAllPropertyEmbeddings();
-            System.out.println("✅ Embeddings generados y guardados en la base de datos");
+            EmbeddingService.ResultadoReindexado resultado = embeddingService.updateAllPropertyEmbeddings();
+            System.out.printf("✅ Embeddings guardados en la base de datos: %d generados, %d sin cambios, %d con error%n",
+                              resultado.regenerados(), resultado.sinCambios(), resultado.fallidos());
         } else {
             System.out.printf("ℹ️ Ya existen %d embeddings. No se recrearán.%n", existing);
         }
@@ -1,32 +1,66 @@
 package com.example.demo.config;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-import org.springframework.web.servlet.resource.PathResourceResolver;
 
 @Configuration
 @EnableWebMvc
 public class WebMvcConfig implements WebMvcConfigurer {
-	 @Value("${homeflex.upload-dir}")
-	    private String uploadDir;    
+    // Duración máxima de las respuestas asíncronas (server-sent events); al cumplirse
+    // el navegador vuelve a conectar
+    @Value("${homeflex.mvc.async-timeout-ms:1800000}")
+    private long asyncTimeoutMs;
+    
+    // Hilos que escriben en la respuesta los elementos de los Flux (SSE del chat y del chatbot)
+    @Value("${homeflex.mvc.async-hilos:8}")
+    private int asyncHilos;
+    
+    @Value("${homeflex.mvc.async-hilos-max:32}")
+    private int asyncHilosMax;
+    
+    @Value("${homeflex.mvc.async-cola:1000}")
+    private int asyncCola;
+    
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(asyncTimeoutMs);
+        configurer.setTaskExecutor(mvcAsyncExecutor());
+    }
+    
+    /**
+     * Ejecutor acotado para las respuestas asíncronas. Con @EnableWebMvc Spring Boot no
+     * configura ninguno y MVC recurre a SimpleAsyncTaskExecutor, que crea un hilo por
+     * cada escritura. Si la cola se llena, escribe el propio hilo que emite.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(asyncHilos);
+        executor.setMaxPoolSize(asyncHilosMax);
+        executor.setQueueCapacity(asyncCola);
+        executor.setThreadNamePrefix("mvc-async-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+    
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // Manejar recursos estáticos: CSS, JavaScript, Imágenes
         registry.addResourceHandler("/css/**").addResourceLocations("classpath:/static/css/");
         registry.addResourceHandler("/js/**").addResourceLocations("classpath:/static/js/");
         registry.addResourceHandler("/images/**").addResourceLocations("classpath:/static/images/");
-        registry.addResourceHandler("/uploads/**").addResourceLocations("file:uploads/");
         registry.addResourceHandler("/favicon.ico").addResourceLocations("classpath:/static/favicon.ico");
         registry.addResourceHandler("/webjars/**").addResourceLocations("classpath:/META-INF/resources/webjars/");
-        registry.addResourceHandler("/media/**")
-        .addResourceLocations("file:" + (uploadDir.endsWith("/") ? uploadDir : uploadDir + "/"))
-        .setCachePeriod(3600)                     // opcional (1 h de caché)
-        .resourceChain(true)
-        .addResolver(new PathResourceResolver());
+        // /media/** y /uploads/** los sirve MediaController (rangos, peticiones condicionales)
     }
 
     @Override
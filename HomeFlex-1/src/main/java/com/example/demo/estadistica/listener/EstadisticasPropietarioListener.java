@@ -0,0 +1,77 @@
+package com.example.demo.estadistica.listener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.estadistica.service.EstadisticasPropietarioService;
+import com.example.demo.propiedad.event.PropiedadCreatedEvent;
+import com.example.demo.propiedad.event.PropiedadDeletedEvent;
+import com.example.demo.propiedad.event.PropiedadUpdatedEvent;
+import com.example.demo.reserva.event.ReservaEstadoCambiadoEvent;
+
+/**
+ * Mantiene al día los contadores del panel del propietario. Un fallo aquí no afecta a la
+ * operación, ya confirmada: la reconstrucción nocturna recupera los contadores.
+ */
+@Component
+public class EstadisticasPropietarioListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(EstadisticasPropietarioListener.class);
+
+    @Autowired
+    private EstadisticasPropietarioService estadisticasService;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        if (!estadisticasService.hayDatos()) {
+            estadisticasService.reconstruir();
+        }
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadCreatedEvent(PropiedadCreatedEvent event) {
+        recalcular(estadisticasService.propietarioDe(event.getPropiedadId()));
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadUpdatedEvent(PropiedadUpdatedEvent event) {
+        recalcular(estadisticasService.propietarioDe(event.getPropiedadId()));
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadDeletedEvent(PropiedadDeletedEvent event) {
+        recalcular(event.getPropietarioId());
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handleReservaEstadoCambiadoEvent(ReservaEstadoCambiadoEvent event) {
+        try {
+            if (!estadisticasService.registrarCambioReserva(event.getReservaId(), event.getFechaInicio(),
+                    event.getEstadoAnterior(), event.getEstadoNuevo())) {
+                // Reserva borrada: sin su importe sólo queda recalcular al propietario
+                recalcular(estadisticasService.propietarioDe(event.getPropiedadId()));
+            }
+        } catch (Exception e) {
+            logger.error("No se pudieron actualizar las estadísticas de la reserva {}: {}",
+                         event.getReservaId(), e.getMessage());
+        }
+    }
+    
+    private void recalcular(Long propietarioId) {
+        if (propietarioId == null) {
+            return;
+        }
+        try {
+            estadisticasService.recalcularPropietario(propietarioId);
+        } catch (Exception e) {
+            logger.error("No se pudieron recalcular las estadísticas del propietario {}: {}",
+                         propietarioId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.estadistica.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Contadores precalculados del panel de un propietario, por ciudad y mes.
+ *
+ * Las publicaciones cuentan en el mes de alta de la propiedad; las reservas y los
+ * ingresos, en el mes de la fecha de entrada. Se mantienen al día con los eventos de
+ * propiedades y reservas y se reconstruyen enteros cada noche.
+ */
+@Entity
+@Table(name = "estadisticas_propietario",
+       uniqueConstraints = @UniqueConstraint(name = "uk_estadisticas_propietario_ciudad_mes",
+                                             columnNames = { "propietario_id", "ciudad", "mes" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadisticaPropietarioVO {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "propietario_id", nullable = false)
+    private Long propietarioId;
+
+    @Column(length = 100, nullable = false)
+    private String ciudad;
+
+    // Primer día del mes
+    @Column(nullable = false)
+    private LocalDate mes;
+
+    // Propiedades dadas de alta ese mes que siguen existiendo
+    @Column(nullable = false)
+    private Integer publicaciones;
+
+    // De ellas, las que están activas
+    @Column(nullable = false)
+    private Integer activas;
+
+    // Reservas no canceladas con entrada ese mes
+    @Column(nullable = false)
+    private Integer reservas;
+
+    // Importe de las reservas pagadas con entrada ese mes
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal ingresos;
+}
@@ -0,0 +1,107 @@
+package com.example.demo.estadistica.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.estadistica.model.EstadisticaPropietarioVO;
+
+@Repository
+public interface EstadisticaPropietarioRepository extends JpaRepository<EstadisticaPropietarioVO, Long> {
+
+    String COLUMNAS = "INSERT INTO estadisticas_propietario "
+            + "(propietario_id, ciudad, mes, publicaciones, activas, reservas, ingresos) ";
+
+    // Publicaciones agrupadas desde la tabla de propiedades
+    String PUBLICACIONES = COLUMNAS
+            + "SELECT p.usuario_id, p.ciudad, CAST(date_trunc('month', p.fecha_creacion) AS date), "
+            + "COUNT(*), COUNT(*) FILTER (WHERE p.activo), 0, 0 "
+            + "FROM propiedad p ";
+
+    String PUBLICACIONES_FIN = "GROUP BY 1, 2, 3 "
+            + "ON CONFLICT (propietario_id, ciudad, mes) DO UPDATE SET "
+            + "publicaciones = EXCLUDED.publicaciones, activas = EXCLUDED.activas";
+
+    // Reservas no canceladas e ingresos de las pagadas, por mes de entrada
+    String RESERVAS = COLUMNAS
+            + "SELECT p.usuario_id, p.ciudad, CAST(date_trunc('month', r.fecha_inicio) AS date), 0, 0, "
+            + "COUNT(*), COALESCE(SUM(r.precio_total) "
+            + "FILTER (WHERE r.estado IN ('PAGO_VERIFICADO', 'CONFIRMADA')), 0) "
+            + "FROM reserva r JOIN propiedad p ON p.id = r.propiedad_id "
+            + "WHERE r.estado <> 'CANCELADA' ";
+
+    String RESERVAS_FIN = "GROUP BY 1, 2, 3 "
+            + "ON CONFLICT (propietario_id, ciudad, mes) DO UPDATE SET "
+            + "reservas = EXCLUDED.reservas, ingresos = EXCLUDED.ingresos";
+
+    List<EstadisticaPropietarioVO> findByPropietarioId(Long propietarioId);
+
+    /**
+     * Bloqueo consultivo exclusivo hasta el final de la transacción.
+     * pg_advisory_xact_lock devuelve void, que Hibernate no sabe leer
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(:tipo, :clave)) b", nativeQuery = true)
+    Integer bloquear(@Param("tipo") int tipo, @Param("clave") int clave);
+
+    /**
+     * Bloqueo consultivo compartido: sólo espera a quien tenga la misma clave en exclusiva
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock_shared(:tipo, :clave)) b", nativeQuery = true)
+    Integer bloquearCompartido(@Param("tipo") int tipo, @Param("clave") int clave);
+
+    /**
+     * Suma (o resta, con valores negativos) reservas e ingresos a una celda, creándola
+     * si no existía
+     */
+    @Modifying
+    @Query(value = COLUMNAS
+         + "VALUES (:propietarioId, :ciudad, :mes, 0, 0, :reservas, :ingresos) "
+         + "ON CONFLICT (propietario_id, ciudad, mes) DO UPDATE SET "
+         + "reservas = estadisticas_propietario.reservas + EXCLUDED.reservas, "
+         + "ingresos = estadisticas_propietario.ingresos + EXCLUDED.ingresos",
+           nativeQuery = true)
+    void sumarReservas(@Param("propietarioId") Long propietarioId,
+                       @Param("ciudad") String ciudad,
+                       @Param("mes") LocalDate mes,
+                       @Param("reservas") int reservas,
+                       @Param("ingresos") BigDecimal ingresos);
+
+    @Modifying
+    @Query(value = "DELETE FROM estadisticas_propietario WHERE propietario_id = :propietarioId", nativeQuery = true)
+    void borrarDePropietario(@Param("propietarioId") Long propietarioId);
+
+    @Modifying
+    @Query(value = PUBLICACIONES + "WHERE p.usuario_id = :propietarioId " + PUBLICACIONES_FIN, nativeQuery = true)
+    void insertarPublicacionesDePropietario(@Param("propietarioId") Long propietarioId);
+
+    @Modifying
+    @Query(value = RESERVAS + "AND p.usuario_id = :propietarioId " + RESERVAS_FIN, nativeQuery = true)
+    void insertarReservasDePropietario(@Param("propietarioId") Long propietarioId);
+
+    @Modifying
+    @Query(value = "DELETE FROM estadisticas_propietario", nativeQuery = true)
+    void borrarTodo();
+
+    @Modifying
+    @Query(value = PUBLICACIONES + PUBLICACIONES_FIN, nativeQuery = true)
+    void insertarPublicaciones();
+
+    @Modifying
+    @Query(value = RESERVAS + RESERVAS_FIN, nativeQuery = true)
+    void insertarReservas();
+
+    // Propietario, ciudad e importe de una reserva, para repartir sus contadores
+    @Query("SELECT p.propietario.id, p.ciudad, r.precioTotal FROM ReservaVO r JOIN r.propiedad p "
+         + "WHERE r.id = :reservaId")
+    List<Object[]> findDatosReserva(@Param("reservaId") Long reservaId);
+
+    @Query("SELECT p.propietario.id FROM PropiedadVO p WHERE p.id = :propiedadId")
+    Optional<Long> findPropietarioDePropiedad(@Param("propiedadId") Long propiedadId);
+}
@@ -0,0 +1,185 @@
+package com.example.demo.estadistica.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.estadistica.model.EstadisticaPropietarioVO;
+import com.example.demo.estadistica.repository.EstadisticaPropietarioRepository;
+import com.example.demo.propiedad.model.PropiedadEstadisticasDTO;
+import com.example.demo.reserva.model.EstadoReserva;
+
+/**
+ * Estadísticas del panel del propietario servidas desde una tabla de contadores por
+ * propietario, ciudad y mes, en lugar de recorrer sus propiedades y reservas en cada visita.
+ *
+ * Los cambios de reservas se aplican como incrementos. Los de propiedades (alta, edición,
+ * baja) recalculan las filas de ese propietario, que son pocas y no dependen del
+ * histórico de los demás. La reconstrucción nocturna corrige cualquier desviación (un
+ * evento perdido en un reinicio, una propiedad que cambia de ciudad con reservas).
+ *
+ * Los métodos que llaman los listeners abren su propia transacción: se ejecutan tras el
+ * commit de la operación que publicó el evento. Los cambios de un mismo propietario se
+ * serializan con un bloqueo consultivo, para que un recálculo no pise un incremento que
+ * se aplica a la vez; la reconstrucción toma la tabla entera y espera a todos.
+ */
+@Service
+public class EstadisticasPropietarioService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EstadisticasPropietarioService.class);
+
+    // Primeras claves de pg_advisory_xact_lock(int, int), para no chocar con otros bloqueos
+    static final int CLAVE_TABLA = 0x48464554;
+    static final int CLAVE_PROPIETARIO = 0x48464550;
+
+    @Autowired
+    private EstadisticaPropietarioRepository estadisticaRepository;
+
+    /**
+     * Estadísticas de un propietario con una sola consulta
+     */
+    public PropiedadEstadisticasDTO obtener(Long propietarioId) {
+        List<EstadisticaPropietarioVO> filas = estadisticaRepository.findByPropietarioId(propietarioId);
+
+        int total = 0;
+        int activas = 0;
+        int reservas = 0;
+        BigDecimal ingresos = BigDecimal.ZERO;
+        Map<String, Integer> porCiudad = new HashMap<>();
+        Map<Month, Integer> publicacionesPorMes = new HashMap<>();
+        Map<Month, Integer> reservasPorMes = new HashMap<>();
+        Map<Month, BigDecimal> ingresosPorMes = new HashMap<>();
+
+        // Los gráficos mensuales cubren los últimos 12 meses
+        LocalDate inicioVentana = LocalDate.now().withDayOfMonth(1).minusMonths(11);
+
+        for (EstadisticaPropietarioVO fila : filas) {
+            total += fila.getPublicaciones();
+            activas += fila.getActivas();
+            reservas += fila.getReservas();
+            ingresos = ingresos.add(fila.getIngresos());
+            if (fila.getPublicaciones() > 0) {
+                porCiudad.merge(fila.getCiudad(), fila.getPublicaciones(), Integer::sum);
+            }
+            if (!fila.getMes().isBefore(inicioVentana)) {
+                Month mes = fila.getMes().getMonth();
+                publicacionesPorMes.merge(mes, fila.getPublicaciones(), Integer::sum);
+                reservasPorMes.merge(mes, fila.getReservas(), Integer::sum);
+                ingresosPorMes.merge(mes, fila.getIngresos(), BigDecimal::add);
+            }
+        }
+
+        PropiedadEstadisticasDTO estadisticas = new PropiedadEstadisticasDTO();
+        estadisticas.setTotalPropiedades(total);
+        estadisticas.setPropiedadesActivas(activas);
+        estadisticas.setPropiedadesInactivas(total - activas);
+        estadisticas.setPropiedadesPorCiudad(porCiudad);
+        estadisticas.setTotalReservas(reservas);
+        estadisticas.setIngresosTotales(ingresos);
+
+        Map<String, Integer> publicacionesMes = new HashMap<>();
+        Map<String, Integer> reservasMes = new HashMap<>();
+        Map<String, BigDecimal> ingresosMes = new HashMap<>();
+        for (Month mes : Month.values()) {
+            publicacionesMes.put(mes.toString(), publicacionesPorMes.getOrDefault(mes, 0));
+            reservasMes.put(mes.toString(), reservasPorMes.getOrDefault(mes, 0));
+            ingresosMes.put(mes.toString(), ingresosPorMes.getOrDefault(mes, BigDecimal.ZERO));
+        }
+        estadisticas.setPublicacionesPorMes(publicacionesMes);
+        estadisticas.setReservasPorMes(reservasMes);
+        estadisticas.setIngresosPorMes(ingresosMes);
+        return estadisticas;
+    }
+
+    /**
+     * Aplica el cambio de estado de una reserva: cuenta mientras no está cancelada y
+     * suma ingresos desde que se paga. Devuelve false si la reserva ya no existe (se
+     * borró con su usuario) y no se pudo aplicar.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean registrarCambioReserva(Long reservaId, LocalDate fechaInicio,
+                                          EstadoReserva anterior, EstadoReserva nuevo) {
+        int reservas = (cuenta(nuevo) ? 1 : 0) - (cuenta(anterior) ? 1 : 0);
+        int cobros = (cobrada(nuevo) ? 1 : 0) - (cobrada(anterior) ? 1 : 0);
+        if (reservas == 0 && cobros == 0) {
+            return true;
+        }
+
+        List<Object[]> datos = estadisticaRepository.findDatosReserva(reservaId);
+        if (datos.isEmpty()) {
+            return false;
+        }
+        Long propietarioId = (Long) datos.get(0)[0];
+        String ciudad = (String) datos.get(0)[1];
+        BigDecimal importe = (BigDecimal) datos.get(0)[2];
+
+        bloquearPropietario(propietarioId);
+        estadisticaRepository.sumarReservas(propietarioId, ciudad, fechaInicio.withDayOfMonth(1),
+                reservas, importe.multiply(BigDecimal.valueOf(cobros)));
+        return true;
+    }
+
+    /**
+     * Recalcula las filas de un propietario tras un cambio en sus propiedades
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void recalcularPropietario(Long propietarioId) {
+        bloquearPropietario(propietarioId);
+        estadisticaRepository.borrarDePropietario(propietarioId);
+        estadisticaRepository.insertarPublicacionesDePropietario(propietarioId);
+        estadisticaRepository.insertarReservasDePropietario(propietarioId);
+    }
+
+    /**
+     * Propietario de una propiedad, o null si ya no existe
+     */
+    public Long propietarioDe(Long propiedadId) {
+        return estadisticaRepository.findPropietarioDePropiedad(propiedadId).orElse(null);
+    }
+
+    /**
+     * Indica si la tabla tiene contenido (false en el primer arranque)
+     */
+    public boolean hayDatos() {
+        return estadisticaRepository.count() > 0;
+    }
+
+    /**
+     * Reconstruye la tabla entera desde propiedades y reservas
+     */
+    @Scheduled(cron = "${homeflex.estadisticas.cron:0 40 3 * * *}")
+    @Transactional
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        estadisticaRepository.bloquear(CLAVE_TABLA, 0);
+        estadisticaRepository.borrarTodo();
+        estadisticaRepository.insertarPublicaciones();
+        estadisticaRepository.insertarReservas();
+        logger.info("Estadísticas de propietarios reconstruidas en {} ms", System.currentTimeMillis() - inicio);
+    }
+
+    private void bloquearPropietario(Long propietarioId) {
+        // Compartido con los demás propietarios, exclusivo frente a la reconstrucción
+        estadisticaRepository.bloquearCompartido(CLAVE_TABLA, 0);
+        estadisticaRepository.bloquear(CLAVE_PROPIETARIO, (int) (propietarioId ^ (propietarioId >>> 32)));
+    }
+
+    private static boolean cuenta(EstadoReserva estado) {
+        return estado != null && estado != EstadoReserva.CANCELADA;
+    }
+
+    private static boolean cobrada(EstadoReserva estado) {
+        return estado == EstadoReserva.PAGO_VERIFICADO || estado == EstadoReserva.CONFIRMADA;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.foto.event;
+
+import java.util.List;
+
+/**
+ * Se publica cuando se guardan fotos nuevas de una propiedad
+ */
+public class FotosSubidasEvent {
+    private final Long propiedadId;
+    private final List<Long> fotoIds;
+    
+    public FotosSubidasEvent(Long propiedadId, List<Long> fotoIds) {
+        this.propiedadId = propiedadId;
+        this.fotoIds = List.copyOf(fotoIds);
+    }
+    
+    public Long getPropiedadId() {
+        return propiedadId;
+    }
+    
+    public List<Long> getFotoIds() {
+        return fotoIds;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.foto.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.foto.event.FotosSubidasEvent;
+import com.example.demo.foto.service.FotoVariantesService;
+
+/**
+ * Encola la generación de versiones reducidas de las fotos nuevas una vez
+ * confirmadas, para que el trabajo en segundo plano ya las encuentre en la base de datos
+ */
+@Component
+public class FotoVariantesListener {
+
+    @Autowired
+    private FotoVariantesService fotoVariantesService;
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handleFotosSubidasEvent(FotosSubidasEvent event) {
+        fotoVariantesService.encolar(event.getFotoIds());
+    }
+}
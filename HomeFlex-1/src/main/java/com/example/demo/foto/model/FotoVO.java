@@ -42,4 +42,12 @@ public class FotoVO {
     
     @Column(nullable = false)
     private boolean principal;
+    
+    // Versiones reducidas para el atributo srcset ("url 320w, url 640w, ..."); null hasta que se generan
+    @Column(columnDefinition = "TEXT")
+    private String srcset;
+    
+    // Miniatura diminuta como data URI, para mostrarla mientras carga la foto
+    @Column(columnDefinition = "TEXT")
+    private String placeholder;
 }
\ No newline at end of file
@@ -4,16 +4,39 @@ package com.example.demo.foto.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.foto.model.FotoVO;
 import com.example.demo.propiedad.model.PropiedadVO;
 
 @Repository
-public interface FotoRepository extends JpaRepository<FotoVO, Long> {
+public interface FotoRepository extends JpaRepository<FotoVO, Long>, FotoRepositoryCustom {
     
     List<FotoVO> findByPropiedad(PropiedadVO propiedad);
     
     Optional<FotoVO> findByPropiedadAndPrincipal(PropiedadVO propiedad, boolean principal);
+    
+    boolean existsByPropiedadIdAndPrincipalTrue(Long propiedadId);
+    
+    @Modifying
+    @Query("UPDATE FotoVO f SET f.principal = false WHERE f.propiedad.id = :propiedadId AND f.principal = true")
+    int quitarPrincipal(@Param("propiedadId") Long propiedadId);
+    
+    Optional<FotoVO> findFirstByUrlAndSrcsetIsNotNull(String url);
+    
+    @Query("SELECT f.id FROM FotoVO f WHERE f.srcset IS NULL ORDER BY f.id")
+    List<Long> findIdsSinVariantes(Pageable pageable);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE FotoVO f SET f.srcset = :srcset, f.placeholder = :placeholder WHERE f.id = :id")
+    int guardarVariantes(@Param("id") Long id,
+                         @Param("srcset") String srcset,
+                         @Param("placeholder") String placeholder);
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.demo.foto.repository;
+
+import java.util.List;
+
+import com.example.demo.foto.model.FotoVO;
+
+/**
+ * Inserción de varias fotos en una sola sentencia
+ */
+public interface FotoRepositoryCustom {
+
+    /**
+     * Inserta las fotos con un único INSERT de varias filas. Las entidades no pasan
+     * por el contexto de persistencia, así que no quedan gestionadas ni reciben su id.
+     * @return ids generados (sin orden garantizado)
+     */
+    List<Long> insertarLote(List<FotoVO> fotos);
+}
@@ -0,0 +1,44 @@
+package com.example.demo.foto.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.foto.model.FotoVO;
+
+/**
+ * Implementación JDBC de la inserción por lotes. Con id IDENTITY Hibernate no puede
+ * agrupar inserciones (necesita el id de cada fila al guardarla), así que se hace
+ * un INSERT ... VALUES (...), (...) RETURNING id en un solo viaje a la base de datos.
+ */
+public class FotoRepositoryImpl implements FotoRepositoryCustom {
+
+    private static final String COLUMNAS = "propiedad_id, url, descripcion, principal, srcset, placeholder";
+    private static final String FILA = "(?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> insertarLote(List<FotoVO> fotos) {
+        if (fotos.isEmpty()) {
+            return List.of();
+        }
+        List<Object> parametros = new ArrayList<>(fotos.size() * 6);
+        for (FotoVO foto : fotos) {
+            parametros.add(foto.getPropiedad().getId());
+            parametros.add(foto.getUrl());
+            parametros.add(foto.getDescripcion());
+            parametros.add(foto.isPrincipal());
+            parametros.add(foto.getSrcset());
+            parametros.add(foto.getPlaceholder());
+        }
+        String sql = "INSERT INTO foto (" + COLUMNAS + ") VALUES "
+                   + String.join(", ", Collections.nCopies(fotos.size(), FILA))
+                   + " RETURNING id";
+        return jdbcTemplate.queryForList(sql, Long.class, parametros.toArray());
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.demo.foto.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.foto.model.FotoVO;
+import com.example.demo.foto.repository.FotoRepository;
+import com.example.demo.media.service.MediaStoreService;
+import com.example.demo.media.service.ProcesadorImagenesService;
+import com.example.demo.media.service.ProcesadorImagenesService.Tamano;
+import com.example.demo.media.service.ProcesadorImagenesService.Variante;
+
+/**
+ * Versiones reducidas de las fotos de las propiedades. Por cada foto se generan, junto
+ * al original, un JPEG por ancho configurado (foto-w320.jpg, foto-w640.jpg...) y una
+ * miniatura diminuta que se guarda en la propia fila como data URI, para pintarla
+ * desenfocada mientras carga la imagen buena.
+ *
+ * El trabajo va al pool de {@link ProcesadorImagenesService}. Las fotos que no se
+ * pudieron encolar (cola llena, reinicio) las recoge la revisión periódica.
+ */
+@Service
+public class FotoVariantesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FotoVariantesService.class);
+
+    private static final String PLACEHOLDER = "lqip";
+
+    @Autowired
+    private ProcesadorImagenesService procesadorImagenes;
+
+    @Autowired
+    private FotoRepository fotoRepository;
+
+    @Autowired
+    private MediaStoreService mediaStore;
+
+    // Anchos que se ofrecen en el srcset; nunca se amplía una foto más estrecha
+    @Value("${homeflex.fotos.anchos:320,640,1024,1600}")
+    private int[] anchos;
+
+    @Value("${homeflex.fotos.lado-placeholder:24}")
+    private int ladoPlaceholder;
+
+    @Value("${homeflex.fotos.revision.lote:50}")
+    private int loteRevision;
+
+    // Fotos encoladas o en proceso, para no encolarlas dos veces
+    private final Set<Long> enProceso = ConcurrentHashMap.newKeySet();
+    // Fotos cuyo original no se pudo procesar; no se reintentan hasta reiniciar
+    private final Set<Long> fallidas = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Encola la generación de versiones de las fotos indicadas. Si la cola está llena
+     * se dejan para la revisión periódica.
+     */
+    public void encolar(List<Long> fotoIds) {
+        for (Long fotoId : fotoIds) {
+            if (!enProceso.add(fotoId)) {
+                continue;
+            }
+            try {
+                procesadorImagenes.enviar(() -> generar(fotoId))
+                        .whenComplete((r, e) -> enProceso.remove(fotoId));
+            } catch (RuntimeException e) {
+                enProceso.remove(fotoId);
+                logger.debug("Cola de imágenes llena, la foto {} queda para la revisión", fotoId);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Busca fotos sin versiones (anteriores a este servicio o que no cupieron en la cola)
+     */
+    @Scheduled(initialDelayString = "${homeflex.fotos.revision.retraso-inicial-ms:60000}",
+               fixedDelayString = "${homeflex.fotos.revision.intervalo-ms:300000}")
+    public void revisarPendientes() {
+        List<Long> pendientes = fotoRepository.findIdsSinVariantes(PageRequest.of(0, loteRevision + fallidas.size()))
+                .stream()
+                .filter(id -> !fallidas.contains(id) && !enProceso.contains(id))
+                .limit(loteRevision)
+                .toList();
+        if (!pendientes.isEmpty()) {
+            logger.info("Generando versiones de {} fotos pendientes", pendientes.size());
+            encolar(pendientes);
+        }
+    }
+
+    /**
+     * Libera los archivos de una foto que se elimina: el original y sus versiones. Las
+     * versiones de las fotos del almacén de medios se borran junto con su original.
+     */
+    public void liberarArchivos(FotoVO foto) {
+        mediaStore.liberar(foto.getUrl());
+        if (foto.getSrcset() == null) {
+            return;
+        }
+        for (String candidato : foto.getSrcset().split(",")) {
+            mediaStore.liberar(candidato.trim().split(" ")[0]);
+        }
+    }
+
+    private Void generar(Long fotoId) {
+        FotoVO foto = fotoRepository.findById(fotoId).orElse(null);
+        if (foto == null || foto.getSrcset() != null) {
+            return null;
+        }
+        // Otra foto con el mismo contenido ya tiene sus versiones junto al original compartido
+        if (mediaStore.esDelAlmacen(foto.getUrl())) {
+            FotoVO gemela = fotoRepository.findFirstByUrlAndSrcsetIsNotNull(foto.getUrl()).orElse(null);
+            if (gemela != null) {
+                fotoRepository.guardarVariantes(fotoId, gemela.getSrcset(), gemela.getPlaceholder());
+                return null;
+            }
+        }
+
+        Path original = mediaStore.rutaLocal(foto.getUrl());
+        if (original == null || !Files.isRegularFile(original)) {
+            fallidas.add(fotoId);
+            logger.warn("Foto {} sin original local ({}), no se generan versiones", fotoId, foto.getUrl());
+            return null;
+        }
+
+        String nombre = original.getFileName().toString();
+        String base = nombre.contains(".") ? nombre.substring(0, nombre.lastIndexOf('.')) : nombre;
+        String prefijoUrl = foto.getUrl().substring(0, foto.getUrl().lastIndexOf('/') + 1);
+
+        List<Tamano> tamanos = new ArrayList<>();
+        for (int ancho : anchos) {
+            tamanos.add(new Tamano("w" + ancho, ancho, Integer.MAX_VALUE));
+        }
+        tamanos.add(new Tamano(PLACEHOLDER, ladoPlaceholder, ladoPlaceholder));
+
+        List<Path> generados = new ArrayList<>();
+        try {
+            List<Variante> variantes = procesadorImagenes.generarVariantes(original, tamanos,
+                    tamano -> original.resolveSibling(base + "-" + tamano + ".jpg"));
+            variantes.forEach(v -> generados.add(v.archivo()));
+
+            // Las variantes llegan de mayor a menor; si la foto es estrecha varias salen
+            // con el mismo ancho y sólo se conserva una
+            List<String> candidatos = new ArrayList<>();
+            Set<Integer> anchosGenerados = new HashSet<>();
+            String placeholder = null;
+            for (Variante variante : variantes) {
+                if (PLACEHOLDER.equals(variante.nombre())) {
+                    placeholder = "data:image/jpeg;base64,"
+                            + Base64.getEncoder().encodeToString(Files.readAllBytes(variante.archivo()));
+                    Files.deleteIfExists(variante.archivo());
+                } else if (!anchosGenerados.add(variante.ancho())) {
+                    Files.deleteIfExists(variante.archivo());
+                } else {
+                    candidatos.add(0, prefijoUrl + variante.archivo().getFileName() + " " + variante.ancho() + "w");
+                }
+            }
+
+            // Si la foto se borró mientras se procesaba, sus versiones sobran; las del almacén
+            // pueden ser de otra foto con el mismo contenido y se van con el original
+            boolean compartidas = mediaStore.esDelAlmacen(foto.getUrl());
+            if (fotoRepository.guardarVariantes(fotoId, String.join(", ", candidatos), placeholder) == 0
+                    && !compartidas) {
+                borrar(generados);
+            }
+        } catch (Exception e) {
+            fallidas.add(fotoId);
+            if (!mediaStore.esDelAlmacen(foto.getUrl())) {
+                borrar(generados);
+            }
+            logger.error("No se pudieron generar las versiones de la foto {}: {}", fotoId, e.getMessage());
+        }
+        return null;
+    }
+
+    private static void borrar(List<Path> archivos) {
+        for (Path archivo : archivos) {
+            try {
+                Files.deleteIfExists(archivo);
+            } catch (IOException e) {
+                logger.warn("No se pudo borrar {}: {}", archivo, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.media.control;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.example.demo.media.service.MediaStoreService;
+import com.example.demo.media.service.ServidorMediaService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Archivos subidos por los usuarios: /media/** (directorio de subidas, incluido el
+ * almacén de medios) y /uploads/** (fotos antiguas guardadas con ruta relativa)
+ */
+@Controller
+public class MediaController {
+
+    private static final String MEDIA = "/media/";
+    private static final String UPLOADS = "/uploads/";
+
+    @Autowired
+    private ServidorMediaService servidorMediaService;
+
+    @Value("${homeflex.upload-dir}")
+    private String uploadDir;
+
+    @RequestMapping(value = { MEDIA + "**", UPLOADS + "**" }, method = { RequestMethod.GET, RequestMethod.HEAD })
+    public void servir(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+
+        Path raiz;
+        String relativa;
+        if (ruta.startsWith(MEDIA)) {
+            raiz = Paths.get(uploadDir);
+            relativa = ruta.substring(MEDIA.length());
+        } else {
+            raiz = Paths.get("uploads");
+            relativa = ruta.substring(UPLOADS.length());
+        }
+
+        Path archivo = resolver(raiz, relativa);
+        // Los adjuntos del chat los sirve /mensajes/adjuntos, sólo a los participantes
+        if (archivo == null || archivo.startsWith(Paths.get(uploadDir, "mensajes").toAbsolutePath().normalize())) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        servidorMediaService.servir(archivo, ruta.startsWith(MediaStoreService.PREFIJO_URL), request, response);
+    }
+
+    /**
+     * Ruta dentro de la raíz; null si intenta salir de ella o apunta a un archivo oculto
+     * (temporales del almacén)
+     */
+    private static Path resolver(Path raiz, String relativa) {
+        String decodificada = URLDecoder.decode(relativa.replace("+", "%2B"), StandardCharsets.UTF_8);
+        if (decodificada.isEmpty() || decodificada.contains("\0")) {
+            return null;
+        }
+        Path base = raiz.toAbsolutePath().normalize();
+        Path archivo = base.resolve(decodificada).normalize();
+        if (!archivo.startsWith(base)) {
+            return null;
+        }
+        for (Path parte : base.relativize(archivo)) {
+            if (parte.toString().startsWith(".")) {
+                return null;
+            }
+        }
+        return archivo;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.media.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Archivo del almacén de medios, identificado por el SHA-256 de su contenido. Varias
+ * fotos con los mismos bytes comparten el archivo; referencias cuenta cuántas lo usan
+ * y, cuando llega a cero, la limpieza periódica lo borra pasado un margen.
+ */
+@Entity
+@Table(name = "media_blobs",
+       uniqueConstraints = @UniqueConstraint(name = "uk_media_blobs_hash", columnNames = "hash"),
+       indexes = @Index(name = "idx_media_blobs_sin_referencias", columnList = "fecha_sin_referencias"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaBlobVO {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 en hexadecimal
+    @Column(nullable = false, length = 64)
+    private String hash;
+
+    @Column(nullable = false, length = 8)
+    private String extension;
+
+    @Column(nullable = false)
+    private Long tamano;
+
+    @Column(nullable = false)
+    private Integer referencias;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    // Momento en que dejó de usarse; null mientras tenga referencias
+    @Column(name = "fecha_sin_referencias")
+    private LocalDateTime fechaSinReferencias;
+}
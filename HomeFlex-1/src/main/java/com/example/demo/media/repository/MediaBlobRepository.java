@@ -0,0 +1,65 @@
+package com.example.demo.media.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.media.model.MediaBlobVO;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlobVO, Long> {
+
+    /**
+     * Suma una referencia al archivo, creándolo si no existía. Una sola sentencia para
+     * que dos subidas simultáneas del mismo contenido no choquen con la restricción única.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO media_blobs (hash, extension, tamano, referencias, fecha_creacion) "
+         + "VALUES (:hash, :extension, :tamano, 1, :fecha) "
+         + "ON CONFLICT (hash) DO UPDATE SET referencias = media_blobs.referencias + 1, "
+         + "fecha_sin_referencias = NULL",
+           nativeQuery = true)
+    void sumarReferencia(@Param("hash") String hash,
+                         @Param("extension") String extension,
+                         @Param("tamano") Long tamano,
+                         @Param("fecha") LocalDateTime fecha);
+
+    /**
+     * Da de alta sin referencias un archivo que quedó en disco sin fila porque la
+     * transacción que lo subió se deshizo; así lo borra la limpieza con el protocolo de
+     * siempre. Si entretanto otra subida creó la fila, no se toca.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO media_blobs (hash, extension, tamano, referencias, fecha_creacion, fecha_sin_referencias) "
+         + "VALUES (:hash, :extension, :tamano, 0, :fecha, :fecha) "
+         + "ON CONFLICT (hash) DO NOTHING",
+           nativeQuery = true)
+    void registrarSinReferencias(@Param("hash") String hash,
+                                 @Param("extension") String extension,
+                                 @Param("tamano") Long tamano,
+                                 @Param("fecha") LocalDateTime fecha);
+
+    @Modifying
+    @Query("UPDATE MediaBlobVO b SET b.referencias = b.referencias - 1, "
+         + "b.fechaSinReferencias = CASE WHEN b.referencias = 1 THEN :fecha ELSE b.fechaSinReferencias END "
+         + "WHERE b.hash = :hash AND b.referencias > 0")
+    int restarReferencia(@Param("hash") String hash, @Param("fecha") LocalDateTime fecha);
+
+    @Query("SELECT b FROM MediaBlobVO b WHERE b.referencias = 0 AND b.fechaSinReferencias < :limite "
+         + "ORDER BY b.fechaSinReferencias")
+    List<MediaBlobVO> findSinReferencias(@Param("limite") LocalDateTime limite, Pageable pageable);
+
+    /**
+     * Borra la fila sólo si sigue sin referencias: una subida del mismo contenido en
+     * paralelo la habría vuelto a usar
+     */
+    @Modifying
+    @Query("DELETE FROM MediaBlobVO b WHERE b.id = :id AND b.referencias = 0")
+    int eliminarSinReferencias(@Param("id") Long id);
+}
@@ -0,0 +1,406 @@
+package com.example.demo.media.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.demo.media.model.MediaBlobVO;
+import com.example.demo.media.repository.MediaBlobRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Almacén de medios direccionado por contenido. Cada archivo se guarda una sola vez en
+ * {uploadDir}/blobs/ab/cd/{sha256}.{ext} y se publica en /media/blobs/..., una URL que
+ * nunca cambia de contenido y por tanto se puede cachear indefinidamente. Las versiones
+ * derivadas ({sha256}-w640.jpg...) viven junto al original y se borran con él.
+ *
+ * Quien guarda un archivo suma una referencia y quien deja de usarlo la resta; los
+ * archivos sin referencias se borran en segundo plano pasado un margen, nunca en la
+ * petición que los libera.
+ */
+@Service
+public class MediaStoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaStoreService.class);
+
+    public static final String PREFIJO_URL = "/media/blobs/";
+
+    private static final String DIRECTORIO = "blobs";
+
+    // /media/blobs/ab/cd/{hash}.{ext} o una versión derivada /media/blobs/ab/cd/{hash}-w640.jpg
+    private static final Pattern URL_BLOB =
+            Pattern.compile("^/media/blobs/[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})(-[a-z0-9]+)?\\.[a-z0-9]+$");
+
+    private static final Pattern EXTENSION = Pattern.compile("^[a-z0-9]{1,8}$");
+
+    @Autowired
+    private MediaBlobRepository mediaBlobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${homeflex.upload-dir}")
+    private String uploadDir;
+
+    // Tiempo que se conserva un archivo sin referencias (cachés, páginas ya servidas)
+    @Value("${homeflex.media.gracia-minutos:60}")
+    private long graciaMinutos;
+
+    @Value("${homeflex.media.limpieza.lote:200}")
+    private int loteLimpieza;
+
+    // Hilos que vuelcan a disco las subidas de varios archivos
+    @Value("${homeflex.media.hilos-escritura:4}")
+    private int hilosEscritura;
+
+    // Archivos antiguos (anteriores al almacén) liberados y pendientes de borrar
+    private final Queue<Path> pendientesBorrar = new ConcurrentLinkedQueue<>();
+
+    private ThreadPoolExecutor escritura;
+
+    // Para escribir desde afterCompletion, cuando la transacción de quien llama ya terminó
+    private TransactionTemplate transaccionNueva;
+
+    /** Archivo subido ya copiado a un temporal del almacén, pendiente de registrar */
+    public record ArchivoPreparado(String hash, String extension, long tamano, Path temporal) {
+
+        public String url() {
+            return PREFIJO_URL + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + extension;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger contador = new AtomicInteger();
+        // Con la cola llena escribe el propio hilo de la petición: frena al que sube sin rechazar nada
+        escritura = new ThreadPoolExecutor(hilosEscritura, hilosEscritura, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100), r -> {
+                    Thread t = new Thread(r, "media-escritura-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        transaccionNueva = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        transaccionNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PreDestroy
+    public void detener() {
+        escritura.shutdown();
+    }
+
+    /**
+     * Guarda el archivo subido (o reutiliza el existente con el mismo contenido) y suma
+     * una referencia. Debe llamarse dentro de la transacción que guarda quien lo usa.
+     * @return URL pública del archivo
+     */
+    public String guardar(MultipartFile archivo) throws IOException {
+        ArchivoPreparado preparado = preparar(archivo);
+        try {
+            return registrar(preparado);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            descartar(List.of(preparado));
+        }
+    }
+
+    /**
+     * Vuelca varios archivos subidos a disco en paralelo calculando su hash, sin tocar la
+     * base de datos. Si alguno falla se descartan todos.
+     */
+    public List<ArchivoPreparado> preparar(List<MultipartFile> archivos) throws IOException {
+        List<CompletableFuture<ArchivoPreparado>> tareas = new ArrayList<>();
+        for (MultipartFile archivo : archivos) {
+            tareas.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return preparar(archivo);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, escritura));
+        }
+
+        List<ArchivoPreparado> preparados = new ArrayList<>();
+        IOException error = null;
+        for (CompletableFuture<ArchivoPreparado> tarea : tareas) {
+            try {
+                preparados.add(tarea.join());
+            } catch (CompletionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof UncheckedIOException u
+                            ? u.getCause()
+                            : new IOException("No se pudo guardar el archivo", e.getCause());
+                }
+            }
+        }
+        if (error != null) {
+            descartar(preparados);
+            throw error;
+        }
+        return preparados;
+    }
+
+    /**
+     * Copia el archivo subido a un temporal del almacén calculando su SHA-256
+     */
+    public ArchivoPreparado preparar(MultipartFile archivo) throws IOException {
+        Path temporales = raiz().resolve(".tmp");
+        Files.createDirectories(temporales);
+        Path temporal = Files.createTempFile(temporales, "subida-", ".tmp");
+
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            long tamano;
+            try (InputStream entrada = new DigestInputStream(archivo.getInputStream(), sha256)) {
+                tamano = Files.copy(entrada, temporal, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new ArchivoPreparado(HexFormat.of().formatHex(sha256.digest()),
+                                        extension(archivo.getOriginalFilename()), tamano, temporal);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        } catch (NoSuchAlgorithmException e) {
+            Files.deleteIfExists(temporal);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Suma una referencia al archivo preparado y lo publica en su ruta definitiva (un
+     * renombrado dentro del mismo disco). Debe llamarse dentro de la transacción que
+     * guarda quien lo usa.
+     *
+     * Si esa transacción no se confirma, la fila desaparece pero el archivo publicado por
+     * esta llamada sigue en disco. No se borra directamente: otra subida del mismo
+     * contenido puede estar esperando a la fila y dar el archivo por escrito. Se registra
+     * sin referencias y lo borra la limpieza.
+     * @return URL pública del archivo
+     * @throws UncheckedIOException si no se puede mover el archivo
+     */
+    public String registrar(ArchivoPreparado preparado) {
+        // Primero la referencia y después el archivo: si la limpieza está borrando el
+        // mismo contenido, la inserción espera a que termine y el archivo se vuelve a escribir
+        mediaBlobRepository.sumarReferencia(preparado.hash(), preparado.extension(),
+                                            preparado.tamano(), LocalDateTime.now());
+
+        Path destino = ruta(preparado.hash(), preparado.extension());
+        boolean publicado = false;
+        try {
+            if (!Files.exists(destino)) {
+                Files.createDirectories(destino.getParent());
+                try {
+                    Files.move(preparado.temporal(), destino, StandardCopyOption.ATOMIC_MOVE);
+                    publicado = true;
+                } catch (FileAlreadyExistsException e) {
+                    // Otra subida del mismo contenido llegó antes
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (publicado && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        registrarAbandonado(preparado);
+                    }
+                }
+            });
+        }
+        return preparado.url();
+    }
+
+    /**
+     * Borra los temporales que queden de archivos preparados (ya registrados o no)
+     */
+    public void descartar(List<ArchivoPreparado> preparados) {
+        for (ArchivoPreparado preparado : preparados) {
+            borrar(preparado.temporal());
+        }
+    }
+
+    /**
+     * Deja de usar un archivo. En el almacén resta una referencia; los archivos antiguos
+     * (rutas por propiedad) se borran en la próxima limpieza si la transacción se confirma.
+     * Las versiones derivadas de un archivo del almacén no se cuentan: se van con él.
+     */
+    public void liberar(String url) {
+        if (url == null) {
+            return;
+        }
+        Matcher blob = URL_BLOB.matcher(url);
+        if (blob.matches()) {
+            if (blob.group(2) == null) {
+                mediaBlobRepository.restarReferencia(blob.group(1), LocalDateTime.now());
+            }
+            return;
+        }
+
+        Path archivo = rutaLocal(url);
+        if (archivo == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pendientesBorrar.add(archivo);
+                }
+            });
+        } else {
+            pendientesBorrar.add(archivo);
+        }
+    }
+
+    public boolean esDelAlmacen(String url) {
+        return url != null && URL_BLOB.matcher(url).matches();
+    }
+
+    /**
+     * Archivo en disco de una URL pública: /media/... (directorio de subidas) o
+     * /{uploadDir}/... (fotos antiguas guardadas al publicar la propiedad).
+     * null si la URL no corresponde a un archivo local.
+     */
+    public Path rutaLocal(String url) {
+        if (url == null) {
+            return null;
+        }
+        String directorio = uploadDir.replaceAll("^\\./", "").replaceAll("/+$", "");
+        String relativa;
+        if (url.startsWith("/media/")) {
+            relativa = url.substring("/media/".length());
+        } else if (url.startsWith("/" + directorio + "/")) {
+            relativa = url.substring(directorio.length() + 2);
+        } else {
+            return null;
+        }
+        Path raiz = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path archivo = raiz.resolve(relativa).normalize();
+        return archivo.startsWith(raiz) ? archivo : null;
+    }
+
+    /**
+     * Borra los archivos liberados: los antiguos pendientes y los del almacén que llevan
+     * sin referencias más que el margen configurado, junto con sus versiones derivadas
+     */
+    @Scheduled(fixedDelayString = "${homeflex.media.limpieza.intervalo-ms:600000}")
+    public void limpiar() {
+        Path archivo;
+        while ((archivo = pendientesBorrar.poll()) != null) {
+            borrar(archivo);
+        }
+
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(graciaMinutos);
+        List<MediaBlobVO> huerfanos = mediaBlobRepository.findSinReferencias(limite, PageRequest.of(0, loteLimpieza));
+        int borrados = 0;
+        for (MediaBlobVO blob : huerfanos) {
+            // El archivo se borra antes de confirmar el borrado de la fila: una subida del
+            // mismo contenido queda esperando a la fila y después escribe el archivo de nuevo
+            Boolean borrado = transactionTemplate.execute(status -> {
+                if (mediaBlobRepository.eliminarSinReferencias(blob.getId()) == 0) {
+                    return false;
+                }
+                borrarConDerivados(blob.getHash());
+                return true;
+            });
+            if (Boolean.TRUE.equals(borrado)) {
+                borrados++;
+            }
+        }
+        if (borrados > 0) {
+            logger.info("Almacén de medios: borrados {} archivos sin referencias", borrados);
+        }
+    }
+
+    private void registrarAbandonado(ArchivoPreparado preparado) {
+        try {
+            transaccionNueva.executeWithoutResult(status ->
+                    mediaBlobRepository.registrarSinReferencias(preparado.hash(), preparado.extension(),
+                                                                preparado.tamano(), LocalDateTime.now()));
+        } catch (Exception e) {
+            logger.warn("No se pudo registrar para limpieza el archivo {}: {}", preparado.url(), e.getMessage());
+        }
+    }
+
+    private void borrarConDerivados(String hash) {
+        Path directorio = raiz().resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4));
+        if (!Files.isDirectory(directorio)) {
+            return;
+        }
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, hash + "*")) {
+            for (Path archivo : archivos) {
+                borrar(archivo);
+            }
+        } catch (IOException e) {
+            logger.warn("No se pudo recorrer {}: {}", directorio, e.getMessage());
+        }
+    }
+
+    private static void borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            logger.warn("No se pudo borrar {}: {}", archivo, e.getMessage());
+        }
+    }
+
+    private Path raiz() {
+        return Paths.get(uploadDir, DIRECTORIO).toAbsolutePath().normalize();
+    }
+
+    private Path ruta(String hash, String extension) {
+        return raiz().resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + "." + extension);
+    }
+
+    private static String extension(String nombreOriginal) {
+        if (nombreOriginal != null && nombreOriginal.lastIndexOf('.') >= 0) {
+            String extension = nombreOriginal.substring(nombreOriginal.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            if (EXTENSION.matcher(extension).matches()) {
+                return extension.equals("jpeg") ? "jpg" : extension;
+            }
+        }
+        return "bin";
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.demo.media.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TIFF;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.xml.sax.helpers.DefaultHandler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Procesado de imágenes subidas por los usuarios: genera versiones reducidas en JPEG
+ * a partir de un original, aplicando la orientación EXIF y sin copiar ningún metadato
+ * (ubicación GPS, modelo de cámara...). El trabajo se hace en un pool propio con cola
+ * acotada para que una ráfaga de subidas no compita con los hilos de las peticiones.
+ */
+@Service
+public class ProcesadorImagenesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcesadorImagenesService.class);
+
+    /** Versión que se quiere obtener: se reduce hasta caber en anchoMax x altoMax, nunca se amplía */
+    public record Tamano(String nombre, int anchoMax, int altoMax) {
+    }
+
+    /** Archivo generado para un tamaño */
+    public record Variante(String nombre, Path archivo, int ancho, int alto) {
+    }
+
+    @Value("${homeflex.imagenes.hilos:2}")
+    private int hilos;
+
+    // Trabajos en espera; por encima se rechazan las subidas nuevas
+    @Value("${homeflex.imagenes.cola:200}")
+    private int capacidadCola;
+
+    // Límite de tamaño de la imagen decodificada, para no agotar la memoria con una imagen maliciosa
+    @Value("${homeflex.imagenes.max-megapixeles:50}")
+    private int maxMegapixeles;
+
+    @Value("${homeflex.imagenes.calidad-jpeg:0.82}")
+    private float calidadJpeg;
+
+    private ThreadPoolExecutor ejecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger contador = new AtomicInteger();
+        ejecutor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola), r -> {
+                    Thread t = new Thread(r, "imagenes-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdown();
+    }
+
+    /**
+     * Ejecuta un trabajo de imágenes en segundo plano.
+     * @throws RuntimeException si la cola está llena
+     */
+    public <T> CompletableFuture<T> enviar(Callable<T> tarea) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    resultado.complete(tarea.call());
+                } catch (Exception e) {
+                    resultado.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new RuntimeException("Hay demasiadas imágenes en proceso, inténtalo de nuevo en unos segundos");
+        }
+        return resultado;
+    }
+
+    public int getPendientes() {
+        return ejecutor.getQueue().size() + ejecutor.getActiveCount();
+    }
+
+    /**
+     * Comprueba, leyendo sólo la cabecera, que el archivo es una imagen que se puede
+     * procesar y que no supera el tamaño máximo
+     * @throws IOException si no lo es
+     */
+    public void validar(Path origen) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(origen.toFile())) {
+            ImageReader lector = lector(entrada);
+            try {
+                comprobarDimensiones(lector.getWidth(0), lector.getHeight(0));
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    /**
+     * Genera una versión JPEG del original por cada tamaño. La imagen se decodifica una
+     * sola vez (submuestreada si es mucho mayor que la versión más grande) y cada versión
+     * se obtiene reduciendo la anterior.
+     * @param destino nombre de archivo de cada versión a partir de su nombre de tamaño
+     */
+    public List<Variante> generarVariantes(Path origen, List<Tamano> tamanos,
+                                           Function<String, Path> destino) throws IOException {
+        List<Tamano> ordenados = new ArrayList<>(tamanos);
+        ordenados.sort(Comparator.comparingLong((Tamano t) -> (long) t.anchoMax() * t.altoMax()).reversed());
+
+        BufferedImage imagen = leer(origen, ordenados.get(0));
+        List<Variante> variantes = new ArrayList<>();
+        for (Tamano tamano : ordenados) {
+            imagen = reducir(imagen, tamano.anchoMax(), tamano.altoMax());
+            Path archivo = destino.apply(tamano.nombre());
+            escribirJpeg(imagen, archivo);
+            variantes.add(new Variante(tamano.nombre(), archivo, imagen.getWidth(), imagen.getHeight()));
+        }
+        return variantes;
+    }
+
+    /**
+     * Decodifica el original en RGB, ya girado según su orientación EXIF
+     */
+    private BufferedImage leer(Path origen, Tamano mayor) throws IOException {
+        int orientacion = orientacionExif(origen);
+        BufferedImage imagen;
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(origen.toFile())) {
+            ImageReader lector = lector(entrada);
+            try {
+                int ancho = lector.getWidth(0);
+                int alto = lector.getHeight(0);
+                comprobarDimensiones(ancho, alto);
+
+                // Con orientaciones 5-8 el ancho final es el alto almacenado
+                boolean girada = orientacion >= 5;
+                int anchoFinal = girada ? alto : ancho;
+                int altoFinal = girada ? ancho : alto;
+
+                // Submuestrear al decodificar ahorra memoria y tiempo; se deja al menos
+                // el doble de la versión más grande para que la reducción final sea de calidad
+                int factor = (int) Math.max((double) anchoFinal / (2.0 * mayor.anchoMax()),
+                                            (double) altoFinal / (2.0 * mayor.altoMax()));
+                ImageReadParam parametros = lector.getDefaultReadParam();
+                if (factor > 1) {
+                    parametros.setSourceSubsampling(factor, factor, 0, 0);
+                }
+                imagen = lector.read(0, parametros);
+            } finally {
+                lector.dispose();
+            }
+        }
+        return aRgb(orientar(imagen, orientacion));
+    }
+
+    private ImageReader lector(ImageInputStream entrada) throws IOException {
+        if (entrada == null) {
+            throw new IOException("No se puede leer la imagen");
+        }
+        Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+        if (!lectores.hasNext()) {
+            throw new IOException("Formato de imagen no soportado");
+        }
+        ImageReader lector = lectores.next();
+        lector.setInput(entrada, true, true);
+        return lector;
+    }
+
+    private void comprobarDimensiones(int ancho, int alto) throws IOException {
+        if ((long) ancho * alto > maxMegapixeles * 1_000_000L) {
+            throw new IOException("La imagen supera el tamaño máximo de " + maxMegapixeles + " megapíxeles");
+        }
+    }
+
+    /** Valor 1-8 de la etiqueta Orientation; 1 si no tiene o no se puede leer */
+    private int orientacionExif(Path origen) {
+        Metadata metadatos = new Metadata();
+        try (InputStream entrada = Files.newInputStream(origen)) {
+            new AutoDetectParser().parse(entrada, new DefaultHandler(), metadatos, new ParseContext());
+            String valor = metadatos.get(TIFF.ORIENTATION);
+            return valor != null ? Integer.parseInt(valor.trim()) : 1;
+        } catch (Exception e) {
+            logger.debug("Sin orientación EXIF en {}: {}", origen.getFileName(), e.getMessage());
+            return 1;
+        }
+    }
+
+    private static BufferedImage orientar(BufferedImage imagen, int orientacion) {
+        if (orientacion <= 1 || orientacion > 8) {
+            return imagen;
+        }
+        int w = imagen.getWidth();
+        int h = imagen.getHeight();
+        AffineTransform t = new AffineTransform();
+        switch (orientacion) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.scale(-1, 1); t.translate(-h, 0); t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            default -> { }
+        }
+        boolean girada = orientacion >= 5;
+        BufferedImage resultado = new BufferedImage(girada ? h : w, girada ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resultado.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, resultado.getWidth(), resultado.getHeight());
+            g.drawImage(imagen, t, null);
+        } finally {
+            g.dispose();
+        }
+        return resultado;
+    }
+
+    /** Copia en RGB sin transparencia (fondo blanco), que es lo que admite JPEG */
+    private static BufferedImage aRgb(BufferedImage imagen) {
+        if (imagen.getType() == BufferedImage.TYPE_INT_RGB) {
+            return imagen;
+        }
+        BufferedImage rgb = new BufferedImage(imagen.getWidth(), imagen.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
+            g.drawImage(imagen, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    /**
+     * Reduce la imagen hasta caber en el límite, dividiendo a la mitad en cada paso
+     * (una sola interpolación bilineal de gran factor pierde mucho detalle)
+     */
+    private static BufferedImage reducir(BufferedImage imagen, int anchoMax, int altoMax) {
+        double escala = Math.min(1.0, Math.min((double) anchoMax / imagen.getWidth(),
+                                               (double) altoMax / imagen.getHeight()));
+        int anchoFinal = Math.max(1, (int) Math.round(imagen.getWidth() * escala));
+        int altoFinal = Math.max(1, (int) Math.round(imagen.getHeight() * escala));
+
+        BufferedImage actual = imagen;
+        while (actual.getWidth() != anchoFinal || actual.getHeight() != altoFinal) {
+            int ancho = Math.max(anchoFinal, actual.getWidth() / 2);
+            int alto = Math.max(altoFinal, actual.getHeight() / 2);
+            BufferedImage paso = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = paso.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(actual, 0, 0, ancho, alto, null);
+            } finally {
+                g.dispose();
+            }
+            actual = paso;
+        }
+        return actual;
+    }
+
+    /** JPEG progresivo sin metadatos: sólo se escriben los píxeles */
+    private void escribirJpeg(BufferedImage imagen, Path archivo) throws IOException {
+        ImageWriter escritor = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam parametros = escritor.getDefaultWriteParam();
+        parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        parametros.setCompressionQuality(calidadJpeg);
+        parametros.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (ImageOutputStream salida = ImageIO.createImageOutputStream(temporal.toFile())) {
+            escritor.setOutput(salida);
+            escritor.write(null, new IIOImage(imagen, null, null), parametros);
+        } finally {
+            escritor.dispose();
+        }
+        // Se publica ya completo: nadie puede servir un JPEG a medio escribir
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
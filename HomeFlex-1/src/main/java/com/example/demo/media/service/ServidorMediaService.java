@@ -0,0 +1,268 @@
+package com.example.demo.media.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Entrega de archivos de medios desde disco con peticiones condicionales
+ * (If-None-Match / If-Modified-Since), rangos de bytes y caché configurable.
+ *
+ * Los archivos grandes se ceden a Tomcat para que los envíe con sendfile, sin pasar por
+ * la memoria de la aplicación, si el conector lo admite. En otro caso, y con los
+ * archivos pequeños, se hace una copia normal con un búfer.
+ */
+@Service
+public class ServidorMediaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServidorMediaService.class);
+
+    // Atributos de petición con los que Tomcat envía un archivo con sendfile
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private static final Pattern RANGO = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    // Nombre de un archivo del almacén de medios: el hash es una ETag fuerte natural
+    private static final Pattern NOMBRE_BLOB = Pattern.compile("^([0-9a-f]{64})\\.[a-z0-9]+$");
+
+    // Archivos cuya URL cambia con el contenido (almacén de medios)
+    @Value("${homeflex.media.cache.inmutable-segundos:31536000}")
+    private long maxAgeInmutable;
+
+    // Resto de archivos (subidas antiguas, adjuntos del chat)
+    @Value("${homeflex.media.cache.max-age-segundos:3600}")
+    private long maxAge;
+
+    // Por debajo de este tamaño la copia normal es más barata que preparar sendfile
+    @Value("${homeflex.media.sendfile-min-bytes:49152}")
+    private long sendfileMinBytes;
+
+    /**
+     * Escribe el archivo en la respuesta (o sólo sus cabeceras en HEAD)
+     * @param inmutable si la URL identifica un contenido que nunca cambia
+     */
+    public void servir(Path archivo, boolean inmutable,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        servir(archivo, cacheControl(inmutable), request, response);
+    }
+
+    /**
+     * Como servir, para archivos de un usuario concreto: las cachés compartidas no deben
+     * guardarlos
+     */
+    public void servirPrivado(Path archivo, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        servir(archivo, CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePrivate().getHeaderValue(),
+               request, response);
+    }
+
+    private void servir(Path archivo, String cacheControl,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BasicFileAttributes atributos;
+        try {
+            atributos = Files.readAttributes(archivo, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!atributos.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long tamano = atributos.size();
+        // Los navegadores envían If-Modified-Since con precisión de segundos
+        long modificado = atributos.lastModifiedTime().toMillis() / 1000 * 1000;
+        String etag = etag(archivo, tamano, modificado);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, modificado);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (noModificado(request, etag, modificado)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long inicio = 0;
+        long fin = tamano - 1;
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        if (rango != null && tamano > 0 && rangoVigente(request, etag, modificado)) {
+            long[] limites = parsearRango(rango, tamano);
+            if (limites == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamano);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (limites.length == 2) {
+                inicio = limites[0];
+                fin = limites[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fin + "/" + tamano);
+            }
+        }
+
+        long longitud = fin - inicio + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(archivo.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(longitud);
+
+        if ("HEAD".equals(request.getMethod()) || longitud <= 0) {
+            return;
+        }
+
+        if (longitud >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            request.setAttribute(SENDFILE_ARCHIVO, archivo.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, fin + 1);
+            return;
+        }
+
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ);
+             InputStream entrada = Channels.newInputStream(canal.position(inicio))) {
+            OutputStream salida = response.getOutputStream();
+            byte[] buffer = new byte[(int) Math.min(TAMANO_BUFFER, longitud)];
+            long pendiente = longitud;
+            while (pendiente > 0) {
+                int leidos = entrada.read(buffer, 0, (int) Math.min(buffer.length, pendiente));
+                if (leidos < 0) {
+                    break;
+                }
+                salida.write(buffer, 0, leidos);
+                pendiente -= leidos;
+            }
+            salida.flush();
+        } catch (IOException e) {
+            // Lo habitual es que el cliente haya cerrado la conexión (vídeo, scroll rápido)
+            logger.debug("Envío interrumpido de {}: {}", archivo.getFileName(), e.getMessage());
+        }
+    }
+
+    private String etag(Path archivo, long tamano, long modificado) {
+        Matcher blob = NOMBRE_BLOB.matcher(archivo.getFileName().toString());
+        if (blob.matches()) {
+            return "\"" + blob.group(1) + "\"";
+        }
+        return "\"" + Long.toHexString(modificado) + "-" + Long.toHexString(tamano) + "\"";
+    }
+
+    private String cacheControl(boolean inmutable) {
+        if (inmutable) {
+            return CacheControl.maxAge(maxAgeInmutable, TimeUnit.SECONDS).cachePublic().immutable().getHeaderValue();
+        }
+        return CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePublic().getHeaderValue();
+    }
+
+    /**
+     * If-None-Match tiene prioridad; If-Modified-Since sólo se mira si no viene
+     */
+    private static boolean noModificado(HttpServletRequest request, String etag, long modificado) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return coincideEtag(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = fecha(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && modificado <= ifModifiedSince;
+    }
+
+    /**
+     * Con If-Range el rango sólo se respeta si el archivo sigue siendo el mismo; si no,
+     * se envía entero
+     */
+    private static boolean rangoVigente(HttpServletRequest request, String etag, long modificado) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long fecha = fecha(request, HttpHeaders.IF_RANGE);
+        return fecha >= 0 && modificado == fecha;
+    }
+
+    private static boolean coincideEtag(String cabecera, String etag) {
+        for (String candidato : cabecera.split(",")) {
+            String valor = candidato.trim();
+            if (valor.equals("*")) {
+                return true;
+            }
+            // Comparación débil, como pide la especificación para If-None-Match
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long fecha(HttpServletRequest request, String cabecera) {
+        try {
+            return request.getDateHeader(cabecera);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Interpreta un único rango "bytes=a-b", "bytes=a-" o "bytes=-n".
+     * @return {inicio, fin} inclusivos; un array vacío si la cabecera no se entiende o
+     *         pide varios rangos (se envía el archivo entero); null si no se puede satisfacer
+     */
+    private static long[] parsearRango(String cabecera, long tamano) {
+        Matcher m = RANGO.matcher(cabecera.trim());
+        if (!m.matches() || (m.group(1).isEmpty() && m.group(2).isEmpty())) {
+            return new long[0];
+        }
+        try {
+            long inicio;
+            long fin;
+            if (m.group(1).isEmpty()) {
+                long sufijo = Long.parseLong(m.group(2));
+                if (sufijo == 0) {
+                    return null;
+                }
+                inicio = Math.max(0, tamano - sufijo);
+                fin = tamano - 1;
+            } else {
+                inicio = Long.parseLong(m.group(1));
+                fin = m.group(2).isEmpty() ? tamano - 1 : Math.min(Long.parseLong(m.group(2)), tamano - 1);
+            }
+            if (inicio >= tamano || inicio > fin) {
+                return null;
+            }
+            return new long[] { inicio, fin };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
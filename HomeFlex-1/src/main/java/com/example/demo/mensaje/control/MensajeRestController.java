@@ -2,7 +2,9 @@ package com.example.demo.mensaje.control;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
@@ -10,18 +12,19 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.example.demo.mensaje.model.ConversacionDTO;
 import com.example.demo.mensaje.model.MensajeDTO;
+import com.example.demo.mensaje.model.PaginaMensajesDTO;
+import com.example.demo.mensaje.service.AdjuntoMensajeService;
+import com.example.demo.mensaje.service.MensajePushService;
 import com.example.demo.mensaje.service.MensajeService;
 import com.example.demo.usuario.model.UsuarioVO;
 import com.example.demo.usuario.service.UsuarioService;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/api/mensajes")
@@ -33,8 +36,11 @@ public class MensajeRestController {
     @Autowired
     private UsuarioService usuarioService;
     
-    // Ruta donde se guardarán las imágenes enviadas
-    private final String UPLOAD_DIR = "src/main/resources/static/uploads/mensajes/";
+    @Autowired
+    private MensajePushService mensajePushService;
+    
+    @Autowired
+    private AdjuntoMensajeService adjuntoMensajeService;
     
     @GetMapping
     public ResponseEntity<List<ConversacionDTO>> getConversaciones() {
@@ -50,6 +56,18 @@ public class MensajeRestController {
         return ResponseEntity.ok(conversaciones);
     }
     
+    /**
+     * Canal de server-sent events del usuario autenticado: mensajes nuevos y cambios
+     * en el contador de no leídos, en lugar de consultar /no-leidos periódicamente
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<?>> stream() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        UsuarioVO usuario = usuarioService.buscarPorUsername(auth.getName());
+        
+        return mensajePushService.conectar(usuario.getId());
+    }
+    
     @GetMapping("/{otroUsuarioId}")
     public ResponseEntity<List<MensajeDTO>> getConversacion(
             @PathVariable Long otroUsuarioId,
@@ -70,6 +88,51 @@ public class MensajeRestController {
         return ResponseEntity.ok(mensajes);
     }
     
+    /**
+     * Historial paginado por cursor: sin antesDe devuelve los mensajes más recientes
+     * (y marca la conversación como leída); con antesDe, los anteriores a ese id
+     */
+    @GetMapping("/{otroUsuarioId}/historial")
+    public ResponseEntity<PaginaMensajesDTO> getHistorial(
+            @PathVariable Long otroUsuarioId,
+            @RequestParam(required = false) Long propiedadId,
+            @RequestParam(required = false) Long antesDe,
+            @RequestParam(defaultValue = "50") int limite) {
+        
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        UsuarioVO usuario = usuarioService.buscarPorUsername(auth.getName());
+        Long usuarioId = usuario.getId();
+        
+        if (antesDe == null) {
+            mensajeService.marcarComoLeidos(usuarioId, otroUsuarioId);
+        }
+        
+        PaginaMensajesDTO pagina = mensajeService.getMensajesAnteriores(usuarioId, otroUsuarioId, propiedadId, antesDe, limite);
+        return ResponseEntity.ok(pagina);
+    }
+    
+    /**
+     * Mensajes posteriores a despuesDe, para actualizar una conversación abierta
+     */
+    @GetMapping("/{otroUsuarioId}/nuevos")
+    public ResponseEntity<PaginaMensajesDTO> getNuevos(
+            @PathVariable Long otroUsuarioId,
+            @RequestParam(required = false) Long propiedadId,
+            @RequestParam(defaultValue = "0") Long despuesDe,
+            @RequestParam(defaultValue = "50") int limite) {
+        
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        UsuarioVO usuario = usuarioService.buscarPorUsername(auth.getName());
+        Long usuarioId = usuario.getId();
+        
+        PaginaMensajesDTO pagina = mensajeService.getMensajesPosteriores(usuarioId, otroUsuarioId, propiedadId, despuesDe, limite);
+        if (!pagina.getMensajes().isEmpty()) {
+            // La conversación está abierta: lo recibido queda leído
+            mensajeService.marcarComoLeidos(usuarioId, otroUsuarioId);
+        }
+        return ResponseEntity.ok(pagina);
+    }
+    
     @PostMapping
     public ResponseEntity<MensajeDTO> enviarMensaje(@RequestBody Map<String, Object> payload) {
         // Obtener el usuario autenticado del contexto de seguridad
@@ -112,42 +175,19 @@ public class MensajeRestController {
         }
         
         try {
-            // Crear directorio si no existe
-            Path uploadPath = Paths.get(UPLOAD_DIR);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-            
-            // Generar nombre único para el archivo
-            String originalFileName = file.getOriginalFilename();
-            String fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
-            String newFileName = UUID.randomUUID().toString() + fileExtension;
-            
-            // Guardar archivo
-            Path filePath = uploadPath.resolve(newFileName);
-            Files.copy(file.getInputStream(), filePath);
-            
-            // URL relativa del recurso para acceder desde el navegador
-            String urlRecurso = "/uploads/mensajes/" + newFileName;
-            
-            // Enviar mensaje con la imagen
-            MensajeDTO mensaje = mensajeService.enviarMensaje(
-                    usuarioId, 
-                    receptorId, 
-                    "Imagen compartida", 
-                    propiedadId, 
-                    "imagen", 
-                    urlRecurso);
-            
-            Map<String, String> response = new HashMap<>();
-            response.put("url", urlRecurso);
-            response.put("mensajeId", mensaje.getId().toString());
-            
-            return ResponseEntity.ok(response);
+            // Se guarda la subida y se procesa en segundo plano; el mensaje llega por el
+            // canal de mensajes cuando la vista previa y la miniatura están listas
+            adjuntoMensajeService.enviarImagen(usuarioId, receptorId, propiedadId, file);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("estado", "procesando"));
             
         } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Error al guardar la imagen: " + e.getMessage()));
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "La imagen no es válida: " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", e.getMessage()));
         }
     }
     
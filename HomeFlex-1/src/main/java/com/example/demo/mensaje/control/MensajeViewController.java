@@ -1,18 +1,27 @@
 package com.example.demo.mensaje.control;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import com.example.demo.media.service.ServidorMediaService;
+import com.example.demo.mensaje.service.AdjuntoMensajeService;
 import com.example.demo.propiedad.model.PropiedadVO;
 import com.example.demo.propiedad.repository.PropiedadRepository;
 import com.example.demo.usuario.model.UsuarioVO;
 import com.example.demo.usuario.repository.UsuarioRepository;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
 @Controller
 @RequestMapping("/mensajes")
 public class MensajeViewController {
@@ -23,6 +32,12 @@ public class MensajeViewController {
     @Autowired
     private PropiedadRepository propiedadRepository;
     
+    @Autowired
+    private AdjuntoMensajeService adjuntoMensajeService;
+    
+    @Autowired
+    private ServidorMediaService servidorMediaService;
+    
     @GetMapping("/lista")
     public String listaMensajes(Model model, Authentication authentication) {
         // Aquí solo renderizamos la vista, los datos se cargan con JavaScript
@@ -75,4 +90,24 @@ public class MensajeViewController {
         return "redirect:/mensajes/chat?contactoId=" + contactoId + 
                (propiedadId != null ? "&propiedadId=" + propiedadId : "");
     }
+    
+    /**
+     * Imágenes del chat: sólo para los participantes de la conversación y sin pasar por
+     * cachés compartidas
+     */
+    @GetMapping("/adjuntos/{nombre}")
+    public void adjunto(
+            @PathVariable String nombre,
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        
+        UsuarioVO usuario = usuarioRepository.findByUsername(authentication.getName()).orElse(null);
+        Path archivo = usuario != null ? adjuntoMensajeService.archivoDe(nombre, usuario.getId()) : null;
+        if (archivo == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        servidorMediaService.servirPrivado(archivo, request, response);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.demo.mensaje.event;
+
+import com.example.demo.mensaje.model.MensajeDTO;
+
+/**
+ * Se publica al guardar un mensaje nuevo
+ */
+public class MensajeEnviadoEvent {
+    private final MensajeDTO mensaje;
+    
+    public MensajeEnviadoEvent(MensajeDTO mensaje) {
+        this.mensaje = mensaje;
+    }
+    
+    public MensajeDTO getMensaje() {
+        return mensaje;
+    }
+}
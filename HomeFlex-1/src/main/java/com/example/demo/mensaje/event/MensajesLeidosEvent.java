@@ -0,0 +1,22 @@
+package com.example.demo.mensaje.event;
+
+/**
+ * Se publica cuando un usuario marca como leídos mensajes de un contacto
+ */
+public class MensajesLeidosEvent {
+    private final Long usuarioId;
+    private final Long contactoId;
+    
+    public MensajesLeidosEvent(Long usuarioId, Long contactoId) {
+        this.usuarioId = usuarioId;
+        this.contactoId = contactoId;
+    }
+    
+    public Long getUsuarioId() {
+        return usuarioId;
+    }
+    
+    public Long getContactoId() {
+        return contactoId;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.mensaje.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.mensaje.event.MensajeEnviadoEvent;
+import com.example.demo.mensaje.event.MensajesLeidosEvent;
+import com.example.demo.mensaje.service.MensajePushService;
+
+/**
+ * Envía a los usuarios conectados los mensajes nuevos y los cambios en sus no leídos,
+ * sólo cuando la transacción que los produjo se ha confirmado
+ */
+@Component
+public class MensajePushListener {
+
+    @Autowired
+    private MensajePushService mensajePushService;
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handleMensajeEnviadoEvent(MensajeEnviadoEvent event) {
+        mensajePushService.publicarMensaje(event.getMensaje());
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handleMensajesLeidosEvent(MensajesLeidosEvent event) {
+        mensajePushService.publicarNoLeidos(event.getUsuarioId());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.mensaje.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila de la bandeja de entrada: resumen de la conversación de un usuario con un
+ * contacto sobre una propiedad (o sin propiedad). Se mantiene al enviar mensajes y
+ * al marcarlos como leídos, de modo que la bandeja se lee con una sola consulta
+ * por el índice (usuario_id, fecha_ultimo_mensaje).
+ */
+@Entity
+@Table(name = "bandeja_mensajes",
+       uniqueConstraints = @UniqueConstraint(name = "uk_bandeja_mensajes_conversacion",
+                                             columnNames = {"usuario_id", "contacto_id", "propiedad_clave"}),
+       indexes = @Index(name = "idx_bandeja_mensajes_usuario_fecha",
+                        columnList = "usuario_id, fecha_ultimo_mensaje DESC"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BandejaMensajeVO {
+
+    /** Valor de propiedad_clave para las conversaciones que no tratan de ninguna propiedad */
+    public static final long SIN_PROPIEDAD = 0L;
+
+    /** Longitud máxima del texto del último mensaje que se guarda como vista previa */
+    public static final int LONGITUD_VISTA_PREVIA = 500;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "usuario_id", nullable = false)
+    private Long usuarioId;
+
+    @Column(name = "contacto_id", nullable = false)
+    private Long contactoId;
+
+    @Column(name = "propiedad_id")
+    private Long propiedadId;
+
+    // propiedad_id o SIN_PROPIEDAD: la restricción única no puede usar una columna nula
+    @Column(name = "propiedad_clave", nullable = false)
+    private Long propiedadClave;
+
+    @Column(name = "ultimo_mensaje_id", nullable = false)
+    private Long ultimoMensajeId;
+
+    @Column(name = "ultimo_mensaje", length = LONGITUD_VISTA_PREVIA)
+    private String ultimoMensaje;
+
+    @Column(name = "tipo_ultimo_mensaje", nullable = false)
+    private String tipoUltimoMensaje;
+
+    @Column(name = "fecha_ultimo_mensaje", nullable = false)
+    private LocalDateTime fechaUltimoMensaje;
+
+    @Column(name = "no_leidos", nullable = false)
+    private Integer noLeidos;
+}
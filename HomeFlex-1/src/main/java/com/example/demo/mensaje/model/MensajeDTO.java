@@ -27,4 +27,5 @@ public class MensajeDTO {
     private String propiedadTitulo;
     private String tipoMensaje;
     private String urlRecurso;
+    private String urlMiniatura;
 }
\ No newline at end of file
@@ -11,7 +11,12 @@ import com.example.demo.propiedad.model.PropiedadVO;
 import com.example.demo.usuario.model.UsuarioVO;
 
 @Entity
-@Table(name = "mensajes")
+@Table(name = "mensajes", indexes = {
+    // Historial paginado por cursor: cada sentido de la conversación se recorre por id
+    @Index(name = "idx_mensajes_emisor_receptor_id", columnList = "emisor_id, receptor_id, id"),
+    // Comprobación de acceso a los adjuntos en cada descarga
+    @Index(name = "idx_mensajes_url_miniatura", columnList = "url_miniatura")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -47,4 +52,7 @@ public class MensajeVO {
     
     @Column(name = "url_recurso")
     private String urlRecurso; // Para almacenar URLs de imágenes u otros recursos
+    
+    @Column(name = "url_miniatura")
+    private String urlMiniatura; // Versión reducida de la imagen para mostrar en el chat
 }
\ No newline at end of file
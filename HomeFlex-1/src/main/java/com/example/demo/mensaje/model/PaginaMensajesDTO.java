@@ -0,0 +1,22 @@
+package com.example.demo.mensaje.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página del historial de una conversación, en orden cronológico. Los cursores son
+ * ids de mensaje: cursorAnterior se pasa como antesDe para seguir hacia atrás y
+ * cursorSiguiente como despuesDe para pedir los mensajes nuevos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaMensajesDTO {
+    private List<MensajeDTO> mensajes;
+    private boolean hayMas;
+    private Long cursorAnterior;
+    private Long cursorSiguiente;
+}
@@ -0,0 +1,86 @@
+package com.example.demo.mensaje.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.mensaje.model.BandejaMensajeVO;
+import com.example.demo.mensaje.model.ConversacionDTO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface BandejaMensajeRepository extends JpaRepository<BandejaMensajeVO, Long> {
+
+    @Query("SELECT new com.example.demo.mensaje.model.ConversacionDTO(c.id, c.nombre, c.apellidos, c.fotoPerfil, "
+         + "b.ultimoMensaje, b.tipoUltimoMensaje, b.fechaUltimoMensaje, p.id, p.titulo, b.noLeidos) "
+         + "FROM BandejaMensajeVO b JOIN UsuarioVO c ON c.id = b.contactoId "
+         + "LEFT JOIN PropiedadVO p ON p.id = b.propiedadId "
+         + "WHERE b.usuarioId = :usuarioId ORDER BY b.fechaUltimoMensaje DESC")
+    List<ConversacionDTO> findConversaciones(@Param("usuarioId") Long usuarioId);
+
+    @Query("SELECT CAST(COALESCE(SUM(b.noLeidos), 0) AS Integer) FROM BandejaMensajeVO b WHERE b.usuarioId = :usuarioId")
+    Integer sumNoLeidos(@Param("usuarioId") Long usuarioId);
+
+    /**
+     * Inserta o actualiza la fila de la conversación con un mensaje nuevo. El último
+     * mensaje sólo se sustituye si el nuevo es posterior, y los no leídos se suman siempre.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO bandeja_mensajes (usuario_id, contacto_id, propiedad_id, propiedad_clave, "
+         + "ultimo_mensaje_id, ultimo_mensaje, tipo_ultimo_mensaje, fecha_ultimo_mensaje, no_leidos) "
+         + "VALUES (:usuarioId, :contactoId, :propiedadId, :propiedadClave, :mensajeId, :texto, :tipo, :fecha, :noLeidos) "
+         + "ON CONFLICT (usuario_id, contacto_id, propiedad_clave) DO UPDATE SET "
+         + "ultimo_mensaje = CASE WHEN EXCLUDED.ultimo_mensaje_id > bandeja_mensajes.ultimo_mensaje_id "
+         + "  THEN EXCLUDED.ultimo_mensaje ELSE bandeja_mensajes.ultimo_mensaje END, "
+         + "tipo_ultimo_mensaje = CASE WHEN EXCLUDED.ultimo_mensaje_id > bandeja_mensajes.ultimo_mensaje_id "
+         + "  THEN EXCLUDED.tipo_ultimo_mensaje ELSE bandeja_mensajes.tipo_ultimo_mensaje END, "
+         + "fecha_ultimo_mensaje = CASE WHEN EXCLUDED.ultimo_mensaje_id > bandeja_mensajes.ultimo_mensaje_id "
+         + "  THEN EXCLUDED.fecha_ultimo_mensaje ELSE bandeja_mensajes.fecha_ultimo_mensaje END, "
+         + "ultimo_mensaje_id = GREATEST(EXCLUDED.ultimo_mensaje_id, bandeja_mensajes.ultimo_mensaje_id), "
+         + "no_leidos = bandeja_mensajes.no_leidos + EXCLUDED.no_leidos",
+           nativeQuery = true)
+    void registrarMensaje(@Param("usuarioId") Long usuarioId,
+                          @Param("contactoId") Long contactoId,
+                          @Param("propiedadId") Long propiedadId,
+                          @Param("propiedadClave") Long propiedadClave,
+                          @Param("mensajeId") Long mensajeId,
+                          @Param("texto") String texto,
+                          @Param("tipo") String tipo,
+                          @Param("fecha") LocalDateTime fecha,
+                          @Param("noLeidos") Integer noLeidos);
+
+    @Modifying
+    @Query("UPDATE BandejaMensajeVO b SET b.noLeidos = 0 WHERE b.usuarioId = :usuarioId AND b.contactoId = :contactoId AND b.noLeidos > 0")
+    int markAsRead(@Param("usuarioId") Long usuarioId, @Param("contactoId") Long contactoId);
+
+    /**
+     * Reconstruye la bandeja completa a partir de la tabla de mensajes: cada mensaje
+     * cuenta en la conversación del emisor y en la del receptor (como no leído si lo está).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO bandeja_mensajes (usuario_id, contacto_id, propiedad_id, propiedad_clave, "
+         + "ultimo_mensaje_id, ultimo_mensaje, tipo_ultimo_mensaje, fecha_ultimo_mensaje, no_leidos) "
+         + "SELECT DISTINCT ON (usuario_id, contacto_id, propiedad_clave) "
+         + "  usuario_id, contacto_id, propiedad_id, propiedad_clave, id, "
+         + "  CASE WHEN tipo_mensaje = 'texto' THEN LEFT(contenido, " + BandejaMensajeVO.LONGITUD_VISTA_PREVIA + ") "
+         + "       WHEN tipo_mensaje = 'imagen' THEN '[Imagen]' ELSE '[Mensaje]' END, "
+         + "  tipo_mensaje, fecha_envio, "
+         + "  SUM(no_leido) OVER (PARTITION BY usuario_id, contacto_id, propiedad_clave) "
+         + "FROM ("
+         + "  SELECT m.emisor_id AS usuario_id, m.receptor_id AS contacto_id, m.propiedad_id, "
+         + "         COALESCE(m.propiedad_id, 0) AS propiedad_clave, m.id, m.contenido, m.tipo_mensaje, "
+         + "         m.fecha_envio, 0 AS no_leido "
+         + "  FROM mensajes m "
+         + "  UNION ALL "
+         + "  SELECT m.receptor_id, m.emisor_id, m.propiedad_id, COALESCE(m.propiedad_id, 0), m.id, m.contenido, "
+         + "         m.tipo_mensaje, m.fecha_envio, CASE WHEN m.leido THEN 0 ELSE 1 END "
+         + "  FROM mensajes m WHERE m.receptor_id <> m.emisor_id"
+         + ") lados "
+         + "ORDER BY usuario_id, contacto_id, propiedad_clave, fecha_envio DESC, id DESC",
+           nativeQuery = true)
+    int reconstruir();
+}
@@ -20,6 +20,57 @@ public interface MensajeRepository extends JpaRepository<MensajeVO, Long> {
     @Query("SELECT m FROM MensajeVO m WHERE (m.emisor.id = :usuarioId AND m.receptor.id = :otroUsuarioId AND m.propiedad.id = :propiedadId) OR (m.emisor.id = :otroUsuarioId AND m.receptor.id = :usuarioId AND m.propiedad.id = :propiedadId) ORDER BY m.fechaEnvio ASC")
     List<MensajeVO> findConversacionByPropiedad(@Param("usuarioId") Long usuarioId, @Param("otroUsuarioId") Long otroUsuarioId, @Param("propiedadId") Long propiedadId);
     
+    // Paginación por cursor (id del mensaje). Un OR entre los dos sentidos de la conversación
+    // no puede recorrer el índice (emisor_id, receptor_id, id) en orden: se busca en cada
+    // sentido por separado, hasta :limite filas cada uno, y se mezclan las dos listas
+    String DEL_USUARIO = "SELECT m.* FROM mensajes m WHERE m.emisor_id = :usuarioId AND m.receptor_id = :otroUsuarioId ";
+
+    // En una conversación consigo mismo los dos sentidos son el mismo y se repetirían
+    String DEL_OTRO = "SELECT m.* FROM mensajes m WHERE m.emisor_id = :otroUsuarioId AND m.receptor_id = :usuarioId "
+            + "AND :otroUsuarioId <> :usuarioId ";
+
+    String DE_PROPIEDAD = "AND m.propiedad_id = :propiedadId ";
+
+    String ANTERIORES = "AND m.id < :antesDeId ORDER BY m.id DESC LIMIT :limite";
+
+    String POSTERIORES = "AND m.id > :despuesDeId ORDER BY m.id ASC LIMIT :limite";
+
+    // Los más recientes primero, anteriores a antesDeId
+    @Query(value = "SELECT * FROM ((" + DEL_USUARIO + ANTERIORES + ") UNION ALL (" + DEL_OTRO + ANTERIORES + ")) m "
+         + "ORDER BY m.id DESC LIMIT :limite",
+           nativeQuery = true)
+    List<MensajeVO> findConversacionAnteriores(@Param("usuarioId") Long usuarioId,
+                                               @Param("otroUsuarioId") Long otroUsuarioId,
+                                               @Param("antesDeId") Long antesDeId,
+                                               @Param("limite") int limite);
+
+    @Query(value = "SELECT * FROM ((" + DEL_USUARIO + DE_PROPIEDAD + ANTERIORES + ") UNION ALL ("
+         + DEL_OTRO + DE_PROPIEDAD + ANTERIORES + ")) m ORDER BY m.id DESC LIMIT :limite",
+           nativeQuery = true)
+    List<MensajeVO> findConversacionByPropiedadAnteriores(@Param("usuarioId") Long usuarioId,
+                                                          @Param("otroUsuarioId") Long otroUsuarioId,
+                                                          @Param("propiedadId") Long propiedadId,
+                                                          @Param("antesDeId") Long antesDeId,
+                                                          @Param("limite") int limite);
+
+    // Mensajes posteriores a despuesDeId, del más antiguo al más reciente
+    @Query(value = "SELECT * FROM ((" + DEL_USUARIO + POSTERIORES + ") UNION ALL (" + DEL_OTRO + POSTERIORES + ")) m "
+         + "ORDER BY m.id ASC LIMIT :limite",
+           nativeQuery = true)
+    List<MensajeVO> findConversacionPosteriores(@Param("usuarioId") Long usuarioId,
+                                                @Param("otroUsuarioId") Long otroUsuarioId,
+                                                @Param("despuesDeId") Long despuesDeId,
+                                                @Param("limite") int limite);
+
+    @Query(value = "SELECT * FROM ((" + DEL_USUARIO + DE_PROPIEDAD + POSTERIORES + ") UNION ALL ("
+         + DEL_OTRO + DE_PROPIEDAD + POSTERIORES + ")) m ORDER BY m.id ASC LIMIT :limite",
+           nativeQuery = true)
+    List<MensajeVO> findConversacionByPropiedadPosteriores(@Param("usuarioId") Long usuarioId,
+                                                           @Param("otroUsuarioId") Long otroUsuarioId,
+                                                           @Param("propiedadId") Long propiedadId,
+                                                           @Param("despuesDeId") Long despuesDeId,
+                                                           @Param("limite") int limite);
+    
     @Query("SELECT DISTINCT m.receptor FROM MensajeVO m WHERE m.emisor.id = :usuarioId")
     List<UsuarioVO> findReceptores(@Param("usuarioId") Long usuarioId);
 
@@ -36,6 +87,10 @@ public interface MensajeRepository extends JpaRepository<MensajeVO, Long> {
     @Query("UPDATE MensajeVO m SET m.leido = true WHERE m.receptor.id = :usuarioId AND m.emisor.id = :emisorId AND m.leido = false")
     void markAsRead(@Param("usuarioId") Long usuarioId, @Param("emisorId") Long emisorId);
     
+    // Si el usuario es emisor o receptor del mensaje con esa miniatura (acceso a adjuntos)
+    @Query("SELECT COUNT(m) > 0 FROM MensajeVO m WHERE m.urlMiniatura = :urlMiniatura AND (m.emisor.id = :usuarioId OR m.receptor.id = :usuarioId)")
+    boolean existsAdjuntoDeParticipante(@Param("urlMiniatura") String urlMiniatura, @Param("usuarioId") Long usuarioId);
+    
     @Query("SELECT m FROM MensajeVO m WHERE (m.emisor.id = :usuarioId OR m.receptor.id = :usuarioId) ORDER BY m.fechaEnvio DESC")
     List<MensajeVO> findAllByUsuarioOrderByFechaEnvioDesc(@Param("usuarioId") Long usuarioId);
 }
\ No newline at end of file
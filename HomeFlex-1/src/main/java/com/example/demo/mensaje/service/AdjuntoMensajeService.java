@@ -0,0 +1,164 @@
+package com.example.demo.mensaje.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.demo.media.service.ProcesadorImagenesService;
+import com.example.demo.media.service.ProcesadorImagenesService.Tamano;
+import com.example.demo.media.service.ProcesadorImagenesService.Variante;
+import com.example.demo.mensaje.repository.MensajeRepository;
+import com.example.demo.propiedad.repository.PropiedadRepository;
+import com.example.demo.usuario.repository.UsuarioRepository;
+
+/**
+ * Imágenes enviadas por el chat. La subida se vuelca a un directorio temporal que no
+ * se sirve por HTTP; en segundo plano se generan una vista previa y una miniatura sin
+ * metadatos, se borra el original y entonces se crea el mensaje, que llega a los
+ * usuarios conectados como cualquier otro. Si el procesado falla se avisa al emisor
+ * por el canal de mensajes.
+ *
+ * Las versiones se guardan en {uploadDir}/mensajes, que /media no sirve: sólo se
+ * entregan por /mensajes/adjuntos a los participantes de la conversación.
+ */
+@Service
+public class AdjuntoMensajeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdjuntoMensajeService.class);
+
+    private static final String VISTA_PREVIA = "vista";
+    private static final String MINIATURA = "mini";
+
+    public static final String PREFIJO_URL = "/mensajes/adjuntos/";
+
+    // {uuid}-vista.jpg o {uuid}-mini.jpg; el uuid es común a las dos versiones
+    private static final Pattern NOMBRE_ADJUNTO = Pattern.compile(
+            "^([0-9a-f]{8}(?:-[0-9a-f]{4}){3}-[0-9a-f]{12})-(" + VISTA_PREVIA + "|" + MINIATURA + ")\\.jpg$");
+
+    @Autowired
+    private ProcesadorImagenesService procesadorImagenes;
+
+    @Autowired
+    private MensajeService mensajeService;
+
+    @Autowired
+    private MensajePushService mensajePushService;
+
+    @Autowired
+    private MensajeRepository mensajeRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PropiedadRepository propiedadRepository;
+
+    @Value("${homeflex.upload-dir}")
+    private String uploadDir;
+
+    @Value("${homeflex.mensajes.adjuntos.dir-temporal:${java.io.tmpdir}/homeflex-adjuntos}")
+    private String dirTemporal;
+
+    // Lado mayor de la imagen que se abre al pulsar y de la que se pinta en la conversación
+    @Value("${homeflex.mensajes.adjuntos.lado-vista-previa:1280}")
+    private int ladoVistaPrevia;
+
+    @Value("${homeflex.mensajes.adjuntos.lado-miniatura:320}")
+    private int ladoMiniatura;
+
+    /**
+     * Guarda la imagen subida y encola su procesado. El mensaje se crea cuando las
+     * versiones reducidas están escritas.
+     * @throws IllegalArgumentException si el receptor o la propiedad no existen
+     * @throws IOException si el archivo no es una imagen válida o no se puede guardar
+     */
+    public void enviarImagen(Long emisorId, Long receptorId, Long propiedadId, MultipartFile archivo) throws IOException {
+        // Lo que enviarMensaje comprobaría al final se comprueba antes de aceptar la subida
+        if (!usuarioRepository.existsById(receptorId)) {
+            throw new IllegalArgumentException("Receptor no encontrado");
+        }
+        if (propiedadId != null && !propiedadRepository.existsById(propiedadId)) {
+            throw new IllegalArgumentException("Propiedad no encontrada");
+        }
+
+        Path temporal = Paths.get(dirTemporal);
+        Files.createDirectories(temporal);
+        Path original = Files.createTempFile(temporal, "adjunto-", ".tmp");
+
+        try {
+            // transferTo mueve el archivo si el contenedor ya lo tenía en disco
+            archivo.transferTo(original);
+            procesadorImagenes.validar(original);
+            procesadorImagenes.enviar(() -> procesar(original, emisorId, receptorId, propiedadId));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(original);
+            throw e;
+        }
+    }
+
+    private Void procesar(Path original, Long emisorId, Long receptorId, Long propiedadId) {
+        try {
+            Path destino = Paths.get(uploadDir, "mensajes");
+            Files.createDirectories(destino);
+            String base = UUID.randomUUID().toString();
+
+            List<Variante> variantes = procesadorImagenes.generarVariantes(original,
+                    List.of(new Tamano(VISTA_PREVIA, ladoVistaPrevia, ladoVistaPrevia),
+                            new Tamano(MINIATURA, ladoMiniatura, ladoMiniatura)),
+                    nombre -> destino.resolve(base + "-" + nombre + ".jpg"));
+
+            String urlVistaPrevia = null;
+            String urlMiniatura = null;
+            for (Variante variante : variantes) {
+                String url = PREFIJO_URL + variante.archivo().getFileName();
+                if (VISTA_PREVIA.equals(variante.nombre())) {
+                    urlVistaPrevia = url;
+                } else {
+                    urlMiniatura = url;
+                }
+            }
+
+            mensajeService.enviarMensaje(emisorId, receptorId, "Imagen compartida", propiedadId,
+                                         "imagen", urlVistaPrevia, urlMiniatura);
+        } catch (Exception e) {
+            logger.error("No se pudo procesar la imagen enviada por el usuario {}: {}", emisorId, e.getMessage());
+            mensajePushService.publicarErrorAdjunto(emisorId, receptorId, propiedadId);
+        } finally {
+            try {
+                Files.deleteIfExists(original);
+            } catch (IOException e) {
+                logger.warn("No se pudo borrar el original temporal {}: {}", original, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Archivo de una versión de un adjunto si el usuario participa en la conversación
+     * del mensaje que la lleva; null en otro caso
+     */
+    public Path archivoDe(String nombre, Long usuarioId) {
+        Matcher partes = NOMBRE_ADJUNTO.matcher(nombre);
+        if (!partes.matches()) {
+            return null;
+        }
+        // Las dos versiones comparten nombre base: basta buscar por la miniatura
+        String urlMiniatura = PREFIJO_URL + partes.group(1) + "-" + MINIATURA + ".jpg";
+        if (!mensajeRepository.existsAdjuntoDeParticipante(urlMiniatura, usuarioId)) {
+            return null;
+        }
+        return Paths.get(uploadDir, "mensajes", nombre);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.mensaje.service;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.mensaje.model.BandejaMensajeVO;
+import com.example.demo.mensaje.model.ConversacionDTO;
+import com.example.demo.mensaje.model.MensajeVO;
+import com.example.demo.mensaje.repository.BandejaMensajeRepository;
+import com.example.demo.mensaje.repository.MensajeRepository;
+
+/**
+ * Mantiene la bandeja de entrada como modelo de lectura: una fila por usuario,
+ * contacto y propiedad con el último mensaje y los no leídos. Las actualizaciones se
+ * hacen en la misma transacción que el mensaje, así que la bandeja nunca queda por
+ * detrás de la tabla de mensajes.
+ */
+@Service
+public class BandejaMensajesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BandejaMensajesService.class);
+
+    @Autowired
+    private BandejaMensajeRepository bandejaMensajeRepository;
+
+    @Autowired
+    private MensajeRepository mensajeRepository;
+
+    /**
+     * Si la bandeja está vacía pero ya hay mensajes (primer arranque con esta tabla),
+     * la reconstruye desde el histórico
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void inicializar() {
+        if (bandejaMensajeRepository.count() == 0 && mensajeRepository.count() > 0) {
+            int filas = bandejaMensajeRepository.reconstruir();
+            logger.info("Bandeja de mensajes reconstruida: {} conversaciones", filas);
+        }
+    }
+
+    /**
+     * Conversaciones del usuario, de la más reciente a la más antigua
+     */
+    @Transactional(readOnly = true)
+    public List<ConversacionDTO> getConversaciones(Long usuarioId) {
+        return bandejaMensajeRepository.findConversaciones(usuarioId);
+    }
+
+    /**
+     * Total de mensajes no leídos del usuario, sumando todas sus conversaciones
+     */
+    @Transactional(readOnly = true)
+    public Integer contarNoLeidos(Long usuarioId) {
+        return bandejaMensajeRepository.sumNoLeidos(usuarioId);
+    }
+
+    /**
+     * Refleja un mensaje recién guardado en la bandeja del emisor y en la del receptor.
+     * Debe llamarse dentro de la transacción que guarda el mensaje.
+     */
+    @Transactional
+    public void registrarMensaje(MensajeVO mensaje) {
+        Long emisorId = mensaje.getEmisor().getId();
+        Long receptorId = mensaje.getReceptor().getId();
+        Long propiedadId = mensaje.getPropiedad() != null ? mensaje.getPropiedad().getId() : null;
+        Long propiedadClave = propiedadId != null ? propiedadId : BandejaMensajeVO.SIN_PROPIEDAD;
+        String texto = vistaPrevia(mensaje);
+
+        bandejaMensajeRepository.registrarMensaje(emisorId, receptorId, propiedadId, propiedadClave,
+                mensaje.getId(), texto, mensaje.getTipoMensaje(), mensaje.getFechaEnvio(), 0);
+        if (!receptorId.equals(emisorId)) {
+            bandejaMensajeRepository.registrarMensaje(receptorId, emisorId, propiedadId, propiedadClave,
+                    mensaje.getId(), texto, mensaje.getTipoMensaje(), mensaje.getFechaEnvio(), 1);
+        }
+    }
+
+    /**
+     * Pone a cero los no leídos de todas las conversaciones del usuario con el contacto
+     * @return número de conversaciones que tenían mensajes sin leer
+     */
+    @Transactional
+    public int marcarComoLeidos(Long usuarioId, Long contactoId) {
+        return bandejaMensajeRepository.markAsRead(usuarioId, contactoId);
+    }
+
+    // Contenido adecuado según el tipo de mensaje
+    private static String vistaPrevia(MensajeVO mensaje) {
+        if ("texto".equals(mensaje.getTipoMensaje())) {
+            String contenido = mensaje.getContenido();
+            return contenido != null && contenido.length() > BandejaMensajeVO.LONGITUD_VISTA_PREVIA
+                    ? contenido.substring(0, BandejaMensajeVO.LONGITUD_VISTA_PREVIA)
+                    : contenido;
+        } else if ("imagen".equals(mensaje.getTipoMensaje())) {
+            return "[Imagen]";
+        }
+        return "[Mensaje]";
+    }
+}
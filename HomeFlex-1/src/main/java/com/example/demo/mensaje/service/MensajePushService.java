@@ -0,0 +1,211 @@
+package com.example.demo.mensaje.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.mensaje.model.MensajeDTO;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Canal de server-sent events para la mensajería. Cada pestaña abierta es una
+ * conexión con su propio búfer acotado; los eventos se reparten en memoria a todas
+ * las conexiones del usuario destinatario.
+ *
+ * Si el cliente no consume y el búfer se llena, la conexión se cierra en lugar de
+ * acumular eventos: el navegador se reconecta solo y recibe de nuevo el contador de
+ * no leídos, y la conversación abierta recupera lo que falte con /nuevos.
+ *
+ * Eventos: "mensaje" (MensajeDTO), "no-leidos" ({"total": n}) y "error-adjunto"
+ * ({"receptorId", "propiedadId"}) cuando una imagen aceptada no se pudo enviar.
+ */
+@Service
+public class MensajePushService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MensajePushService.class);
+
+    @Autowired
+    private BandejaMensajesService bandejaMensajesService;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    // Eventos pendientes de escribir por conexión antes de darla por atascada
+    @Value("${homeflex.mensajes.push.buffer:64}")
+    private int tamanoBuffer;
+
+    // Pestañas abiertas por usuario; al superarlo se cierra la más antigua
+    @Value("${homeflex.mensajes.push.max-conexiones-usuario:5}")
+    private int maxConexionesUsuario;
+
+    private final class Conexion {
+        final long id;
+        final Long usuarioId;
+        final Sinks.Many<ServerSentEvent<?>> sink;
+
+        Conexion(long id, Long usuarioId) {
+            this.id = id;
+            this.usuarioId = usuarioId;
+            this.sink = Sinks.many().unicast()
+                    .onBackpressureBuffer(Queues.<ServerSentEvent<?>>get(tamanoBuffer).get());
+        }
+
+        // Los emisores son hilos distintos (peticiones, latido): se serializan aquí
+        synchronized Sinks.EmitResult emitir(ServerSentEvent<?> evento) {
+            return sink.tryEmitNext(evento);
+        }
+
+        synchronized void cerrar() {
+            sink.tryEmitComplete();
+        }
+    }
+
+    private final Map<Long, List<Conexion>> conexiones = new ConcurrentHashMap<>();
+    private final AtomicLong siguienteId = new AtomicLong();
+    private final AtomicInteger totalConexiones = new AtomicInteger();
+    private final AtomicLong desbordadas = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.ifAvailable(registry ->
+                Gauge.builder("homeflex.mensajes.push.conexiones", totalConexiones, AtomicInteger::get)
+                     .description("Conexiones abiertas al canal de mensajes")
+                     .register(registry));
+    }
+
+    /**
+     * Abre una conexión para el usuario. El primer evento es su contador de no leídos.
+     */
+    public Flux<ServerSentEvent<?>> conectar(Long usuarioId) {
+        Conexion conexion = new Conexion(siguienteId.incrementAndGet(), usuarioId);
+        conexion.emitir(eventoNoLeidos(bandejaMensajesService.contarNoLeidos(usuarioId)));
+
+        List<Conexion> expulsadas = new ArrayList<>();
+        conexiones.compute(usuarioId, (id, delUsuario) -> {
+            List<Conexion> lista = delUsuario != null ? delUsuario : new CopyOnWriteArrayList<>();
+            lista.add(conexion);
+            while (lista.size() > maxConexionesUsuario) {
+                expulsadas.add(lista.remove(0));
+            }
+            return lista;
+        });
+        totalConexiones.addAndGet(1 - expulsadas.size());
+        expulsadas.forEach(Conexion::cerrar);
+
+        return conexion.sink.asFlux()
+                .doFinally(senal -> desconectar(conexion));
+    }
+
+    /**
+     * Entrega un mensaje nuevo al receptor y a las demás pestañas del emisor, y
+     * actualiza el contador de no leídos del receptor
+     */
+    public void publicarMensaje(MensajeDTO mensaje) {
+        ServerSentEvent<MensajeDTO> evento = ServerSentEvent.builder(mensaje)
+                .id(String.valueOf(mensaje.getId()))
+                .event("mensaje")
+                .build();
+        enviar(mensaje.getReceptorId(), evento);
+        if (!mensaje.getEmisorId().equals(mensaje.getReceptorId())) {
+            enviar(mensaje.getEmisorId(), evento);
+        }
+        publicarNoLeidos(mensaje.getReceptorId());
+    }
+
+    /**
+     * Avisa al emisor de que la imagen que envió a la conversación no se pudo procesar
+     */
+    public void publicarErrorAdjunto(Long emisorId, Long receptorId, Long propiedadId) {
+        Map<String, Long> conversacion = new HashMap<>();
+        conversacion.put("receptorId", receptorId);
+        conversacion.put("propiedadId", propiedadId);
+        enviar(emisorId, ServerSentEvent.builder(conversacion).event("error-adjunto").build());
+    }
+
+    /**
+     * Envía el contador de no leídos actual, si el usuario tiene alguna conexión abierta
+     */
+    public void publicarNoLeidos(Long usuarioId) {
+        if (!estaConectado(usuarioId)) {
+            return;
+        }
+        enviar(usuarioId, eventoNoLeidos(bandejaMensajesService.contarNoLeidos(usuarioId)));
+    }
+
+    public boolean estaConectado(Long usuarioId) {
+        List<Conexion> delUsuario = conexiones.get(usuarioId);
+        return delUsuario != null && !delUsuario.isEmpty();
+    }
+
+    public int getConexiones() {
+        return totalConexiones.get();
+    }
+
+    public long getDesbordadas() {
+        return desbordadas.get();
+    }
+
+    /**
+     * Comentario periódico en todas las conexiones: mantiene vivos los proxies y
+     * detecta los clientes que ya no leen (su búfer acaba llenándose)
+     */
+    @Scheduled(fixedRateString = "${homeflex.mensajes.push.latido-ms:25000}")
+    public void latido() {
+        ServerSentEvent<?> latido = ServerSentEvent.builder().comment("latido").build();
+        conexiones.keySet().forEach(usuarioId -> enviar(usuarioId, latido));
+    }
+
+    private void enviar(Long usuarioId, ServerSentEvent<?> evento) {
+        List<Conexion> delUsuario = conexiones.get(usuarioId);
+        if (delUsuario == null) {
+            return;
+        }
+        for (Conexion conexion : delUsuario) {
+            Sinks.EmitResult resultado = conexion.emitir(evento);
+            if (resultado.isFailure()) {
+                if (resultado == Sinks.EmitResult.FAIL_OVERFLOW) {
+                    desbordadas.incrementAndGet();
+                    logger.debug("Conexión {} del usuario {} sin consumir eventos: se cierra",
+                                 conexion.id, usuarioId);
+                }
+                desconectar(conexion);
+                conexion.cerrar();
+            }
+        }
+    }
+
+    private void desconectar(Conexion conexion) {
+        conexiones.computeIfPresent(conexion.usuarioId, (id, delUsuario) -> {
+            if (delUsuario.remove(conexion)) {
+                totalConexiones.decrementAndGet();
+            }
+            return delUsuario.isEmpty() ? null : delUsuario;
+        });
+    }
+
+    private static ServerSentEvent<Map<String, Integer>> eventoNoLeidos(Integer total) {
+        return ServerSentEvent.builder(Map.of("total", total != null ? total : 0))
+                .event("no-leidos")
+                .build();
+    }
+}
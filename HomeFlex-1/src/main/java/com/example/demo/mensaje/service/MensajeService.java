@@ -6,6 +6,7 @@ import java.util.List;
 
 import com.example.demo.mensaje.model.ConversacionDTO;
 import com.example.demo.mensaje.model.MensajeDTO;
+import com.example.demo.mensaje.model.PaginaMensajesDTO;
 
 public interface MensajeService {
     
@@ -13,8 +14,20 @@ public interface MensajeService {
     
     List<MensajeDTO> getConversacion(Long usuarioId, Long otroUsuarioId, Long propiedadId);
     
+    /**
+     * Mensajes anteriores al id indicado (los más recientes si antesDeId es null), en orden cronológico
+     */
+    PaginaMensajesDTO getMensajesAnteriores(Long usuarioId, Long otroUsuarioId, Long propiedadId, Long antesDeId, int limite);
+    
+    /**
+     * Mensajes posteriores al id indicado, en orden cronológico
+     */
+    PaginaMensajesDTO getMensajesPosteriores(Long usuarioId, Long otroUsuarioId, Long propiedadId, Long despuesDeId, int limite);
+    
     MensajeDTO enviarMensaje(Long emisorId, Long receptorId, String contenido, Long propiedadId, String tipoMensaje, String urlRecurso);
     
+    MensajeDTO enviarMensaje(Long emisorId, Long receptorId, String contenido, Long propiedadId, String tipoMensaje, String urlRecurso, String urlMiniatura);
+    
     void marcarComoLeidos(Long usuarioId, Long emisorId);
     
     Integer contarNoLeidos(Long usuarioId);
@@ -1,12 +1,16 @@
 package com.example.demo.mensaje.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.demo.mensaje.event.MensajeEnviadoEvent;
+import com.example.demo.mensaje.event.MensajesLeidosEvent;
 import com.example.demo.mensaje.model.ConversacionDTO;
 import com.example.demo.mensaje.model.MensajeDTO;
 import com.example.demo.mensaje.model.MensajeVO;
+import com.example.demo.mensaje.model.PaginaMensajesDTO;
 import com.example.demo.mensaje.repository.MensajeRepository;
 import com.example.demo.notificacion.model.NotificacionVO;
 import com.example.demo.notificacion.repository.NotificacionRepository;
@@ -16,12 +20,16 @@ import com.example.demo.usuario.model.UsuarioVO;
 import com.example.demo.usuario.repository.UsuarioRepository;
 
 import java.time.LocalDateTime;
-import java.util.*;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
 public class MensajeServiceImpl implements MensajeService {
     
+    // Tamaño máximo de una página del historial
+    private static final int LIMITE_MAXIMO_PAGINA = 200;
+    
     @Autowired
     private MensajeRepository mensajeRepository;
     
@@ -34,71 +42,16 @@ public class MensajeServiceImpl implements MensajeService {
     @Autowired
     private NotificacionRepository notificacionRepository;
     
+    @Autowired
+    private BandejaMensajesService bandejaMensajesService;
+    
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+    
     @Override
     public List<ConversacionDTO> getConversaciones(Long usuarioId) {
-        // Obtener receptores (usuarios a los que ha enviado mensajes)
-        List<UsuarioVO> receptores = mensajeRepository.findReceptores(usuarioId);
-        
-        // Obtener emisores (usuarios que le han enviado mensajes)
-        List<UsuarioVO> emisores = mensajeRepository.findEmisores(usuarioId);
-        
-        // Combinar los resultados eliminando duplicados
-        Map<Long, UsuarioVO> contactosMap = new HashMap<>();
-        
-        for (UsuarioVO receptor : receptores) {
-            contactosMap.put(receptor.getId(), receptor);
-        }
-        
-        for (UsuarioVO emisor : emisores) {
-            contactosMap.put(emisor.getId(), emisor);
-        }
-        
-        // Convertir a lista
-        List<UsuarioVO> contactos = new ArrayList<>(contactosMap.values());
-        List<ConversacionDTO> conversaciones = new ArrayList<>();
-        
-        for (UsuarioVO contacto : contactos) {
-            List<MensajeVO> mensajes = mensajeRepository.findConversacion(usuarioId, contacto.getId());
-            
-            // Obtener el último mensaje
-            MensajeVO ultimoMensaje = !mensajes.isEmpty() ? mensajes.get(mensajes.size() - 1) : null;
-            
-            if (ultimoMensaje != null) {
-                ConversacionDTO conversacion = new ConversacionDTO();
-                conversacion.setContactoId(contacto.getId());
-                conversacion.setContactoNombre(contacto.getNombre());
-                conversacion.setContactoApellidos(contacto.getApellidos());
-                conversacion.setContactoFoto(contacto.getFotoPerfil());
-                
-                // Mostrar contenido adecuado según el tipo de mensaje
-                if ("texto".equals(ultimoMensaje.getTipoMensaje())) {
-                    conversacion.setUltimoMensaje(ultimoMensaje.getContenido());
-                } else if ("imagen".equals(ultimoMensaje.getTipoMensaje())) {
-                    conversacion.setUltimoMensaje("[Imagen]");
-                } else {
-                    conversacion.setUltimoMensaje("[Mensaje]");
-                }
-                
-                conversacion.setTipoUltimoMensaje(ultimoMensaje.getTipoMensaje());
-                conversacion.setFechaUltimoMensaje(ultimoMensaje.getFechaEnvio());
-                
-                if (ultimoMensaje.getPropiedad() != null) {
-                    conversacion.setPropiedadId(ultimoMensaje.getPropiedad().getId());
-                    conversacion.setPropiedadTitulo(ultimoMensaje.getPropiedad().getTitulo());
-                }
-                
-                // Contar mensajes no leídos
-                Integer noLeidos = mensajeRepository.countUnreadMessagesFromUser(usuarioId, contacto.getId());
-                conversacion.setMensajesNoLeidos(noLeidos);
-                
-                conversaciones.add(conversacion);
-            }
-        }
-        
-        // Ordenar por fecha del último mensaje (más reciente primero)
-        conversaciones.sort(Comparator.comparing(ConversacionDTO::getFechaUltimoMensaje).reversed());
-        
-        return conversaciones;
+        // Una sola lectura de la bandeja, ya ordenada por fecha del último mensaje
+        return bandejaMensajesService.getConversaciones(usuarioId);
     }
     
     @Override
@@ -116,9 +69,55 @@ public class MensajeServiceImpl implements MensajeService {
                 .collect(Collectors.toList());
     }
     
+    @Override
+    public PaginaMensajesDTO getMensajesAnteriores(Long usuarioId, Long otroUsuarioId, Long propiedadId, Long antesDeId, int limite) {
+        int tamano = limitarTamano(limite);
+        long cursor = antesDeId != null ? antesDeId : Long.MAX_VALUE;
+        // Se pide uno más para saber si quedan mensajes anteriores
+        int filas = tamano + 1;
+        
+        List<MensajeVO> mensajes = propiedadId != null
+                ? mensajeRepository.findConversacionByPropiedadAnteriores(usuarioId, otroUsuarioId, propiedadId, cursor, filas)
+                : mensajeRepository.findConversacionAnteriores(usuarioId, otroUsuarioId, cursor, filas);
+        
+        boolean hayMas = mensajes.size() > tamano;
+        if (hayMas) {
+            mensajes = mensajes.subList(0, tamano);
+        }
+        // La consulta los devuelve del más reciente al más antiguo
+        List<MensajeDTO> dtos = mensajes.stream().map(this::convertToDTO).collect(Collectors.toList());
+        Collections.reverse(dtos);
+        
+        return crearPagina(dtos, hayMas, antesDeId, null);
+    }
+    
+    @Override
+    public PaginaMensajesDTO getMensajesPosteriores(Long usuarioId, Long otroUsuarioId, Long propiedadId, Long despuesDeId, int limite) {
+        int tamano = limitarTamano(limite);
+        int filas = tamano + 1;
+        
+        List<MensajeVO> mensajes = propiedadId != null
+                ? mensajeRepository.findConversacionByPropiedadPosteriores(usuarioId, otroUsuarioId, propiedadId, despuesDeId, filas)
+                : mensajeRepository.findConversacionPosteriores(usuarioId, otroUsuarioId, despuesDeId, filas);
+        
+        boolean hayMas = mensajes.size() > tamano;
+        if (hayMas) {
+            mensajes = mensajes.subList(0, tamano);
+        }
+        List<MensajeDTO> dtos = mensajes.stream().map(this::convertToDTO).collect(Collectors.toList());
+        
+        return crearPagina(dtos, hayMas, null, despuesDeId);
+    }
+    
     @Override
     @Transactional
     public MensajeDTO enviarMensaje(Long emisorId, Long receptorId, String contenido, Long propiedadId, String tipoMensaje, String urlRecurso) {
+        return enviarMensaje(emisorId, receptorId, contenido, propiedadId, tipoMensaje, urlRecurso, null);
+    }
+    
+    @Override
+    @Transactional
+    public MensajeDTO enviarMensaje(Long emisorId, Long receptorId, String contenido, Long propiedadId, String tipoMensaje, String urlRecurso, String urlMiniatura) {
         UsuarioVO emisor = usuarioRepository.findById(emisorId)
                 .orElseThrow(() -> new RuntimeException("Emisor no encontrado"));
         
@@ -140,8 +139,10 @@ public class MensajeServiceImpl implements MensajeService {
         mensaje.setPropiedad(propiedad);
         mensaje.setTipoMensaje(tipoMensaje != null ? tipoMensaje : "texto");
         mensaje.setUrlRecurso(urlRecurso);
+        mensaje.setUrlMiniatura(urlMiniatura);
         
         MensajeVO mensajeGuardado = mensajeRepository.save(mensaje);
+        bandejaMensajesService.registrarMensaje(mensajeGuardado);
         
         // Crear notificación
         String mensajeNotificacion = "texto".equals(tipoMensaje) ? 
@@ -159,18 +160,36 @@ public class MensajeServiceImpl implements MensajeService {
         
         notificacionRepository.save(notificacion);
         
-        return convertToDTO(mensajeGuardado);
+        MensajeDTO dto = convertToDTO(mensajeGuardado);
+        // Se entrega a los usuarios conectados después del commit
+        applicationEventPublisher.publishEvent(new MensajeEnviadoEvent(dto));
+        
+        return dto;
     }
     
     @Override
     @Transactional
     public void marcarComoLeidos(Long usuarioId, Long emisorId) {
         mensajeRepository.markAsRead(usuarioId, emisorId);
+        if (bandejaMensajesService.marcarComoLeidos(usuarioId, emisorId) > 0) {
+            applicationEventPublisher.publishEvent(new MensajesLeidosEvent(usuarioId, emisorId));
+        }
     }
     
     @Override
     public Integer contarNoLeidos(Long usuarioId) {
-        return mensajeRepository.countUnreadMessages(usuarioId);
+        return bandejaMensajesService.contarNoLeidos(usuarioId);
+    }
+    
+    private int limitarTamano(int limite) {
+        return Math.max(1, Math.min(limite, LIMITE_MAXIMO_PAGINA));
+    }
+    
+    // Si la página está vacía los cursores se mantienen en los valores recibidos
+    private PaginaMensajesDTO crearPagina(List<MensajeDTO> mensajes, boolean hayMas, Long antesDeId, Long despuesDeId) {
+        Long cursorAnterior = mensajes.isEmpty() ? antesDeId : mensajes.get(0).getId();
+        Long cursorSiguiente = mensajes.isEmpty() ? despuesDeId : mensajes.get(mensajes.size() - 1).getId();
+        return new PaginaMensajesDTO(mensajes, hayMas, cursorAnterior, cursorSiguiente);
     }
     
     private MensajeDTO convertToDTO(MensajeVO mensaje) {
@@ -189,6 +208,7 @@ public class MensajeServiceImpl implements MensajeService {
         dto.setLeido(mensaje.getLeido());
         dto.setTipoMensaje(mensaje.getTipoMensaje());
         dto.setUrlRecurso(mensaje.getUrlRecurso());
+        dto.setUrlMiniatura(mensaje.getUrlMiniatura());
         
         if (mensaje.getPropiedad() != null) {
             dto.setPropiedadId(mensaje.getPropiedad().getId());
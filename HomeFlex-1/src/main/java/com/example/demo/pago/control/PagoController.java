@@ -155,6 +155,9 @@ public class PagoController {
             
             logger.info("Pago creado con ID: {}, sesión: {}", pagoCreado.getId(), session.getId());
             
+            // Las fechas quedan apartadas mientras el inquilino está en la pasarela
+            reservaService.retenerParaPago(reservaId);
+            
             if (ajax) {
                 response.setContentType(MediaType.APPLICATION_JSON_VALUE);
                 String jsonResponse = String.format(
@@ -6,6 +6,8 @@ import java.security.Principal;
 import java.time.LocalDate;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -24,6 +26,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import com.example.demo.propiedad.model.PropiedadDTO;
 import com.example.demo.propiedad.model.PropiedadVO;
 import com.example.demo.propiedad.service.PropiedadService;
+import com.example.demo.propiedad.service.PropiedadService.FotosPreparadas;
 import com.example.demo.reserva.model.ReservaDTO;
 import com.example.demo.reserva.service.ReservaService;
 import com.example.demo.rol.model.RolVO;
@@ -41,6 +44,8 @@ import jakarta.validation.Valid;
 @RequestMapping("/propiedades")
 public class PropiedadRestController {
 
+    private static final Logger logger = LoggerFactory.getLogger(PropiedadRestController.class);
+
     @Autowired private PropiedadService propiedadService;
     @Autowired private UsuarioService  usuarioService;
     @Autowired
@@ -83,36 +88,32 @@ public class PropiedadRestController {
                                        Model model) throws IOException {
 
         if (result.hasErrors()) {
-        	 model.addAttribute("showModal", true);
-        	 System.out.println("Vaya errores");
-        	 
-        	  System.out.println("⛔️ VALIDATION ERRORS:");
-        	    result.getFieldErrors().forEach(fe ->
-        	        System.out.printf("  • %s %s → %s%n",
-        	                fe.getField(), fe.getRejectedValue(), fe.getDefaultMessage()));
-
-        	    result.getGlobalErrors().forEach(ge ->
-        	        System.out.printf("  • %s → %s%n",
-        	                ge.getObjectName(), ge.getDefaultMessage()));
-        	 
-             return "index";
+            model.addAttribute("showModal", true);
+            logger.debug("Errores de validación al publicar una propiedad: {}", result.getAllErrors());
+            return "index";
         }
 
-        UsuarioVO usuario = usuarioRepository.findByUsername(principal.getName())
-                            .orElseThrow();
+        // Las fotos van a disco antes de la primera consulta: con open-in-view la
+        // conexión que abra se retiene hasta el final de la petición
+        FotosPreparadas fotos = propiedadService.prepararFotos(ficheros, fotoPrincipalIndex);
+        try {
+            UsuarioVO usuario = usuarioRepository.findByUsername(principal.getName())
+                                .orElseThrow();
 
-        if (!usuario.tieneRol("PROPIETARIO")) {
-            RolVO rolPropietario = rolRepository.findByNombre("PROPIETARIO")
-                .orElseThrow(() -> new IllegalStateException("El rol PROPIETARIO no existe"));
+            if (!usuario.tieneRol("PROPIETARIO")) {
+                RolVO rolPropietario = rolRepository.findByNombre("PROPIETARIO")
+                    .orElseThrow(() -> new IllegalStateException("El rol PROPIETARIO no existe"));
 
-            usuario.addRol(rolPropietario);       
-            usuarioRepository.save(usuario);
-        }
+                usuario.addRol(rolPropietario);
+                usuarioRepository.save(usuario);
+            }
 
-     System.out.println("Propiedad a punto de crearse");
-        PropiedadDTO dto = propiedadService.crearPropiedad(propiedad, usuario);
-        propiedadService.procesarFotos(dto.getId(), ficheros, fotoPrincipalIndex);
-        System.out.println("Propiedad a creada");
+            PropiedadDTO dto = propiedadService.crearPropiedad(propiedad, usuario);
+            propiedadService.guardarFotos(dto.getId(), fotos);
+            logger.info("Propiedad {} publicada por {}", dto.getId(), usuario.getUsername());
+        } finally {
+            propiedadService.descartarFotos(fotos);
+        }
         /* ---------- SweetAlert en index ---------- */
         redirect.addFlashAttribute("mensaje", "¡Propiedad publicada con éxito!");
         return "redirect:/index";
@@ -146,17 +147,16 @@ public class PropiedadRestController {
                 model.addAttribute("puedeValorar", puedeValorar);
             }
             
-            // Obtener propiedades similares (misma ciudad, capacidad similar)
-            List<PropiedadDTO> propiedadesSimilares = propiedadService.buscarPropiedadesCercanas(
-                propiedad.getLatitud().doubleValue(), 
-                propiedad.getLongitud().doubleValue(), 
-                10 // Radio en km
-            );
-            // Filtrar la propiedad actual de las similares
-            propiedadesSimilares.removeIf(p -> p.getId().equals(id));
-            // Limitar a máximo 4 propiedades similares
-            if (propiedadesSimilares.size() > 4) {
-                propiedadesSimilares = propiedadesSimilares.subList(0, 4);
+            // Propiedades cercanas (hasta 4 en 10 km), ordenadas por distancia
+            List<PropiedadDTO> propiedadesSimilares = List.of();
+            if (propiedad.getLatitud() != null && propiedad.getLongitud() != null) {
+                propiedadesSimilares = propiedadService.buscarPropiedadesCercanas(
+                    propiedad.getLatitud().doubleValue(), 
+                    propiedad.getLongitud().doubleValue(), 
+                    10, // Radio en km
+                    4,  // Máximo de propiedades similares
+                    id  // Sin la propiedad actual
+                );
             }
             model.addAttribute("propiedadesSimilares", propiedadesSimilares);
             
@@ -172,6 +172,8 @@ public class PropiedadRestController {
      * Búsqueda avanzada con/-sin disponibilidad y paginación.
      *
      * @param ciudad        filtro por ciudad (contiene, case-insensitive)
+     * @param texto         texto libre (título, descripción, ciudad, país); si se indica
+     *                      se usa el índice de texto en lugar de los filtros
      * @param pais          filtro por país  (contiene, case-insensitive)
      * @param capacidad     nº mínimo de huéspedes
      * @param dormitorios   nº mínimo de dormitorios
@@ -188,6 +190,7 @@ public class PropiedadRestController {
             @RequestParam(defaultValue = "0") int pagina,
             @RequestParam(defaultValue = "9") int size,
             @RequestParam(required = false) String ciudad,
+            @RequestParam(required = false) String texto,
             @RequestParam(required = false)
             @DateTimeFormat(iso = ISO.DATE) LocalDate fechaInicio,
             @RequestParam(required = false)
@@ -204,15 +207,22 @@ public class PropiedadRestController {
         }
         PageRequest pageable = PageRequest.of(pagina, size, sort);
 
-        Page<PropiedadDTO> propiedades = propiedadService.busquedaAvanzada(
-                ciudad,          // ciudad
-                null,            // pais  (aún no se filtra, se pasa null)
-                null, null, null,// capacidad, dormitorios, banos
-                null, null,      // precioMin, precioMax
-                fechaInicio,     // fechaInicio
-                fechaFin,        // fechaFin
-                pagina,          // página
-                size);           // tamaño
+        Page<PropiedadDTO> propiedades;
+        if (texto != null && !texto.isBlank()) {
+            // Texto libre: índice invertido, resultados por relevancia
+            propiedades = propiedadService.buscarPorTexto(
+                    texto, fechaInicio, fechaFin, pagina, size);
+        } else {
+            propiedades = propiedadService.busquedaAvanzada(
+                    ciudad,          // ciudad
+                    null,            // pais  (aún no se filtra, se pasa null)
+                    null, null, null,// capacidad, dormitorios, banos
+                    null, null,      // precioMin, precioMax
+                    fechaInicio,     // fechaInicio
+                    fechaFin,        // fechaFin
+                    pagina,          // página
+                    size);           // tamaño
+        }
 
         /* 3. Datos para la vista */
         model.addAttribute("propiedades", propiedades);
@@ -221,6 +231,7 @@ public class PropiedadRestController {
         model.addAttribute("pageSize", propiedades.getSize());
         model.addAttribute("ordenar", ordenar);
         model.addAttribute("ciudad", ciudad);
+        model.addAttribute("texto", texto);
         model.addAttribute("fechaInicio", fechaInicio);
         model.addAttribute("fechaFin", fechaFin);
         model.addAttribute("ciudadesPopulares",
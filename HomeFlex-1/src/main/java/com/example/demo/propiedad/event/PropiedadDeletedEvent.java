@@ -2,12 +2,19 @@ package com.example.demo.propiedad.event;
 
 public class PropiedadDeletedEvent {
     private final Long propiedadId;
+    // La propiedad puede haberse borrado ya cuando se atiende el evento
+    private final Long propietarioId;
     
-    public PropiedadDeletedEvent(Long propiedadId) {
+    public PropiedadDeletedEvent(Long propiedadId, Long propietarioId) {
         this.propiedadId = propiedadId;
+        this.propietarioId = propietarioId;
     }
     
     public Long getPropiedadId() {
         return propiedadId;
     }
+    
+    public Long getPropietarioId() {
+        return propietarioId;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.demo.propiedad.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.propiedad.event.PropiedadCreatedEvent;
+import com.example.demo.propiedad.event.PropiedadDeletedEvent;
+import com.example.demo.propiedad.event.PropiedadUpdatedEvent;
+import com.example.demo.propiedad.service.BusquedaTextoService;
+
+@Component
+public class BusquedaTextoListener {
+
+    @Autowired
+    private BusquedaTextoService busquedaTextoService;
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadCreatedEvent(PropiedadCreatedEvent event) {
+        busquedaTextoService.actualizar(event.getPropiedadId());
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadUpdatedEvent(PropiedadUpdatedEvent event) {
+        busquedaTextoService.actualizar(event.getPropiedadId());
+    }
+    
+    // La baja puede ser lógica (activo = false): actualizar() la reindexa o la elimina según exista
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadDeletedEvent(PropiedadDeletedEvent event) {
+        busquedaTextoService.actualizar(event.getPropiedadId());
+    }
+}
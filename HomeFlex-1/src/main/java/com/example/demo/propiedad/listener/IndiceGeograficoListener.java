@@ -0,0 +1,34 @@
+package com.example.demo.propiedad.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.propiedad.event.PropiedadCreatedEvent;
+import com.example.demo.propiedad.event.PropiedadDeletedEvent;
+import com.example.demo.propiedad.event.PropiedadUpdatedEvent;
+import com.example.demo.propiedad.service.IndiceGeograficoService;
+
+@Component
+public class IndiceGeograficoListener {
+
+    @Autowired
+    private IndiceGeograficoService indiceGeografico;
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadCreatedEvent(PropiedadCreatedEvent event) {
+        indiceGeografico.actualizar(event.getPropiedadId());
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadUpdatedEvent(PropiedadUpdatedEvent event) {
+        indiceGeografico.actualizar(event.getPropiedadId());
+    }
+    
+    // Tanto la baja lógica como la física sacan la propiedad del índice
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadDeletedEvent(PropiedadDeletedEvent event) {
+        indiceGeografico.actualizar(event.getPropiedadId());
+    }
+}
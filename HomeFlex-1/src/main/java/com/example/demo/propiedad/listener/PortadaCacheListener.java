@@ -0,0 +1,68 @@
+package com.example.demo.propiedad.listener;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.propiedad.event.PropiedadCreatedEvent;
+import com.example.demo.propiedad.event.PropiedadDeletedEvent;
+import com.example.demo.propiedad.event.PropiedadUpdatedEvent;
+import com.example.demo.propiedad.service.PropiedadService;
+
+/**
+ * Mantiene precalculadas las listas de la portada: se generan al arrancar y se
+ * regeneran cuando una propiedad se crea, cambia o se da de baja. Los eventos solo
+ * marcan la portada como pendiente; la regenera una tarea periódica, de modo que la
+ * petición que hizo el cambio no espera a las consultas y una ráfaga de cambios se
+ * resuelve con un solo refresco. La caducidad de la caché cubre los cambios que no
+ * publican eventos (fotos).
+ */
+@Component
+public class PortadaCacheListener {
+
+    @Autowired
+    private PropiedadService propiedadService;
+    
+    // Alguna propiedad cambió desde el último refresco
+    private final AtomicBoolean pendiente = new AtomicBoolean();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void precalentar() {
+        propiedadService.refrescarPortada();
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadCreatedEvent(PropiedadCreatedEvent event) {
+        pendiente.set(true);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadUpdatedEvent(PropiedadUpdatedEvent event) {
+        pendiente.set(true);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadDeletedEvent(PropiedadDeletedEvent event) {
+        pendiente.set(true);
+    }
+    
+    @Scheduled(fixedDelayString = "${homeflex.cache.portada.refresco-ms:5000}")
+    public void refrescarSiHayCambios() {
+        if (!pendiente.getAndSet(false)) {
+            return;
+        }
+        try {
+            propiedadService.refrescarPortada();
+        } catch (RuntimeException e) {
+            // Se reintenta en la siguiente ejecución
+            pendiente.set(true);
+            throw e;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.example.demo.propiedad.model;
 
 import java.math.BigDecimal;
 
+import com.example.demo.foto.model.FotoVO;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -21,6 +23,9 @@ public class PropiedadDTO {
     private Integer dormitorios;
     private Integer banos;
     private String fotoPrincipal;
+    // Versiones reducidas de la foto principal (null mientras no se han generado)
+    private String fotoPrincipalSrcset;
+    private String fotoPrincipalPlaceholder;
     
     public PropiedadDTO(PropiedadVO propiedad) {
         this.id = propiedad.getId();
@@ -35,5 +40,12 @@ public class PropiedadDTO {
         
         // Llamada al método getFotoPrincipal optimizado
         this.fotoPrincipal = propiedad.getFotoPrincipal();
+        propiedad.getFotos().stream()
+                .filter(FotoVO::isPrincipal)
+                .findFirst()
+                .ifPresent(foto -> {
+                    this.fotoPrincipalSrcset = foto.getSrcset();
+                    this.fotoPrincipalPlaceholder = foto.getPlaceholder();
+                });
     }
 }
\ No newline at end of file
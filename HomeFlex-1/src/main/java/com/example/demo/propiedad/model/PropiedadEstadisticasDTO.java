@@ -1,5 +1,6 @@
 package com.example.demo.propiedad.model;
 
+import java.math.BigDecimal;
 import java.util.Map;
 
 import lombok.AllArgsConstructor;
@@ -25,5 +26,11 @@ public class PropiedadEstadisticasDTO {
     // Estadísticas temporales
     private Map<String, Integer> publicacionesPorMes;
     
+    // Reservas no canceladas e ingresos de las pagadas, por mes de entrada
+    private int totalReservas;
+    private BigDecimal ingresosTotales;
+    private Map<String, Integer> reservasPorMes;
+    private Map<String, BigDecimal> ingresosPorMes;
+    
  
 }
\ No newline at end of file
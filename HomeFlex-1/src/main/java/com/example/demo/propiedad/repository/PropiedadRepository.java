@@ -2,6 +2,7 @@ package com.example.demo.propiedad.repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
@@ -11,11 +12,57 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.demo.propiedad.model.PropiedadDTO;
 import com.example.demo.propiedad.model.PropiedadVO;
 import com.example.demo.usuario.model.UsuarioVO;
 
 @Repository
 public interface PropiedadRepository extends JpaRepository<PropiedadVO, Long> {
+    
+    /**
+     * Proyección de los listados: exactamente las columnas de PropiedadDTO, con la foto
+     * principal unida en la misma consulta. No se cargan entidades, así que tampoco el
+     * propietario (EAGER) con sus roles ni la colección de fotos de cada propiedad.
+     */
+    String TARJETA = "SELECT new com.example.demo.propiedad.model.PropiedadDTO("
+            + "p.id, p.titulo, p.descripcion, p.precioDia, p.ciudad, p.pais, "
+            + "p.capacidad, p.dormitorios, p.banos, "
+            + "COALESCE(f.url, '/images/property-placeholder.jpg'), f.srcset, f.placeholder) "
+            + "FROM PropiedadVO p LEFT JOIN p.fotos f ON f.id = "
+            // Una sola fila por propiedad aunque haya quedado más de una principal
+            + "(SELECT MIN(f2.id) FROM FotoVO f2 WHERE f2.propiedad = p AND f2.principal = true) ";
+    
+    // Filtros comunes de la búsqueda avanzada
+    String FILTROS_BUSQUEDA = """
+            ( LOWER(p.ciudad) LIKE LOWER(CONCAT('%', :ciudad, '%'))
+                     OR :ciudad IS NULL )
+              AND  ( LOWER(p.pais)   LIKE LOWER(CONCAT('%', :pais, '%'))
+                     OR :pais IS NULL )
+              AND  ( p.capacidad   >= :capacidad   OR :capacidad   IS NULL )
+              AND  ( p.dormitorios >= :dormitorios OR :dormitorios IS NULL )
+              AND  ( p.banos       >= :banos       OR :banos       IS NULL )
+              AND  ( p.precioDia   >= :precioMin   OR :precioMin   IS NULL )
+              AND  ( p.precioDia   <= :precioMax   OR :precioMax   IS NULL )
+              AND  p.activo = true
+            """;
+    
+    String COINCIDE_TEXTO = """
+            ( LOWER(p.titulo)      LIKE LOWER(CONCAT('%', :texto, '%'))
+                  OR LOWER(p.descripcion) LIKE LOWER(CONCAT('%', :texto, '%'))
+                  OR LOWER(p.ciudad)      LIKE LOWER(CONCAT('%', :texto, '%'))
+                  OR LOWER(p.pais)        LIKE LOWER(CONCAT('%', :texto, '%')) )
+              AND  p.activo = true
+            """;
+    
+    String SIN_RESERVA_EN_RANGO = """
+              AND  NOT EXISTS (
+                     SELECT r
+                     FROM   com.example.demo.reserva.model.ReservaVO r
+                     WHERE  r.propiedad = p
+                       AND  r.estado <> 'CANCELADA'
+                       AND  r.fechaInicio <= :fechaFin
+                       AND  r.fechaFin    >= :fechaInicio )
+            """;
      
 	/**
 	 * Encuentra todas las propiedades de un propietario por su ID
@@ -60,6 +107,19 @@ public interface PropiedadRepository extends JpaRepository<PropiedadVO, Long> {
     
     Page<PropiedadVO> findByActivoTrue(Pageable pageable);
     
+    // Tarjetas de las propiedades activas (listado paginado)
+    @Query(value = TARJETA + "WHERE p.activo = true",
+           countQuery = "SELECT COUNT(p) FROM PropiedadVO p WHERE p.activo = true")
+    Page<PropiedadDTO> findTarjetasActivas(Pageable pageable);
+    
+    // Las primeras tarjetas activas para la portada, sin consulta de total
+    @Query(TARJETA + "WHERE p.activo = true")
+    List<PropiedadDTO> findTarjetasActivasSinTotal(Pageable pageable);
+    
+    // Tarjetas de un conjunto de propiedades (sin orden: lo pone quien llama)
+    @Query(TARJETA + "WHERE p.id IN :ids")
+    List<PropiedadDTO> findTarjetasPorIds(@Param("ids") Collection<Long> ids);
+    
     Page<PropiedadVO> findByPropietarioIdAndTituloContainingIgnoreCaseAndActivo(
             Long propietarioId,
             String tituloFiltro,
@@ -112,6 +172,29 @@ public interface PropiedadRepository extends JpaRepository<PropiedadVO, Long> {
            "(p.activo = true)")
     Page<PropiedadVO> buscarPorTexto(@Param("texto") String texto, Pageable pageable);
     
+    // Texto libre y disponibilidad resueltos en la base de datos (respaldo de los índices en memoria)
+    @Query(value = TARJETA + "WHERE " + COINCIDE_TEXTO + SIN_RESERVA_EN_RANGO,
+           countQuery = "SELECT COUNT(p) FROM PropiedadVO p WHERE " + COINCIDE_TEXTO + SIN_RESERVA_EN_RANGO)
+    Page<PropiedadDTO> buscarPorTextoConDisponibilidad(
+            @Param("texto")       String texto,
+            @Param("fechaInicio") LocalDate fechaInicio,
+            @Param("fechaFin")    LocalDate fechaFin,
+            Pageable pageable);
+    
+    // Columnas que necesita el índice de búsqueda por texto (sin cargar entidades)
+    @Query("SELECT p.id, p.propietario.id, p.titulo, p.descripcion, p.ciudad, p.pais, p.activo " +
+           "FROM PropiedadVO p")
+    List<Object[]> findDatosIndexables();
+    
+    // IDs de las propiedades activas (reindexado de embeddings por lotes)
+    @Query("SELECT p.id FROM PropiedadVO p WHERE p.activo = true ORDER BY p.id")
+    List<Long> findIdsActivos();
+    
+    // Coordenadas de las propiedades activas para el índice geográfico
+    @Query("SELECT p.id, p.latitud, p.longitud FROM PropiedadVO p " +
+           "WHERE p.activo = true AND p.latitud IS NOT NULL AND p.longitud IS NOT NULL")
+    List<Object[]> findCoordenadasActivas();
+    
     // Buscar propiedades cercanas a un punto (aproximación simple por rangos)
     @Query("SELECT p FROM PropiedadVO p WHERE " +
            "p.latitud BETWEEN :latMin AND :latMax AND " +
@@ -222,21 +305,9 @@ public interface PropiedadRepository extends JpaRepository<PropiedadVO, Long> {
             @Param("precioMax") Double precioMax,
             Pageable pageable);
 
-    @Query("""
-            SELECT p
-            FROM   PropiedadVO p
-            WHERE  ( LOWER(p.ciudad) LIKE LOWER(CONCAT('%', :ciudad, '%'))
-                     OR :ciudad IS NULL )
-              AND  ( LOWER(p.pais)   LIKE LOWER(CONCAT('%', :pais, '%'))
-                     OR :pais IS NULL )
-              AND  ( p.capacidad   >= :capacidad   OR :capacidad   IS NULL )
-              AND  ( p.dormitorios >= :dormitorios OR :dormitorios IS NULL )
-              AND  ( p.banos       >= :banos       OR :banos       IS NULL )
-              AND  ( p.precioDia   >= :precioMin   OR :precioMin   IS NULL )
-              AND  ( p.precioDia   <= :precioMax   OR :precioMax   IS NULL )
-              AND  p.activo = true
-            """)
-        Page<PropiedadVO> buscarSinDisponibilidad(
+    @Query(value = TARJETA + "WHERE " + FILTROS_BUSQUEDA,
+           countQuery = "SELECT COUNT(p) FROM PropiedadVO p WHERE " + FILTROS_BUSQUEDA)
+        Page<PropiedadDTO> buscarSinDisponibilidad(
                 @Param("ciudad")      String ciudad,
                 @Param("pais")        String pais,
                 @Param("capacidad")   Integer capacidad,
@@ -246,28 +317,9 @@ public interface PropiedadRepository extends JpaRepository<PropiedadVO, Long> {
                 @Param("precioMax")   BigDecimal precioMax,
                 Pageable pageable);
 
-        @Query("""
-            SELECT p
-            FROM   PropiedadVO p
-            WHERE  ( LOWER(p.ciudad) LIKE LOWER(CONCAT('%', :ciudad, '%'))
-                     OR :ciudad IS NULL )
-              AND  ( LOWER(p.pais)   LIKE LOWER(CONCAT('%', :pais, '%'))
-                     OR :pais IS NULL )
-              AND  ( p.capacidad   >= :capacidad   OR :capacidad   IS NULL )
-              AND  ( p.dormitorios >= :dormitorios OR :dormitorios IS NULL )
-              AND  ( p.banos       >= :banos       OR :banos       IS NULL )
-              AND  ( p.precioDia   >= :precioMin   OR :precioMin   IS NULL )
-              AND  ( p.precioDia   <= :precioMax   OR :precioMax   IS NULL )
-              AND  p.activo = true
-              AND  NOT EXISTS (
-                     SELECT r
-                     FROM   com.example.demo.reserva.model.ReservaVO r
-                     WHERE  r.propiedad = p
-                       AND  r.estado <> 'cancelada'
-                       AND  r.fechaInicio <= :fechaFin
-                       AND  r.fechaFin    >= :fechaInicio )
-            """)
-        Page<PropiedadVO> buscarConDisponibilidad(
+        @Query(value = TARJETA + "WHERE " + FILTROS_BUSQUEDA + SIN_RESERVA_EN_RANGO,
+               countQuery = "SELECT COUNT(p) FROM PropiedadVO p WHERE " + FILTROS_BUSQUEDA + SIN_RESERVA_EN_RANGO)
+        Page<PropiedadDTO> buscarConDisponibilidad(
                 @Param("ciudad")      String ciudad,
                 @Param("pais")        String pais,
                 @Param("capacidad")   Integer capacidad,
@@ -279,4 +331,22 @@ public interface PropiedadRepository extends JpaRepository<PropiedadVO, Long> {
                 @Param("fechaFin")    LocalDate fechaFin,
                 Pageable pageable);
 
+        /**
+         * Búsqueda con disponibilidad resuelta por el índice en memoria:
+         * se excluyen las propiedades que el índice marca como ocupadas en el rango.
+         */
+        @Query(value = TARJETA + "WHERE " + FILTROS_BUSQUEDA + " AND p.id NOT IN :excluidas",
+               countQuery = "SELECT COUNT(p) FROM PropiedadVO p WHERE " + FILTROS_BUSQUEDA
+                          + " AND p.id NOT IN :excluidas")
+        Page<PropiedadDTO> buscarExcluyendo(
+                @Param("ciudad")      String ciudad,
+                @Param("pais")        String pais,
+                @Param("capacidad")   Integer capacidad,
+                @Param("dormitorios") Integer dormitorios,
+                @Param("banos")       Integer banos,
+                @Param("precioMin")   BigDecimal precioMin,
+                @Param("precioMax")   BigDecimal precioMax,
+                @Param("excluidas")   Collection<Long> excluidas,
+                Pageable pageable);
+
 }
\ No newline at end of file
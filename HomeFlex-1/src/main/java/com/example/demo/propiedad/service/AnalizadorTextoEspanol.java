@@ -0,0 +1,78 @@
+package com.example.demo.propiedad.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalización de texto en español para el índice de búsqueda:
+ * minúsculas, eliminación de tildes y diéresis, palabras vacías
+ * y un stemmer ligero que unifica singulares, plurales y género.
+ */
+public final class AnalizadorTextoEspanol {
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "ante", "con", "de", "del", "desde", "e", "el", "en", "entre",
+            "es", "esta", "este", "hacia", "hasta", "la", "las", "lo", "los", "mas",
+            "muy", "o", "para", "pero", "por", "que", "se", "sin", "sobre", "su",
+            "sus", "u", "un", "una", "unas", "unos", "y");
+
+    private AnalizadorTextoEspanol() {
+    }
+
+    /**
+     * Convierte un texto en la lista de términos indexables (con repeticiones)
+     */
+    public static List<String> analizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        if (texto == null || texto.isBlank()) {
+            return terminos;
+        }
+        for (String token : normalizar(texto).split("[^a-z0-9]+")) {
+            if (token.isEmpty() || PALABRAS_VACIAS.contains(token)) {
+                continue;
+            }
+            terminos.add(stem(token));
+        }
+        return terminos;
+    }
+
+    /**
+     * Minúsculas y sin marcas diacríticas ("Málaga" → "malaga", "España" → "espana")
+     */
+    static String normalizar(String texto) {
+        String descompuesto = Normalizer.normalize(texto.toLowerCase(new Locale("es", "ES")), Normalizer.Form.NFD);
+        return descompuesto.replaceAll("\\p{M}+", "");
+    }
+
+    /**
+     * Stemmer ligero para español: quita primero la terminación de plural y después la
+     * vocal final, de modo que singular y plural dan la misma raíz ("casa", "casas" → "cas";
+     * "piso", "pisos" → "pis"; "luz", "luces" → "luz"; "hotel", "hoteles" → "hotel").
+     * Ningún paso deja una raíz de menos de tres letras.
+     */
+    static String stem(String token) {
+        String raiz = token;
+        int len = raiz.length();
+
+        if (len > 4 && raiz.endsWith("ces") && esVocal(raiz.charAt(len - 4))) {
+            raiz = raiz.substring(0, len - 3) + "z";
+        } else if (len > 4 && raiz.endsWith("es") && !esVocal(raiz.charAt(len - 3))) {
+            raiz = raiz.substring(0, len - 2);
+        } else if (len > 3 && raiz.endsWith("s") && "aeo".indexOf(raiz.charAt(len - 2)) >= 0) {
+            raiz = raiz.substring(0, len - 1);
+        }
+
+        len = raiz.length();
+        if (len > 3 && "aeo".indexOf(raiz.charAt(len - 1)) >= 0) {
+            raiz = raiz.substring(0, len - 1);
+        }
+        return raiz;
+    }
+
+    private static boolean esVocal(char c) {
+        return "aeiou".indexOf(c) >= 0;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.demo.propiedad.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.propiedad.model.PropiedadVO;
+import com.example.demo.propiedad.repository.PropiedadRepository;
+
+/**
+ * Índice invertido en memoria para la búsqueda de propiedades por texto libre.
+ * Indexa título, descripción, ciudad y país con pesos distintos por campo y
+ * devuelve resultados ordenados por relevancia (tf-idf). Todos los términos de la
+ * consulta deben aparecer; el último se trata además como prefijo para poder
+ * buscar mientras se escribe.
+ */
+@Service
+public class BusquedaTextoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusquedaTextoService.class);
+
+    private static final float PESO_TITULO = 3.0f;
+    private static final float PESO_CIUDAD = 2.0f;
+    private static final float PESO_PAIS = 2.0f;
+    private static final float PESO_DESCRIPCION = 1.0f;
+
+    // Número máximo de términos en los que se expande el prefijo de la última palabra
+    private static final int MAX_EXPANSIONES_PREFIJO = 50;
+
+    @Autowired
+    private PropiedadRepository propiedadRepository;
+
+    /** Datos de cada propiedad indexada necesarios para filtrar y desindexar */
+    public record Documento(Long propiedadId, Long propietarioId, boolean activo, Set<String> terminos) {
+    }
+
+    // término → (propiedadId → frecuencia ponderada)
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final Map<Long, Documento> documentos = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean cargado;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reindexarTodo() {
+        lock.writeLock().lock();
+        try {
+            // La lectura se hace con el bloqueo tomado para no pisar actualizaciones concurrentes
+            List<Object[]> filas = propiedadRepository.findDatosIndexables();
+            postings.clear();
+            documentos.clear();
+            for (Object[] fila : filas) {
+                indexarSinBloqueo((Long) fila[0], (Long) fila[1], (String) fila[2], (String) fila[3],
+                                  (String) fila[4], (String) fila[5], Boolean.TRUE.equals(fila[6]));
+            }
+            cargado = true;
+            logger.info("Índice de texto cargado: {} propiedades, {} términos", documentos.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indica si el índice está cargado y puede atender búsquedas
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Indexa (o reindexa) una propiedad desde la base de datos; si ya no existe, la elimina del índice
+     */
+    public void actualizar(Long propiedadId) {
+        PropiedadVO propiedad = propiedadRepository.findById(propiedadId).orElse(null);
+
+        lock.writeLock().lock();
+        try {
+            if (propiedad == null) {
+                eliminarSinBloqueo(propiedadId);
+            } else {
+                indexarSinBloqueo(propiedad.getId(), propiedad.getPropietario().getId(),
+                                  propiedad.getTitulo(), propiedad.getDescripcion(),
+                                  propiedad.getCiudad(), propiedad.getPais(),
+                                  Boolean.TRUE.equals(propiedad.getActivo()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca propiedades que contengan todos los términos del texto y cumplan el filtro.
+     * @param texto    texto libre introducido por el usuario
+     * @param filtro   condición adicional sobre el documento (activo, propietario…)
+     * @param pageable página solicitada; la ordenación se ignora porque se ordena por relevancia
+     * @return página de IDs de propiedad ordenados por relevancia descendente
+     */
+    public Page<Long> buscar(String texto, Predicate<Documento> filtro, Pageable pageable) {
+        List<String> terminos = AnalizadorTextoEspanol.analizar(texto);
+        if (terminos.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> puntuaciones = null;
+            int total = documentos.size();
+
+            for (int i = 0; i < terminos.size(); i++) {
+                boolean ultimo = i == terminos.size() - 1;
+                Map<Long, Float> coincidencias = puntuarTermino(terminos.get(i), ultimo, total);
+
+                if (puntuaciones == null) {
+                    puntuaciones = coincidencias;
+                } else {
+                    // Intersección: solo siguen las propiedades que contienen todos los términos
+                    Map<Long, Float> interseccion = new HashMap<>();
+                    for (Map.Entry<Long, Float> e : puntuaciones.entrySet()) {
+                        Float extra = coincidencias.get(e.getKey());
+                        if (extra != null) {
+                            interseccion.put(e.getKey(), e.getValue() + extra);
+                        }
+                    }
+                    puntuaciones = interseccion;
+                }
+                if (puntuaciones.isEmpty()) {
+                    break;
+                }
+            }
+
+            List<Map.Entry<Long, Float>> ordenados = new ArrayList<>();
+            for (Map.Entry<Long, Float> e : puntuaciones.entrySet()) {
+                Documento doc = documentos.get(e.getKey());
+                if (doc != null && filtro.test(doc)) {
+                    ordenados.add(e);
+                }
+            }
+            // Más relevante primero; a igual relevancia, la propiedad más reciente
+            ordenados.sort(Map.Entry.<Long, Float>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.<Long, Float>comparingByKey(Comparator.reverseOrder())));
+
+            int desde = (int) Math.min(pageable.getOffset(), ordenados.size());
+            int hasta = Math.min(desde + pageable.getPageSize(), ordenados.size());
+            List<Long> ids = ordenados.subList(desde, hasta).stream()
+                    .map(Map.Entry::getKey)
+                    .toList();
+
+            return new PageImpl<>(ids, pageable, ordenados.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Puntuación tf-idf de un término; si es el último de la consulta también
+     * se suman los términos del índice que empiezan por él.
+     */
+    private Map<Long, Float> puntuarTermino(String termino, boolean comoPrefijo, int totalDocumentos) {
+        Map<Long, Float> resultado = new HashMap<>();
+
+        Map<String, Map<Long, Float>> candidatos;
+        if (comoPrefijo) {
+            candidatos = postings.subMap(termino, true, termino + Character.MAX_VALUE, true);
+        } else {
+            Map<Long, Float> exacto = postings.get(termino);
+            candidatos = exacto != null ? Map.of(termino, exacto) : Map.of();
+        }
+
+        int expansiones = 0;
+        for (Map.Entry<String, Map<Long, Float>> entrada : candidatos.entrySet()) {
+            if (expansiones++ >= MAX_EXPANSIONES_PREFIJO) {
+                break;
+            }
+            Map<Long, Float> lista = entrada.getValue();
+            float idf = (float) Math.log(1.0 + (double) totalDocumentos / lista.size());
+            // Las coincidencias por prefijo puntúan algo menos que las exactas
+            float factor = entrada.getKey().equals(termino) ? 1.0f : 0.5f;
+            for (Map.Entry<Long, Float> p : lista.entrySet()) {
+                resultado.merge(p.getKey(), p.getValue() * idf * factor, Float::sum);
+            }
+        }
+        return resultado;
+    }
+
+    private void indexarSinBloqueo(Long propiedadId, Long propietarioId, String titulo, String descripcion,
+                                   String ciudad, String pais, boolean activo) {
+        eliminarSinBloqueo(propiedadId);
+
+        Map<String, Float> frecuencias = new HashMap<>();
+        acumular(frecuencias, titulo, PESO_TITULO);
+        acumular(frecuencias, ciudad, PESO_CIUDAD);
+        acumular(frecuencias, pais, PESO_PAIS);
+        acumular(frecuencias, descripcion, PESO_DESCRIPCION);
+
+        frecuencias.forEach((termino, peso) ->
+                postings.computeIfAbsent(termino, t -> new HashMap<>()).put(propiedadId, peso));
+        documentos.put(propiedadId,
+                new Documento(propiedadId, propietarioId, activo, new HashSet<>(frecuencias.keySet())));
+    }
+
+    private void eliminarSinBloqueo(Long propiedadId) {
+        Documento anterior = documentos.remove(propiedadId);
+        if (anterior == null) {
+            return;
+        }
+        for (String termino : anterior.terminos()) {
+            Map<Long, Float> lista = postings.get(termino);
+            if (lista != null) {
+                lista.remove(propiedadId);
+                if (lista.isEmpty()) {
+                    postings.remove(termino);
+                }
+            }
+        }
+    }
+
+    private static void acumular(Map<String, Float> frecuencias, String texto, float peso) {
+        for (String termino : AnalizadorTextoEspanol.analizar(texto)) {
+            frecuencias.merge(termino, peso, Float::sum);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.demo.propiedad.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.propiedad.model.PropiedadVO;
+import com.example.demo.propiedad.repository.PropiedadRepository;
+
+/**
+ * Índice espacial en memoria de las propiedades activas con coordenadas.
+ * Reparte los puntos en una rejilla de celdas de tamaño fijo en grados y resuelve
+ * consultas de los k vecinos más cercanos expandiendo anillos de celdas alrededor
+ * del punto buscado hasta que ninguna celda sin visitar puede mejorar el resultado.
+ * Las distancias son de círculo máximo (haversine).
+ */
+@Service
+public class IndiceGeograficoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceGeograficoService.class);
+
+    private static final double RADIO_TIERRA_KM = 6371.0088;
+
+    @Autowired
+    private PropiedadRepository propiedadRepository;
+
+    // Con 0.25° una celda mide unos 28 km de alto
+    @Value("${homeflex.geo.tamano-celda-grados:0.25}")
+    private double tamanoCelda;
+
+    /** Propiedad encontrada y su distancia al punto de búsqueda */
+    public record Vecino(Long propiedadId, double distanciaKm) {
+    }
+
+    private record Punto(Long propiedadId, double latitud, double longitud, long celda) {
+    }
+
+    private final Map<Long, List<Punto>> celdas = new HashMap<>();
+    private final Map<Long, Punto> puntos = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean cargado;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reindexarTodo() {
+        lock.writeLock().lock();
+        try {
+            List<Object[]> filas = propiedadRepository.findCoordenadasActivas();
+            celdas.clear();
+            puntos.clear();
+            for (Object[] fila : filas) {
+                insertarSinBloqueo((Long) fila[0], ((BigDecimal) fila[1]).doubleValue(),
+                                   ((BigDecimal) fila[2]).doubleValue());
+            }
+            cargado = true;
+            logger.info("Índice geográfico cargado: {} propiedades en {} celdas", puntos.size(), celdas.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indica si el índice está cargado y puede atender búsquedas
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Actualiza la posición de una propiedad desde la base de datos; si ya no existe,
+     * está inactiva o no tiene coordenadas, la elimina del índice
+     */
+    public void actualizar(Long propiedadId) {
+        PropiedadVO propiedad = propiedadRepository.findById(propiedadId).orElse(null);
+
+        lock.writeLock().lock();
+        try {
+            eliminarSinBloqueo(propiedadId);
+            if (propiedad != null && Boolean.TRUE.equals(propiedad.getActivo())
+                    && propiedad.getLatitud() != null && propiedad.getLongitud() != null) {
+                insertarSinBloqueo(propiedadId, propiedad.getLatitud().doubleValue(),
+                                   propiedad.getLongitud().doubleValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve las k propiedades más cercanas al punto, ordenadas por distancia.
+     * @param latitud   latitud del punto de búsqueda
+     * @param longitud  longitud del punto de búsqueda
+     * @param k         número máximo de resultados
+     * @param radioKm   distancia máxima en km (null para no limitar)
+     * @param excluir   ID de propiedad que no debe aparecer en el resultado (puede ser null)
+     */
+    public List<Vecino> buscarCercanas(double latitud, double longitud, int k, Double radioKm, Long excluir) {
+        if (k <= 0) {
+            return List.of();
+        }
+        double radio = radioKm != null ? radioKm : Double.POSITIVE_INFINITY;
+
+        lock.readLock().lock();
+        try {
+            // Montículo de máximos: la cabeza es el peor de los k mejores encontrados
+            PriorityQueue<Vecino> mejores = new PriorityQueue<>(
+                    Comparator.comparingDouble(Vecino::distanciaKm).reversed());
+
+            int filas = numeroFilas();
+            int columnas = numeroColumnas();
+            int fila0 = fila(latitud);
+            int columna0 = columna(longitud);
+            Set<Long> visitadas = new HashSet<>();
+
+            for (int anillo = 0; ; anillo++) {
+                // Si el anillo tiene más celdas que ocupadas hay en el índice, sale más barato recorrerlas todas
+                if (8L * anillo > celdas.size()) {
+                    for (Map.Entry<Long, List<Punto>> celda : celdas.entrySet()) {
+                        if (!visitadas.contains(celda.getKey())) {
+                            considerar(celda.getValue(), latitud, longitud, k, radio, excluir, mejores);
+                        }
+                    }
+                    break;
+                }
+
+                for (long clave : celdasDelAnillo(fila0, columna0, anillo, filas, columnas)) {
+                    if (visitadas.add(clave)) {
+                        List<Punto> enCelda = celdas.get(clave);
+                        if (enCelda != null) {
+                            considerar(enCelda, latitud, longitud, k, radio, excluir, mejores);
+                        }
+                    }
+                }
+
+                // Distancia mínima a cualquier punto fuera del bloque ya recorrido
+                double cota = cotaFueraDelBloque(latitud, longitud, fila0, columna0, anillo, columnas);
+                if (cota > radio || (mejores.size() == k && cota >= mejores.peek().distanciaKm())) {
+                    break;
+                }
+                if (2 * anillo + 1 >= filas && 2 * anillo + 1 >= columnas) {
+                    break;
+                }
+            }
+
+            List<Vecino> resultado = new ArrayList<>(mejores);
+            resultado.sort(Comparator.comparingDouble(Vecino::distanciaKm)
+                    .thenComparing(Vecino::propiedadId));
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Distancia de círculo máximo en km entre dos puntos
+     */
+    public static double distanciaKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                 + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                   * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * RADIO_TIERRA_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private void considerar(List<Punto> candidatos, double latitud, double longitud, int k, double radio,
+                            Long excluir, PriorityQueue<Vecino> mejores) {
+        for (Punto p : candidatos) {
+            if (p.propiedadId().equals(excluir)) {
+                continue;
+            }
+            double d = distanciaKm(latitud, longitud, p.latitud(), p.longitud());
+            if (d > radio) {
+                continue;
+            }
+            if (mejores.size() < k) {
+                mejores.add(new Vecino(p.propiedadId(), d));
+            } else if (d < mejores.peek().distanciaKm()) {
+                mejores.poll();
+                mejores.add(new Vecino(p.propiedadId(), d));
+            }
+        }
+    }
+
+    /**
+     * Claves de las celdas situadas exactamente a 'anillo' celdas de distancia (en Chebyshev)
+     * de la celda central. Las columnas dan la vuelta en el antimeridiano; las filas no.
+     */
+    private List<Long> celdasDelAnillo(int fila0, int columna0, int anillo, int filas, int columnas) {
+        List<Long> claves = new ArrayList<>();
+        for (int df = -anillo; df <= anillo; df++) {
+            int f = fila0 + df;
+            if (f < 0 || f >= filas) {
+                continue;
+            }
+            boolean borde = df == -anillo || df == anillo;
+            for (int dc = -anillo; dc <= anillo; dc += borde ? 1 : 2 * anillo) {
+                int c = Math.floorMod(columna0 + dc, columnas);
+                claves.add(clave(f, c, columnas));
+                if (anillo == 0) {
+                    break;
+                }
+            }
+        }
+        return claves;
+    }
+
+    /**
+     * Cota inferior de la distancia entre el punto y cualquier punto fuera del bloque
+     * de (2·anillo+1)² celdas centrado en su celda
+     */
+    private double cotaFueraDelBloque(double latitud, double longitud, int fila0, int columna0,
+                                      int anillo, int columnas) {
+        double latMin = (fila0 - anillo) * tamanoCelda - 90.0;
+        double latMax = (fila0 + anillo + 1) * tamanoCelda - 90.0;
+        double margenLat = Math.min(latitud - latMin, latMax - latitud);
+        double cotaLat = Math.toRadians(margenLat) * RADIO_TIERRA_KM;
+
+        if (2 * anillo + 1 >= columnas) {
+            return cotaLat;
+        }
+        double lonMin = (columna0 - anillo) * tamanoCelda - 180.0;
+        double lonMax = (columna0 + anillo + 1) * tamanoCelda - 180.0;
+        double margenLon = Math.min(longitud - lonMin, lonMax - longitud);
+
+        // Un punto más cerca que cotaLat en latitud está como mucho a esta latitud absoluta;
+        // a igual diferencia de longitud, la distancia mínima se da en la latitud más alta
+        double latExtrema = Math.min(90.0, Math.abs(latitud) + margenLat);
+        double seno = Math.cos(Math.toRadians(latExtrema)) * Math.sin(Math.toRadians(margenLon) / 2);
+        double cotaLon = 2 * RADIO_TIERRA_KM * Math.asin(Math.min(1.0, seno));
+
+        return Math.min(cotaLat, cotaLon);
+    }
+
+    private void insertarSinBloqueo(Long propiedadId, double latitud, double longitud) {
+        Punto punto = new Punto(propiedadId, latitud, longitud,
+                                clave(fila(latitud), columna(longitud), numeroColumnas()));
+        puntos.put(propiedadId, punto);
+        celdas.computeIfAbsent(punto.celda(), c -> new ArrayList<>()).add(punto);
+    }
+
+    private void eliminarSinBloqueo(Long propiedadId) {
+        Punto anterior = puntos.remove(propiedadId);
+        if (anterior == null) {
+            return;
+        }
+        List<Punto> enCelda = celdas.get(anterior.celda());
+        if (enCelda != null) {
+            enCelda.removeIf(p -> p.propiedadId().equals(propiedadId));
+            if (enCelda.isEmpty()) {
+                celdas.remove(anterior.celda());
+            }
+        }
+    }
+
+    private int numeroFilas() {
+        return (int) Math.ceil(180.0 / tamanoCelda);
+    }
+
+    private int numeroColumnas() {
+        return (int) Math.ceil(360.0 / tamanoCelda);
+    }
+
+    private int fila(double latitud) {
+        return Math.min(numeroFilas() - 1, Math.max(0, (int) Math.floor((latitud + 90.0) / tamanoCelda)));
+    }
+
+    private int columna(double longitud) {
+        return Math.floorMod((int) Math.floor((longitud + 180.0) / tamanoCelda), numeroColumnas());
+    }
+
+    private static long clave(int fila, int columna, int columnas) {
+        return (long) fila * columnas + columna;
+    }
+}
@@ -1,19 +1,18 @@
 package com.example.demo.propiedad.service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.Month;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,19 +25,28 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.demo.estadistica.service.EstadisticasPropietarioService;
+import com.example.demo.foto.event.FotosSubidasEvent;
 import com.example.demo.foto.model.FotoVO;
 import com.example.demo.foto.repository.FotoRepository;
+import com.example.demo.foto.service.FotoVariantesService;
+import com.example.demo.media.service.MediaStoreService;
+import com.example.demo.media.service.MediaStoreService.ArchivoPreparado;
 import com.example.demo.propiedad.model.PropiedadDTO;
 import com.example.demo.propiedad.model.PropiedadEstadisticasDTO;
 import com.example.demo.propiedad.model.PropiedadVO;
 import com.example.demo.propiedad.repository.PropiedadRepository;
-import com.example.demo.rol.model.RolVO;
-import com.example.demo.rol.repository.RolRepository;
+import com.example.demo.reserva.service.DisponibilidadIndexService;
+import com.example.demo.reserva.service.RetencionFechasService;
 import com.example.demo.propiedad.event.*;
 import com.example.demo.usuario.model.UsuarioVO;
 import com.example.demo.usuario.repository.UsuarioRepository;
+import com.example.demo.utils.CacheLocal;
+
+import jakarta.annotation.PostConstruct;
 
 @Service
 public class PropiedadService {
@@ -52,13 +60,55 @@ public class PropiedadService {
     @Autowired
     private FotoRepository fotoRepository;
     
+    @Autowired
+    private FotoVariantesService fotoVariantesService;
+    
+    @Autowired
+    private MediaStoreService mediaStoreService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
     @Autowired
     private UsuarioRepository usuarioRepository;
     
-    @Autowired private RolRepository rolRepository;
+    @Autowired
+    private DisponibilidadIndexService disponibilidadIndex;
+    
+    @Autowired
+    private RetencionFechasService retencionFechas;
+    
+    @Autowired
+    private EstadisticasPropietarioService estadisticasPropietarioService;
+    
+    @Autowired
+    private BusquedaTextoService busquedaTextoService;
+    
+    @Autowired
+    private IndiceGeograficoService indiceGeografico;
+    
+    // Número de propiedades destacadas y de ciudades populares que muestra la portada
+    private static final int ELEMENTOS_PORTADA = 6;
     
-    @Value("${homeflex.upload-dir}")
-    private String uploadDir;
+    @Value("${homeflex.cache.portada.ttl-segundos:300}")
+    private long ttlPortadaSegundos;
+    
+    @Value("${homeflex.cache.portada.max-entradas:16}")
+    private int maxEntradasPortada;
+    
+    private CacheLocal<Integer, List<PropiedadDTO>> cacheDestacadas;
+    private CacheLocal<Integer, List<String>> cacheCiudades;
+    
+    @PostConstruct
+    public void init() {
+        Duration ttl = Duration.ofSeconds(ttlPortadaSegundos);
+        cacheDestacadas = new CacheLocal<>(maxEntradasPortada, ttl);
+        cacheCiudades = new CacheLocal<>(maxEntradasPortada, ttl);
+    }
+    
+    // Máximo de propiedades ocupadas que se excluyen con NOT IN antes de volver a la consulta NOT EXISTS
+    @Value("${homeflex.disponibilidad.max-excluidas:5000}")
+    private int maxExcluidasDisponibilidad;
     
     
     /**
@@ -66,9 +116,7 @@ public class PropiedadService {
      */
     public Page<PropiedadDTO> obtenerPropiedadesPaginadas(int pagina, int tamanoPagina) {
         Pageable pageable = PageRequest.of(pagina, tamanoPagina, Sort.by("fechaCreacion").descending());
-        Page<PropiedadVO> propiedades = propiedadRepository.findByActivoTrue(pageable);
-        
-        return propiedades.map(PropiedadDTO::new);
+        return propiedadRepository.findTarjetasActivas(pageable);
     }
     
     /**
@@ -92,6 +140,13 @@ public class PropiedadService {
         return new PropiedadDTO(propiedad);
     }
     
+    /**
+     * Indica si existe una propiedad con el ID indicado
+     */
+    public boolean existePropiedad(Long id) {
+        return propiedadRepository.existsById(id);
+    }
+    
     /**
      * Obtiene una propiedad completa por su ID como VO
      */
@@ -128,91 +183,101 @@ public class PropiedadService {
         BigDecimal min = precioMin != null ? BigDecimal.valueOf(precioMin) : null;
         BigDecimal max = precioMax != null ? BigDecimal.valueOf(precioMax) : null;
 
-        Page<PropiedadVO> page;
+        Page<PropiedadDTO> page;
 
         if (fechaInicio != null && fechaFin != null) {
-            page = propiedadRepository.buscarConDisponibilidad(
-                    ciudad, pais, capacidad, dormitorios, banos,
-                    min, max, fechaInicio, fechaFin, pageable);
+            Set<Long> ocupadas = disponibilidadIndex.cubre(fechaInicio, fechaFin)
+                    ? noDisponibles(fechaInicio, fechaFin)
+                    : null;
+
+            if (ocupadas == null || ocupadas.size() > maxExcluidasDisponibilidad) {
+                // Índice no disponible o demasiadas exclusiones: se resuelve en la base de datos
+                page = propiedadRepository.buscarConDisponibilidad(
+                        ciudad, pais, capacidad, dormitorios, banos,
+                        min, max, fechaInicio, fechaFin, pageable);
+            } else if (ocupadas.isEmpty()) {
+                page = propiedadRepository.buscarSinDisponibilidad(
+                        ciudad, pais, capacidad, dormitorios, banos,
+                        min, max, pageable);
+            } else {
+                page = propiedadRepository.buscarExcluyendo(
+                        ciudad, pais, capacidad, dormitorios, banos,
+                        min, max, ocupadas, pageable);
+            }
         } else {
             page = propiedadRepository.buscarSinDisponibilidad(
                     ciudad, pais, capacidad, dormitorios, banos,
                     min, max, pageable);
         }
 
-        return page.map(PropiedadDTO::new);
+        return page;
     }
+    
+    /**
+     * Búsqueda por texto libre sobre título, descripción, ciudad y país, ordenada por relevancia.
+     * Si se reciben fechas, solo se devuelven las propiedades disponibles en ese rango.
+     */
+    public Page<PropiedadDTO> buscarPorTexto(String texto, LocalDate fechaInicio, LocalDate fechaFin,
+                                             int pagina, int size) {
+        Pageable pageable = PageRequest.of(pagina, size);
+        boolean conFechas = fechaInicio != null && fechaFin != null;
+
+        if (!busquedaTextoService.isCargado()
+                || (conFechas && !disponibilidadIndex.cubre(fechaInicio, fechaFin))) {
+            // Sin índices cargados se recurre a las consultas JPQL
+            if (conFechas) {
+                return propiedadRepository.buscarPorTextoConDisponibilidad(texto, fechaInicio, fechaFin, pageable);
+            }
+            return propiedadRepository.buscarPorTexto(texto, pageable).map(PropiedadDTO::new);
+        }
 
+        Set<Long> ocupadas = conFechas
+                ? noDisponibles(fechaInicio, fechaFin)
+                : Set.of();
 
-    
+        Page<Long> ids = busquedaTextoService.buscar(texto,
+                doc -> doc.activo() && !ocupadas.contains(doc.propiedadId()),
+                pageable);
+        return cargarEnOrden(ids);
+    }
     
     /**
-     * Crea una nueva propiedad
+     * Propiedades con algún día de [inicio, fin] reservado o retenido por alguien que
+     * está completando una reserva. Requiere que el índice cubra el rango.
      */
-    @Transactional
-    public PropiedadDTO crearPropiedad(
-            PropiedadVO propiedad,                  // datos de la vivienda
-            UsuarioVO propietario,                  // usuario que publica
-            List<MultipartFile> fotos,              // imágenes subidas
-            Integer fotoPrincipalIndex)             // índice de la principal
-            throws IOException {
-
-    	// Verifica si el usuario ya tiene ese rol
-    	RolVO rolPropietario = rolRepository.findByNombre("ROLE_PROPIETARIO")
-    	 .orElseThrow(() -> new RuntimeException("Rol no encontrado en BD"));
-        if (!propietario.getRoles().contains(rolPropietario)) {
-            propietario.getRoles().add(rolPropietario);
-            usuarioRepository.save(propietario); 
+    private Set<Long> noDisponibles(LocalDate inicio, LocalDate fin) {
+        Set<Long> ocupadas = disponibilidadIndex.propiedadesOcupadas(inicio, fin);
+        Set<Long> retenidas = retencionFechas.propiedadesRetenidas(inicio, fin);
+        if (retenidas.isEmpty()) {
+            return ocupadas;
         }
-        /* -------- 1. datos básicos -------- */
-        propiedad.setPropietario(propietario);
-        propiedad.setFechaCreacion(LocalDateTime.now());
-        propiedad.setActivo(true);
-
-        PropiedadVO propiedadGuardada = propiedadRepository.save(propiedad);
+        Set<Long> todas = new HashSet<>(ocupadas);
+        todas.addAll(retenidas);
+        return todas;
+    }
+    
+    /**
+     * Carga las propiedades de una página de IDs conservando el orden del índice
+     */
+    private Page<PropiedadDTO> cargarEnOrden(Page<Long> ids) {
+        return new PageImpl<>(cargarEnOrden(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
 
-        /* -------- 2. subida de imágenes -------- */
-        if (fotos != null && !fotos.isEmpty()) {
-            // crea la carpeta  media/propiedades/{id}/
-            Path baseDir = Paths.get(uploadDir, propiedadGuardada.getId().toString());
-            Files.createDirectories(baseDir);
-
-            boolean hayPrincipal = false;
-            for (int i = 0; i < fotos.size(); i++) {
-                MultipartFile file = fotos.get(i);
-                if (file.isEmpty()) continue;
-
-                String nombre = System.currentTimeMillis() + "_"
-                              + file.getOriginalFilename()
-                                    .replaceAll("[^a-zA-Z0-9.-]", "_");
-                Path destino = baseDir.resolve(nombre);
-                file.transferTo(destino);
-
-                FotoVO foto = new FotoVO();
-                foto.setPropiedad(propiedadGuardada);
-                foto.setUrl("/" + uploadDir + "/"
-                            + propiedadGuardada.getId() + "/" + nombre);
-
-                // principal: la indicada o la primera si no había otra
-                boolean esPrincipal = (fotoPrincipalIndex != null && i == fotoPrincipalIndex)
-                                    || (!hayPrincipal && i == 0);
-                foto.setPrincipal(esPrincipal);
-                hayPrincipal |= esPrincipal;
-
-                fotoRepository.save(foto);
-            }
+    private List<PropiedadDTO> cargarEnOrden(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
         }
+        Map<Long, PropiedadDTO> porId = propiedadRepository.findTarjetasPorIds(ids).stream()
+                .collect(Collectors.toMap(PropiedadDTO::getId, p -> p, (a, b) -> a));
 
-        /* -------- 3. ascender a PROPIETARIO si aún no lo es -------- */
-        boolean yaEsPropietario = propietario.getRoles().stream()
-             .anyMatch(r -> r.getNombre().equals("PROPIETARIO"));
+        return ids.stream()
+                .map(porId::get)
+                .filter(p -> p != null)
+                .collect(Collectors.toList());
+    }
 
-        /* -------- 4. publicar el evento + devolver DTO -------- */
-        applicationEventPublisher.publishEvent(
-                new PropiedadCreatedEvent(propiedadGuardada.getId()));
 
-        return new PropiedadDTO(propiedadGuardada);
-    }
+    
     
     /**
      * Crea una nueva propiedad con un propietario específico
@@ -297,9 +362,10 @@ public class PropiedadService {
                 .orElseThrow(() -> new RuntimeException("Propiedad no encontrada"));
         
         // Eliminar lógicamente
+        propiedad.getFotos().forEach(fotoVariantesService::liberarArchivos);
         propiedadRepository.delete(propiedad);
         System.out.println("Eliminada");
-        applicationEventPublisher.publishEvent(new PropiedadDeletedEvent(id));
+        applicationEventPublisher.publishEvent(new PropiedadDeletedEvent(id, propiedad.getPropietario().getId()));
 
     }
     
@@ -319,7 +385,7 @@ public class PropiedadService {
         // Eliminar lógicamente
         propiedad.setActivo(false);
         propiedadRepository.save(propiedad);
-        applicationEventPublisher.publishEvent(new PropiedadDeletedEvent(id));
+        applicationEventPublisher.publishEvent(new PropiedadDeletedEvent(id, propietario.getId()));
 
     }
     
@@ -356,6 +422,15 @@ public class PropiedadService {
         Page<PropiedadVO> propiedades;
         
         if (busqueda != null && !busqueda.trim().isEmpty()) {
+            if (busquedaTextoService.isCargado()) {
+                // Búsqueda servida por el índice de texto, ordenada por relevancia
+                Long propietarioId = propietario.getId();
+                Page<Long> ids = busquedaTextoService.buscar(busqueda,
+                        doc -> doc.propietarioId().equals(propietarioId)
+                               && (activo == null || doc.activo() == activo),
+                        pageable);
+                return cargarEnOrden(ids);
+            }
             if (activo != null) {
                 // Con búsqueda y filtro de activo
                 propiedades = propiedadRepository.findByPropietarioAndBusquedaAndActivo(
@@ -380,65 +455,88 @@ public class PropiedadService {
         return propiedades.map(PropiedadDTO::new);
     }
     
-    @Transactional
-    public void procesarFotos(Long propiedadId,
-                              List<MultipartFile> fotos,
-                              Integer fotoPrincipalIndex) throws IOException {
-
-        PropiedadVO propiedad = propiedadRepository.findById(propiedadId)
-                .orElseThrow(() -> new RuntimeException("Propiedad no encontrada"));
-
-        if (fotos == null || fotos.isEmpty()) return;
+    /**
+     * Fotos subidas ya volcadas a disco, pendientes de asociarse a una propiedad.
+     * @param principal posición de la nueva principal dentro de archivos, o -1
+     */
+    public record FotosPreparadas(List<ArchivoPreparado> archivos, int principal) {
 
-        // ─────────────────────────────────────────────────────────────
-        Path uploadPath = Paths.get(uploadDir, "propiedades")   
-                                .toAbsolutePath()
-                                .normalize()
-                                .resolve(propiedadId.toString()); 
-        Files.createDirectories(uploadPath);
-        // ─────────────────────────────────────────────────────────────
+        public static final FotosPreparadas VACIAS = new FotosPreparadas(List.of(), -1);
+    }
 
-        boolean hayPrincipal = fotoRepository
-                .findByPropiedadAndPrincipal(propiedad, true).isPresent();
+    /**
+     * Vuelca a disco en paralelo las fotos subidas sin tocar la base de datos. Hay que
+     * llamarlo antes de la primera consulta de la petición: con open-in-view esa
+     * conexión queda retenida hasta que la petición termina, y el volcado la tendría
+     * ocupada sin usarla. El resultado se libera siempre con {@link #descartarFotos}.
+     * @param fotoPrincipalIndex posición (en la lista recibida) de la nueva principal;
+     *                           si es null y la propiedad no tiene, será la primera
+     */
+    public FotosPreparadas prepararFotos(List<MultipartFile> fotos,
+                                         Integer fotoPrincipalIndex) throws IOException {
+        if (fotos == null || fotos.isEmpty()) return FotosPreparadas.VACIAS;
 
+        List<MultipartFile> subidas = new ArrayList<>();
+        int principal = -1;
         for (int i = 0; i < fotos.size(); i++) {
+            if (fotos.get(i).isEmpty()) continue;
+            if (fotoPrincipalIndex != null && i == fotoPrincipalIndex) {
+                principal = subidas.size();
+            }
+            subidas.add(fotos.get(i));
+        }
+        if (subidas.isEmpty()) return FotosPreparadas.VACIAS;
 
-            MultipartFile foto = fotos.get(i);
-            if (foto.isEmpty()) continue;
+        return new FotosPreparadas(mediaStoreService.preparar(subidas), principal);
+    }
 
-            String original = Optional.ofNullable(foto.getOriginalFilename())
-                                      .orElse("imagen.jpg");
+    /**
+     * Añade a una propiedad las fotos ya preparadas: en una transacción corta se
+     * registran en el almacén de medios y se insertan todas las filas de una vez.
+     */
+    public void guardarFotos(Long propiedadId, FotosPreparadas fotos) throws IOException {
+        if (fotos.archivos().isEmpty()) return;
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    guardarFotos(propiedadId, fotos.archivos(), fotos.principal()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-            String fileName = System.currentTimeMillis() + "_" +
-                              original.replaceAll("[^a-zA-Z0-9.-]", "_");
+    /**
+     * Borra los temporales que queden de unas fotos preparadas, se hayan guardado o no.
+     */
+    public void descartarFotos(FotosPreparadas fotos) {
+        mediaStoreService.descartar(fotos.archivos());
+    }
+
+    private void guardarFotos(Long propiedadId, List<ArchivoPreparado> preparados, int principal) {
+        PropiedadVO propiedad = propiedadRepository.findById(propiedadId)
+                .orElseThrow(() -> new RuntimeException("Propiedad no encontrada"));
 
-            // ★ Escribimos la imagen
-            Path destino = uploadPath.resolve(fileName);
-            foto.transferTo(destino);
+        boolean hayPrincipal = fotoRepository.existsByPropiedadIdAndPrincipalTrue(propiedadId);
+        if (principal < 0 && !hayPrincipal) {
+            principal = 0;
+        }
+        if (principal >= 0 && hayPrincipal) {
+            fotoRepository.quitarPrincipal(propiedadId);
+        }
 
-            // ★ Persistimos metadatos
+        List<FotoVO> nuevas = new ArrayList<>(preparados.size());
+        for (int i = 0; i < preparados.size(); i++) {
             FotoVO fotoVO = new FotoVO();
             fotoVO.setPropiedad(propiedad);
-
-            //   URL pública = handler /media/ + ruta relativa al uploadDir
-            fotoVO.setUrl("/media/propiedades/" + propiedadId + "/" + fileName);
+            //   URL pública = /media/blobs/... (una sola copia por contenido)
+            fotoVO.setUrl(mediaStoreService.registrar(preparados.get(i)));
             fotoVO.setDescripcion("Foto de " + propiedad.getTitulo());
-
-            boolean esPrincipal = (fotoPrincipalIndex != null && i == fotoPrincipalIndex)
-                                  || (!hayPrincipal && i == 0);
-
-            if (esPrincipal) {
-                // quitamos la anterior principal (si existe)
-                fotoRepository.findByPropiedadAndPrincipal(propiedad, true)
-                              .ifPresent(f -> { f.setPrincipal(false); fotoRepository.save(f); });
-                fotoVO.setPrincipal(true);
-                hayPrincipal = true;
-            } else {
-                fotoVO.setPrincipal(false);
-            }
-
-            fotoRepository.save(fotoVO);
+            fotoVO.setPrincipal(i == principal);
+            nuevas.add(fotoVO);
         }
+        List<Long> fotoIds = fotoRepository.insertarLote(nuevas);
+
+        // Las versiones reducidas se generan en segundo plano tras confirmar
+        applicationEventPublisher.publishEvent(new FotosSubidasEvent(propiedadId, fotoIds));
     }
 
     
@@ -525,15 +623,8 @@ public class PropiedadService {
         
         // Eliminar cada foto
         for (FotoVO foto : fotosAEliminar) {
-            // Eliminar el archivo físico si es posible
-            String filePath = foto.getUrl().replace("/uploads/", "");
-            try {
-                java.nio.file.Path path = java.nio.file.Paths.get(uploadDir, filePath);
-                java.nio.file.Files.deleteIfExists(path);
-            } catch (IOException e) {
-                // Loguear el error pero continuar con la eliminación de la entidad
-                System.err.println("Error al eliminar archivo: " + e.getMessage());
-            }
+            // Los archivos se borran en segundo plano cuando ninguna foto los usa
+            fotoVariantesService.liberarArchivos(foto);
             
             // Eliminar la entidad
             fotoRepository.delete(foto);
@@ -541,46 +632,16 @@ public class PropiedadService {
     }
     
     /**
-     * Obtiene propiedades destacadas
+     * Obtiene propiedades destacadas (servidas desde la caché de la portada)
      */
     public List<PropiedadDTO> obtenerPropiedadesDestacadas() {
-        try {
-            // Utilizar la consulta optimizada que carga las fotos en la misma consulta
-            Pageable pageable = PageRequest.of(0, 6, Sort.by("fechaCreacion").descending());
-            Page<PropiedadVO> propiedadesPage = propiedadRepository.findByActivoTrueWithFotos(pageable);
-            
-            return propiedadesPage.getContent().stream()
-                .map(PropiedadDTO::new)
-                .collect(Collectors.toList());
-            
-        } catch (Exception e) {
-            // En caso de error, intentar con el método alternativo
-            System.err.println("Error al obtener propiedades destacadas: " + e.getMessage());
-            
-            // Plan B: obtener propiedades sin las fotos y establecer un placeholder
-            List<PropiedadVO> propiedades = propiedadRepository.findByActivoTrue();
-            List<PropiedadDTO> propiedadesDTOs = new ArrayList<>();
-            
-            for (PropiedadVO propiedad : propiedades.stream()
-                                              .limit(6)
-                                              .collect(Collectors.toList())) {
-                PropiedadDTO dto = new PropiedadDTO();
-                dto.setId(propiedad.getId());
-                dto.setTitulo(propiedad.getTitulo());
-                dto.setDescripcion(propiedad.getDescripcion());
-                dto.setPrecioDia(propiedad.getPrecioDia());
-                dto.setCiudad(propiedad.getCiudad());
-                dto.setPais(propiedad.getPais());
-                dto.setCapacidad(propiedad.getCapacidad());
-                dto.setDormitorios(propiedad.getDormitorios());
-                dto.setBanos(propiedad.getBanos());
-                dto.setFotoPrincipal("/images/property-placeholder.jpg"); // Placeholder por defecto
-                
-                propiedadesDTOs.add(dto);
-            }
-            
-            return propiedadesDTOs;
-        }
+        return cacheDestacadas.obtener(ELEMENTOS_PORTADA, this::cargarPropiedadesDestacadas);
+    }
+    
+    private List<PropiedadDTO> cargarPropiedadesDestacadas(int limite) {
+        // Proyección de las tarjetas; la portada no muestra el total, así que no se cuenta
+        Pageable pageable = PageRequest.of(0, limite, Sort.by("fechaCreacion").descending());
+        return List.copyOf(propiedadRepository.findTarjetasActivasSinTotal(pageable));
     }
     
     
@@ -588,6 +649,17 @@ public class PropiedadService {
      * Busca propiedades cercanas según coordenadas
      */
     public List<PropiedadDTO> buscarPropiedadesCercanas(Double latitud, Double longitud, Integer distanciaKm) {
+        return buscarPropiedadesCercanas(latitud, longitud, distanciaKm, 10, null);
+    }
+
+    /**
+     * Busca las propiedades activas más cercanas a unas coordenadas, ordenadas por distancia
+     * @param distanciaKm radio máximo de búsqueda (10 km si no se indica)
+     * @param limite      número máximo de propiedades a devolver
+     * @param excluirId   propiedad que no debe aparecer (la que se está viendo), puede ser null
+     */
+    public List<PropiedadDTO> buscarPropiedadesCercanas(Double latitud, Double longitud, Integer distanciaKm,
+                                                        int limite, Long excluirId) {
         if (latitud == null || longitud == null) {
             throw new RuntimeException("Las coordenadas son obligatorias");
         }
@@ -596,78 +668,63 @@ public class PropiedadService {
             distanciaKm = 10; // Valor por defecto
         }
         
-        double distanciaLatitud = distanciaKm / 111.0;
-        double distanciaLongitud = distanciaKm / (111.0 * Math.cos(Math.toRadians(latitud)));
-        
-        // Buscar propiedades cercanas utilizando una consulta optimizada
-        List<PropiedadVO> propiedadesCercanas = propiedadRepository.findPropiedadesCercanas(
-                latitud, longitud, distanciaLatitud, distanciaLongitud);
+        List<Long> ids;
+        if (indiceGeografico.isCargado()) {
+            ids = indiceGeografico.buscarCercanas(latitud, longitud, limite, distanciaKm.doubleValue(), excluirId)
+                    .stream()
+                    .map(IndiceGeograficoService.Vecino::propiedadId)
+                    .collect(Collectors.toList());
+        } else {
+            // Índice aún sin cargar: caja de coordenadas en base de datos y orden por distancia en memoria
+            double distanciaLatitud = distanciaKm / 111.0;
+            double distanciaLongitud = distanciaKm / (111.0 * Math.cos(Math.toRadians(latitud)));
+            double radio = distanciaKm;
+
+            ids = propiedadRepository.findPropiedadesCercanas(
+                    latitud, longitud, distanciaLatitud, distanciaLongitud).stream()
+                    .filter(p -> !p.getId().equals(excluirId))
+                    .map(p -> Map.entry(p.getId(), IndiceGeograficoService.distanciaKm(latitud, longitud,
+                            p.getLatitud().doubleValue(), p.getLongitud().doubleValue())))
+                    .filter(e -> e.getValue() <= radio)
+                    .sorted(Map.Entry.comparingByValue())
+                    .limit(limite)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        }
         
-        return propiedadesCercanas.stream()
-                .limit(10) // Limitamos a 10 resultados
-                .map(PropiedadDTO::new)
-                .collect(Collectors.toList());
+        return cargarEnOrden(ids);
     }
     
     /**
-     * Obtiene las ciudades más populares
+     * Obtiene las ciudades más populares (servidas desde la caché de la portada)
      */
     public List<String> obtenerCiudadesPopulares() {
-        List<PropiedadVO> propiedades = propiedadRepository.findByActivoTrue();
-        
-        // Agrupar por ciudad y contar
-        Map<String, Long> ciudadesCont = propiedades.stream()
-                .collect(Collectors.groupingBy(PropiedadVO::getCiudad, Collectors.counting()));
-        
-        // Ordenar por cantidad y tomar las top 6
-        return ciudadesCont.entrySet().stream()
-                .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                .limit(6)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return cacheCiudades.obtener(ELEMENTOS_PORTADA, this::cargarCiudadesPopulares);
+    }
+    
+    private List<String> cargarCiudadesPopulares(int limite) {
+        // Agrupación y orden en base de datos; solo se traen las primeras ciudades
+        return propiedadRepository.findCiudadesPopulares(PageRequest.of(0, limite)).stream()
+                .map(fila -> (String) fila[0])
+                .toList();
+    }
+    
+    /**
+     * Descarta las listas de la portada y las vuelve a calcular, para que la
+     * siguiente visita no tenga que esperar a la base de datos
+     */
+    public void refrescarPortada() {
+        cacheDestacadas.invalidarTodo();
+        cacheCiudades.invalidarTodo();
+        obtenerPropiedadesDestacadas();
+        obtenerCiudadesPopulares();
     }
     
     /**
      * Genera estadísticas para un propietario
      */
     public PropiedadEstadisticasDTO obtenerEstadisticasPropietario(Long propietarioId) {
-        PropiedadEstadisticasDTO estadisticas = new PropiedadEstadisticasDTO();
-        
-        // Obtener propiedades del propietario usando el repository
-        List<PropiedadVO> propiedades = propiedadRepository.findByPropietarioId(propietarioId);
-        
-        // Total de propiedades
-        estadisticas.setTotalPropiedades(propiedades.size());
-        
-        // Propiedades activas
-        long activas = propiedades.stream().filter(PropiedadVO::getActivo).count();
-        estadisticas.setPropiedadesActivas((int) activas);
-        
-        // Propiedades inactivas
-        estadisticas.setPropiedadesInactivas(propiedades.size() - (int) activas);
-        
-        // Estadísticas por ciudad
-        Map<String, Integer> propiedadesPorCiudad = propiedades.stream()
-                .collect(Collectors.groupingBy(PropiedadVO::getCiudad, Collectors.summingInt(p -> 1)));
-        estadisticas.setPropiedadesPorCiudad(propiedadesPorCiudad);
-        
-        // Estadísticas por mes (últimos 12 meses)
-        Map<Month, Integer> publicacionesPorMes = new HashMap<>();
-        LocalDateTime doceAtras = LocalDateTime.now().minusMonths(12);
-        
-        propiedades.stream()
-            .filter(p -> p.getFechaCreacion() != null && p.getFechaCreacion().isAfter(doceAtras))
-            .forEach(p -> {
-                Month mes = p.getFechaCreacion().getMonth();
-                publicacionesPorMes.put(mes, publicacionesPorMes.getOrDefault(mes, 0) + 1);
-            });
-        
-        Map<String, Integer> publicacionesMes = new HashMap<>();
-        for (Month mes : Month.values()) {
-            publicacionesMes.put(mes.toString(), publicacionesPorMes.getOrDefault(mes, 0));
-        }
-        estadisticas.setPublicacionesPorMes(publicacionesMes);
-        
-        return estadisticas;
+        // Contadores precalculados: una consulta, sin recorrer las propiedades del propietario
+        return estadisticasPropietarioService.obtener(propietarioId);
     }
 }
\ No newline at end of file
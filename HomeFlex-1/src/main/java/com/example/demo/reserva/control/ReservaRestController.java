@@ -1,8 +1,11 @@
 package com.example.demo.reserva.control;
 
 import java.security.Principal;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -24,6 +27,7 @@ import com.example.demo.reserva.model.EstadoReserva;
 import com.example.demo.reserva.model.ReservaDTO;
 import com.example.demo.reserva.model.SolicitudReservaDTO;
 import com.example.demo.reserva.service.ReservaService;
+import com.example.demo.reserva.service.RetencionFechasService;
 import com.example.demo.utils.ApiResponse;
 
 import jakarta.validation.Valid;
@@ -136,7 +140,8 @@ public class ReservaRestController {
         try {
             // Verificar disponibilidad
             boolean disponible = reservaService.verificarDisponibilidad(
-                    solicitud.getPropiedadId(), solicitud.getFechaInicio(), solicitud.getFechaFin());
+                    solicitud.getPropiedadId(), solicitud.getFechaInicio(), solicitud.getFechaFin(),
+                    principal.getName());
             
             if (!disponible) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -162,13 +167,15 @@ public class ReservaRestController {
     public ResponseEntity<?> verificarDisponibilidad(
             @RequestParam Long propiedadId,
             @RequestParam String fechaInicio,
-            @RequestParam String fechaFin) {
+            @RequestParam String fechaFin,
+            Principal principal) {
         
         try {
             LocalDate inicio = LocalDate.parse(fechaInicio);
             LocalDate fin = LocalDate.parse(fechaFin);
             
-            boolean disponible = reservaService.verificarDisponibilidad(propiedadId, inicio, fin);
+            boolean disponible = reservaService.verificarDisponibilidad(propiedadId, inicio, fin,
+                    principal != null ? principal.getName() : null);
             
             return ResponseEntity.ok(new ApiResponse(true, "Verificación completada", disponible));
             
@@ -178,6 +185,42 @@ public class ReservaRestController {
         }
     }
     
+    /**
+     * Aparta las fechas durante unos minutos mientras el usuario completa la solicitud
+     */
+    @PostMapping("/retenciones")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> retenerFechas(
+            @RequestParam Long propiedadId,
+            @RequestParam String fechaInicio,
+            @RequestParam String fechaFin,
+            Principal principal) {
+        
+        try {
+            RetencionFechasService.Retencion retencion = reservaService.retenerFechas(propiedadId,
+                    LocalDate.parse(fechaInicio), LocalDate.parse(fechaFin), principal.getName());
+            
+            Map<String, Object> datos = new HashMap<>();
+            datos.put("token", retencion.token());
+            datos.put("expira", Instant.ofEpochMilli(retencion.expira()).toString());
+            return ResponseEntity.ok(new ApiResponse(true, "Fechas retenidas", datos));
+            
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ApiResponse(false, "No se pudieron retener las fechas: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * Libera una retención cuando el usuario abandona la reserva
+     */
+    @PostMapping("/retenciones/{token}/liberar")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> liberarRetencion(@PathVariable String token, Principal principal) {
+        boolean liberada = reservaService.liberarRetencion(token, principal.getName());
+        return ResponseEntity.ok(new ApiResponse(true, liberada ? "Retención liberada" : "La retención ya no existe"));
+    }
+    
     /**
      * Obtiene las fechas ocupadas para una propiedad (para el calendario)
      */
@@ -202,6 +245,28 @@ public class ReservaRestController {
         }
     }
     
+    /**
+     * Calendarios de ocupación de varias propiedades en una sola petición, como tramos
+     * de días relativos a "desde" (ver CalendariosOcupacionDTO)
+     */
+    @GetMapping("/calendarios")
+    public ResponseEntity<?> obtenerCalendarios(
+            @RequestParam List<Long> ids,
+            @RequestParam(required = false) String desde,
+            @RequestParam(required = false) String hasta) {
+        
+        try {
+            LocalDate fechaDesde = desde != null ? LocalDate.parse(desde) : LocalDate.now();
+            LocalDate fechaHasta = hasta != null ? LocalDate.parse(hasta) : fechaDesde.plusMonths(3);
+            
+            return ResponseEntity.ok(reservaService.obtenerCalendarios(ids, fechaDesde, fechaHasta));
+            
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ApiResponse(false, "Error al obtener los calendarios: " + e.getMessage()));
+        }
+    }
+    
     /**
      * Aprueba una solicitud de reserva
      */
@@ -0,0 +1,53 @@
+package com.example.demo.reserva.event;
+
+import java.time.LocalDate;
+
+import com.example.demo.reserva.model.EstadoReserva;
+
+/**
+ * Se publica cada vez que una reserva se crea o cambia de estado.
+ * estadoAnterior es null cuando la reserva se acaba de crear.
+ */
+public class ReservaEstadoCambiadoEvent {
+    private final Long reservaId;
+    private final Long propiedadId;
+    private final LocalDate fechaInicio;
+    private final LocalDate fechaFin;
+    private final EstadoReserva estadoAnterior;
+    private final EstadoReserva estadoNuevo;
+    
+    public ReservaEstadoCambiadoEvent(Long reservaId, Long propiedadId,
+                                      LocalDate fechaInicio, LocalDate fechaFin,
+                                      EstadoReserva estadoAnterior, EstadoReserva estadoNuevo) {
+        this.reservaId = reservaId;
+        this.propiedadId = propiedadId;
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+        this.estadoAnterior = estadoAnterior;
+        this.estadoNuevo = estadoNuevo;
+    }
+    
+    public Long getReservaId() {
+        return reservaId;
+    }
+    
+    public Long getPropiedadId() {
+        return propiedadId;
+    }
+    
+    public LocalDate getFechaInicio() {
+        return fechaInicio;
+    }
+    
+    public LocalDate getFechaFin() {
+        return fechaFin;
+    }
+    
+    public EstadoReserva getEstadoAnterior() {
+        return estadoAnterior;
+    }
+    
+    public EstadoReserva getEstadoNuevo() {
+        return estadoNuevo;
+    }
+}
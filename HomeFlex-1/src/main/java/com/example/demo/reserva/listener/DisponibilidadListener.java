@@ -0,0 +1,37 @@
+package com.example.demo.reserva.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.reserva.event.ReservaEstadoCambiadoEvent;
+import com.example.demo.reserva.model.EstadoReserva;
+import com.example.demo.reserva.service.DisponibilidadIndexService;
+import com.example.demo.reserva.service.RetencionFechasService;
+
+@Component
+public class DisponibilidadListener {
+
+    @Autowired
+    private DisponibilidadIndexService disponibilidadIndex;
+    
+    @Autowired
+    private RetencionFechasService retencionFechas;
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handleReservaEstadoCambiadoEvent(ReservaEstadoCambiadoEvent event) {
+        if (event.getEstadoNuevo() == EstadoReserva.CANCELADA) {
+            disponibilidadIndex.liberarReserva(event.getReservaId(), event.getPropiedadId());
+        } else {
+            disponibilidadIndex.registrarReserva(event.getReservaId(), event.getPropiedadId(),
+                    event.getFechaInicio(), event.getFechaFin());
+        }
+        
+        // Pagada o cancelada, la reserva ya no necesita tener las fechas retenidas
+        if (event.getEstadoNuevo() == EstadoReserva.PAGO_VERIFICADO
+                || event.getEstadoNuevo() == EstadoReserva.CANCELADA) {
+            retencionFechas.liberarDeReserva(event.getReservaId());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.reserva.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapa de bits de días ocupados de una propiedad.
+ * El bit i corresponde al día (origen + i) del índice de disponibilidad;
+ * los intervalos son inclusivos en ambos extremos, igual que en ReservaVO.
+ */
+public class CalendarioOcupacion {
+
+    private final int dias;
+    private final BitSet ocupados;
+    
+    // Intervalos por reserva, necesarios para reconstruir los bits al liberar
+    private final Map<Long, int[]> reservas = new HashMap<>();
+    
+    public CalendarioOcupacion(int dias) {
+        this.dias = dias;
+        this.ocupados = new BitSet(dias);
+    }
+    
+    /**
+     * Marca los días de una reserva. Los días fuera del horizonte se ignoran.
+     */
+    public synchronized void marcar(Long reservaId, int desde, int hasta) {
+        int inicio = Math.max(desde, 0);
+        int fin = Math.min(hasta, dias - 1);
+        if (inicio > fin) {
+            reservas.remove(reservaId);
+            return;
+        }
+        int[] anterior = reservas.put(reservaId, new int[] { inicio, fin });
+        if (anterior != null) {
+            recalcular();
+        } else {
+            ocupados.set(inicio, fin + 1);
+        }
+    }
+    
+    /**
+     * Libera los días de una reserva. Devuelve false si la reserva no estaba marcada.
+     */
+    public synchronized boolean liberar(Long reservaId) {
+        if (reservas.remove(reservaId) == null) {
+            return false;
+        }
+        // Puede haber otras reservas solapadas: se recalculan los bits
+        recalcular();
+        return true;
+    }
+    
+    /**
+     * Indica si algún día del intervalo [desde, hasta] está ocupado
+     */
+    public synchronized boolean estaOcupado(int desde, int hasta) {
+        int siguiente = ocupados.nextSetBit(Math.max(desde, 0));
+        return siguiente >= 0 && siguiente <= hasta;
+    }
+    
+    /**
+     * Devuelve los tramos ocupados dentro de [desde, hasta] como pares {inicio, fin} inclusivos
+     */
+    public synchronized List<int[]> tramosOcupados(int desde, int hasta) {
+        List<int[]> tramos = new ArrayList<>();
+        int limite = Math.min(hasta, dias - 1);
+        int i = ocupados.nextSetBit(Math.max(desde, 0));
+        while (i >= 0 && i <= limite) {
+            int finTramo = Math.min(ocupados.nextClearBit(i) - 1, limite);
+            tramos.add(new int[] { i, finTramo });
+            i = ocupados.nextSetBit(finTramo + 1);
+        }
+        return tramos;
+    }
+    
+    public synchronized boolean isVacio() {
+        return reservas.isEmpty();
+    }
+    
+    private void recalcular() {
+        ocupados.clear();
+        for (int[] intervalo : reservas.values()) {
+            ocupados.set(intervalo[0], intervalo[1] + 1);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demo.reserva.model;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Días ocupados de varias propiedades en una misma ventana de fechas, codificados por
+ * tramos: cada tramo es un par {inicio, fin} inclusivo de desplazamientos en días
+ * desde la fecha "desde" ([0, 2] son desde, desde+1 y desde+2). Una propiedad sin
+ * tramos está libre toda la ventana.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CalendariosOcupacionDTO {
+
+    private LocalDate desde;
+
+    private LocalDate hasta;
+
+    // Tramos ocupados por ID de propiedad, ordenados y sin solapes
+    private Map<Long, List<int[]>> tramos;
+}
@@ -14,6 +14,7 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -24,7 +25,12 @@ import lombok.NoArgsConstructor;
 import lombok.ToString;
 
 @Entity
-@Table(name = "reserva")
+@Table(name = "reserva",
+       indexes = {
+           // Listados paginados del inquilino y del propietario (ReservaRepositoryImpl)
+           @Index(name = "idx_reserva_usuario_fecha_inicio", columnList = "usuario_id, fecha_inicio"),
+           @Index(name = "idx_reserva_propiedad_fecha_solicitud", columnList = "propiedad_id, fecha_solicitud")
+       })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
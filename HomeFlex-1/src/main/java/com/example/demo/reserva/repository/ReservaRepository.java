@@ -1,6 +1,7 @@
 package com.example.demo.reserva.repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,7 +18,7 @@ import com.example.demo.reserva.model.ReservaVO;
 import com.example.demo.usuario.model.UsuarioVO;
 
 @Repository
-public interface ReservaRepository extends JpaRepository<ReservaVO, Long> {
+public interface ReservaRepository extends JpaRepository<ReservaVO, Long>, ReservaRepositoryCustom {
     
     // Buscar reservas por código
     Optional<ReservaVO> findByCodigoReserva(String codigoReserva);
@@ -88,6 +89,23 @@ public interface ReservaRepository extends JpaRepository<ReservaVO, Long> {
             @Param("inicio") LocalDate inicio,
             @Param("fin") LocalDate fin);
     
+    // Intervalos de las reservas activas de varias propiedades que tocan [desde, hasta] (calendarios)
+    @Query("SELECT r.propiedad.id, r.fechaInicio, r.fechaFin FROM ReservaVO r " +
+           "WHERE r.propiedad.id IN :propiedadIds " +
+           "AND r.estado != 'CANCELADA' " +
+           "AND r.fechaInicio <= :hasta AND r.fechaFin >= :desde " +
+           "ORDER BY r.propiedad.id, r.fechaInicio")
+    List<Object[]> findIntervalosActivosDePropiedades(
+            @Param("propiedadIds") Collection<Long> propiedadIds,
+            @Param("desde") LocalDate desde,
+            @Param("hasta") LocalDate hasta);
+    
+    // Intervalos de las reservas activas que terminan a partir de una fecha (carga del índice de disponibilidad)
+    @Query("SELECT r.id, r.propiedad.id, r.fechaInicio, r.fechaFin FROM ReservaVO r " +
+           "WHERE r.estado != 'CANCELADA' " +
+           "AND r.fechaFin >= :desde")
+    List<Object[]> findIntervalosActivosDesde(@Param("desde") LocalDate desde);
+    
     // Obtener estadísticas por mes para una propiedad
     @Query("SELECT FUNCTION('MONTH', r.fechaInicio) as mes, COUNT(r) " +
            "FROM ReservaVO r " +
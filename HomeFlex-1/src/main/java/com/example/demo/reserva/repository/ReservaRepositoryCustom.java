@@ -0,0 +1,35 @@
+package com.example.demo.reserva.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import com.example.demo.reserva.model.EstadoReserva;
+import com.example.demo.reserva.model.ReservaDTO;
+
+/**
+ * Listados paginados de reservas con filtros, resueltos enteramente en la base de datos
+ */
+public interface ReservaRepositoryCustom {
+
+    /**
+     * Reservas de las propiedades de un propietario. La búsqueda se aplica (sin
+     * distinguir mayúsculas) sobre el título de la propiedad, el nombre y apellidos del
+     * inquilino y el código de reserva.
+     * @param estado   null para todos los estados
+     * @param busqueda null o vacío para no filtrar por texto
+     */
+    Page<ReservaDTO> buscarDePropietario(Long propietarioId, EstadoReserva estado, String busqueda, Pageable pageable);
+
+    /**
+     * Reservas hechas por un inquilino. La búsqueda se aplica sobre el título, la ciudad
+     * y el país de la propiedad y el código de reserva.
+     */
+    Page<ReservaDTO> buscarDeInquilino(Long inquilinoId, EstadoReserva estado, String busqueda, Pageable pageable);
+
+    /**
+     * Bloqueo consultivo de Postgres sobre el calendario de una propiedad, liberado al
+     * terminar la transacción. Serializa la comprobación de solapes y el alta de una
+     * reserva también entre varias instancias de la aplicación.
+     */
+    void bloquearCalendario(Long propiedadId);
+}
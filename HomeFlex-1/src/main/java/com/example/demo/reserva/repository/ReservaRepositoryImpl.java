@@ -0,0 +1,174 @@
+package com.example.demo.reserva.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import com.example.demo.propiedad.model.PropiedadVO;
+import com.example.demo.reserva.model.EstadoReserva;
+import com.example.demo.reserva.model.ReservaDTO;
+import com.example.demo.reserva.model.ReservaVO;
+import com.example.demo.usuario.model.UsuarioVO;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Implementación con Criteria API de los listados de reservas.
+ *
+ * Cada página son como mucho tres consultas: la página proyectada a columnas (con
+ * las uniones a propiedad e inquilino en la misma sentencia, sin cargar entidades),
+ * el total con los mismos filtros, y la foto principal de las propiedades de esa página.
+ */
+public class ReservaRepositoryImpl implements ReservaRepositoryCustom {
+
+    /** Quién ve el listado: determina la columna de usuario y los campos de búsqueda */
+    private enum Vista { PROPIETARIO, INQUILINO }
+
+    private static final String FOTO_POR_DEFECTO = "/images/property-placeholder.jpg";
+
+    // Primera clave de pg_advisory_xact_lock(int, int), para no chocar con otros bloqueos
+    private static final int CLAVE_CALENDARIO = 0x48465231;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<ReservaDTO> buscarDePropietario(Long propietarioId, EstadoReserva estado, String busqueda,
+                                                Pageable pageable) {
+        return buscar(Vista.PROPIETARIO, propietarioId, estado, busqueda, pageable);
+    }
+
+    @Override
+    public Page<ReservaDTO> buscarDeInquilino(Long inquilinoId, EstadoReserva estado, String busqueda,
+                                              Pageable pageable) {
+        return buscar(Vista.INQUILINO, inquilinoId, estado, busqueda, pageable);
+    }
+
+    @Override
+    public void bloquearCalendario(Long propiedadId) {
+        // Dos ids que compartan la segunda clave sólo se esperan entre sí, no se mezclan
+        int clave = (int) (propiedadId ^ (propiedadId >>> 32));
+        // pg_advisory_xact_lock devuelve void, que Hibernate no sabe leer
+        entityManager.createNativeQuery("SELECT 1 FROM (SELECT pg_advisory_xact_lock(:tipo, :clave)) b")
+                .setParameter("tipo", CLAVE_CALENDARIO)
+                .setParameter("clave", clave)
+                .getSingleResult();
+    }
+
+    private Page<ReservaDTO> buscar(Vista vista, Long usuarioId, EstadoReserva estado, String busqueda,
+                                    Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> consulta = cb.createTupleQuery();
+        Root<ReservaVO> r = consulta.from(ReservaVO.class);
+        Join<ReservaVO, PropiedadVO> p = r.join("propiedad");
+        Join<ReservaVO, UsuarioVO> u = r.join("usuario");
+        consulta.multiselect(
+                r.get("id"), p.get("id"), p.get("titulo"), p.get("ciudad"), p.get("pais"),
+                u.get("id"), u.get("nombre"), u.get("apellidos"),
+                r.get("fechaInicio"), r.get("fechaFin"), r.get("numHuespedes"), r.get("precioTotal"),
+                r.get("estado"), r.get("fechaSolicitud"), r.get("fechaConfirmacion"),
+                r.get("codigoReserva"), r.get("comentarios"))
+                .where(filtros(cb, vista, r, p, u, usuarioId, estado, busqueda))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), r, cb));
+
+        TypedQuery<Tuple> pagina = entityManager.createQuery(consulta);
+        if (pageable.isPaged()) {
+            pagina.setFirstResult((int) pageable.getOffset());
+            pagina.setMaxResults(pageable.getPageSize());
+        }
+        List<Tuple> filas = pagina.getResultList();
+
+        long total = filas.size();
+        if (pageable.isPaged() && (pageable.getOffset() > 0 || filas.size() == pageable.getPageSize())) {
+            total = contar(cb, vista, usuarioId, estado, busqueda);
+        }
+
+        Map<Long, String> fotos = fotosPrincipales(filas.stream().map(t -> t.get(1, Long.class)).distinct().toList());
+        List<ReservaDTO> contenido = new ArrayList<>(filas.size());
+        for (Tuple t : filas) {
+            Long propiedadId = t.get(1, Long.class);
+            contenido.add(new ReservaDTO(
+                    t.get(0, Long.class), propiedadId, t.get(2, String.class),
+                    fotos.getOrDefault(propiedadId, FOTO_POR_DEFECTO),
+                    t.get(3, String.class), t.get(4, String.class),
+                    t.get(5, Long.class), t.get(6, String.class), t.get(7, String.class),
+                    t.get(8, LocalDate.class), t.get(9, LocalDate.class), t.get(10, Integer.class),
+                    t.get(11, BigDecimal.class), t.get(12, EstadoReserva.class),
+                    t.get(13, LocalDateTime.class), t.get(14, LocalDateTime.class),
+                    t.get(15, String.class), t.get(16, String.class)));
+        }
+        return new PageImpl<>(contenido, pageable, total);
+    }
+
+    private long contar(CriteriaBuilder cb, Vista vista, Long usuarioId, EstadoReserva estado, String busqueda) {
+        CriteriaQuery<Long> consulta = cb.createQuery(Long.class);
+        Root<ReservaVO> r = consulta.from(ReservaVO.class);
+        Join<ReservaVO, PropiedadVO> p = r.join("propiedad");
+        Join<ReservaVO, UsuarioVO> u = r.join("usuario");
+        consulta.select(cb.count(r)).where(filtros(cb, vista, r, p, u, usuarioId, estado, busqueda));
+        return entityManager.createQuery(consulta).getSingleResult();
+    }
+
+    private static Predicate[] filtros(CriteriaBuilder cb, Vista vista,
+                                       Root<ReservaVO> r, Join<ReservaVO, PropiedadVO> p, Join<ReservaVO, UsuarioVO> u,
+                                       Long usuarioId, EstadoReserva estado, String busqueda) {
+        List<Predicate> filtros = new ArrayList<>();
+        if (vista == Vista.PROPIETARIO) {
+            filtros.add(cb.equal(p.get("propietario").get("id"), usuarioId));
+        } else {
+            filtros.add(cb.equal(u.get("id"), usuarioId));
+        }
+        if (estado != null) {
+            filtros.add(cb.equal(r.get("estado"), estado));
+        }
+        if (busqueda != null && !busqueda.trim().isEmpty()) {
+            String patron = "%" + busqueda.trim().toLowerCase(Locale.ROOT)
+                    .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            List<Expression<String>> campos = vista == Vista.PROPIETARIO
+                    ? List.of(p.<String>get("titulo"), u.<String>get("nombre"), u.<String>get("apellidos"),
+                              r.<String>get("codigoReserva"))
+                    : List.of(p.<String>get("titulo"), p.<String>get("ciudad"), p.<String>get("pais"),
+                              r.<String>get("codigoReserva"));
+            filtros.add(cb.or(campos.stream()
+                    .map(campo -> cb.like(cb.lower(campo), patron, '\\'))
+                    .toArray(Predicate[]::new)));
+        }
+        return filtros.toArray(Predicate[]::new);
+    }
+
+    private Map<Long, String> fotosPrincipales(List<Long> propiedadIds) {
+        Map<Long, String> fotos = new HashMap<>();
+        if (propiedadIds.isEmpty()) {
+            return fotos;
+        }
+        List<Object[]> filas = entityManager.createQuery(
+                "SELECT f.propiedad.id, f.url FROM FotoVO f WHERE f.principal = true AND f.propiedad.id IN :ids",
+                Object[].class)
+                .setParameter("ids", propiedadIds)
+                .getResultList();
+        for (Object[] fila : filas) {
+            fotos.putIfAbsent((Long) fila[0], (String) fila[1]);
+        }
+        return fotos;
+    }
+}
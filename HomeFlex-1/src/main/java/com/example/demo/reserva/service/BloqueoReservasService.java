@@ -0,0 +1,123 @@
+package com.example.demo.reserva.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Exclusión entre solicitudes de reserva de una misma propiedad dentro de esta instancia.
+ *
+ * Las propiedades se reparten en un número fijo de franjas, cada una con su cerrojo: las
+ * solicitudes de propiedades distintas casi nunca comparten franja y avanzan en paralelo.
+ * El cerrojo se toma antes de abrir la transacción, pero eso no basta para que la espera
+ * no ocupe conexión: con open-in-view activo, la petición conserva hasta el final la
+ * conexión de su primera consulta, y el controlador REST ya consulta la disponibilidad
+ * antes de llegar aquí. Por eso la espera está acotada (homeflex.reservas.bloqueo.espera-ms)
+ * y se mide, y el pool debe dimensionarse contando las solicitudes que pueden estar
+ * esperando a la vez. Entre instancias la exclusión la da el bloqueo consultivo de la base
+ * de datos que se toma ya dentro de la transacción.
+ */
+@Service
+public class BloqueoReservasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BloqueoReservasService.class);
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${homeflex.reservas.bloqueo.franjas:256}")
+    private int numeroFranjas;
+
+    // Tiempo máximo de espera por una propiedad muy solicitada antes de pedir que se reintente
+    @Value("${homeflex.reservas.bloqueo.espera-ms:5000}")
+    private long esperaMaxima;
+
+    private ReentrantLock[] franjas;
+
+    // Solicitudes que encontraron la propiedad ocupada por otra y tuvieron que esperar
+    private final AtomicLong esperas = new AtomicLong();
+    // Solicitudes rechazadas por solaparse con una reserva ya registrada
+    private final AtomicLong conflictos = new AtomicLong();
+    // Solicitudes que agotaron la espera y se devolvieron para reintentar
+    private final AtomicLong agotadas = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        franjas = new ReentrantLock[Math.max(1, numeroFranjas)];
+        for (int i = 0; i < franjas.length; i++) {
+            // Justos: en una propiedad muy solicitada nadie se queda esperando indefinidamente
+            franjas[i] = new ReentrantLock(true);
+        }
+
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder("homeflex.reservas.bloqueo.esperas", esperas, AtomicLong::get)
+                           .description("Solicitudes que esperaron a otra de la misma propiedad")
+                           .register(registry);
+            FunctionCounter.builder("homeflex.reservas.conflictos", conflictos, AtomicLong::get)
+                           .description("Solicitudes rechazadas por solaparse con otra reserva")
+                           .register(registry);
+            FunctionCounter.builder("homeflex.reservas.bloqueo.agotadas", agotadas, AtomicLong::get)
+                           .description("Solicitudes devueltas para reintentar tras agotar la espera")
+                           .register(registry);
+        });
+    }
+
+    /**
+     * Ejecuta la operación con la franja de la propiedad tomada. La operación debe abrir y
+     * confirmar su propia transacción, para que el siguiente vea la reserva ya guardada.
+     */
+    public <T> T conBloqueo(Long propiedadId, Supplier<T> operacion) {
+        ReentrantLock cerrojo = franjas[Math.floorMod(propiedadId.hashCode(), franjas.length)];
+
+        if (!cerrojo.tryLock()) {
+            esperas.incrementAndGet();
+            try {
+                if (!cerrojo.tryLock(esperaMaxima, TimeUnit.MILLISECONDS)) {
+                    agotadas.incrementAndGet();
+                    logger.warn("Espera agotada por la propiedad {} ({} en cola)", propiedadId, cerrojo.getQueueLength());
+                    throw new RuntimeException("La propiedad está recibiendo muchas solicitudes, inténtalo de nuevo en unos segundos");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Solicitud de reserva interrumpida");
+            }
+        }
+
+        try {
+            return operacion.get();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Anota una solicitud rechazada por solaparse con otra reserva
+     */
+    public void registrarConflicto() {
+        conflictos.incrementAndGet();
+    }
+
+    public long getEsperas() {
+        return esperas.get();
+    }
+
+    public long getConflictos() {
+        return conflictos.get();
+    }
+
+    public long getAgotadas() {
+        return agotadas.get();
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.demo.reserva.service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.reserva.model.CalendarioOcupacion;
+import com.example.demo.reserva.repository.ReservaRepository;
+
+/**
+ * Índice en memoria de disponibilidad: un mapa de bits de días ocupados por propiedad
+ * sobre un horizonte móvil que empieza hoy. Se carga al arrancar, se reconstruye cada
+ * noche para desplazar el horizonte y se mantiene al día con los cambios de estado
+ * de las reservas.
+ *
+ * Mientras no está cargado, o si el rango pedido queda fuera del horizonte,
+ * cubre() devuelve false y los llamadores deben consultar la base de datos.
+ */
+@Service
+public class DisponibilidadIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DisponibilidadIndexService.class);
+
+    @Autowired
+    private ReservaRepository reservaRepository;
+
+    @Value("${homeflex.disponibilidad.horizonte-dias:730}")
+    private int horizonteDias;
+
+    private volatile Estado estado;
+
+    // Cambios recibidos mientras se reconstruye el índice, para reaplicarlos al terminar
+    private final List<Consumer<Estado>> pendientes = new ArrayList<>();
+    private boolean reconstruyendo;
+
+    private record Estado(LocalDate origen, int dias, Map<Long, CalendarioOcupacion> calendarios) {
+
+        int indice(LocalDate fecha) {
+            return (int) ChronoUnit.DAYS.between(origen, fecha);
+        }
+
+        CalendarioOcupacion calendario(Long propiedadId) {
+            return calendarios.computeIfAbsent(propiedadId, id -> new CalendarioOcupacion(dias));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        reconstruir();
+    }
+
+    /**
+     * Reconstruye el índice desde la base de datos desplazando el origen a hoy
+     */
+    @Scheduled(cron = "${homeflex.disponibilidad.cron:0 10 0 * * *}")
+    public void reconstruir() {
+        synchronized (pendientes) {
+            reconstruyendo = true;
+            pendientes.clear();
+        }
+
+        try {
+            LocalDate origen = LocalDate.now();
+            Estado nuevo = new Estado(origen, horizonteDias, new ConcurrentHashMap<>());
+
+            List<Object[]> intervalos = reservaRepository.findIntervalosActivosDesde(origen);
+            for (Object[] fila : intervalos) {
+                Long reservaId = (Long) fila[0];
+                Long propiedadId = (Long) fila[1];
+                LocalDate inicio = (LocalDate) fila[2];
+                LocalDate fin = (LocalDate) fila[3];
+                nuevo.calendario(propiedadId).marcar(reservaId, nuevo.indice(inicio), nuevo.indice(fin));
+            }
+
+            synchronized (pendientes) {
+                pendientes.forEach(cambio -> cambio.accept(nuevo));
+                estado = nuevo;
+            }
+            logger.info("Índice de disponibilidad reconstruido: {} reservas en {} propiedades desde {}",
+                        intervalos.size(), nuevo.calendarios().size(), origen);
+        } catch (Exception e) {
+            logger.error("Error al reconstruir el índice de disponibilidad: {}", e.getMessage(), e);
+        } finally {
+            synchronized (pendientes) {
+                reconstruyendo = false;
+                pendientes.clear();
+            }
+        }
+    }
+
+    /**
+     * Indica si el índice está cargado y el rango [inicio, fin] cae dentro del horizonte
+     */
+    public boolean cubre(LocalDate inicio, LocalDate fin) {
+        Estado actual = estado;
+        return actual != null
+                && !inicio.isBefore(actual.origen())
+                && actual.indice(fin) < actual.dias();
+    }
+
+    /**
+     * Indica si la propiedad tiene algún día ocupado en [inicio, fin].
+     * Solo es fiable si cubre(inicio, fin) es true.
+     */
+    public boolean estaOcupada(Long propiedadId, LocalDate inicio, LocalDate fin) {
+        Estado actual = estado;
+        if (actual == null) {
+            throw new IllegalStateException("El índice de disponibilidad no está cargado");
+        }
+        CalendarioOcupacion calendario = actual.calendarios().get(propiedadId);
+        return calendario != null && calendario.estaOcupado(actual.indice(inicio), actual.indice(fin));
+    }
+
+    /**
+     * Devuelve los IDs de las propiedades con algún día ocupado en [inicio, fin]
+     */
+    public Set<Long> propiedadesOcupadas(LocalDate inicio, LocalDate fin) {
+        Estado actual = estado;
+        if (actual == null) {
+            throw new IllegalStateException("El índice de disponibilidad no está cargado");
+        }
+        int desde = actual.indice(inicio);
+        int hasta = actual.indice(fin);
+
+        Set<Long> ocupadas = new HashSet<>();
+        actual.calendarios().forEach((propiedadId, calendario) -> {
+            if (calendario.estaOcupado(desde, hasta)) {
+                ocupadas.add(propiedadId);
+            }
+        });
+        return ocupadas;
+    }
+
+    /**
+     * Devuelve los días ocupados de la propiedad dentro de [desde, hasta]
+     */
+    public List<LocalDate> fechasOcupadas(Long propiedadId, LocalDate desde, LocalDate hasta) {
+        Estado actual = estado;
+        if (actual == null) {
+            throw new IllegalStateException("El índice de disponibilidad no está cargado");
+        }
+        List<LocalDate> fechas = new ArrayList<>();
+        CalendarioOcupacion calendario = actual.calendarios().get(propiedadId);
+        if (calendario == null) {
+            return fechas;
+        }
+        for (int[] tramo : calendario.tramosOcupados(actual.indice(desde), actual.indice(hasta))) {
+            for (int i = tramo[0]; i <= tramo[1]; i++) {
+                fechas.add(actual.origen().plusDays(i));
+            }
+        }
+        return fechas;
+    }
+
+    /**
+     * Devuelve por propiedad los tramos ocupados dentro de [desde, hasta] como pares
+     * {inicio, fin} inclusivos, en días contados desde "desde". Las propiedades sin
+     * ocupación aparecen con una lista vacía.
+     * Solo es fiable si cubre(desde, hasta) es true.
+     */
+    public Map<Long, List<int[]>> tramosOcupados(Collection<Long> propiedadIds, LocalDate desde, LocalDate hasta) {
+        Estado actual = estado;
+        if (actual == null) {
+            throw new IllegalStateException("El índice de disponibilidad no está cargado");
+        }
+        int base = actual.indice(desde);
+        int limite = actual.indice(hasta);
+
+        Map<Long, List<int[]>> tramos = new LinkedHashMap<>();
+        for (Long propiedadId : propiedadIds) {
+            CalendarioOcupacion calendario = actual.calendarios().get(propiedadId);
+            List<int[]> propios = calendario != null ? calendario.tramosOcupados(base, limite) : new ArrayList<>();
+            for (int[] tramo : propios) {
+                tramo[0] -= base;
+                tramo[1] -= base;
+            }
+            tramos.put(propiedadId, propios);
+        }
+        return tramos;
+    }
+
+    /**
+     * Marca como ocupados los días de una reserva activa
+     */
+    public void registrarReserva(Long reservaId, Long propiedadId, LocalDate inicio, LocalDate fin) {
+        aplicar(e -> e.calendario(propiedadId).marcar(reservaId, e.indice(inicio), e.indice(fin)));
+    }
+
+    /**
+     * Libera los días de una reserva cancelada o rechazada
+     */
+    public void liberarReserva(Long reservaId, Long propiedadId) {
+        aplicar(e -> {
+            CalendarioOcupacion calendario = e.calendarios().get(propiedadId);
+            if (calendario != null && calendario.liberar(reservaId) && calendario.isVacio()) {
+                e.calendarios().remove(propiedadId);
+            }
+        });
+    }
+
+    private void aplicar(Consumer<Estado> cambio) {
+        synchronized (pendientes) {
+            if (reconstruyendo) {
+                pendientes.add(cambio);
+            }
+            Estado actual = estado;
+            if (actual != null) {
+                cambio.accept(actual);
+            }
+        }
+    }
+}
@@ -5,30 +5,48 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Period;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.demo.propiedad.model.PropiedadVO;
 import com.example.demo.propiedad.service.PropiedadService;
+import com.example.demo.reserva.event.ReservaEstadoCambiadoEvent;
+import com.example.demo.reserva.model.CalendariosOcupacionDTO;
 import com.example.demo.reserva.model.EstadoReserva;
 import com.example.demo.reserva.model.ReservaDTO;
 import com.example.demo.reserva.model.ReservaVO;
 import com.example.demo.reserva.model.SolicitudReservaDTO;
 import com.example.demo.reserva.repository.ReservaRepository;
+import com.example.demo.tarifa.service.MotorPreciosService;
 import com.example.demo.usuario.model.UsuarioVO;
 import com.example.demo.usuario.service.UsuarioService;
 
 @Service
 public class ReservaService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ReservaService.class);
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+    
     @Autowired
     private ReservaRepository reservaRepository;
     
@@ -38,11 +56,52 @@ public class ReservaService {
     @Autowired
     private UsuarioService usuarioService;
     
+    @Autowired
+    private DisponibilidadIndexService disponibilidadIndex;
+    
+    @Autowired
+    private BloqueoReservasService bloqueoReservas;
+    
+    @Autowired
+    private RetencionFechasService retencionFechas;
+    
+    @Autowired
+    private MotorPreciosService motorPrecios;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    // Límites de la consulta de calendarios de varias propiedades
+    @Value("${homeflex.reservas.calendario.max-propiedades:100}")
+    private int maxPropiedadesCalendario;
+    
+    @Value("${homeflex.reservas.calendario.max-dias:366}")
+    private int maxDiasCalendario;
+    
     /**
-     * Crea una nueva solicitud de reserva
+     * Crea una nueva solicitud de reserva.
+     *
+     * La comprobación de disponibilidad y el alta no pueden intercalarse con otra
+     * solicitud de la misma propiedad: se ejecutan con la propiedad bloqueada en esta
+     * instancia y, dentro de la transacción, también en la base de datos. El bloqueo se
+     * suelta después del commit, cuando la reserva ya es visible para la siguiente.
      */
-    @Transactional
     public ReservaDTO crearSolicitud(SolicitudReservaDTO solicitud, String username) {
+        if (solicitud.getPropiedadId() == null) {
+            throw new RuntimeException("Propiedad no encontrada");
+        }
+        // Fechas apartadas por otro usuario: se rechaza sin esperar turno ni consultar la base de datos
+        if (solicitud.getFechaInicio() != null && solicitud.getFechaFin() != null
+                && retencionFechas.estaRetenida(solicitud.getPropiedadId(),
+                        solicitud.getFechaInicio(), solicitud.getFechaFin(), username)) {
+            bloqueoReservas.registrarConflicto();
+            throw new RuntimeException("La propiedad no está disponible para las fechas seleccionadas");
+        }
+        return bloqueoReservas.conBloqueo(solicitud.getPropiedadId(),
+                () -> transactionTemplate.execute(estado -> registrarSolicitud(solicitud, username)));
+    }
+    
+    private ReservaDTO registrarSolicitud(SolicitudReservaDTO solicitud, String username) {
         // Validar que el usuario existe
         UsuarioVO usuario = usuarioService.buscarPorUsername(username);
         
@@ -68,8 +127,10 @@ public class ReservaService {
             throw new RuntimeException("El número de huéspedes excede la capacidad de la propiedad");
         }
         
-        // Verificar disponibilidad
+        // Verificar disponibilidad con el calendario bloqueado hasta el commit
+        reservaRepository.bloquearCalendario(propiedad.getId());
         if (reservaRepository.existsReservaActivaEnRango(propiedad, solicitud.getFechaInicio(), solicitud.getFechaFin())) {
+            bloqueoReservas.registrarConflicto();
             throw new RuntimeException("La propiedad no está disponible para las fechas seleccionadas");
         }
         
@@ -91,30 +152,21 @@ public class ReservaService {
         
         // Guardar la reserva
         ReservaVO reservaGuardada = reservaRepository.save(reserva);
+        publicarCambioEstado(reservaGuardada, null);
+        
+        // La retención del inquilino, si la había, pasa a liberarse con la reserva
+        retencionFechas.asociarReserva(reservaGuardada.getId(), propiedad.getId(),
+                reserva.getFechaInicio(), reserva.getFechaFin(), username);
         
         // Convertir a DTO
         return new ReservaDTO(reservaGuardada);
     }
     
     /**
-     * Calcula el precio total de la reserva
+     * Calcula el precio total de la reserva con las tarifas vigentes de la propiedad
      */
     private BigDecimal calcularPrecioTotal(PropiedadVO propiedad, LocalDate fechaInicio, LocalDate fechaFin) {
-        long dias = ChronoUnit.DAYS.between(fechaInicio, fechaFin);
-        
-        // Si hay precio semanal y la estancia es de 7 días o más, se aplica ese precio
-        if (propiedad.getPrecioSemana() != null && dias >= 7) {
-            long semanas = dias / 7;
-            long diasSueltos = dias % 7;
-            
-            BigDecimal precioPorSemanas = propiedad.getPrecioSemana().multiply(BigDecimal.valueOf(semanas));
-            BigDecimal precioPorDias = propiedad.getPrecioDia().multiply(BigDecimal.valueOf(diasSueltos));
-            
-            return precioPorSemanas.add(precioPorDias);
-        } else {
-            // Precio por día
-            return propiedad.getPrecioDia().multiply(BigDecimal.valueOf(dias));
-        }
+        return motorPrecios.cotizar(propiedad.getId(), fechaInicio, fechaFin).getTotal();
     }
     
     /**
@@ -124,6 +176,16 @@ public class ReservaService {
         return "HF-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
     }
     
+    /**
+     * Publica el cambio de estado de una reserva para los índices y vistas derivadas
+     */
+    private void publicarCambioEstado(ReservaVO reserva, EstadoReserva estadoAnterior) {
+        applicationEventPublisher.publishEvent(new ReservaEstadoCambiadoEvent(
+                reserva.getId(), reserva.getPropiedad().getId(),
+                reserva.getFechaInicio(), reserva.getFechaFin(),
+                estadoAnterior, reserva.getEstado()));
+    }
+    
     /**
      * Obtiene todas las reservas de un usuario (inquilino)
      */
@@ -244,9 +306,11 @@ public class ReservaService {
         }
         
         // Cambiar estado
+        EstadoReserva estadoAnterior = reserva.getEstado();
         reserva.setEstado(EstadoReserva.PENDIENTE_PAGO);
         
         ReservaVO reservaActualizada = reservaRepository.save(reserva);
+        publicarCambioEstado(reservaActualizada, estadoAnterior);
         
         return new ReservaDTO(reservaActualizada);
     }
@@ -269,6 +333,7 @@ public class ReservaService {
         }
         
         // Cambiar estado
+        EstadoReserva estadoAnterior = reserva.getEstado();
         reserva.setEstado(EstadoReserva.CANCELADA);
         
         // Guardar motivo en los comentarios
@@ -278,6 +343,7 @@ public class ReservaService {
         }
         
         ReservaVO reservaActualizada = reservaRepository.save(reserva);
+        publicarCambioEstado(reservaActualizada, estadoAnterior);
         
         return new ReservaDTO(reservaActualizada);
     }
@@ -300,9 +366,11 @@ public class ReservaService {
         }
         
         // Cambiar estado
+        EstadoReserva estadoAnterior = reserva.getEstado();
         reserva.setEstado(EstadoReserva.PAGO_VERIFICADO);
         
         ReservaVO reservaActualizada = reservaRepository.save(reserva);
+        publicarCambioEstado(reservaActualizada, estadoAnterior);
         
         return new ReservaDTO(reservaActualizada);
     }
@@ -325,10 +393,12 @@ public class ReservaService {
         }
         
         // Cambiar estado
+        EstadoReserva estadoAnterior = reserva.getEstado();
         reserva.setEstado(EstadoReserva.CONFIRMADA);
         reserva.setFechaConfirmacion(LocalDateTime.now());
         
         ReservaVO reservaActualizada = reservaRepository.save(reserva);
+        publicarCambioEstado(reservaActualizada, estadoAnterior);
         
         return new ReservaDTO(reservaActualizada);
     }
@@ -355,6 +425,7 @@ public class ReservaService {
         }
         
         // Cambiar estado
+        EstadoReserva estadoAnterior = reserva.getEstado();
         reserva.setEstado(EstadoReserva.CANCELADA);
         
         // Guardar motivo y quien canceló en los comentarios
@@ -366,6 +437,7 @@ public class ReservaService {
         }
         
         ReservaVO reservaActualizada = reservaRepository.save(reserva);
+        publicarCambioEstado(reservaActualizada, estadoAnterior);
         
         return new ReservaDTO(reservaActualizada);
     }
@@ -374,6 +446,16 @@ public class ReservaService {
      * Verifica la disponibilidad de una propiedad para un rango de fechas
      */
     public boolean verificarDisponibilidad(Long propiedadId, LocalDate fechaInicio, LocalDate fechaFin) {
+        return verificarDisponibilidad(propiedadId, fechaInicio, fechaFin, null);
+    }
+    
+    /**
+     * Verifica la disponibilidad para un usuario concreto: sus propias retenciones no
+     * cuentan como ocupación
+     * @param username null si no hay usuario autenticado
+     */
+    public boolean verificarDisponibilidad(Long propiedadId, LocalDate fechaInicio, LocalDate fechaFin,
+                                           String username) {
         // Validar fechas
         if (fechaInicio.isAfter(fechaFin)) {
             throw new RuntimeException("La fecha de inicio debe ser anterior a la fecha de fin");
@@ -383,6 +465,19 @@ public class ReservaService {
             throw new RuntimeException("La fecha de inicio debe ser futura");
         }
         
+        // Fechas que otro usuario está reservando ahora mismo
+        if (retencionFechas.estaRetenida(propiedadId, fechaInicio, fechaFin, username)) {
+            return false;
+        }
+        
+        // Resolver con el índice en memoria si cubre el rango
+        if (disponibilidadIndex.cubre(fechaInicio, fechaFin)) {
+            if (!propiedadService.existePropiedad(propiedadId)) {
+                throw new RuntimeException("Propiedad no encontrada");
+            }
+            return !disponibilidadIndex.estaOcupada(propiedadId, fechaInicio, fechaFin);
+        }
+        
         // Obtener la propiedad
         PropiedadVO propiedad = propiedadService.obtenerPropiedadCompleta(propiedadId);
         
@@ -390,6 +485,43 @@ public class ReservaService {
         return !reservaRepository.existsReservaActivaEnRango(propiedad, fechaInicio, fechaFin);
     }
     
+    /**
+     * Aparta las fechas para el usuario mientras completa la solicitud de reserva
+     * @throws RuntimeException si las fechas no están disponibles
+     */
+    public RetencionFechasService.Retencion retenerFechas(Long propiedadId, LocalDate fechaInicio,
+                                                         LocalDate fechaFin, String username) {
+        if (!verificarDisponibilidad(propiedadId, fechaInicio, fechaFin, username)) {
+            throw new RuntimeException("La propiedad no está disponible para las fechas seleccionadas");
+        }
+        return retencionFechas.retener(propiedadId, fechaInicio, fechaFin, username);
+    }
+    
+    /**
+     * Libera una retención del usuario (abandona el proceso de reserva)
+     */
+    public boolean liberarRetencion(String token, String username) {
+        return retencionFechas.liberar(token, username);
+    }
+    
+    /**
+     * Renueva la retención de las fechas de una reserva mientras el inquilino está en la
+     * pasarela de pago. Se libera al registrarse el pago o cancelarse la reserva.
+     */
+    public void retenerParaPago(Long reservaId) {
+        ReservaVO reserva = obtenerReservaCompletaPorId(reservaId);
+        if (reserva.getEstado() != EstadoReserva.PENDIENTE_PAGO) {
+            return;
+        }
+        try {
+            retencionFechas.retenerParaPago(reservaId, reserva.getPropiedad().getId(),
+                    reserva.getFechaInicio(), reserva.getFechaFin(), reserva.getUsuario().getUsername());
+        } catch (RuntimeException e) {
+            // La reserva aprobada manda sobre cualquier retención; el pago sigue adelante
+            logger.warn("No se pudo retener las fechas de la reserva {}: {}", reservaId, e.getMessage());
+        }
+    }
+    
     /**
      * Obtiene las reservas para una propiedad
      */
@@ -407,27 +539,79 @@ public class ReservaService {
      * Obtiene las fechas ocupadas para una propiedad en un rango (para mostrar en calendario)
      */
     public List<LocalDate> obtenerFechasOcupadas(Long propiedadId, LocalDate desde, LocalDate hasta) {
-        PropiedadVO propiedad = propiedadService.obtenerPropiedadCompleta(propiedadId);
+        if (!propiedadService.existePropiedad(propiedadId)) {
+            throw new RuntimeException("Propiedad no encontrada");
+        }
         
-        // Obtener las reservas activas en ese rango
-        List<ReservaVO> reservasEnRango = reservaRepository.findReservasActivasEnRango(
-                propiedad, desde, hasta);
-        
-        // Generar lista de todas las fechas ocupadas
-        return reservasEnRango.stream()
-                .flatMap(reserva -> {
-                    // Para cada reserva, generar todas las fechas incluidas
-                    LocalDate start = reserva.getFechaInicio();
-                    LocalDate end = reserva.getFechaFin();
-                    
-                    return start.datesUntil(end.plusDays(1));
-                })
-                .distinct()
-                .collect(Collectors.toList());
+        if (disponibilidadIndex.cubre(desde, hasta)) {
+            return disponibilidadIndex.fechasOcupadas(propiedadId, desde, hasta);
+        }
+        
+        // Tramos ya fusionados: cada día sale una sola vez aunque haya reservas solapadas
+        List<LocalDate> fechas = new ArrayList<>();
+        for (int[] tramo : tramosDesdeBaseDeDatos(List.of(propiedadId), desde, hasta).get(propiedadId)) {
+            for (int i = tramo[0]; i <= tramo[1]; i++) {
+                fechas.add(desde.plusDays(i));
+            }
+        }
+        return fechas;
+    }
+    
+    /**
+     * Calendarios de ocupación de varias propiedades en una sola llamada (mapa de la
+     * búsqueda, listados). Sale del índice en memoria si cubre la ventana; si no, de una
+     * única consulta para todas las propiedades. Los IDs inexistentes aparecen libres.
+     */
+    public CalendariosOcupacionDTO obtenerCalendarios(Collection<Long> propiedadIds, LocalDate desde, LocalDate hasta) {
+        if (desde.isAfter(hasta)) {
+            throw new RuntimeException("La fecha de inicio debe ser anterior a la fecha de fin");
+        }
+        if (ChronoUnit.DAYS.between(desde, hasta) >= maxDiasCalendario) {
+            throw new RuntimeException("La ventana de fechas no puede superar " + maxDiasCalendario + " días");
+        }
+        Set<Long> ids = new LinkedHashSet<>(propiedadIds);
+        ids.remove(null);
+        if (ids.size() > maxPropiedadesCalendario) {
+            throw new RuntimeException("No se pueden consultar más de " + maxPropiedadesCalendario + " propiedades a la vez");
+        }
+        
+        Map<Long, List<int[]>> tramos = disponibilidadIndex.cubre(desde, hasta)
+                ? disponibilidadIndex.tramosOcupados(ids, desde, hasta)
+                : tramosDesdeBaseDeDatos(ids, desde, hasta);
+        return new CalendariosOcupacionDTO(desde, hasta, tramos);
+    }
+    
+    /**
+     * Tramos ocupados por propiedad a partir de los intervalos de reserva, que llegan
+     * ordenados por propiedad y fecha de inicio: se fusionan los que se solapan o son
+     * contiguos y se recortan a la ventana.
+     */
+    private Map<Long, List<int[]>> tramosDesdeBaseDeDatos(Collection<Long> propiedadIds,
+                                                         LocalDate desde, LocalDate hasta) {
+        Map<Long, List<int[]>> tramos = new LinkedHashMap<>();
+        propiedadIds.forEach(id -> tramos.put(id, new ArrayList<>()));
+        if (propiedadIds.isEmpty()) {
+            return tramos;
+        }
+        
+        int limite = (int) ChronoUnit.DAYS.between(desde, hasta);
+        for (Object[] fila : reservaRepository.findIntervalosActivosDePropiedades(propiedadIds, desde, hasta)) {
+            List<int[]> propios = tramos.get((Long) fila[0]);
+            int inicio = (int) Math.max(0, ChronoUnit.DAYS.between(desde, (LocalDate) fila[1]));
+            int fin = (int) Math.min(limite, ChronoUnit.DAYS.between(desde, (LocalDate) fila[2]));
+            
+            int[] ultimo = propios.isEmpty() ? null : propios.get(propios.size() - 1);
+            if (ultimo != null && inicio <= ultimo[1] + 1) {
+                ultimo[1] = Math.max(ultimo[1], fin);
+            } else {
+                propios.add(new int[] { inicio, fin });
+            }
+        }
+        return tramos;
     }
     
     /**
-     * Filtra reservas por criterios avanzados para un propietario
+     * Filtra reservas por criterios avanzados para un propietario (paginado en la base de datos)
      */
     public Page<ReservaDTO> filtrarReservasPropietario(
             String username, 
@@ -436,51 +620,11 @@ public class ReservaService {
             Pageable pageable) {
         
         UsuarioVO propietario = usuarioService.buscarPorUsername(username);
-        
-        // Obtener todas las reservas del propietario
-        List<ReservaVO> todasReservas;
-        
-        if (estado != null) {
-            todasReservas = reservaRepository.findByPropietarioAndEstado(propietario, estado);
-        } else {
-            todasReservas = reservaRepository.findByPropietario(propietario);
-        }
-        
-        // Filtrar por texto de búsqueda
-        List<ReservaVO> reservasFiltradas = todasReservas;
-        
-        if (busqueda != null && !busqueda.trim().isEmpty()) {
-            String busquedaLower = busqueda.toLowerCase();
-            
-            reservasFiltradas = todasReservas.stream()
-                    .filter(r -> 
-                        r.getPropiedad().getTitulo().toLowerCase().contains(busquedaLower) ||
-                        r.getUsuario().getNombre().toLowerCase().contains(busquedaLower) ||
-                        r.getUsuario().getApellidos().toLowerCase().contains(busquedaLower) ||
-                        r.getCodigoReserva().toLowerCase().contains(busquedaLower)
-                    )
-                    .collect(Collectors.toList());
-        }
-        
-        // Aplicar paginación
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), reservasFiltradas.size());
-        
-        // Sublistado para la página actual
-        List<ReservaVO> paginaReservas = start < end ? 
-                reservasFiltradas.subList(start, end) : 
-                List.of();
-        
-        // Convertir a DTOs
-        List<ReservaDTO> reservasDTO = paginaReservas.stream()
-                .map(ReservaDTO::new)
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(reservasDTO, pageable, reservasFiltradas.size());
+        return reservaRepository.buscarDePropietario(propietario.getId(), estado, busqueda, pageable);
     }
     
     /**
-     * Filtra reservas por criterios avanzados para un inquilino
+     * Filtra reservas por criterios avanzados para un inquilino (paginado en la base de datos)
      */
     public Page<ReservaDTO> filtrarReservasInquilino(
             String username, 
@@ -489,46 +633,6 @@ public class ReservaService {
             Pageable pageable) {
         
         UsuarioVO inquilino = usuarioService.buscarPorUsername(username);
-        
-        // Obtener todas las reservas del inquilino
-        List<ReservaVO> todasReservas;
-        
-        if (estado != null) {
-            todasReservas = reservaRepository.findByUsuarioAndEstado(inquilino, estado);
-        } else {
-            todasReservas = reservaRepository.findByUsuario(inquilino);
-        }
-        
-        // Filtrar por texto de búsqueda
-        List<ReservaVO> reservasFiltradas = todasReservas;
-        
-        if (busqueda != null && !busqueda.trim().isEmpty()) {
-            String busquedaLower = busqueda.toLowerCase();
-            
-            reservasFiltradas = todasReservas.stream()
-                    .filter(r -> 
-                        r.getPropiedad().getTitulo().toLowerCase().contains(busquedaLower) ||
-                        r.getPropiedad().getCiudad().toLowerCase().contains(busquedaLower) ||
-                        r.getPropiedad().getPais().toLowerCase().contains(busquedaLower) ||
-                        r.getCodigoReserva().toLowerCase().contains(busquedaLower)
-                    )
-                    .collect(Collectors.toList());
-        }
-        
-        // Aplicar paginación
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), reservasFiltradas.size());
-        
-        // Sublistado para la página actual
-        List<ReservaVO> paginaReservas = start < end ? 
-                reservasFiltradas.subList(start, end) : 
-                List.of();
-        
-        // Convertir a DTOs
-        List<ReservaDTO> reservasDTO = paginaReservas.stream()
-                .map(ReservaDTO::new)
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(reservasDTO, pageable, reservasFiltradas.size());
+        return reservaRepository.buscarDeInquilino(inquilino.getId(), estado, busqueda, pageable);
     }
 }
\ No newline at end of file
@@ -0,0 +1,295 @@
+package com.example.demo.reserva.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Retenciones temporales de fechas mientras un usuario completa una reserva.
+ *
+ * Una retención aparta unas fechas de una propiedad durante unos minutos: empieza al
+ * abrir el proceso de reserva, pasa a estar ligada a la reserva cuando se crea la
+ * solicitud, se renueva al iniciar el pago y desaparece al pagarse o cancelarse la
+ * reserva, o al caducar. Mientras dura, las comprobaciones de disponibilidad y la
+ * búsqueda tratan esas fechas como ocupadas para el resto de usuarios sin consultar
+ * la tabla de reservas.
+ *
+ * Vive sólo en memoria: tras un reinicio se pierden las retenciones, lo que únicamente
+ * adelanta su caducidad. Las caducadas las retira un hilo que espera sobre una DelayQueue.
+ */
+@Service
+public class RetencionFechasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetencionFechasService.class);
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    // Duración de la retención mientras se rellena la solicitud
+    @Value("${homeflex.reservas.retencion.minutos:15}")
+    private long minutosSolicitud;
+
+    // Duración de la retención renovada al pasar a la pasarela de pago
+    @Value("${homeflex.reservas.retencion.pago-minutos:30}")
+    private long minutosPago;
+
+    // Retenciones sin reserva que puede acumular un usuario, para que nadie acapare fechas
+    @Value("${homeflex.reservas.retencion.max-por-usuario:3}")
+    private int maxPorUsuario;
+
+    /**
+     * Fechas [inicio, fin] apartadas para un usuario hasta el instante expira (epoch ms)
+     * @param reservaId null mientras la solicitud no se ha creado
+     */
+    public record Retencion(String token, Long propiedadId, LocalDate inicio, LocalDate fin,
+                            String titular, Long reservaId, long expira) implements Delayed {
+
+        boolean vigente(long ahora) {
+            return expira > ahora;
+        }
+
+        boolean solapa(LocalDate desde, LocalDate hasta) {
+            return !inicio.isAfter(hasta) && !fin.isBefore(desde);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unidad) {
+            return unidad.convert(expira - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed otra) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), otra.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    // Listas inmutables por propiedad: las lecturas no toman ningún cerrojo
+    private final Map<Long, List<Retencion>> porPropiedad = new ConcurrentHashMap<>();
+    private final Map<String, Retencion> porToken = new ConcurrentHashMap<>();
+    private final DelayQueue<Retencion> caducidades = new DelayQueue<>();
+    private final Object cerrojo = new Object();
+
+    private Thread barrido;
+    private volatile boolean activo;
+
+    @PostConstruct
+    public void init() {
+        activo = true;
+        barrido = new Thread(this::bucleCaducidad, "retenciones-caducidad");
+        barrido.setDaemon(true);
+        barrido.start();
+
+        meterRegistry.ifAvailable(registry ->
+                Gauge.builder("homeflex.reservas.retenciones", porToken, Map::size)
+                     .description("Retenciones de fechas vigentes")
+                     .register(registry));
+    }
+
+    @PreDestroy
+    public void detener() {
+        activo = false;
+        barrido.interrupt();
+    }
+
+    /**
+     * Aparta las fechas para el usuario mientras rellena la solicitud. Si ya tenía una
+     * retención que se solapa en la misma propiedad (renueva o cambia de fechas) se
+     * sustituye conservando el token.
+     * @throws RuntimeException si otro usuario tiene retenidas fechas que se solapan
+     */
+    public Retencion retener(Long propiedadId, LocalDate inicio, LocalDate fin, String titular) {
+        return guardar(propiedadId, inicio, fin, titular, null, minutosSolicitud);
+    }
+
+    /**
+     * Aparta las fechas de una reserva mientras el inquilino está en la pasarela de pago
+     */
+    public Retencion retenerParaPago(Long reservaId, Long propiedadId, LocalDate inicio, LocalDate fin,
+                                     String titular) {
+        return guardar(propiedadId, inicio, fin, titular, reservaId, minutosPago);
+    }
+
+    /**
+     * Liga a la reserva recién creada las retenciones del titular sobre esas fechas, que a
+     * partir de ahora se liberan con ella. No crea ninguna si no las había.
+     */
+    public void asociarReserva(Long reservaId, Long propiedadId, LocalDate inicio, LocalDate fin, String titular) {
+        synchronized (cerrojo) {
+            List<Retencion> actuales = porPropiedad.getOrDefault(propiedadId, List.of());
+            List<Retencion> nuevas = new ArrayList<>(actuales.size());
+            for (Retencion r : actuales) {
+                if (r.titular().equals(titular) && r.reservaId() == null && r.solapa(inicio, fin)) {
+                    Retencion ligada = new Retencion(r.token(), propiedadId, r.inicio(), r.fin(),
+                                                     titular, reservaId, r.expira());
+                    porToken.put(r.token(), ligada);
+                    caducidades.add(ligada);
+                    nuevas.add(ligada);
+                } else {
+                    nuevas.add(r);
+                }
+            }
+            if (!actuales.isEmpty()) {
+                porPropiedad.put(propiedadId, List.copyOf(nuevas));
+            }
+        }
+    }
+
+    /**
+     * Libera una retención de su titular
+     * @return false si no existe, ya caducó o es de otro usuario
+     */
+    public boolean liberar(String token, String titular) {
+        Retencion retencion = porToken.get(token);
+        if (retencion == null || !retencion.titular().equals(titular)) {
+            return false;
+        }
+        return quitar(retencion);
+    }
+
+    /**
+     * Libera las retenciones ligadas a una reserva (pagada o cancelada)
+     */
+    public void liberarDeReserva(Long reservaId) {
+        for (Retencion retencion : porToken.values()) {
+            if (reservaId.equals(retencion.reservaId())) {
+                quitar(retencion);
+            }
+        }
+    }
+
+    /**
+     * Indica si alguien distinto de exceptoTitular tiene retenido algún día de [inicio, fin]
+     * @param exceptoTitular null para tener en cuenta todas las retenciones
+     */
+    public boolean estaRetenida(Long propiedadId, LocalDate inicio, LocalDate fin, String exceptoTitular) {
+        long ahora = System.currentTimeMillis();
+        for (Retencion r : porPropiedad.getOrDefault(propiedadId, List.of())) {
+            if (r.vigente(ahora) && r.solapa(inicio, fin) && !r.titular().equals(exceptoTitular)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve los IDs de las propiedades con algún día de [inicio, fin] retenido
+     */
+    public Set<Long> propiedadesRetenidas(LocalDate inicio, LocalDate fin) {
+        long ahora = System.currentTimeMillis();
+        Set<Long> retenidas = new HashSet<>();
+        porPropiedad.forEach((propiedadId, lista) -> {
+            for (Retencion r : lista) {
+                if (r.vigente(ahora) && r.solapa(inicio, fin)) {
+                    retenidas.add(propiedadId);
+                    return;
+                }
+            }
+        });
+        return retenidas;
+    }
+
+    private Retencion guardar(Long propiedadId, LocalDate inicio, LocalDate fin, String titular,
+                              Long reservaId, long minutos) {
+        if (inicio.isAfter(fin)) {
+            throw new RuntimeException("La fecha de inicio debe ser anterior a la fecha de fin");
+        }
+        long ahora = System.currentTimeMillis();
+
+        synchronized (cerrojo) {
+            List<Retencion> resto = new ArrayList<>();
+            List<Retencion> propias = new ArrayList<>();
+            for (Retencion r : porPropiedad.getOrDefault(propiedadId, List.of())) {
+                if (!r.vigente(ahora)) {
+                    continue;
+                }
+                if (!r.solapa(inicio, fin)) {
+                    resto.add(r);
+                } else if (r.titular().equals(titular)) {
+                    propias.add(r);
+                } else {
+                    throw new RuntimeException("Otro usuario está completando una reserva para esas fechas. "
+                            + "Inténtalo de nuevo en unos minutos");
+                }
+            }
+
+            if (reservaId == null && propias.isEmpty() && retencionesSueltas(titular, ahora) >= maxPorUsuario) {
+                throw new RuntimeException("Tienes demasiadas reservas a medias. Termina o cancela alguna antes de empezar otra");
+            }
+
+            String token = propias.isEmpty() ? UUID.randomUUID().toString() : propias.get(0).token();
+            Long reserva = reservaId != null ? reservaId : propias.stream()
+                    .map(Retencion::reservaId)
+                    .filter(id -> id != null)
+                    .findFirst()
+                    .orElse(null);
+
+            Retencion nueva = new Retencion(token, propiedadId, inicio, fin, titular, reserva,
+                                            ahora + TimeUnit.MINUTES.toMillis(minutos));
+            propias.forEach(r -> porToken.remove(r.token(), r));
+            resto.add(nueva);
+            porPropiedad.put(propiedadId, List.copyOf(resto));
+            porToken.put(token, nueva);
+            caducidades.add(nueva);
+            return nueva;
+        }
+    }
+
+    private long retencionesSueltas(String titular, long ahora) {
+        return porToken.values().stream()
+                .filter(r -> r.titular().equals(titular) && r.reservaId() == null && r.vigente(ahora))
+                .count();
+    }
+
+    /**
+     * Retira la retención si sigue siendo la vigente para su token (una renovación la
+     * sustituye por otra con distinta caducidad, que no se toca)
+     */
+    private boolean quitar(Retencion retencion) {
+        synchronized (cerrojo) {
+            if (!porToken.remove(retencion.token(), retencion)) {
+                return false;
+            }
+            porPropiedad.computeIfPresent(retencion.propiedadId(), (id, lista) -> {
+                List<Retencion> resto = lista.stream().filter(r -> !r.equals(retencion)).toList();
+                return resto.isEmpty() ? null : resto;
+            });
+            return true;
+        }
+    }
+
+    private void bucleCaducidad() {
+        while (activo) {
+            try {
+                Retencion caducada = caducidades.take();
+                if (quitar(caducada)) {
+                    logger.debug("Retención {} de la propiedad {} caducada", caducada.token(), caducada.propiedadId());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Error al retirar retenciones caducadas: {}", e.getMessage(), e);
+            }
+        }
+    }
+}
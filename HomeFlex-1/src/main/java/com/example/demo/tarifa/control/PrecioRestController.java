@@ -0,0 +1,111 @@
+package com.example.demo.tarifa.control;
+
+import java.security.Principal;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.tarifa.model.CotizacionDTO;
+import com.example.demo.tarifa.model.TarifaDTO;
+import com.example.demo.tarifa.service.MotorPreciosService;
+import com.example.demo.tarifa.service.TarifaService;
+import com.example.demo.utils.ApiResponse;
+
+import jakarta.validation.Valid;
+
+@RestController
+@RequestMapping("/api/precios")
+public class PrecioRestController {
+
+    @Autowired
+    private MotorPreciosService motorPrecios;
+
+    @Autowired
+    private TarifaService tarifaService;
+
+    /**
+     * Precio total de la misma estancia en varias propiedades (una página de resultados)
+     */
+    @GetMapping("/cotizaciones")
+    public ResponseEntity<?> cotizar(
+            @RequestParam List<Long> ids,
+            @RequestParam String fechaInicio,
+            @RequestParam String fechaFin) {
+
+        try {
+            LocalDate inicio = LocalDate.parse(fechaInicio);
+            LocalDate fin = LocalDate.parse(fechaFin);
+            if (!inicio.isBefore(fin)) {
+                throw new RuntimeException("La fecha de inicio debe ser anterior a la fecha de fin");
+            }
+
+            List<CotizacionDTO> cotizaciones = motorPrecios.cotizar(ids, inicio, fin);
+            return ResponseEntity.ok(cotizaciones);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ApiResponse(false, "Error al calcular los precios: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Tarifas de temporada y de fin de semana de una propiedad
+     */
+    @GetMapping("/propiedades/{propiedadId}/tarifas")
+    public ResponseEntity<List<TarifaDTO>> obtenerTarifas(@PathVariable Long propiedadId) {
+        return ResponseEntity.ok(tarifaService.obtenerTarifas(propiedadId));
+    }
+
+    /**
+     * Añade una tarifa a una propiedad del propietario autenticado
+     */
+    @PostMapping("/propiedades/{propiedadId}/tarifas")
+    @PreAuthorize("hasRole('ROLE_PROPIETARIO')")
+    public ResponseEntity<?> crearTarifa(
+            @PathVariable Long propiedadId,
+            @Valid @RequestBody TarifaDTO tarifa,
+            Principal principal) {
+
+        try {
+            TarifaDTO creada = tarifaService.crearTarifa(propiedadId, tarifa, principal.getName());
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(new ApiResponse(true, "Tarifa creada correctamente", creada));
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ApiResponse(false, "Error al crear la tarifa: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Elimina una tarifa de una propiedad del propietario autenticado
+     */
+    @DeleteMapping("/propiedades/{propiedadId}/tarifas/{tarifaId}")
+    @PreAuthorize("hasRole('ROLE_PROPIETARIO')")
+    public ResponseEntity<?> eliminarTarifa(
+            @PathVariable Long propiedadId,
+            @PathVariable Long tarifaId,
+            Principal principal) {
+
+        try {
+            tarifaService.eliminarTarifa(propiedadId, tarifaId, principal.getName());
+            return ResponseEntity.ok(new ApiResponse(true, "Tarifa eliminada correctamente"));
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ApiResponse(false, "Error al eliminar la tarifa: " + e.getMessage()));
+        }
+    }
+}
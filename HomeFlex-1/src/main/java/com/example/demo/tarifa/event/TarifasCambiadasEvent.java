@@ -0,0 +1,16 @@
+package com.example.demo.tarifa.event;
+
+/**
+ * Se publica al crear o borrar una tarifa de una propiedad
+ */
+public class TarifasCambiadasEvent {
+    private final Long propiedadId;
+
+    public TarifasCambiadasEvent(Long propiedadId) {
+        this.propiedadId = propiedadId;
+    }
+
+    public Long getPropiedadId() {
+        return propiedadId;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.tarifa.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.propiedad.event.PropiedadDeletedEvent;
+import com.example.demo.propiedad.event.PropiedadUpdatedEvent;
+import com.example.demo.tarifa.event.TarifasCambiadasEvent;
+import com.example.demo.tarifa.service.MotorPreciosService;
+
+/**
+ * Descarta la tabla de precios precalculada de una propiedad cuando cambian sus precios
+ * base o sus tarifas; la siguiente cotización la vuelve a construir
+ */
+@Component
+public class TarifasListener {
+
+    @Autowired
+    private MotorPreciosService motorPrecios;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handleTarifasCambiadasEvent(TarifasCambiadasEvent event) {
+        motorPrecios.invalidar(event.getPropiedadId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadUpdatedEvent(PropiedadUpdatedEvent event) {
+        motorPrecios.invalidar(event.getPropiedadId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePropiedadDeletedEvent(PropiedadDeletedEvent event) {
+        motorPrecios.invalidar(event.getPropiedadId());
+    }
+}
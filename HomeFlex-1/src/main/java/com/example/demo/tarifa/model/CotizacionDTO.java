@@ -0,0 +1,30 @@
+package com.example.demo.tarifa.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Precio total de una estancia: las noches van de fechaInicio a la víspera de fechaFin
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CotizacionDTO {
+
+    private Long propiedadId;
+
+    private LocalDate fechaInicio;
+
+    private LocalDate fechaFin;
+
+    private int noches;
+
+    private BigDecimal total;
+
+    // Total entre noches, para mostrar en las tarjetas
+    private BigDecimal precioMedioNoche;
+}
@@ -0,0 +1,45 @@
+package com.example.demo.tarifa.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para crear y listar las tarifas de una propiedad
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TarifaDTO {
+
+    private Long id;
+
+    @NotBlank(message = "El nombre de la tarifa es obligatorio")
+    @Size(max = 100, message = "El nombre no puede superar los 100 caracteres")
+    private String nombre;
+
+    private LocalDate fechaInicio;
+
+    private LocalDate fechaFin;
+
+    @DecimalMin(value = "0.01", message = "El precio por noche debe ser positivo")
+    private BigDecimal precioNoche;
+
+    @DecimalMin(value = "0.01", message = "El precio de fin de semana debe ser positivo")
+    private BigDecimal precioFinSemana;
+
+    public TarifaDTO(TarifaVO tarifa) {
+        this.id = tarifa.getId();
+        this.nombre = tarifa.getNombre();
+        this.fechaInicio = tarifa.getFechaInicio();
+        this.fechaFin = tarifa.getFechaFin();
+        this.precioNoche = tarifa.getPrecioNoche();
+        this.precioFinSemana = tarifa.getPrecioFinSemana();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.tarifa.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import com.example.demo.propiedad.model.PropiedadVO;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Tarifa de temporada de una propiedad: precio por noche y, opcionalmente, uno distinto
+ * para las noches de fin de semana. Sin fechas se aplica todo el año (por ejemplo, solo
+ * para subir los fines de semana); con fechas, las noches de [fechaInicio, fechaFin].
+ */
+@Entity
+@Table(name = "tarifa",
+       indexes = @Index(name = "idx_tarifa_propiedad", columnList = "propiedad_id"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TarifaVO {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Se borra con la propiedad
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "propiedad_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private PropiedadVO propiedad;
+
+    @Column(length = 100, nullable = false)
+    private String nombre;
+
+    @Column(name = "fecha_inicio")
+    private LocalDate fechaInicio;
+
+    @Column(name = "fecha_fin")
+    private LocalDate fechaFin;
+
+    // null para dejar el precio de la tarifa anterior (o el de la propiedad)
+    @Column(name = "precio_noche", precision = 10, scale = 2)
+    private BigDecimal precioNoche;
+
+    @Column(name = "precio_fin_semana", precision = 10, scale = 2)
+    private BigDecimal precioFinSemana;
+}
@@ -0,0 +1,23 @@
+package com.example.demo.tarifa.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.tarifa.model.TarifaVO;
+
+@Repository
+public interface TarifaRepository extends JpaRepository<TarifaVO, Long> {
+
+    List<TarifaVO> findByPropiedadIdOrderByIdAsc(Long propiedadId);
+
+    List<TarifaVO> findByPropiedadIdIn(Collection<Long> propiedadIds);
+
+    // Precios base de varias propiedades, sin cargar las entidades
+    @Query("SELECT p.id, p.precioDia, p.precioSemana FROM PropiedadVO p WHERE p.id IN :propiedadIds")
+    List<Object[]> findPreciosBase(@Param("propiedadIds") Collection<Long> propiedadIds);
+}
@@ -0,0 +1,244 @@
+package com.example.demo.tarifa.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.tarifa.model.CotizacionDTO;
+import com.example.demo.tarifa.model.TarifaVO;
+import com.example.demo.tarifa.repository.TarifaRepository;
+import com.example.demo.utils.CacheLocal;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Cálculo del precio de las estancias a partir del precio base de la propiedad y de sus
+ * tarifas de temporada y de fin de semana.
+ *
+ * Por cada propiedad con tarifas se precalcula, desde hoy y sobre un horizonte fijo, la
+ * suma acumulada del precio de cada noche (en céntimos): el total de cualquier estancia
+ * dentro del horizonte son dos lecturas del array. Las propiedades sin tarifas no
+ * necesitan array (noches × precio por día) y las estancias fuera del horizonte se suman
+ * noche a noche.
+ *
+ * El precio semanal de la propiedad se aplica como proporción: las noches de las semanas
+ * completas se cobran por precio semanal / (7 × precio por día) de su precio. Sin tarifas
+ * equivale a semanas × precio semanal + noches sueltas × precio por día.
+ */
+@Service
+public class MotorPreciosService {
+
+    @Autowired
+    private TarifaRepository tarifaRepository;
+
+    @Value("${homeflex.precios.horizonte-dias:730}")
+    private int horizonteDias;
+
+    // Noches que se cobran a precio de fin de semana (la del viernes y la del sábado)
+    @Value("${homeflex.precios.dias-fin-de-semana:FRIDAY,SATURDAY}")
+    private DayOfWeek[] diasFinDeSemana;
+
+    @Value("${homeflex.precios.cache.max-propiedades:5000}")
+    private int maxPropiedadesCache;
+
+    // Acota lo que tarda en desplazarse el origen de los arrays al cambiar de día
+    @Value("${homeflex.precios.cache.ttl-minutos:360}")
+    private long ttlMinutos;
+
+    @Value("${homeflex.precios.cotizacion.max-propiedades:100}")
+    private int maxPropiedadesCotizacion;
+
+    private Set<DayOfWeek> finDeSemana;
+    private CacheLocal<Long, TablaPrecios> tablas;
+
+    /**
+     * Tarifa en céntimos. Sin fechas (inicio null) se aplica todo el año.
+     */
+    private record Regla(LocalDate inicio, LocalDate fin, Long noche, Long finSemana) {
+
+        boolean cubre(LocalDate dia) {
+            return inicio == null || (!dia.isBefore(inicio) && !dia.isAfter(fin));
+        }
+
+        // Las de temporada más cortas mandan sobre las más largas, y todas sobre las anuales
+        long alcance() {
+            return inicio == null ? Long.MAX_VALUE : ChronoUnit.DAYS.between(inicio, fin);
+        }
+    }
+
+    /**
+     * Precios de una propiedad en céntimos
+     * @param acumulado acumulado[i] = precio de las noches [origen, origen + i); null sin tarifas
+     */
+    private record TablaPrecios(long precioDia, Long precioSemana, List<Regla> reglas,
+                                LocalDate origen, long[] acumulado) {
+    }
+
+    @PostConstruct
+    public void init() {
+        finDeSemana = EnumSet.noneOf(DayOfWeek.class);
+        finDeSemana.addAll(List.of(diasFinDeSemana));
+        tablas = new CacheLocal<>(maxPropiedadesCache, Duration.ofMinutes(ttlMinutos));
+    }
+
+    /**
+     * Precio de una estancia en una propiedad
+     * @throws RuntimeException si la propiedad no existe
+     */
+    public CotizacionDTO cotizar(Long propiedadId, LocalDate fechaInicio, LocalDate fechaFin) {
+        TablaPrecios tabla = tablas.obtener(propiedadId, id -> {
+            TablaPrecios cargada = cargar(List.of(id)).get(id);
+            if (cargada == null) {
+                throw new RuntimeException("Propiedad no encontrada");
+            }
+            return cargada;
+        });
+        return cotizacion(propiedadId, tabla, fechaInicio, fechaFin);
+    }
+
+    /**
+     * Precio de la misma estancia en varias propiedades (tarjetas de una página de
+     * resultados). Las que no están en caché se cargan juntas con dos consultas; las que
+     * no existen se omiten.
+     */
+    public List<CotizacionDTO> cotizar(Collection<Long> propiedadIds, LocalDate fechaInicio, LocalDate fechaFin) {
+        Set<Long> ids = new LinkedHashSet<>(propiedadIds);
+        ids.remove(null);
+        if (ids.size() > maxPropiedadesCotizacion) {
+            throw new RuntimeException("No se pueden cotizar más de " + maxPropiedadesCotizacion + " propiedades a la vez");
+        }
+
+        Map<Long, TablaPrecios> encontradas = tablas.obtenerTodos(ids, this::cargar);
+
+        List<CotizacionDTO> cotizaciones = new ArrayList<>();
+        for (Long id : ids) {
+            TablaPrecios tabla = encontradas.get(id);
+            if (tabla != null) {
+                cotizaciones.add(cotizacion(id, tabla, fechaInicio, fechaFin));
+            }
+        }
+        return cotizaciones;
+    }
+
+    /**
+     * Descarta la tabla de una propiedad tras cambiar sus precios o sus tarifas
+     */
+    public void invalidar(Long propiedadId) {
+        tablas.invalidar(propiedadId);
+    }
+
+    private CotizacionDTO cotizacion(Long propiedadId, TablaPrecios tabla, LocalDate fechaInicio, LocalDate fechaFin) {
+        int noches = (int) Math.max(0, ChronoUnit.DAYS.between(fechaInicio, fechaFin));
+        BigDecimal total = BigDecimal.valueOf(totalCentimos(tabla, fechaInicio, noches), 2);
+        BigDecimal medio = noches > 0
+                ? total.divide(BigDecimal.valueOf(noches), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO.setScale(2);
+        return new CotizacionDTO(propiedadId, fechaInicio, fechaFin, noches, total, medio);
+    }
+
+    private long totalCentimos(TablaPrecios tabla, LocalDate fechaInicio, int noches) {
+        if (noches == 0) {
+            return 0;
+        }
+
+        long suma = sumaNoches(tabla, fechaInicio, noches);
+
+        long semanaBase = 7 * tabla.precioDia();
+        if (tabla.precioSemana() != null && noches >= 7 && semanaBase > 0) {
+            long sumaSemanas = sumaNoches(tabla, fechaInicio, noches / 7 * 7);
+            // Redondeo a céntimos; exacto cuando las semanas van a precio por día
+            long conDescuento = (Math.multiplyExact(sumaSemanas, tabla.precioSemana()) + semanaBase / 2) / semanaBase;
+            suma += conDescuento - sumaSemanas;
+        }
+        return Math.max(0, suma);
+    }
+
+    /**
+     * Precio de las noches [fechaInicio, fechaInicio + noches) sin descuento semanal
+     */
+    private long sumaNoches(TablaPrecios tabla, LocalDate fechaInicio, int noches) {
+        if (tabla.acumulado() == null) {
+            return noches * tabla.precioDia();
+        }
+        long desde = ChronoUnit.DAYS.between(tabla.origen(), fechaInicio);
+        long hasta = desde + noches;
+        if (desde >= 0 && hasta < tabla.acumulado().length) {
+            return tabla.acumulado()[(int) hasta] - tabla.acumulado()[(int) desde];
+        }
+        long suma = 0;
+        for (int i = 0; i < noches; i++) {
+            suma += precioNoche(tabla, fechaInicio.plusDays(i));
+        }
+        return suma;
+    }
+
+    /**
+     * Precio de la noche que empieza en dia: el de fin de semana o el normal de la regla
+     * más específica que lo define, o el precio por día de la propiedad
+     */
+    private long precioNoche(TablaPrecios tabla, LocalDate dia) {
+        boolean esFinDeSemana = finDeSemana.contains(dia.getDayOfWeek());
+        for (Regla regla : tabla.reglas()) {
+            if (!regla.cubre(dia)) {
+                continue;
+            }
+            if (esFinDeSemana && regla.finSemana() != null) {
+                return regla.finSemana();
+            }
+            if (regla.noche() != null) {
+                return regla.noche();
+            }
+        }
+        return tabla.precioDia();
+    }
+
+    private Map<Long, TablaPrecios> cargar(Collection<Long> propiedadIds) {
+        Map<Long, List<Regla>> reglas = new HashMap<>();
+        for (TarifaVO tarifa : tarifaRepository.findByPropiedadIdIn(propiedadIds)) {
+            reglas.computeIfAbsent(tarifa.getPropiedad().getId(), id -> new ArrayList<>())
+                  .add(new Regla(tarifa.getFechaInicio(), tarifa.getFechaFin(),
+                                 centimos(tarifa.getPrecioNoche()), centimos(tarifa.getPrecioFinSemana())));
+        }
+
+        LocalDate origen = LocalDate.now();
+        Map<Long, TablaPrecios> cargadas = new HashMap<>();
+        for (Object[] fila : tarifaRepository.findPreciosBase(propiedadIds)) {
+            Long id = (Long) fila[0];
+            List<Regla> propias = reglas.getOrDefault(id, List.of()).stream()
+                    .sorted(Comparator.comparingLong(Regla::alcance))
+                    .toList();
+            TablaPrecios tabla = new TablaPrecios(centimos((BigDecimal) fila[1]), centimos((BigDecimal) fila[2]),
+                                                  propias, origen, null);
+            cargadas.put(id, propias.isEmpty() ? tabla : conAcumulado(tabla));
+        }
+        return cargadas;
+    }
+
+    private TablaPrecios conAcumulado(TablaPrecios tabla) {
+        long[] acumulado = new long[horizonteDias + 1];
+        for (int i = 0; i < horizonteDias; i++) {
+            acumulado[i + 1] = acumulado[i] + precioNoche(tabla, tabla.origen().plusDays(i));
+        }
+        return new TablaPrecios(tabla.precioDia(), tabla.precioSemana(), tabla.reglas(), tabla.origen(), acumulado);
+    }
+
+    private static Long centimos(BigDecimal importe) {
+        return importe == null ? null : importe.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.tarifa.service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.propiedad.model.PropiedadVO;
+import com.example.demo.propiedad.service.PropiedadService;
+import com.example.demo.tarifa.event.TarifasCambiadasEvent;
+import com.example.demo.tarifa.model.TarifaDTO;
+import com.example.demo.tarifa.model.TarifaVO;
+import com.example.demo.tarifa.repository.TarifaRepository;
+
+@Service
+public class TarifaService {
+
+    @Autowired
+    private TarifaRepository tarifaRepository;
+
+    @Autowired
+    private PropiedadService propiedadService;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * Tarifas de una propiedad
+     */
+    public List<TarifaDTO> obtenerTarifas(Long propiedadId) {
+        return tarifaRepository.findByPropiedadIdOrderByIdAsc(propiedadId).stream()
+                .map(TarifaDTO::new)
+                .toList();
+    }
+
+    /**
+     * Añade una tarifa a una propiedad del usuario
+     */
+    @Transactional
+    public TarifaDTO crearTarifa(Long propiedadId, TarifaDTO datos, String username) {
+        PropiedadVO propiedad = propiedadDelPropietario(propiedadId, username);
+
+        if ((datos.getFechaInicio() == null) != (datos.getFechaFin() == null)) {
+            throw new RuntimeException("Indica las dos fechas de la temporada o ninguna para todo el año");
+        }
+        if (datos.getFechaInicio() != null && datos.getFechaInicio().isAfter(datos.getFechaFin())) {
+            throw new RuntimeException("La fecha de inicio debe ser anterior a la fecha de fin");
+        }
+        if (datos.getPrecioNoche() == null && datos.getPrecioFinSemana() == null) {
+            throw new RuntimeException("La tarifa debe indicar al menos un precio");
+        }
+
+        TarifaVO tarifa = new TarifaVO();
+        tarifa.setPropiedad(propiedad);
+        tarifa.setNombre(datos.getNombre());
+        tarifa.setFechaInicio(datos.getFechaInicio());
+        tarifa.setFechaFin(datos.getFechaFin());
+        tarifa.setPrecioNoche(datos.getPrecioNoche());
+        tarifa.setPrecioFinSemana(datos.getPrecioFinSemana());
+
+        TarifaVO guardada = tarifaRepository.save(tarifa);
+        applicationEventPublisher.publishEvent(new TarifasCambiadasEvent(propiedadId));
+        return new TarifaDTO(guardada);
+    }
+
+    /**
+     * Elimina una tarifa de una propiedad del usuario
+     */
+    @Transactional
+    public void eliminarTarifa(Long propiedadId, Long tarifaId, String username) {
+        propiedadDelPropietario(propiedadId, username);
+
+        TarifaVO tarifa = tarifaRepository.findById(tarifaId)
+                .filter(t -> t.getPropiedad().getId().equals(propiedadId))
+                .orElseThrow(() -> new RuntimeException("Tarifa no encontrada"));
+
+        tarifaRepository.delete(tarifa);
+        applicationEventPublisher.publishEvent(new TarifasCambiadasEvent(propiedadId));
+    }
+
+    private PropiedadVO propiedadDelPropietario(Long propiedadId, String username) {
+        PropiedadVO propiedad = propiedadService.obtenerPropiedadCompleta(propiedadId);
+        if (!propiedad.getPropietario().getUsername().equals(username)) {
+            throw new RuntimeException("No tienes permiso para modificar las tarifas de esta propiedad");
+        }
+        return propiedad;
+    }
+}
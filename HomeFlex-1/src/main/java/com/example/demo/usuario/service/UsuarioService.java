@@ -8,6 +8,7 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -17,9 +18,13 @@ import org.springframework.transaction.annotation.Transactional;
 import com.example.demo.email.service.EmailService;
 import com.example.demo.foto.model.FotoVO;
 import com.example.demo.foto.repository.FotoRepository;
+import com.example.demo.foto.service.FotoVariantesService;
+import com.example.demo.propiedad.event.PropiedadDeletedEvent;
 import com.example.demo.propiedad.model.PropiedadDTO;
 import com.example.demo.propiedad.model.PropiedadVO;
 import com.example.demo.propiedad.repository.PropiedadRepository;
+import com.example.demo.reserva.event.ReservaEstadoCambiadoEvent;
+import com.example.demo.reserva.model.EstadoReserva;
 import com.example.demo.reserva.model.ReservaVO;
 import com.example.demo.reserva.repository.ReservaRepository;
 import com.example.demo.rol.model.RolVO;
@@ -58,12 +63,18 @@ public class UsuarioService {
     @Autowired
     private FotoRepository fotoRepository;
     
+    @Autowired
+    private FotoVariantesService fotoVariantesService;
+    
     @Autowired
     private ReservaRepository reservaRepository;
     
     @Autowired
     private EntityManager entityManager;
     
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+    
     private UsuarioVO convertToUsuarioVO(RegistroDTO dto) {
         UsuarioVO usuario = new UsuarioVO();
         usuario.setUsername(dto.getUsername());
@@ -186,20 +197,22 @@ public class UsuarioService {
             List<PropiedadVO> propiedades = propiedadRepository.findByPropietario(usuario);
             for (PropiedadVO propiedad : propiedades) {
                 List<FotoVO> fotos = fotoRepository.findByPropiedad(propiedad);
+                fotos.forEach(fotoVariantesService::liberarArchivos);
                 fotoRepository.deleteAll(fotos);
                 
                 List<ValoracionVO> valoracionesPropiedad = valoracionRepository.findByPropiedad(propiedad);
                 valoracionRepository.deleteAll(valoracionesPropiedad);
                 
                 List<ReservaVO> reservasPropiedad = reservaRepository.findByPropiedad(propiedad);
-                reservaRepository.deleteAll(reservasPropiedad);
+                eliminarReservas(reservasPropiedad);
                 
                 propiedadRepository.delete(propiedad);
+                applicationEventPublisher.publishEvent(new PropiedadDeletedEvent(propiedad.getId(), usuario.getId()));
             }
             
             // 2. Eliminar todas las reservas del usuario
             List<ReservaVO> reservasUsuario = reservaRepository.findByUsuario(usuario);
-            reservaRepository.deleteAll(reservasUsuario);
+            eliminarReservas(reservasUsuario);
             
             // 3. Eliminar todas las valoraciones del usuario
             List<ValoracionVO> valoracionesUsuario = valoracionRepository.findByUsuario(usuario);
@@ -321,14 +334,33 @@ public class UsuarioService {
             .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
         // eliminar datos relacionados como en darDeBajaUsuario...
         propiedadRepository.findByPropietario(usuario).forEach(prop -> {
-            fotoRepository.deleteAll(fotoRepository.findByPropiedad(prop));
+            List<FotoVO> fotos = fotoRepository.findByPropiedad(prop);
+            fotos.forEach(fotoVariantesService::liberarArchivos);
+            fotoRepository.deleteAll(fotos);
             valoracionRepository.deleteAll(valoracionRepository.findByPropiedad(prop));
-            reservaRepository.deleteAll(reservaRepository.findByPropiedad(prop));
+            eliminarReservas(reservaRepository.findByPropiedad(prop));
             propiedadRepository.delete(prop);
+            applicationEventPublisher.publishEvent(new PropiedadDeletedEvent(prop.getId(), usuario.getId()));
         });
-        reservaRepository.deleteAll(reservaRepository.findByUsuario(usuario));
+        eliminarReservas(reservaRepository.findByUsuario(usuario));
         valoracionRepository.deleteAll(valoracionRepository.findByUsuario(usuario));
         usuario.getRoles().clear();
         usuarioRepository.delete(usuario);
     }
+
+    /**
+     * Borra reservas avisando de cada una como si se cancelara, para que el índice de
+     * disponibilidad, las retenciones y las estadísticas de los propietarios dejen de contarlas
+     */
+    private void eliminarReservas(List<ReservaVO> reservas) {
+        for (ReservaVO reserva : reservas) {
+            if (reserva.getEstado() != EstadoReserva.CANCELADA) {
+                applicationEventPublisher.publishEvent(new ReservaEstadoCambiadoEvent(
+                        reserva.getId(), reserva.getPropiedad().getId(),
+                        reserva.getFechaInicio(), reserva.getFechaFin(),
+                        reserva.getEstado(), EstadoReserva.CANCELADA));
+            }
+        }
+        reservaRepository.deleteAll(reservas);
+    }
 }
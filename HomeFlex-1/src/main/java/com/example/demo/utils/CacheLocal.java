@@ -0,0 +1,191 @@
+package com.example.demo.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Caché en memoria con caducidad por tiempo y número máximo de entradas
+ * (se expulsa la menos usada recientemente).
+ *
+ * Cuando una entrada caduca, el primer hilo que la pide la recarga y el resto
+ * sigue recibiendo el valor anterior mientras tanto, para no lanzar la misma
+ * consulta desde todas las peticiones a la vez. Una invalidación durante una
+ * recarga descarta el valor que se estaba calculando.
+ */
+public class CacheLocal<K, V> {
+
+    private static final class Entrada<V> {
+        final V valor;
+        final long caducaEn;
+        boolean recargando;
+
+        Entrada(V valor, long caducaEn) {
+            this.valor = valor;
+            this.caducaEn = caducaEn;
+        }
+    }
+
+    private final long ttlNanos;
+    private final Map<K, Entrada<V>> entradas;
+    private long generacion;
+    private long aciertos;
+    private long fallos;
+
+    public CacheLocal(int maxEntradas, Duration ttl) {
+        if (maxEntradas <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo de la caché debe ser positivo");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                return size() > maxEntradas;
+            }
+        };
+    }
+
+    /**
+     * Devuelve el valor de la clave, cargándolo con el cargador si no está o ha caducado
+     */
+    public V obtener(K clave, Function<? super K, ? extends V> cargador) {
+        Entrada<V> actual;
+        long generacionInicial;
+        synchronized (this) {
+            actual = entradas.get(clave);
+            if (actual != null) {
+                if (System.nanoTime() - actual.caducaEn < 0) {
+                    aciertos++;
+                    return actual.valor;
+                }
+                if (actual.recargando) {
+                    // Otro hilo ya la está recargando: se sirve la copia anterior
+                    aciertos++;
+                    return actual.valor;
+                }
+                actual.recargando = true;
+            }
+            fallos++;
+            generacionInicial = generacion;
+        }
+
+        V valor;
+        try {
+            valor = cargador.apply(clave);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (actual != null) {
+                    actual.recargando = false;
+                }
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (generacion == generacionInicial) {
+                entradas.put(clave, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+            }
+        }
+        return valor;
+    }
+
+    /**
+     * Devuelve los valores de un lote de claves, cargando de una sola vez las que no están
+     * o han caducado. Sigue las mismas reglas que {@link #obtener}: una invalidación durante
+     * la carga descarta lo cargado. Las claves que el cargador no devuelve se omiten.
+     */
+    public Map<K, V> obtenerTodos(Collection<K> claves, Function<Collection<K>, Map<K, V>> cargador) {
+        Map<K, V> valores = new HashMap<>();
+        List<K> pendientes = new ArrayList<>();
+        List<Entrada<V>> recargas = new ArrayList<>();
+        long generacionInicial;
+        synchronized (this) {
+            long ahora = System.nanoTime();
+            for (K clave : claves) {
+                Entrada<V> actual = entradas.get(clave);
+                if (actual != null && (ahora - actual.caducaEn < 0 || actual.recargando)) {
+                    // Vigente, o caducada que ya recarga otro hilo: se sirve la copia
+                    aciertos++;
+                    valores.put(clave, actual.valor);
+                    continue;
+                }
+                if (actual != null) {
+                    actual.recargando = true;
+                    recargas.add(actual);
+                }
+                fallos++;
+                pendientes.add(clave);
+            }
+            generacionInicial = generacion;
+        }
+        if (pendientes.isEmpty()) {
+            return valores;
+        }
+
+        Map<K, V> cargados;
+        try {
+            cargados = cargador.apply(pendientes);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                recargas.forEach(entrada -> entrada.recargando = false);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (generacion == generacionInicial) {
+                long caducaEn = System.nanoTime() + ttlNanos;
+                for (K clave : pendientes) {
+                    V valor = cargados.get(clave);
+                    if (valor != null) {
+                        entradas.put(clave, new Entrada<>(valor, caducaEn));
+                    } else {
+                        entradas.remove(clave);
+                    }
+                }
+            } else {
+                recargas.forEach(entrada -> entrada.recargando = false);
+            }
+        }
+        for (K clave : pendientes) {
+            V valor = cargados.get(clave);
+            if (valor != null) {
+                valores.put(clave, valor);
+            }
+        }
+        return valores;
+    }
+
+    /**
+     * Elimina una entrada
+     */
+    public synchronized void invalidar(K clave) {
+        generacion++;
+        entradas.remove(clave);
+    }
+
+    /**
+     * Vacía la caché
+     */
+    public synchronized void invalidarTodo() {
+        generacion++;
+        entradas.clear();
+    }
+
+    public synchronized int getTamano() {
+        return entradas.size();
+    }
+
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    public synchronized long getFallos() {
+        return fallos;
+    }
+}
@@ -3,6 +3,10 @@ let usuarioActual = null;
 let contactoActual = null;
 let propiedadActual = null;
 let ultimoMensajeId = null;
+let primerMensajeId = null;
+let hayMensajesAnteriores = false;
+let cargandoAnteriores = false;
+const MENSAJES_POR_PAGINA = 50;
 let intervaloActualizacion = null;
 let imagenSeleccionada = null;
 
@@ -39,13 +43,51 @@ document.addEventListener('DOMContentLoaded', function() {
     // Agregar eventos a elementos
     agregarEventosElementos();
     
-    // Establecer intervalo de actualización (cada 10 segundos)
-    intervaloActualizacion = setInterval(function() {
-        actualizarMensajes();
-        actualizarContadorNoLeidos();
-    }, 10000);
+    if (typeof EventSource === 'undefined') {
+        // Sin server-sent events: intervalo de actualización (cada 10 segundos)
+        intervaloActualizacion = setInterval(function() {
+            actualizarMensajes();
+            actualizarContadorNoLeidos();
+        }, 10000);
+    } else {
+        // La cabecera mantiene el canal en tiempo real y reenvía cada mensaje nuevo
+        document.addEventListener('homeflex:mensaje', function(e) {
+            recibirMensajeEnTiempoReal(e.detail);
+        });
+        // Una imagen aceptada que no se pudo procesar en el servidor
+        document.addEventListener('homeflex:error-adjunto', function(e) {
+            if (String(e.detail.receptorId) !== String(contactoActual)) return;
+            const mensajeCargando = document.querySelector('.mensaje-cargando');
+            if (mensajeCargando) {
+                mensajeCargando.remove();
+            }
+            mostrarNotificacion('No se pudo enviar la imagen', 'error');
+        });
+        // Tras una reconexión se recupera lo que llegase mientras tanto
+        document.addEventListener('homeflex:mensajes-conectado', function() {
+            if (ultimoMensajeId) {
+                actualizarMensajes();
+            }
+        });
+    }
 });
 
+// Procesar un mensaje recibido por el canal en tiempo real
+function recibirMensajeEnTiempoReal(mensaje) {
+    if (window.location.pathname.includes('/mensajes/lista')) {
+        cargarConversaciones();
+        return;
+    }
+    
+    // Sólo interesa si pertenece a la conversación abierta
+    const esDeLaConversacion = contactoActual &&
+        (String(mensaje.emisorId) === String(contactoActual) || String(mensaje.receptorId) === String(contactoActual)) &&
+        (!propiedadActual || String(mensaje.propiedadId) === String(propiedadActual));
+    if (esDeLaConversacion) {
+        actualizarMensajes();
+    }
+}
+
 // Inicializar la interfaz
 function inicializarInterfaz() {
     // Determinar la página actual
@@ -131,7 +173,14 @@ function agregarEventosElementos() {
         chatMessages.addEventListener('click', function(e) {
             const imagen = e.target.closest('.mensaje-imagen img');
             if (imagen) {
-                mostrarImagenAmpliada(imagen.src);
+                mostrarImagenAmpliada(imagen.dataset.completa || imagen.src);
+            }
+        });
+        
+        // Al llegar arriba del todo se carga la página anterior del historial
+        chatMessages.addEventListener('scroll', function() {
+            if (chatMessages.scrollTop < 80) {
+                cargarMensajesAnteriores();
             }
         });
     }
@@ -293,9 +342,9 @@ function mostrarConversaciones(conversaciones) {
 function cargarConversacion(contactoId, propiedadId) {
     const token = getCookie('jwt_token');
     
-    let url = `/api/mensajes/${contactoId}`;
+    let url = `/api/mensajes/${contactoId}/historial?limite=${MENSAJES_POR_PAGINA}`;
     if (propiedadId) {
-        url += `?propiedadId=${propiedadId}`;
+        url += `&propiedadId=${propiedadId}`;
     }
     
     fetch(url, {
@@ -312,9 +361,11 @@ function cargarConversacion(contactoId, propiedadId) {
         return response.json();
     })
     .then(data => {
-        mostrarMensajes(data);
-        if (data.length > 0) {
-            ultimoMensajeId = data[data.length - 1].id;
+        mostrarMensajes(data.mensajes);
+        primerMensajeId = data.cursorAnterior;
+        hayMensajesAnteriores = data.hayMas;
+        if (data.mensajes.length > 0) {
+            ultimoMensajeId = data.cursorSiguiente;
         }
     })
     .catch(error => {
@@ -361,103 +412,157 @@ function mostrarMensajes(mensajes) {
     
     // Añadir todos los mensajes con la fecha de la DB directamente
     mensajes.forEach(mensaje => {
-        // Determinar si el mensaje es propio comparando con el contacto actual
-        const esPropio = contactoActual && (mensaje.receptorId == contactoActual);
+        chatMessages.appendChild(crearElementoMensaje(mensaje));
+    });
+    
+    // Desplazarse al último mensaje
+    chatMessages.scrollTop = chatMessages.scrollHeight;
+}
+
+// Cargar la página anterior del historial y colocarla encima sin mover la vista
+function cargarMensajesAnteriores() {
+    if (!contactoActual || !hayMensajesAnteriores || cargandoAnteriores) return;
+    cargandoAnteriores = true;
+    
+    const token = getCookie('jwt_token');
+    
+    let url = `/api/mensajes/${contactoActual}/historial?limite=${MENSAJES_POR_PAGINA}&antesDe=${primerMensajeId}`;
+    if (propiedadActual) {
+        url += `&propiedadId=${propiedadActual}`;
+    }
+    
+    fetch(url, {
+        headers: {
+            'Authorization': 'Bearer ' + token,
+            'Accept': 'application/json'
+        }
+    })
+    .then(response => {
+        if (response.status === 401) {
+            window.location = '/login';
+            throw new Error('No autorizado');
+        }
+        if (!response.ok) {
+            throw new Error('Error al cargar mensajes anteriores');
+        }
+        return response.json();
+    })
+    .then(data => {
+        const chatMessages = document.querySelector('.chat-messages');
+        const primerMensaje = chatMessages.querySelector('.mensaje');
+        const alturaPrevia = chatMessages.scrollHeight;
         
-        console.log(`Mensaje ID: ${mensaje.id}, Emisor: ${mensaje.emisorId}, Receptor: ${mensaje.receptorId}, Contacto: ${contactoActual}, ¿Es propio?: ${esPropio}`);
+        data.mensajes.forEach(mensaje => {
+            chatMessages.insertBefore(crearElementoMensaje(mensaje), primerMensaje);
+        });
+        chatMessages.scrollTop += chatMessages.scrollHeight - alturaPrevia;
         
-        // Formatear la hora directamente desde la BD
-        let horaFormateada;
-        try {
-            // Obtenemos la fecha de la base de datos
-            // Extrae directamente de la fecha original en formato 2025-05-02 12:32:59.963
-            if (mensaje.fechaEnvio) {
-                // Verificar el formato de fechaEnvio
-                console.log(`Tipo de fechaEnvio para mensaje ID ${mensaje.id}:`, typeof mensaje.fechaEnvio);
+        primerMensajeId = data.cursorAnterior;
+        hayMensajesAnteriores = data.hayMas;
+    })
+    .catch(error => {
+        console.error('Error:', error);
+    })
+    .finally(() => {
+        cargandoAnteriores = false;
+    });
+}
+
+// Crear el elemento de un mensaje con estilo WhatsApp
+function crearElementoMensaje(mensaje) {
+    // Determinar si el mensaje es propio comparando con el contacto actual
+    const esPropio = contactoActual && (mensaje.receptorId == contactoActual);
+    
+    console.log(`Mensaje ID: ${mensaje.id}, Emisor: ${mensaje.emisorId}, Receptor: ${mensaje.receptorId}, Contacto: ${contactoActual}, ¿Es propio?: ${esPropio}`);
+    
+    // Formatear la hora directamente desde la BD
+    let horaFormateada;
+    try {
+        // Obtenemos la fecha de la base de datos
+        // Extrae directamente de la fecha original en formato 2025-05-02 12:32:59.963
+        if (mensaje.fechaEnvio) {
+            // Verificar el formato de fechaEnvio
+            console.log(`Tipo de fechaEnvio para mensaje ID ${mensaje.id}:`, typeof mensaje.fechaEnvio);
+            
+            if (Array.isArray(mensaje.fechaEnvio)) {
+                // Si es un array [año, mes, día, hora, minuto, segundo, ms]
+                // Usar las posiciones 3 y 4 que corresponden a hora y minuto
+                let hora = parseInt(mensaje.fechaEnvio[3]);
+                const minuto = String(mensaje.fechaEnvio[4]).padStart(2, '0');
                 
-                if (Array.isArray(mensaje.fechaEnvio)) {
-                    // Si es un array [año, mes, día, hora, minuto, segundo, ms]
-                    // Usar las posiciones 3 y 4 que corresponden a hora y minuto
-                    let hora = parseInt(mensaje.fechaEnvio[3]);
-                    const minuto = String(mensaje.fechaEnvio[4]).padStart(2, '0');
-                    
-                    // Convertir a formato 12h con AM/PM
-                    const ampm = hora >= 12 ? 'p.m.' : 'a.m.';
-                    hora = hora % 12;
-                    hora = hora ? hora : 12; // 0 -> 12
-                    
-                    horaFormateada = `${hora}:${minuto} ${ampm}`;
-                } else if (typeof mensaje.fechaEnvio === 'string') {
-                    // Si es un string como "2025-05-02 12:32:59.963"
-                    const partes = mensaje.fechaEnvio.split(' ');
-                    if (partes.length === 2) {
-                        const horaParts = partes[1].split(':');
-                        if (horaParts.length >= 2) {
-                            let hora = parseInt(horaParts[0]);
-                            const minuto = horaParts[1];
-                            
-                            // Convertir a formato 12h con AM/PM
-                            const ampm = hora >= 12 ? 'p.m.' : 'a.m.';
-                            hora = hora % 12;
-                            hora = hora ? hora : 12; // 0 -> 12
-                            
-                            horaFormateada = `${hora}:${minuto} ${ampm}`;
-                        } else {
-                            horaFormateada = "12:00 p.m.";
-                        }
-                    } else {
-                        horaFormateada = "12:00 p.m.";
-                    }
-                } else {
-                    // Si es un objeto Date o cualquier otro formato
-                    const fecha = new Date(mensaje.fechaEnvio);
-                    if (!isNaN(fecha.getTime())) {
-                        let horas = fecha.getHours();
-                        const minutos = fecha.getMinutes().toString().padStart(2, '0');
-                        const ampm = horas >= 12 ? 'p.m.' : 'a.m.';
-                        horas = horas % 12;
-                        horas = horas ? horas : 12; // 0 -> 12
+                // Convertir a formato 12h con AM/PM
+                const ampm = hora >= 12 ? 'p.m.' : 'a.m.';
+                hora = hora % 12;
+                hora = hora ? hora : 12; // 0 -> 12
+                
+                horaFormateada = `${hora}:${minuto} ${ampm}`;
+            } else if (typeof mensaje.fechaEnvio === 'string') {
+                // Si es un string como "2025-05-02 12:32:59.963"
+                const partes = mensaje.fechaEnvio.split(' ');
+                if (partes.length === 2) {
+                    const horaParts = partes[1].split(':');
+                    if (horaParts.length >= 2) {
+                        let hora = parseInt(horaParts[0]);
+                        const minuto = horaParts[1];
+                        
+                        // Convertir a formato 12h con AM/PM
+                        const ampm = hora >= 12 ? 'p.m.' : 'a.m.';
+                        hora = hora % 12;
+                        hora = hora ? hora : 12; // 0 -> 12
                         
-                        horaFormateada = `${horas}:${minutos} ${ampm}`;
+                        horaFormateada = `${hora}:${minuto} ${ampm}`;
                     } else {
                         horaFormateada = "12:00 p.m.";
                     }
+                } else {
+                    horaFormateada = "12:00 p.m.";
                 }
             } else {
-                horaFormateada = "12:00 p.m.";
+                // Si es un objeto Date o cualquier otro formato
+                const fecha = new Date(mensaje.fechaEnvio);
+                if (!isNaN(fecha.getTime())) {
+                    let horas = fecha.getHours();
+                    const minutos = fecha.getMinutes().toString().padStart(2, '0');
+                    const ampm = horas >= 12 ? 'p.m.' : 'a.m.';
+                    horas = horas % 12;
+                    horas = horas ? horas : 12; // 0 -> 12
+                    
+                    horaFormateada = `${horas}:${minutos} ${ampm}`;
+                } else {
+                    horaFormateada = "12:00 p.m.";
+                }
             }
-        } catch (error) {
-            console.error(`Error al formatear hora para mensaje ID ${mensaje.id}:`, error);
-            horaFormateada = "12:00 p.m.";
-        }
-        
-        console.log(`Mensaje ID: ${mensaje.id}, Hora original:`, mensaje.fechaEnvio, `Hora formateada: ${horaFormateada}`);
-        
-        const elemento = document.createElement('div');
-        elemento.className = `mensaje ${esPropio ? 'mensaje-enviado' : 'mensaje-recibido'}`;
-        elemento.dataset.id = mensaje.id || '';
-        elemento.dataset.emisor = mensaje.emisorId; // Guardar el emisor para referencia
-        
-        // Mostrar el mensaje según su tipo
-        if (mensaje.tipoMensaje === 'imagen') {
-            elemento.classList.add('mensaje-imagen');
-            elemento.innerHTML = `
-                <img src="${mensaje.urlRecurso}" alt="Imagen compartida">
-                <div class="mensaje-fecha">${horaFormateada}</div>
-            `;
         } else {
-            // Mensaje de texto por defecto
-            elemento.innerHTML = `
-                <div class="mensaje-contenido">${mensaje.contenido}</div>
-                <div class="mensaje-fecha">${horaFormateada}</div>
-            `;
+            horaFormateada = "12:00 p.m.";
         }
-        
-        chatMessages.appendChild(elemento);
-    });
+    } catch (error) {
+        console.error(`Error al formatear hora para mensaje ID ${mensaje.id}:`, error);
+        horaFormateada = "12:00 p.m.";
+    }
     
-    // Desplazarse al último mensaje
-    chatMessages.scrollTop = chatMessages.scrollHeight;
+    console.log(`Mensaje ID: ${mensaje.id}, Hora original:`, mensaje.fechaEnvio, `Hora formateada: ${horaFormateada}`);
+    
+    const elemento = document.createElement('div');
+    elemento.className = `mensaje ${esPropio ? 'mensaje-enviado' : 'mensaje-recibido'}`;
+    elemento.dataset.id = mensaje.id || '';
+    elemento.dataset.emisor = mensaje.emisorId; // Guardar el emisor para referencia
+    
+    // Mostrar el mensaje según su tipo
+    if (mensaje.tipoMensaje === 'imagen') {
+        elemento.classList.add('mensaje-imagen');
+        elemento.innerHTML = `
+            <img src="${mensaje.urlMiniatura || mensaje.urlRecurso}" data-completa="${mensaje.urlRecurso}" alt="Imagen compartida" loading="lazy">
+            <div class="mensaje-fecha">${horaFormateada}</div>
+        `;
+    } else {
+        // Mensaje de texto por defecto
+        elemento.innerHTML = `
+            <div class="mensaje-contenido">${mensaje.contenido}</div>
+            <div class="mensaje-fecha">${horaFormateada}</div>
+        `;
+    }
+    
+    return elemento;
 }
 
 // Función auxiliar para formatear las fechas de los grupos
@@ -708,54 +813,21 @@ function enviarImagen() {
         return response.json();
     })
     .then(data => {
-        // Eliminar indicador de carga
-        const mensajeCargando = document.querySelector('.mensaje-cargando');
-        if (mensajeCargando) {
-            mensajeCargando.remove();
-        }
-        
-        // Resetear selección de imagen
+        // La imagen se procesa en el servidor: el indicador de carga se mantiene hasta que
+        // el mensaje llega como mensaje nuevo de la conversación
         resetearSeleccionImagen();
         
-        // Verificar si hay que crear un nuevo separador de fecha
-        const fecha = new Date();
-        const fechaFormatoGrupo = formatearFechaGrupo(fecha);
-        
-        // Verificar si necesitamos un nuevo separador de fecha
-        let necesitaSeparador = true;
-        const separadores = chatMessages.querySelectorAll('.fecha-separador span');
-        
-        for (let i = 0; i < separadores.length; i++) {
-            if (separadores[i].textContent === fechaFormatoGrupo) {
-                necesitaSeparador = false;
-                break;
+        setTimeout(() => {
+            const mensajeCargando = document.querySelector('.mensaje-cargando');
+            if (mensajeCargando) {
+                mensajeCargando.remove();
+                mostrarNotificacion('La imagen está tardando en procesarse', 'error');
             }
-        }
+        }, 60000);
         
-        // Agregar separador si es necesario
-        if (necesitaSeparador) {
-            const separador = document.createElement('div');
-            separador.className = 'fecha-separador';
-            separador.innerHTML = `<span>${fechaFormatoGrupo}</span>`;
-            chatMessages.appendChild(separador);
+        if (typeof EventSource === 'undefined') {
+            setTimeout(actualizarMensajes, 2000);
         }
-        
-        // Añadir mensaje con imagen a la conversación
-        const elemento = document.createElement('div');
-        elemento.className = 'mensaje mensaje-enviado mensaje-imagen';
-        elemento.dataset.id = data.mensajeId || '';
-        elemento.dataset.emisor = usuarioActual; // Asegurarnos de guardar el emisor
-        
-        elemento.innerHTML = `
-            <img src="${data.url}" alt="Imagen compartida">
-            <div class="mensaje-fecha">${formatearFecha(new Date())}</div>
-        `;
-        
-        chatMessages.appendChild(elemento);
-        chatMessages.scrollTop = chatMessages.scrollHeight;
-        
-        // Actualizar último ID
-        ultimoMensajeId = data.mensajeId;
     })
     .catch(error => {
         console.error('Error:', error);
@@ -777,9 +849,9 @@ function actualizarMensajes() {
     
     const token = getCookie('jwt_token');
     
-    let url = `/api/mensajes/${contactoActual}`;
+    let url = `/api/mensajes/${contactoActual}/nuevos?despuesDe=${ultimoMensajeId || 0}&limite=${MENSAJES_POR_PAGINA}`;
     if (propiedadActual) {
-        url += `?propiedadId=${propiedadActual}`;
+        url += `&propiedadId=${propiedadActual}`;
     }
     
     fetch(url, {
@@ -800,12 +872,18 @@ function actualizarMensajes() {
     })
     .then(data => {
         // Solo añadir mensajes nuevos
-        if (data.length > 0 && ultimoMensajeId) {
-            const nuevosMensajes = data.filter(m => m.id > ultimoMensajeId);
+        if (data.mensajes.length > 0) {
+            const nuevosMensajes = data.mensajes.filter(m => !ultimoMensajeId || m.id > ultimoMensajeId);
             
             if (nuevosMensajes.length > 0) {
                 const chatMessages = document.querySelector('.chat-messages');
                 
+                // Quitar el aviso de conversación vacía
+                const sinMensajes = chatMessages.querySelector('.no-conversacion');
+                if (sinMensajes) {
+                    sinMensajes.remove();
+                }
+                
                 nuevosMensajes.forEach(mensaje => {
                     // Convertimos a string para comparar correctamente
                     const emisorId = String(mensaje.emisorId || '');
@@ -850,8 +928,13 @@ function actualizarMensajes() {
 					                    // Mostrar el mensaje según su tipo
 					                    if (mensaje.tipoMensaje === 'imagen') {
 					                        elemento.classList.add('mensaje-imagen');
+					                        // La imagen propia ya procesada sustituye al indicador de envío
+					                        const mensajeCargando = String(mensaje.receptorId) === String(contactoActual) ? chatMessages.querySelector('.mensaje-cargando') : null;
+					                        if (mensajeCargando) {
+					                            mensajeCargando.remove();
+					                        }
 					                        elemento.innerHTML = `
-					                            <img src="${mensaje.urlRecurso}" alt="Imagen compartida">
+					                            <img src="${mensaje.urlMiniatura || mensaje.urlRecurso}" data-completa="${mensaje.urlRecurso}" alt="Imagen compartida" loading="lazy">
 					                            <div class="mensaje-fecha">${fechaFormateada}</div>
 					                        `;
 					                    } else {
@@ -865,7 +948,7 @@ function actualizarMensajes() {
 					                });
 					                
 					                chatMessages.scrollTop = chatMessages.scrollHeight;
-					                ultimoMensajeId = data[data.length - 1].id;
+					                ultimoMensajeId = data.cursorSiguiente;
 					            }
 					        }
 					    })
@@ -97,7 +97,7 @@ function initPagination() {
     url.searchParams.set('size', size);
     // Preservar filtros en la query string
     new URLSearchParams(window.location.search).forEach((v, k) => {
-      if (['ciudad','ordenar'].includes(k)) url.searchParams.set(k, v);
+      if (['ciudad','texto','fechaInicio','fechaFin','ordenar'].includes(k)) url.searchParams.set(k, v);
     });
 
     const res = await fetch(url, {
@@ -42,7 +42,9 @@ function renderPropiedades(page) {
     card.innerHTML = `
       <div class="row g-0">
         <div class="col-md-4">
-          <img src="${prop.fotoPrincipal}" class="img-fluid rounded-start" alt="${prop.titulo}">
+          <img src="${prop.fotoPrincipal}" srcset="${prop.fotoPrincipalSrcset || ''}"
+               sizes="(min-width: 768px) 33vw, 100vw" loading="lazy"
+               class="img-fluid rounded-start" alt="${prop.titulo}">
         </div>
         <div class="col-md-8">
           <div class="card-body">
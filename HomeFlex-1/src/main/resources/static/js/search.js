@@ -68,6 +68,6 @@ function initializeDatePickers() {
  * @param {string} ciudad - Nombre de la ciudad a establecer
  */
 function seleccionarCiudad(ciudad) {
-  document.querySelector('input[name="ciudad"]').value = ciudad;
+  document.querySelector('input[name="texto"]').value = ciudad;
   return false;
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.example.demo.chatbot.repository;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.chatbot.model.EntityType;
+
+class DocumentEmbeddingRepositoryImplTest {
+
+    private static final String COLUMNAS = "SELECT id, content, content_hash, entity_type, entity_id, created_at, updated_at"
+            + " FROM document_embeddings";
+
+    private JdbcTemplate jdbcTemplate;
+    private DocumentEmbeddingRepositoryImpl repositorio;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        repositorio = new DocumentEmbeddingRepositoryImpl();
+        ReflectionTestUtils.setField(repositorio, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    void elVectorSeEnlazaComoArrayYNoComoTexto() {
+        float[] vector = { 0.5f, -1f, 2f };
+
+        repositorio.findNearest(vector, EntityType.PROPERTY, 5);
+
+        verify(jdbcTemplate).query(
+                eq(COLUMNAS + " WHERE entity_type = 'property'"
+                   + " ORDER BY embedding <-> CAST(CAST(? AS real[]) AS vector) LIMIT ?"),
+                any(RowMapper.class), same(vector), eq(5));
+    }
+
+    @Test
+    void conTodasLasEntidadesNoSeFiltraPorTipo() {
+        float[] vector = { 1f };
+
+        repositorio.findNearest(vector, EntityType.ALL, 3);
+
+        verify(jdbcTemplate).query(
+                eq(COLUMNAS + " ORDER BY embedding <-> CAST(CAST(? AS real[]) AS vector) LIMIT ?"),
+                any(RowMapper.class), same(vector), eq(3));
+    }
+
+    @Test
+    void elCaminoLiteralSigueDisponibleParaComparar() {
+        repositorio.findNearestLiteral("[1.0]", EntityType.REVIEW, 2);
+
+        verify(jdbcTemplate).query(
+                eq(COLUMNAS + " WHERE entity_type = 'review' ORDER BY embedding <-> CAST(? AS vector) LIMIT ?"),
+                any(RowMapper.class), eq("[1.0]"), eq(2));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.demo.chatbot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.chatbot.model.Answer;
+import com.example.demo.chatbot.model.AnswerChunk;
+import com.example.demo.chatbot.model.DocumentEmbedding;
+import com.example.demo.chatbot.model.EntityType;
+import com.example.demo.chatbot.model.ResponseType;
+
+import reactor.core.publisher.Flux;
+
+class ChatbotServiceImplTest {
+
+    private static final String PREGUNTA = "pisos en malaga";
+    private static final float[] VECTOR = { 1f, 0f };
+
+    private ChatModel chatModel;
+    private EmbeddingService embeddingService;
+    private RespuestaCacheService respuestaCache;
+    private ChatbotServiceImpl chatbot;
+
+    @BeforeEach
+    void setUp() {
+        chatModel = mock(ChatModel.class);
+        embeddingService = mock(EmbeddingService.class);
+        respuestaCache = mock(RespuestaCacheService.class);
+        chatbot = new ChatbotServiceImpl(chatModel);
+        ReflectionTestUtils.setField(chatbot, "embeddingService", embeddingService);
+        ReflectionTestUtils.setField(chatbot, "respuestaCache", respuestaCache);
+        ByteArrayResource plantilla = new ByteArrayResource("{documents}\n\n{input}".getBytes(StandardCharsets.UTF_8));
+        ReflectionTestUtils.setField(chatbot, "propertyPromptTemplate", plantilla);
+        ReflectionTestUtils.setField(chatbot, "generalPromptTemplate", plantilla);
+        when(embeddingService.embed(PREGUNTA)).thenReturn(VECTOR);
+    }
+
+    @Test
+    void unaRespuestaEnCacheSeEnviaSinLlamarAlModelo() {
+        when(respuestaCache.buscarExacta(EntityType.PROPERTY, PREGUNTA)).thenReturn(new Answer("Hay dos pisos"));
+
+        List<AnswerChunk> fragmentos = chatbot.streamAnswer(PREGUNTA, EntityType.PROPERTY).collectList().block();
+
+        assertEquals(List.of(AnswerChunk.token("Hay dos pisos"), AnswerChunk.fin(ResponseType.SUCCESS)), fragmentos);
+        verify(chatModel, never()).stream(any(Prompt.class));
+    }
+
+    @Test
+    void losFragmentosDelModeloLleganEnOrdenYLaRespuestaCompletaSeGuarda() {
+        when(embeddingService.similaritySearch(VECTOR, EntityType.PROPERTY, 5, null)).thenReturn(List.of(documento(7L)));
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(fragmento("Hay "), fragmento(""), fragmento("dos pisos")));
+
+        List<AnswerChunk> fragmentos = chatbot.streamAnswer(PREGUNTA, EntityType.PROPERTY).collectList().block();
+
+        assertEquals(List.of(AnswerChunk.token("Hay "), AnswerChunk.token("dos pisos"), AnswerChunk.fin(ResponseType.SUCCESS)),
+                     fragmentos);
+        verify(respuestaCache).guardar(eq(EntityType.PROPERTY), eq(PREGUNTA), eq(VECTOR),
+                                       eq(new Answer("Hay dos pisos", ResponseType.SUCCESS)), eq(Set.of(7L)));
+    }
+
+    @Test
+    void unErrorDelModeloTerminaElStreamConUnFragmentoDeError() {
+        when(embeddingService.similaritySearch(VECTOR, EntityType.PROPERTY, 5, null)).thenReturn(List.of(documento(7L)));
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.error(new IllegalStateException("sin conexión")));
+
+        List<AnswerChunk> fragmentos = chatbot.streamAnswer(PREGUNTA, EntityType.PROPERTY).collectList().block();
+
+        assertEquals(2, fragmentos.size());
+        assertEquals(AnswerChunk.fin(ResponseType.ERROR), fragmentos.get(1));
+        verify(respuestaCache, never()).guardar(any(), any(), any(), any(), any());
+    }
+
+    private static ChatResponse fragmento(String texto) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(texto))));
+    }
+
+    private static DocumentEmbedding documento(Long propiedadId) {
+        DocumentEmbedding documento = new DocumentEmbedding();
+        documento.setEntityType(EntityType.PROPERTY);
+        documento.setEntityId(propiedadId);
+        documento.setContent("Piso en Málaga");
+        return documento;
+    }
+}
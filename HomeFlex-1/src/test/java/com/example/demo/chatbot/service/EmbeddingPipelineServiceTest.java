@@ -0,0 +1,87 @@
+package com.example.demo.chatbot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.chatbot.model.EntityType;
+import com.example.demo.chatbot.repository.DocumentEmbeddingRepository;
+import com.example.demo.propiedad.repository.PropiedadRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+class EmbeddingPipelineServiceTest {
+
+    private EmbeddingService embeddingService;
+    private DocumentEmbeddingRepository embeddingRepository;
+    private PropiedadRepository propiedadRepository;
+    private EmbeddingPipelineService pipeline;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        embeddingService = mock(EmbeddingService.class);
+        embeddingRepository = mock(DocumentEmbeddingRepository.class);
+        propiedadRepository = mock(PropiedadRepository.class);
+
+        pipeline = new EmbeddingPipelineService();
+        ReflectionTestUtils.setField(pipeline, "embeddingService", embeddingService);
+        ReflectionTestUtils.setField(pipeline, "embeddingRepository", embeddingRepository);
+        ReflectionTestUtils.setField(pipeline, "propiedadRepository", propiedadRepository);
+        ReflectionTestUtils.setField(pipeline, "meterRegistry", mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(pipeline, "hilos", 1);
+        ReflectionTestUtils.setField(pipeline, "tamanoLote", 32);
+        ReflectionTestUtils.setField(pipeline, "esperaLoteMs", 50L);
+        ReflectionTestUtils.setField(pipeline, "maxIntentos", 3);
+        ReflectionTestUtils.setField(pipeline, "backoffInicialMs", 10L);
+        ReflectionTestUtils.setField(pipeline, "backoffMaxMs", 100L);
+    }
+
+    @Test
+    void variosCambiosDeLaMismaPropiedadSeFundenEnUnaTarea() {
+        pipeline.encolarActualizacion(1L);
+        pipeline.encolarActualizacion(1L);
+        pipeline.encolarEliminacion(1L);
+        pipeline.encolarActualizacion(2L);
+
+        assertEquals(2, pipeline.getProfundidadCola());
+    }
+
+    @Test
+    void lasTareasEncoladasSeProcesanEnUnSoloLote() {
+        pipeline.encolarActualizacion(1L);
+        pipeline.encolarActualizacion(2L);
+        pipeline.encolarEliminacion(3L);
+        pipeline.encolarEliminacion(1L);
+
+        pipeline.init();
+        try {
+            verify(embeddingService, timeout(2000)).updatePropertyEmbeddings(List.of(2L));
+            verify(embeddingService, timeout(2000)).removePropertyEmbeddings(List.of(1L, 3L));
+        } finally {
+            pipeline.detener();
+        }
+    }
+
+    @Test
+    void reconciliarEncolaLasActivasYLosEmbeddingsHuerfanos() {
+        when(propiedadRepository.findIdsActivos()).thenReturn(List.of(1L, 2L, 3L));
+        when(embeddingRepository.findEntityIdsSinPropiedadActiva(EntityType.PROPERTY)).thenReturn(List.of(7L));
+
+        pipeline.reconciliar();
+
+        assertEquals(4, pipeline.getProfundidadCola());
+        verify(embeddingService, never()).updatePropertyEmbeddings(anyCollection());
+    }
+}
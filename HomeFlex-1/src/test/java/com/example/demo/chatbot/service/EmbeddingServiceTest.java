@@ -0,0 +1,123 @@
+package com.example.demo.chatbot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.chatbot.event.EmbeddingsActualizadosEvent;
+import com.example.demo.chatbot.model.EntityType;
+import com.example.demo.chatbot.repository.DocumentEmbeddingRepository;
+import com.example.demo.propiedad.model.PropiedadVO;
+import com.example.demo.propiedad.repository.PropiedadRepository;
+
+class EmbeddingServiceTest {
+
+    private EmbeddingModel embeddingModel;
+    private DocumentEmbeddingRepository embeddingRepository;
+    private PropiedadRepository propiedadRepository;
+    private ChatbotDataService chatbotDataService;
+    private ApplicationEventPublisher publicador;
+    private EmbeddingService servicio;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        embeddingModel = mock(EmbeddingModel.class);
+        embeddingRepository = mock(DocumentEmbeddingRepository.class);
+        propiedadRepository = mock(PropiedadRepository.class);
+        chatbotDataService = mock(ChatbotDataService.class);
+        publicador = mock(ApplicationEventPublisher.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(inv -> {
+            inv.getArgument(0, Consumer.class).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        servicio = new EmbeddingService();
+        ReflectionTestUtils.setField(servicio, "embeddingModel", embeddingModel);
+        ReflectionTestUtils.setField(servicio, "embeddingRepository", embeddingRepository);
+        ReflectionTestUtils.setField(servicio, "propiedadRepository", propiedadRepository);
+        ReflectionTestUtils.setField(servicio, "chatbotDataService", chatbotDataService);
+        ReflectionTestUtils.setField(servicio, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(servicio, "applicationEventPublisher", publicador);
+        ReflectionTestUtils.setField(servicio, "tamanoLote", 32);
+    }
+
+    @Test
+    void unaPropiedadConElMismoTextoNoSeEnviaAlModelo() {
+        PropiedadVO propiedad = propiedad(1L, "Piso en Málaga");
+        when(propiedadRepository.findAllById(List.of(1L))).thenReturn(List.of(propiedad));
+        huellas(new Object[] { 1L, EmbeddingService.calcularHuella("Piso en Málaga") });
+
+        assertEquals(1, servicio.updatePropertyEmbeddings(List.of(1L)));
+
+        verify(embeddingModel, never()).embed(anyList());
+        verify(embeddingRepository, never()).deleteByEntityTypeAndEntityIdIn(any(), anyCollection());
+        verify(publicador, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void soloSeRegeneranLasCambiadasYSeBorranLasQueYaNoExisten() {
+        when(propiedadRepository.findAllById(List.of(1L, 2L, 3L)))
+                .thenReturn(List.of(propiedad(1L, "Sin cambios"), propiedad(2L, "Texto nuevo")));
+        huellas(new Object[] { 1L, EmbeddingService.calcularHuella("Sin cambios") },
+                new Object[] { 2L, EmbeddingService.calcularHuella("Texto anterior") },
+                new Object[] { 3L, "huella de una propiedad borrada" });
+        when(embeddingModel.embed(List.of("Texto nuevo"))).thenReturn(List.of(new float[] { 1f }));
+
+        assertEquals(1, servicio.updatePropertyEmbeddings(List.of(1L, 2L, 3L)));
+
+        verify(embeddingRepository).deleteByEntityTypeAndEntityIdIn(EntityType.PROPERTY, List.of(2L, 3L));
+        EmbeddingsActualizadosEvent evento = evento();
+        assertEquals(Set.of(2L, 3L), evento.getPropiedadIds());
+        assertFalse(evento.isNuevas());
+    }
+
+    @Test
+    void unaPropiedadSinEmbeddingSeAnunciaComoNueva() {
+        when(propiedadRepository.findAllById(List.of(4L))).thenReturn(List.of(propiedad(4L, "Ático")));
+        when(embeddingModel.embed(List.of("Ático"))).thenReturn(List.of(new float[] { 1f }));
+
+        assertEquals(0, servicio.updatePropertyEmbeddings(List.of(4L)));
+
+        assertTrue(evento().isNuevas());
+    }
+
+    private PropiedadVO propiedad(Long id, String texto) {
+        PropiedadVO propiedad = new PropiedadVO();
+        propiedad.setId(id);
+        when(chatbotDataService.convertPropertyToText(propiedad)).thenReturn(texto);
+        return propiedad;
+    }
+
+    private void huellas(Object[]... filas) {
+        when(embeddingRepository.findContentHashes(any(), anyCollection())).thenReturn(List.of(filas));
+    }
+
+    private EmbeddingsActualizadosEvent evento() {
+        ArgumentCaptor<EmbeddingsActualizadosEvent> evento = ArgumentCaptor.forClass(EmbeddingsActualizadosEvent.class);
+        verify(publicador).publishEvent(evento.capture());
+        return evento.getValue();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo.chatbot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.chatbot.model.Answer;
+import com.example.demo.chatbot.model.EntityType;
+
+class RespuestaCacheServiceTest {
+
+    private static final float[] VECTOR = { 1f, 0f, 0f };
+    private static final float[] PARECIDO = { 0.99f, 0.05f, 0f };
+    private static final float[] DISTINTO = { 0f, 1f, 0f };
+
+    private RespuestaCacheService cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RespuestaCacheService();
+        ReflectionTestUtils.setField(cache, "maxEntradas", 2);
+        ReflectionTestUtils.setField(cache, "ttlMinutos", 60L);
+        ReflectionTestUtils.setField(cache, "umbralSimilitud", 0.95);
+        cache.init();
+    }
+
+    @Test
+    void laPreguntaNormalizadaAciertaEnElPrimerNivel() {
+        Answer respuesta = new Answer("Hay dos pisos en Málaga");
+        cache.guardar(EntityType.PROPERTY, "¿Pisos en Málaga?", VECTOR, respuesta, Set.of(1L));
+
+        assertEquals(respuesta, cache.buscarExacta(EntityType.PROPERTY, "pisos en malaga"));
+        assertNull(cache.buscarExacta(EntityType.REVIEW, "pisos en malaga"));
+    }
+
+    @Test
+    void unaPreguntaParecidaReutilizaLaRespuestaYQuedaComoAlias() {
+        Answer respuesta = new Answer("Hay dos pisos en Málaga");
+        cache.guardar(EntityType.PROPERTY, "pisos en malaga", VECTOR, respuesta, Set.of(1L));
+
+        assertEquals(respuesta, cache.buscarSimilar(EntityType.PROPERTY, "apartamentos en malaga", PARECIDO));
+        assertEquals(respuesta, cache.buscarExacta(EntityType.PROPERTY, "apartamentos en malaga"));
+        assertNull(cache.buscarSimilar(EntityType.PROPERTY, "casas en la playa", DISTINTO));
+    }
+
+    @Test
+    void invalidarUnaPropiedadDescartaLasRespuestasQueLaCitan() {
+        cache.guardar(EntityType.PROPERTY, "pisos en malaga", VECTOR, new Answer("a"), Set.of(1L, 2L));
+        cache.guardar(EntityType.PROPERTY, "casas en la playa", DISTINTO, new Answer("b"), Set.of(3L));
+
+        cache.invalidarPropiedad(2L);
+
+        assertNull(cache.buscarExacta(EntityType.PROPERTY, "pisos en malaga"));
+        assertNull(cache.buscarSimilar(EntityType.PROPERTY, "apartamentos en malaga", PARECIDO));
+        assertEquals("b", cache.buscarExacta(EntityType.PROPERTY, "casas en la playa").answer());
+    }
+
+    @Test
+    void invalidarUnTipoConservaLosDemas() {
+        cache.guardar(EntityType.PROPERTY, "pisos en malaga", VECTOR, new Answer("a"), Set.of(1L));
+        cache.guardar(EntityType.REVIEW, "mejores opiniones", VECTOR, new Answer("b"), Set.of());
+
+        cache.invalidarTipo(EntityType.PROPERTY);
+
+        assertNull(cache.buscarSimilar(EntityType.PROPERTY, "pisos en malaga", VECTOR));
+        assertEquals("b", cache.buscarSimilar(EntityType.REVIEW, "opiniones", VECTOR).answer());
+    }
+
+    @Test
+    void invalidarUnTipoDescartaTambienLasRespuestasGenerales() {
+        ReflectionTestUtils.setField(cache, "maxEntradas", 3);
+        cache.guardar(EntityType.PROPERTY, "pisos en malaga", VECTOR, new Answer("a"), Set.of(1L));
+        cache.guardar(EntityType.ALL, "que hay en malaga", VECTOR, new Answer("b"), Set.of());
+        cache.guardar(EntityType.REVIEW, "mejores opiniones", VECTOR, new Answer("c"), Set.of());
+
+        cache.invalidarTipo(EntityType.PROPERTY);
+
+        assertNull(cache.buscarExacta(EntityType.ALL, "que hay en malaga"));
+        assertNull(cache.buscarSimilar(EntityType.ALL, "que hay en malaga", VECTOR));
+        assertEquals("c", cache.buscarExacta(EntityType.REVIEW, "mejores opiniones").answer());
+    }
+
+    @Test
+    void alSuperarElMaximoSeExpulsaLaMenosUsada() {
+        cache.guardar(EntityType.PROPERTY, "uno", VECTOR, new Answer("1"), Set.of(1L));
+        cache.guardar(EntityType.PROPERTY, "dos", DISTINTO, new Answer("2"), Set.of(2L));
+        cache.buscarExacta(EntityType.PROPERTY, "uno");
+
+        cache.guardar(EntityType.PROPERTY, "tres", new float[] { 0f, 0f, 1f }, new Answer("3"), Set.of(3L));
+
+        assertEquals("1", cache.buscarExacta(EntityType.PROPERTY, "uno").answer());
+        assertNull(cache.buscarExacta(EntityType.PROPERTY, "dos"));
+        assertNull(cache.buscarSimilar(EntityType.PROPERTY, "dos", DISTINTO));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.chatbot.service;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.chatbot.service.VectorIndexService.TipoIndice;
+
+class VectorIndexServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private VectorIndexService indices;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        indices = new VectorIndexService();
+        ReflectionTestUtils.setField(indices, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(indices, "transactionTemplate", mock(TransactionTemplate.class));
+        ReflectionTestUtils.setField(indices, "tipoIndice", TipoIndice.HNSW);
+        ReflectionTestUtils.setField(indices, "hnswM", 16);
+        ReflectionTestUtils.setField(indices, "hnswEfConstruction", 64);
+        ReflectionTestUtils.setField(indices, "hnswEfSearch", 40);
+        ReflectionTestUtils.setField(indices, "ivfflatListas", 100);
+        ReflectionTestUtils.setField(indices, "ivfflatProbes", 10);
+    }
+
+    @Test
+    void efSearchNuncaEsMenorQueLosVecinosPedidos() {
+        indices.aplicarParametrosBusqueda(null, 100);
+        indices.aplicarParametrosBusqueda(80, 10);
+
+        verify(jdbcTemplate).queryForObject("SELECT set_config('hnsw.ef_search', ?, true)", String.class, "100");
+        verify(jdbcTemplate).queryForObject("SELECT set_config('hnsw.ef_search', ?, true)", String.class, "80");
+    }
+
+    @Test
+    void probesNoSuperaElNumeroDeListas() {
+        ReflectionTestUtils.setField(indices, "tipoIndice", TipoIndice.IVFFLAT);
+
+        indices.aplicarParametrosBusqueda(500, 10);
+        indices.aplicarParametrosBusqueda(null, 10);
+
+        verify(jdbcTemplate).queryForObject("SELECT set_config('ivfflat.probes', ?, true)", String.class, "100");
+        verify(jdbcTemplate).queryForObject("SELECT set_config('ivfflat.probes', ?, true)", String.class, "10");
+    }
+
+    @Test
+    void seCreaUnIndiceParcialPorTipoYSeBorraElDelOtroTipo() {
+        when(jdbcTemplate.queryForList(startsWith("SELECT i.indisvalid"), eq(Boolean.class), anyString(), anyString()))
+                .thenReturn(List.of());
+
+        indices.asegurarIndices();
+
+        verify(jdbcTemplate).execute("DROP INDEX CONCURRENTLY IF EXISTS idx_document_embeddings_property_ivfflat");
+        verify(jdbcTemplate).execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_embeddings_property_hnsw"
+                + " ON document_embeddings USING hnsw (embedding vector_l2_ops) WITH (m = 16, ef_construction = 64)"
+                + " WHERE entity_type = 'property'");
+        verify(jdbcTemplate, never()).execute(contains("_all_"));
+    }
+
+    @Test
+    void ivfflatEsperaATenerFilasSuficientes() {
+        ReflectionTestUtils.setField(indices, "tipoIndice", TipoIndice.IVFFLAT);
+        when(jdbcTemplate.queryForList(startsWith("SELECT i.indisvalid"), eq(Boolean.class), anyString(), anyString()))
+                .thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COUNT(*)"), eq(Long.class), anyString()))
+                .thenReturn(50L);
+
+        indices.asegurarIndices();
+
+        verify(jdbcTemplate, never()).execute(startsWith("CREATE INDEX"));
+    }
+
+    @Test
+    void unIndiceInvalidoSeBorraYSeVuelveACrear() {
+        when(jdbcTemplate.queryForList(startsWith("SELECT i.indisvalid"), eq(Boolean.class), anyString(), anyString()))
+                .thenReturn(List.of(true));
+        when(jdbcTemplate.queryForList(startsWith("SELECT i.indisvalid"), eq(Boolean.class), anyString(),
+                                       eq("idx_document_embeddings_property_hnsw")))
+                .thenReturn(List.of(false));
+
+        indices.asegurarIndices();
+
+        InOrder orden = inOrder(jdbcTemplate);
+        orden.verify(jdbcTemplate).execute("DROP INDEX CONCURRENTLY IF EXISTS idx_document_embeddings_property_hnsw");
+        orden.verify(jdbcTemplate)
+                .execute(startsWith("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_embeddings_property_hnsw "));
+        verify(jdbcTemplate, times(1)).execute(startsWith("CREATE INDEX"));
+    }
+}
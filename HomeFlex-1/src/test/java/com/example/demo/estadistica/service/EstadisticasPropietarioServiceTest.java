@@ -0,0 +1,112 @@
+package com.example.demo.estadistica.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.estadistica.repository.EstadisticaPropietarioRepository;
+import com.example.demo.reserva.model.EstadoReserva;
+
+class EstadisticasPropietarioServiceTest {
+
+    private static final LocalDate ENTRADA = LocalDate.of(2025, 7, 14);
+    private static final LocalDate MES = LocalDate.of(2025, 7, 1);
+    private static final BigDecimal IMPORTE = new BigDecimal("450.00");
+
+    private EstadisticaPropietarioRepository repositorio;
+    private EstadisticasPropietarioService estadisticas;
+
+    @BeforeEach
+    void setUp() {
+        repositorio = mock(EstadisticaPropietarioRepository.class);
+        estadisticas = new EstadisticasPropietarioService();
+        ReflectionTestUtils.setField(estadisticas, "estadisticaRepository", repositorio);
+        List<Object[]> datos = List.<Object[]>of(new Object[] { 7L, "Málaga", IMPORTE });
+        when(repositorio.findDatosReserva(1L)).thenReturn(datos);
+    }
+
+    @Test
+    void unaSolicitudNuevaSumaUnaReservaSinIngresos() {
+        estadisticas.registrarCambioReserva(1L, ENTRADA, null, EstadoReserva.SOLICITADA);
+
+        verify(repositorio).sumarReservas(7L, "Málaga", MES, 1, new BigDecimal("0.00"));
+    }
+
+    @Test
+    void alVerificarElPagoSoloSumanLosIngresos() {
+        estadisticas.registrarCambioReserva(1L, ENTRADA, EstadoReserva.PENDIENTE_PAGO, EstadoReserva.PAGO_VERIFICADO);
+
+        verify(repositorio).sumarReservas(7L, "Málaga", MES, 0, IMPORTE);
+    }
+
+    @Test
+    void cancelarUnaConfirmadaRestaLaReservaYSusIngresos() {
+        estadisticas.registrarCambioReserva(1L, ENTRADA, EstadoReserva.CONFIRMADA, EstadoReserva.CANCELADA);
+
+        verify(repositorio).sumarReservas(7L, "Málaga", MES, -1, IMPORTE.negate());
+    }
+
+    @Test
+    void unaReservaBorradaNoSePuedeAplicar() {
+        assertFalse(estadisticas.registrarCambioReserva(2L, ENTRADA, EstadoReserva.CONFIRMADA, EstadoReserva.CANCELADA));
+
+        verify(repositorio, never()).sumarReservas(anyLong(), anyString(), any(), anyInt(), any());
+    }
+
+    @Test
+    void unCambioQueNoAlteraLosContadoresNoTocaLaTabla() {
+        estadisticas.registrarCambioReserva(1L, ENTRADA, EstadoReserva.PAGO_VERIFICADO, EstadoReserva.CONFIRMADA);
+
+        verify(repositorio, never()).findDatosReserva(anyLong());
+        verify(repositorio, never()).bloquear(anyInt(), anyInt());
+        verify(repositorio, never()).sumarReservas(anyLong(), anyString(), any(), anyInt(), any());
+    }
+
+    @Test
+    void elIncrementoSeAplicaConElPropietarioBloqueado() {
+        estadisticas.registrarCambioReserva(1L, ENTRADA, null, EstadoReserva.SOLICITADA);
+
+        InOrder orden = inOrder(repositorio);
+        orden.verify(repositorio).bloquearCompartido(EstadisticasPropietarioService.CLAVE_TABLA, 0);
+        orden.verify(repositorio).bloquear(EstadisticasPropietarioService.CLAVE_PROPIETARIO, 7);
+        orden.verify(repositorio).sumarReservas(7L, "Málaga", MES, 1, new BigDecimal("0.00"));
+    }
+
+    @Test
+    void elRecalculoBloqueaAlPropietarioAntesDeBorrar() {
+        estadisticas.recalcularPropietario(7L);
+
+        InOrder orden = inOrder(repositorio);
+        orden.verify(repositorio).bloquearCompartido(EstadisticasPropietarioService.CLAVE_TABLA, 0);
+        orden.verify(repositorio).bloquear(EstadisticasPropietarioService.CLAVE_PROPIETARIO, 7);
+        orden.verify(repositorio).borrarDePropietario(7L);
+        orden.verify(repositorio).insertarPublicacionesDePropietario(7L);
+        orden.verify(repositorio).insertarReservasDePropietario(7L);
+    }
+
+    @Test
+    void laReconstruccionTomaLaTablaEnExclusiva() {
+        estadisticas.reconstruir();
+
+        InOrder orden = inOrder(repositorio);
+        orden.verify(repositorio).bloquear(EstadisticasPropietarioService.CLAVE_TABLA, 0);
+        orden.verify(repositorio).borrarTodo();
+        verify(repositorio, never()).bloquearCompartido(anyInt(), anyInt());
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.demo.foto.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.foto.model.FotoVO;
+import com.example.demo.foto.repository.FotoRepository;
+import com.example.demo.media.service.MediaStoreService;
+import com.example.demo.media.service.ProcesadorImagenesService;
+
+class FotoVariantesServiceTest {
+
+    private static final String URL = "/media/propiedades/1/foto.jpg";
+
+    @TempDir
+    Path directorio;
+
+    private ProcesadorImagenesService procesador;
+    private FotoRepository fotoRepository;
+    private MediaStoreService mediaStore;
+    private FotoVariantesService variantes;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ProcesadorImagenesService real = new ProcesadorImagenesService();
+        ReflectionTestUtils.setField(real, "maxMegapixeles", 50);
+        ReflectionTestUtils.setField(real, "calidadJpeg", 0.8f);
+        // Los trabajos se ejecutan en el hilo del test
+        procesador = spy(real);
+        doAnswer(inv -> CompletableFuture.completedFuture(inv.getArgument(0, Callable.class).call()))
+                .when(procesador).enviar(any());
+
+        fotoRepository = mock(FotoRepository.class);
+        mediaStore = mock(MediaStoreService.class);
+
+        variantes = new FotoVariantesService();
+        ReflectionTestUtils.setField(variantes, "procesadorImagenes", procesador);
+        ReflectionTestUtils.setField(variantes, "fotoRepository", fotoRepository);
+        ReflectionTestUtils.setField(variantes, "mediaStore", mediaStore);
+        ReflectionTestUtils.setField(variantes, "anchos", new int[] { 320, 640, 1024 });
+        ReflectionTestUtils.setField(variantes, "ladoPlaceholder", 24);
+        ReflectionTestUtils.setField(variantes, "loteRevision", 10);
+    }
+
+    @Test
+    void generaUnaVersionPorAnchoSinRepetirYElPlaceholder() throws Exception {
+        Path original = directorio.resolve("foto.jpg");
+        ImageIO.write(new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB), "jpeg", original.toFile());
+        when(fotoRepository.findById(1L)).thenReturn(Optional.of(foto(1L, null)));
+        when(mediaStore.rutaLocal(URL)).thenReturn(original);
+        when(fotoRepository.guardarVariantes(eq(1L), anyString(), anyString())).thenReturn(1);
+
+        variantes.encolar(List.of(1L));
+
+        ArgumentCaptor<String> srcset = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> placeholder = ArgumentCaptor.forClass(String.class);
+        verify(fotoRepository).guardarVariantes(eq(1L), srcset.capture(), placeholder.capture());
+        // La foto mide 600 de ancho: w640 y w1024 salen iguales y sólo se conserva una
+        assertEquals("/media/propiedades/1/foto-w320.jpg 320w, /media/propiedades/1/foto-w1024.jpg 600w",
+                     srcset.getValue());
+        assertTrue(placeholder.getValue().startsWith("data:image/jpeg;base64,"));
+        assertTrue(Files.exists(directorio.resolve("foto-w320.jpg")));
+        assertFalse(Files.exists(directorio.resolve("foto-w640.jpg")));
+        assertFalse(Files.exists(directorio.resolve("foto-lqip.jpg")));
+    }
+
+    @Test
+    void siLaFotoSeBorroMientrasSeProcesabaSeBorranSusVersiones() throws Exception {
+        Path original = directorio.resolve("foto.jpg");
+        ImageIO.write(new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB), "jpeg", original.toFile());
+        when(fotoRepository.findById(1L)).thenReturn(Optional.of(foto(1L, null)));
+        when(mediaStore.rutaLocal(URL)).thenReturn(original);
+        when(fotoRepository.guardarVariantes(eq(1L), anyString(), anyString())).thenReturn(0);
+
+        variantes.encolar(List.of(1L));
+
+        assertFalse(Files.exists(directorio.resolve("foto-w320.jpg")));
+        assertFalse(Files.exists(directorio.resolve("foto-w1024.jpg")));
+    }
+
+    @Test
+    void unaFotoDelAlmacenReutilizaLasVersionesDeSuGemela() throws Exception {
+        String url = MediaStoreService.PREFIJO_URL + "ab.jpg";
+        FotoVO nueva = foto(2L, null);
+        nueva.setUrl(url);
+        FotoVO gemela = foto(1L, "srcset-gemela");
+        gemela.setPlaceholder("data:gemela");
+        when(fotoRepository.findById(2L)).thenReturn(Optional.of(nueva));
+        when(mediaStore.esDelAlmacen(url)).thenReturn(true);
+        when(fotoRepository.findFirstByUrlAndSrcsetIsNotNull(url)).thenReturn(Optional.of(gemela));
+
+        variantes.encolar(List.of(2L));
+
+        verify(fotoRepository).guardarVariantes(2L, "srcset-gemela", "data:gemela");
+        verify(procesador, never()).generarVariantes(any(), any(), any());
+    }
+
+    @Test
+    void laRevisionNoReintentaLasFotosSinOriginal() {
+        when(fotoRepository.findById(1L)).thenReturn(Optional.of(foto(1L, null)));
+        when(mediaStore.rutaLocal(URL)).thenReturn(directorio.resolve("no-existe.jpg"));
+        variantes.encolar(List.of(1L));
+
+        when(fotoRepository.findIdsSinVariantes(any())).thenReturn(List.of(1L, 2L));
+        variantes.revisarPendientes();
+
+        verify(fotoRepository).findById(1L);
+        verify(fotoRepository).findById(2L);
+    }
+
+    @Test
+    void liberarArchivosIncluyeCadaVersionDelSrcset() {
+        variantes.liberarArchivos(foto(1L, "/a-w320.jpg 320w, /a-w640.jpg 640w"));
+
+        verify(mediaStore).liberar(URL);
+        verify(mediaStore).liberar("/a-w320.jpg");
+        verify(mediaStore).liberar("/a-w640.jpg");
+    }
+
+    private static FotoVO foto(Long id, String srcset) {
+        FotoVO foto = new FotoVO();
+        foto.setId(id);
+        foto.setUrl(URL);
+        foto.setSrcset(srcset);
+        return foto;
+    }
+}
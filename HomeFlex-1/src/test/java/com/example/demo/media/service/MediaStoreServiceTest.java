@@ -0,0 +1,140 @@
+package com.example.demo.media.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.media.repository.MediaBlobRepository;
+
+class MediaStoreServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private MediaBlobRepository repositorio;
+    private TransactionTemplate transaccionNueva;
+    private MediaStoreService almacen;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repositorio = mock(MediaBlobRepository.class);
+        transaccionNueva = mock(TransactionTemplate.class);
+        doAnswer(inv -> {
+            inv.getArgument(0, Consumer.class).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transaccionNueva).executeWithoutResult(any());
+
+        almacen = new MediaStoreService();
+        ReflectionTestUtils.setField(almacen, "mediaBlobRepository", repositorio);
+        ReflectionTestUtils.setField(almacen, "transactionTemplate", mock(TransactionTemplate.class));
+        ReflectionTestUtils.setField(almacen, "uploadDir", directorio.toString());
+        ReflectionTestUtils.setField(almacen, "hilosEscritura", 2);
+        almacen.init();
+        ReflectionTestUtils.setField(almacen, "transaccionNueva", transaccionNueva);
+    }
+
+    @AfterEach
+    void tearDown() {
+        almacen.detener();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void elMismoContenidoSeGuardaUnaVezConReferencias() throws Exception {
+        String primera = almacen.guardar(archivo("a.JPEG", "contenido"));
+        String segunda = almacen.guardar(archivo("b.jpg", "contenido"));
+
+        assertEquals(primera, segunda);
+        assertTrue(primera.startsWith(MediaStoreService.PREFIJO_URL));
+        assertTrue(primera.endsWith(".jpg"));
+        assertTrue(Files.exists(almacen.rutaLocal(primera)));
+        verify(repositorio, times(2)).sumarReferencia(anyString(), eq("jpg"), eq(9L), any());
+        try (var temporales = Files.list(directorio.resolve("blobs").resolve(".tmp"))) {
+            assertEquals(0, temporales.count());
+        }
+    }
+
+    @Test
+    void siLaTransaccionSeDeshaceElArchivoQuedaParaLaLimpieza() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        String url = almacen.guardar(archivo("foto.png", "nuevo"));
+
+        completar(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(repositorio).registrarSinReferencias(anyString(), eq("png"), eq(5L), any());
+        assertTrue(Files.exists(almacen.rutaLocal(url)), "lo borra la limpieza, no la petición");
+    }
+
+    @Test
+    void siLaTransaccionSeConfirmaNoSeRegistraNada() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        almacen.guardar(archivo("foto.png", "nuevo"));
+
+        completar(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(repositorio, never()).registrarSinReferencias(anyString(), anyString(), anyLong(), any());
+    }
+
+    @Test
+    void unArchivoQueYaEstabaEnDiscoNoSeRegistraAlDeshacer() throws Exception {
+        almacen.guardar(archivo("foto.png", "repetido"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        almacen.guardar(archivo("otra.png", "repetido"));
+        completar(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(repositorio, never()).registrarSinReferencias(anyString(), anyString(), anyLong(), any());
+    }
+
+    @Test
+    void liberarRestaReferenciasSoloDeOriginalesDelAlmacen() throws Exception {
+        String url = almacen.guardar(archivo("foto.jpg", "x"));
+        String hash = url.substring(url.lastIndexOf('/') + 1, url.lastIndexOf('.'));
+
+        almacen.liberar(url);
+        almacen.liberar(url.replace(".jpg", "-w640.jpg"));
+
+        verify(repositorio).restarReferencia(eq(hash), any());
+        assertFalse(almacen.esDelAlmacen("/media/propiedades/1/foto.jpg"));
+    }
+
+    private static MockMultipartFile archivo(String nombre, String contenido) {
+        return new MockMultipartFile("archivo", nombre, "application/octet-stream",
+                                     contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void completar(int estado) {
+        for (TransactionSynchronization sincronizacion : TransactionSynchronizationManager.getSynchronizations()) {
+            sincronizacion.afterCompletion(estado);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
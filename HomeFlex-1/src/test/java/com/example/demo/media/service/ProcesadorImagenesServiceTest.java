@@ -0,0 +1,117 @@
+package com.example.demo.media.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.media.service.ProcesadorImagenesService.Tamano;
+import com.example.demo.media.service.ProcesadorImagenesService.Variante;
+
+class ProcesadorImagenesServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private ProcesadorImagenesService procesador;
+
+    @BeforeEach
+    void setUp() {
+        procesador = new ProcesadorImagenesService();
+        ReflectionTestUtils.setField(procesador, "hilos", 1);
+        ReflectionTestUtils.setField(procesador, "capacidadCola", 1);
+        ReflectionTestUtils.setField(procesador, "maxMegapixeles", 1);
+        ReflectionTestUtils.setField(procesador, "calidadJpeg", 0.8f);
+        procesador.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        procesador.detener();
+    }
+
+    @Test
+    void cadaVarianteCabeEnSuTamanoYConservaLaProporcion() throws Exception {
+        Path original = imagen(900, 600);
+
+        List<Variante> variantes = procesador.generarVariantes(original,
+                List.of(new Tamano("mini", 90, 90), new Tamano("vista", 450, 450)),
+                nombre -> directorio.resolve(nombre + ".jpg"));
+
+        assertEquals(List.of("vista", "mini"), variantes.stream().map(Variante::nombre).toList());
+        assertEquals(450, variantes.get(0).ancho());
+        assertEquals(300, variantes.get(0).alto());
+        assertEquals(90, variantes.get(1).ancho());
+        assertEquals(60, variantes.get(1).alto());
+
+        BufferedImage escrita = ImageIO.read(directorio.resolve("mini.jpg").toFile());
+        assertEquals(90, escrita.getWidth());
+        assertEquals(60, escrita.getHeight());
+        try (var archivos = Files.list(directorio)) {
+            assertFalse(archivos.anyMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void unaImagenPequenaNoSeAmplia() throws Exception {
+        Path original = imagen(200, 100);
+
+        List<Variante> variantes = procesador.generarVariantes(original,
+                List.of(new Tamano("vista", 1280, 1280)),
+                nombre -> directorio.resolve(nombre + ".jpg"));
+
+        assertEquals(200, variantes.get(0).ancho());
+        assertEquals(100, variantes.get(0).alto());
+    }
+
+    @Test
+    void validarRechazaLoQueNoEsImagenYLasDemasiadoGrandes() throws Exception {
+        procesador.validar(imagen(1000, 1000));
+
+        assertThrows(IOException.class, () -> procesador.validar(imagen(1001, 1000)));
+        Path texto = Files.writeString(directorio.resolve("texto.jpg"), "no soy una imagen");
+        assertThrows(IOException.class, () -> procesador.validar(texto));
+    }
+
+    @Test
+    void conLaColaLlenaSeRechazanLosTrabajosNuevos() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        CountDownLatch empezado = new CountDownLatch(1);
+        CompletableFuture<Boolean> enCurso = procesador.enviar(() -> {
+            empezado.countDown();
+            return liberar.await(5, TimeUnit.SECONDS);
+        });
+        empezado.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> enCola = procesador.enviar(() -> "hecho");
+
+        assertThrows(RuntimeException.class, () -> procesador.enviar(() -> "rechazado"));
+        assertEquals(2, procesador.getPendientes());
+
+        liberar.countDown();
+        assertEquals(Boolean.TRUE, enCurso.get(5, TimeUnit.SECONDS));
+        assertEquals("hecho", enCola.get(5, TimeUnit.SECONDS));
+    }
+
+    private Path imagen(int ancho, int alto) throws IOException {
+        BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_ARGB);
+        Path archivo = directorio.resolve("original-" + ancho + "x" + alto + ".png");
+        ImageIO.write(imagen, "png", archivo.toFile());
+        return archivo;
+    }
+}
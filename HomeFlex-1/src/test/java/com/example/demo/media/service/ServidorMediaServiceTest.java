@@ -0,0 +1,137 @@
+package com.example.demo.media.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ServidorMediaServiceTest {
+
+    private static final String HASH = "ab".repeat(32);
+
+    @TempDir
+    Path directorio;
+
+    private ServidorMediaService servidor;
+    private Path archivo;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        servidor = new ServidorMediaService();
+        ReflectionTestUtils.setField(servidor, "maxAgeInmutable", 31536000L);
+        ReflectionTestUtils.setField(servidor, "maxAge", 3600L);
+        ReflectionTestUtils.setField(servidor, "sendfileMinBytes", 4L);
+        archivo = Files.writeString(directorio.resolve(HASH + ".txt"), "0123456789", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void sirveElArchivoEnteroConEtagDelHash() throws Exception {
+        MockHttpServletResponse response = servir(new MockHttpServletRequest("GET", "/media/x"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals("\"" + HASH + "\"", response.getHeader(HttpHeaders.ETAG));
+        assertTrue(response.getHeader(HttpHeaders.CACHE_CONTROL).contains("immutable"));
+    }
+
+    @Test
+    void conLaMismaEtagRespondeNoModificado() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/media/x");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + HASH + "\"");
+
+        MockHttpServletResponse response = servir(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void sirveRangosYSufijos() throws Exception {
+        MockHttpServletRequest rango = new MockHttpServletRequest("GET", "/media/x");
+        rango.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        MockHttpServletResponse parcial = servir(rango);
+
+        assertEquals(206, parcial.getStatus());
+        assertEquals("2345", parcial.getContentAsString());
+        assertEquals("bytes 2-5/10", parcial.getHeader(HttpHeaders.CONTENT_RANGE));
+
+        MockHttpServletRequest sufijo = new MockHttpServletRequest("GET", "/media/x");
+        sufijo.addHeader(HttpHeaders.RANGE, "bytes=-3");
+        assertEquals("789", servir(sufijo).getContentAsString());
+    }
+
+    @Test
+    void unRangoFueraDelArchivoNoSePuedeSatisfacer() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/media/x");
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+
+        MockHttpServletResponse response = servir(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void conIfRangeDeOtraVersionSeEnviaEntero() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/media/x");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"otra\"");
+
+        MockHttpServletResponse response = servir(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void siElConectorAdmiteSendfileSeLeCedeElArchivo() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/media/x");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=1-8");
+
+        MockHttpServletResponse response = servir(request);
+
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(archivo.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(1L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(9L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void unArchivoInexistenteDevuelve404() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/media/x");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        servidor.servir(directorio.resolve("no-existe.jpg"), false, request, response);
+
+        assertEquals(404, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void losArchivosPrivadosNoSeGuardanEnCachesCompartidas() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        servidor.servirPrivado(archivo, new MockHttpServletRequest("GET", "/mensajes/adjuntos/x"), response);
+
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals("max-age=3600, private", response.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    private MockHttpServletResponse servir(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servidor.servir(archivo, true, request, response);
+        return response;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo.mensaje.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.media.service.ProcesadorImagenesService;
+import com.example.demo.mensaje.repository.MensajeRepository;
+import com.example.demo.propiedad.repository.PropiedadRepository;
+import com.example.demo.usuario.repository.UsuarioRepository;
+
+class AdjuntoMensajeServiceTest {
+
+    private static final String BASE = "0f8fad5b-d9cb-469f-a165-70867728950e";
+
+    @TempDir
+    Path directorio;
+
+    private ProcesadorImagenesService procesador;
+    private MensajeService mensajeService;
+    private MensajePushService push;
+    private MensajeRepository mensajeRepository;
+    private UsuarioRepository usuarioRepository;
+    private PropiedadRepository propiedadRepository;
+    private AdjuntoMensajeService adjuntos;
+
+    private final MockMultipartFile imagen = new MockMultipartFile("imagen", "a.jpg", "image/jpeg", new byte[] { 1 });
+
+    @BeforeEach
+    void setUp() {
+        procesador = mock(ProcesadorImagenesService.class);
+        mensajeService = mock(MensajeService.class);
+        push = mock(MensajePushService.class);
+        mensajeRepository = mock(MensajeRepository.class);
+        usuarioRepository = mock(UsuarioRepository.class);
+        propiedadRepository = mock(PropiedadRepository.class);
+
+        adjuntos = new AdjuntoMensajeService();
+        ReflectionTestUtils.setField(adjuntos, "procesadorImagenes", procesador);
+        ReflectionTestUtils.setField(adjuntos, "mensajeService", mensajeService);
+        ReflectionTestUtils.setField(adjuntos, "mensajePushService", push);
+        ReflectionTestUtils.setField(adjuntos, "mensajeRepository", mensajeRepository);
+        ReflectionTestUtils.setField(adjuntos, "usuarioRepository", usuarioRepository);
+        ReflectionTestUtils.setField(adjuntos, "propiedadRepository", propiedadRepository);
+        ReflectionTestUtils.setField(adjuntos, "uploadDir", directorio.toString());
+        ReflectionTestUtils.setField(adjuntos, "dirTemporal", directorio.resolve("tmp").toString());
+        ReflectionTestUtils.setField(adjuntos, "ladoVistaPrevia", 1280);
+        ReflectionTestUtils.setField(adjuntos, "ladoMiniatura", 320);
+
+        when(usuarioRepository.existsById(2L)).thenReturn(true);
+        when(propiedadRepository.existsById(5L)).thenReturn(true);
+    }
+
+    @Test
+    void unReceptorOUnaPropiedadInexistentesSeRechazanAntesDeAceptarLaSubida() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> adjuntos.enviarImagen(1L, 9L, null, imagen));
+        assertThrows(IllegalArgumentException.class, () -> adjuntos.enviarImagen(1L, 2L, 9L, imagen));
+
+        verify(procesador, never()).enviar(any());
+        assertFalse(Files.exists(directorio.resolve("tmp")));
+    }
+
+    @Test
+    void siElProcesadoFallaSeAvisaAlEmisorYSeBorraElOriginal() throws Exception {
+        // El trabajo se ejecuta en el hilo del test
+        doAnswer(inv -> CompletableFuture.completedFuture(inv.getArgument(0, Callable.class).call()))
+                .when(procesador).enviar(any());
+        when(procesador.generarVariantes(any(), any(), any())).thenThrow(new IOException("corrupta"));
+
+        adjuntos.enviarImagen(1L, 2L, 5L, imagen);
+
+        verify(push).publicarErrorAdjunto(1L, 2L, 5L);
+        verify(mensajeService, never()).enviarMensaje(anyLong(), anyLong(), anyString(), any(), anyString(),
+                                                      any(), any());
+        try (var temporales = Files.list(directorio.resolve("tmp"))) {
+            assertEquals(0, temporales.count());
+        }
+    }
+
+    @Test
+    void soloLosParticipantesObtienenElArchivoDeUnAdjunto() {
+        when(mensajeRepository.existsAdjuntoDeParticipante(
+                AdjuntoMensajeService.PREFIJO_URL + BASE + "-mini.jpg", 1L)).thenReturn(true);
+
+        assertEquals(directorio.resolve("mensajes").resolve(BASE + "-vista.jpg"),
+                     adjuntos.archivoDe(BASE + "-vista.jpg", 1L));
+        assertNull(adjuntos.archivoDe(BASE + "-vista.jpg", 3L));
+        assertNull(adjuntos.archivoDe("../" + BASE + "-vista.jpg", 1L));
+        assertNull(adjuntos.archivoDe(BASE + "-original.jpg", 1L));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo.mensaje.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.mensaje.model.BandejaMensajeVO;
+import com.example.demo.mensaje.model.MensajeVO;
+import com.example.demo.mensaje.repository.BandejaMensajeRepository;
+import com.example.demo.mensaje.repository.MensajeRepository;
+import com.example.demo.propiedad.model.PropiedadVO;
+import com.example.demo.usuario.model.UsuarioVO;
+
+class BandejaMensajesServiceTest {
+
+    private static final LocalDateTime FECHA = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    private BandejaMensajeRepository repositorio;
+    private BandejaMensajesService bandeja;
+
+    @BeforeEach
+    void setUp() {
+        repositorio = mock(BandejaMensajeRepository.class);
+        bandeja = new BandejaMensajesService();
+        ReflectionTestUtils.setField(bandeja, "bandejaMensajeRepository", repositorio);
+        ReflectionTestUtils.setField(bandeja, "mensajeRepository", mock(MensajeRepository.class));
+    }
+
+    @Test
+    void unMensajeActualizaLaBandejaDeLosDosSoloSumandoNoLeidosAlReceptor() {
+        bandeja.registrarMensaje(mensaje(1L, 2L, 5L, "texto", "Hola"));
+
+        verify(repositorio).registrarMensaje(1L, 2L, 5L, 5L, 10L, "Hola", "texto", FECHA, 0);
+        verify(repositorio).registrarMensaje(2L, 1L, 5L, 5L, 10L, "Hola", "texto", FECHA, 1);
+    }
+
+    @Test
+    void sinPropiedadSeUsaLaClaveReservada() {
+        bandeja.registrarMensaje(mensaje(1L, 2L, null, "imagen", null));
+
+        verify(repositorio).registrarMensaje(1L, 2L, null, BandejaMensajeVO.SIN_PROPIEDAD, 10L, "[Imagen]", "imagen", FECHA, 0);
+    }
+
+    @Test
+    void laVistaPreviaSeRecortaALaLongitudDeLaColumna() {
+        String largo = "x".repeat(BandejaMensajeVO.LONGITUD_VISTA_PREVIA + 20);
+
+        bandeja.registrarMensaje(mensaje(1L, 2L, 5L, "texto", largo));
+
+        verify(repositorio).registrarMensaje(eq(1L), eq(2L), eq(5L), eq(5L), eq(10L),
+                eq("x".repeat(BandejaMensajeVO.LONGITUD_VISTA_PREVIA)), eq("texto"), eq(FECHA), eq(0));
+    }
+
+    @Test
+    void unMensajeAUnoMismoSoloOcupaUnaFila() {
+        bandeja.registrarMensaje(mensaje(1L, 1L, 5L, "texto", "Nota"));
+
+        verify(repositorio, times(1)).registrarMensaje(anyLong(), anyLong(), any(), anyLong(), anyLong(),
+                anyString(), anyString(), any(), anyInt());
+    }
+
+    private static MensajeVO mensaje(Long emisorId, Long receptorId, Long propiedadId, String tipo, String contenido) {
+        MensajeVO mensaje = new MensajeVO();
+        mensaje.setId(10L);
+        mensaje.setEmisor(usuario(emisorId));
+        mensaje.setReceptor(usuario(receptorId));
+        if (propiedadId != null) {
+            PropiedadVO propiedad = new PropiedadVO();
+            propiedad.setId(propiedadId);
+            mensaje.setPropiedad(propiedad);
+        }
+        mensaje.setTipoMensaje(tipo);
+        mensaje.setContenido(contenido);
+        mensaje.setFechaEnvio(FECHA);
+        return mensaje;
+    }
+
+    private static UsuarioVO usuario(Long id) {
+        UsuarioVO usuario = new UsuarioVO();
+        usuario.setId(id);
+        return usuario;
+    }
+}
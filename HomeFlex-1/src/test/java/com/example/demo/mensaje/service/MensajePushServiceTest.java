@@ -0,0 +1,107 @@
+package com.example.demo.mensaje.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.mensaje.model.MensajeDTO;
+
+class MensajePushServiceTest {
+
+    private BandejaMensajesService bandeja;
+    private MensajePushService push;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        bandeja = mock(BandejaMensajesService.class);
+        push = new MensajePushService();
+        ReflectionTestUtils.setField(push, "bandejaMensajesService", bandeja);
+        ReflectionTestUtils.setField(push, "meterRegistry", mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(push, "tamanoBuffer", 4);
+        ReflectionTestUtils.setField(push, "maxConexionesUsuario", 2);
+    }
+
+    @Test
+    void elPrimerEventoEsElContadorDeNoLeidos() {
+        when(bandeja.contarNoLeidos(1L)).thenReturn(3);
+        List<ServerSentEvent<?>> recibidos = new ArrayList<>();
+
+        push.conectar(1L).subscribe(recibidos::add);
+
+        assertEquals(1, recibidos.size());
+        assertEquals("no-leidos", recibidos.get(0).event());
+        assertTrue(push.estaConectado(1L));
+    }
+
+    @Test
+    void unMensajeLlegaAlReceptorYALasPestanasDelEmisor() {
+        List<ServerSentEvent<?>> receptor = new ArrayList<>();
+        List<ServerSentEvent<?>> emisor = new ArrayList<>();
+        push.conectar(2L).subscribe(receptor::add);
+        push.conectar(1L).subscribe(emisor::add);
+
+        MensajeDTO mensaje = new MensajeDTO();
+        mensaje.setId(10L);
+        mensaje.setEmisorId(1L);
+        mensaje.setReceptorId(2L);
+        push.publicarMensaje(mensaje);
+
+        assertEquals(List.of("no-leidos", "mensaje", "no-leidos"),
+                     receptor.stream().map(ServerSentEvent::event).toList());
+        assertEquals(List.of("no-leidos", "mensaje"),
+                     emisor.stream().map(ServerSentEvent::event).toList());
+    }
+
+    @Test
+    void elErrorDeUnAdjuntoSoloLlegaAlEmisor() {
+        List<ServerSentEvent<?>> receptor = new ArrayList<>();
+        List<ServerSentEvent<?>> emisor = new ArrayList<>();
+        push.conectar(2L).subscribe(receptor::add);
+        push.conectar(1L).subscribe(emisor::add);
+
+        push.publicarErrorAdjunto(1L, 2L, null);
+
+        assertEquals(List.of("no-leidos"), receptor.stream().map(ServerSentEvent::event).toList());
+        assertEquals("error-adjunto", emisor.get(1).event());
+        assertEquals(2L, ((Map<?, ?>) emisor.get(1).data()).get("receptorId"));
+    }
+
+    @Test
+    void alSuperarElMaximoDeConexionesSeCierraLaMasAntigua() {
+        AtomicBoolean primeraCerrada = new AtomicBoolean();
+        push.conectar(1L).doOnComplete(() -> primeraCerrada.set(true)).subscribe();
+        push.conectar(1L).subscribe();
+        push.conectar(1L).subscribe();
+
+        assertTrue(primeraCerrada.get());
+        assertEquals(2, push.getConexiones());
+    }
+
+    @Test
+    void unaConexionQueNoConsumeSeCierraAlLlenarseElBuffer() {
+        // Sin suscriptor los eventos se acumulan en el búfer de la conexión
+        push.conectar(1L);
+
+        for (int i = 0; i < 10; i++) {
+            push.latido();
+        }
+
+        assertFalse(push.estaConectado(1L));
+        assertEquals(1, push.getDesbordadas());
+        assertEquals(0, push.getConexiones());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo.mensaje.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.mensaje.model.MensajeDTO;
+import com.example.demo.mensaje.model.MensajeVO;
+import com.example.demo.mensaje.model.PaginaMensajesDTO;
+import com.example.demo.mensaje.repository.MensajeRepository;
+import com.example.demo.usuario.model.UsuarioVO;
+
+class MensajeServiceImplTest {
+
+    private MensajeRepository mensajeRepository;
+    private MensajeServiceImpl servicio;
+
+    @BeforeEach
+    void setUp() {
+        mensajeRepository = mock(MensajeRepository.class);
+        servicio = new MensajeServiceImpl();
+        ReflectionTestUtils.setField(servicio, "mensajeRepository", mensajeRepository);
+    }
+
+    @Test
+    void laPrimeraPaginaSonLosMasRecientesEnOrdenCronologico() {
+        // Se piden 3 + 1 para saber si hay más; la consulta los devuelve del más reciente al más antiguo
+        when(mensajeRepository.findConversacionAnteriores(1L, 2L, Long.MAX_VALUE, 4))
+                .thenReturn(mensajes(20, 19, 18, 17));
+
+        PaginaMensajesDTO pagina = servicio.getMensajesAnteriores(1L, 2L, null, null, 3);
+
+        assertEquals(List.of(18L, 19L, 20L), ids(pagina));
+        assertTrue(pagina.isHayMas());
+        assertEquals(18L, pagina.getCursorAnterior());
+        assertEquals(20L, pagina.getCursorSiguiente());
+    }
+
+    @Test
+    void alLlegarAlPrincipioNoHayMas() {
+        when(mensajeRepository.findConversacionByPropiedadAnteriores(1L, 2L, 5L, 18L, 4))
+                .thenReturn(mensajes(17, 16));
+
+        PaginaMensajesDTO pagina = servicio.getMensajesAnteriores(1L, 2L, 5L, 18L, 3);
+
+        assertEquals(List.of(16L, 17L), ids(pagina));
+        assertFalse(pagina.isHayMas());
+    }
+
+    @Test
+    void sinMensajesNuevosLosCursoresNoCambian() {
+        when(mensajeRepository.findConversacionPosteriores(1L, 2L, 20L, 51)).thenReturn(List.of());
+
+        PaginaMensajesDTO pagina = servicio.getMensajesPosteriores(1L, 2L, null, 20L, 50);
+
+        assertTrue(pagina.getMensajes().isEmpty());
+        assertNull(pagina.getCursorAnterior());
+        assertEquals(20L, pagina.getCursorSiguiente());
+    }
+
+    @Test
+    void elTamanoDePaginaEstaAcotado() {
+        when(mensajeRepository.findConversacionPosteriores(1L, 2L, 0L, 201))
+                .thenReturn(mensajes(LongStream.rangeClosed(1, 201).toArray()));
+
+        PaginaMensajesDTO pagina = servicio.getMensajesPosteriores(1L, 2L, null, 0L, 10_000);
+
+        assertEquals(200, pagina.getMensajes().size());
+        assertTrue(pagina.isHayMas());
+        assertEquals(200L, pagina.getCursorSiguiente());
+    }
+
+    @Test
+    void elHistorialSeBuscaEnCadaSentidoPorSeparado() throws Exception {
+        Query anteriores = MensajeRepository.class.getMethod("findConversacionAnteriores",
+                Long.class, Long.class, Long.class, int.class).getAnnotation(Query.class);
+        Query posteriores = MensajeRepository.class.getMethod("findConversacionByPropiedadPosteriores",
+                Long.class, Long.class, Long.class, Long.class, int.class).getAnnotation(Query.class);
+
+        assertTrue(anteriores.nativeQuery());
+        assertFalse(anteriores.value().contains(" OR "));
+        assertEquals(3, anteriores.value().split("ORDER BY m.id DESC LIMIT :limite", -1).length - 1);
+        assertTrue(anteriores.value().contains(") UNION ALL ("));
+        assertEquals(3, posteriores.value().split("ORDER BY m.id ASC LIMIT :limite", -1).length - 1);
+        assertEquals(2, posteriores.value().split("m.propiedad_id = :propiedadId", -1).length - 1);
+    }
+
+    private static List<MensajeVO> mensajes(long... ids) {
+        UsuarioVO emisor = new UsuarioVO();
+        emisor.setId(1L);
+        UsuarioVO receptor = new UsuarioVO();
+        receptor.setId(2L);
+        return LongStream.of(ids).mapToObj(id -> {
+            MensajeVO mensaje = new MensajeVO();
+            mensaje.setId(id);
+            mensaje.setEmisor(emisor);
+            mensaje.setReceptor(receptor);
+            return mensaje;
+        }).toList();
+    }
+
+    private static List<Long> ids(PaginaMensajesDTO pagina) {
+        return pagina.getMensajes().stream().map(MensajeDTO::getId).toList();
+    }
+}
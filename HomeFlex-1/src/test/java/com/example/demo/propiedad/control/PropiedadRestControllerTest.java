@@ -0,0 +1,127 @@
+package com.example.demo.propiedad.control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+
+import com.example.demo.propiedad.model.PropiedadDTO;
+import com.example.demo.propiedad.model.PropiedadVO;
+import com.example.demo.propiedad.service.PropiedadService;
+import com.example.demo.propiedad.service.PropiedadService.FotosPreparadas;
+import com.example.demo.rol.model.RolVO;
+import com.example.demo.rol.repository.RolRepository;
+import com.example.demo.usuario.model.UsuarioVO;
+import com.example.demo.usuario.repository.UsuarioRepository;
+
+class PropiedadRestControllerTest {
+
+    private PropiedadService propiedadService;
+    private UsuarioRepository usuarioRepository;
+    private PropiedadRestController controlador;
+
+    private final List<MultipartFile> ficheros =
+            List.of(new MockMultipartFile("ficheros", "a.jpg", "image/jpeg", new byte[] { 1 }));
+    private final FotosPreparadas fotos = new FotosPreparadas(List.of(), 0);
+    private final Principal principal = () -> "ana";
+
+    @BeforeEach
+    void setUp() throws Exception {
+        propiedadService = mock(PropiedadService.class);
+        usuarioRepository = mock(UsuarioRepository.class);
+        controlador = new PropiedadRestController();
+        ReflectionTestUtils.setField(controlador, "propiedadService", propiedadService);
+        ReflectionTestUtils.setField(controlador, "usuarioRepository", usuarioRepository);
+        ReflectionTestUtils.setField(controlador, "rolRepository", mock(RolRepository.class));
+
+        RolVO propietario = new RolVO();
+        propietario.setNombre("PROPIETARIO");
+        UsuarioVO usuario = new UsuarioVO();
+        usuario.addRol(propietario);
+        when(usuarioRepository.findByUsername("ana")).thenReturn(Optional.of(usuario));
+        when(propiedadService.prepararFotos(ficheros, 0)).thenReturn(fotos);
+    }
+
+    @Test
+    void lasFotosSeVuelcanADiscoAntesDeLaPrimeraConsulta() throws Exception {
+        PropiedadDTO dto = new PropiedadDTO();
+        dto.setId(5L);
+        when(propiedadService.crearPropiedad(any(), any())).thenReturn(dto);
+
+        String vista = crear();
+
+        assertEquals("redirect:/index", vista);
+        InOrder orden = inOrder(propiedadService, usuarioRepository);
+        orden.verify(propiedadService).prepararFotos(ficheros, 0);
+        orden.verify(usuarioRepository).findByUsername("ana");
+        orden.verify(propiedadService).guardarFotos(5L, fotos);
+        orden.verify(propiedadService).descartarFotos(fotos);
+    }
+
+    @Test
+    void siFallaLaCreacionSeDescartanLasFotosPreparadas() throws Exception {
+        when(propiedadService.crearPropiedad(any(), any())).thenThrow(new RuntimeException("fallo"));
+
+        assertThrows(RuntimeException.class, this::crear);
+
+        verify(propiedadService).descartarFotos(fotos);
+    }
+
+    @Test
+    void conErroresDeValidacionSeVuelveAlFormularioSinTocarNada() throws Exception {
+        PropiedadVO propiedad = new PropiedadVO();
+        BeanPropertyBindingResult errores = new BeanPropertyBindingResult(propiedad, "propiedad");
+        errores.rejectValue("titulo", "NotBlank", "obligatorio");
+        ExtendedModelMap model = new ExtendedModelMap();
+
+        String vista = controlador.crearPropiedad(propiedad, errores, ficheros, 0, principal,
+                                                  new RedirectAttributesModelMap(), model);
+
+        assertEquals("index", vista);
+        assertEquals(true, model.getAttribute("showModal"));
+        verify(propiedadService, never()).prepararFotos(any(), any());
+        verify(propiedadService, never()).crearPropiedad(any(), any());
+    }
+
+    @Test
+    void elTextoDelBuscadorDeLaPortadaVaAlIndiceInvertido() {
+        Page<PropiedadDTO> resultado = new PageImpl<>(List.of());
+        when(propiedadService.buscarPorTexto("Málaga", null, null, 0, 9)).thenReturn(resultado);
+        ExtendedModelMap model = new ExtendedModelMap();
+
+        String vista = controlador.listarPropiedades(0, 9, null, "Málaga", null, null, null, model);
+
+        assertEquals("propiedad/listado", vista);
+        assertEquals(resultado, model.getAttribute("propiedades"));
+        verify(propiedadService, never()).busquedaAvanzada(any(), any(), any(), any(), any(), any(), any(),
+                                                           any(), any(), anyInt(), anyInt());
+    }
+
+    private String crear() throws Exception {
+        PropiedadVO propiedad = new PropiedadVO();
+        return controlador.crearPropiedad(propiedad, new BeanPropertyBindingResult(propiedad, "propiedad"),
+                                          ficheros, 0, principal, new RedirectAttributesModelMap(),
+                                          new ExtendedModelMap());
+    }
+}
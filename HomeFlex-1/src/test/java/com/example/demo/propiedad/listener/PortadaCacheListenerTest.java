@@ -0,0 +1,63 @@
+package com.example.demo.propiedad.listener;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.propiedad.event.PropiedadCreatedEvent;
+import com.example.demo.propiedad.event.PropiedadDeletedEvent;
+import com.example.demo.propiedad.event.PropiedadUpdatedEvent;
+import com.example.demo.propiedad.service.PropiedadService;
+
+class PortadaCacheListenerTest {
+
+    private PropiedadService propiedadService;
+    private PortadaCacheListener listener;
+
+    @BeforeEach
+    void setUp() {
+        propiedadService = mock(PropiedadService.class);
+        listener = new PortadaCacheListener();
+        ReflectionTestUtils.setField(listener, "propiedadService", propiedadService);
+    }
+
+    @Test
+    void losCambiosNoRecalculanLaPortadaEnLaPeticion() {
+        listener.handlePropiedadCreatedEvent(new PropiedadCreatedEvent(1L));
+        listener.handlePropiedadUpdatedEvent(new PropiedadUpdatedEvent(1L));
+        listener.handlePropiedadDeletedEvent(new PropiedadDeletedEvent(2L, 7L));
+
+        verifyNoInteractions(propiedadService);
+    }
+
+    @Test
+    void unaRafagaDeCambiosSeResuelveConUnSoloRefresco() {
+        listener.refrescarSiHayCambios();
+        verifyNoInteractions(propiedadService);
+
+        listener.handlePropiedadCreatedEvent(new PropiedadCreatedEvent(1L));
+        listener.handlePropiedadUpdatedEvent(new PropiedadUpdatedEvent(1L));
+        listener.refrescarSiHayCambios();
+        listener.refrescarSiHayCambios();
+
+        verify(propiedadService, times(1)).refrescarPortada();
+    }
+
+    @Test
+    void siElRefrescoFallaSeReintenta() {
+        doThrow(new RuntimeException("sin conexión")).doNothing().when(propiedadService).refrescarPortada();
+        listener.handlePropiedadDeletedEvent(new PropiedadDeletedEvent(2L, 7L));
+
+        assertThrows(RuntimeException.class, listener::refrescarSiHayCambios);
+        listener.refrescarSiHayCambios();
+
+        verify(propiedadService, times(2)).refrescarPortada();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.propiedad.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class AnalizadorTextoEspanolTest {
+
+    @Test
+    void singularYPluralDanLaMismaRaiz() {
+        assertEquals("cas", AnalizadorTextoEspanol.stem("casa"));
+        assertEquals("cas", AnalizadorTextoEspanol.stem("casas"));
+        assertEquals("pis", AnalizadorTextoEspanol.stem("piso"));
+        assertEquals("pis", AnalizadorTextoEspanol.stem("pisos"));
+        assertEquals("luz", AnalizadorTextoEspanol.stem("luz"));
+        assertEquals("luz", AnalizadorTextoEspanol.stem("luces"));
+        assertEquals("hotel", AnalizadorTextoEspanol.stem("hotel"));
+        assertEquals("hotel", AnalizadorTextoEspanol.stem("hoteles"));
+        assertEquals("noch", AnalizadorTextoEspanol.stem("noche"));
+        assertEquals("noch", AnalizadorTextoEspanol.stem("noches"));
+        assertEquals("ciudad", AnalizadorTextoEspanol.stem("ciudades"));
+    }
+
+    @Test
+    void elGeneroSeUnifica() {
+        assertEquals(AnalizadorTextoEspanol.stem("amueblado"), AnalizadorTextoEspanol.stem("amueblada"));
+        assertEquals(AnalizadorTextoEspanol.stem("luminosos"), AnalizadorTextoEspanol.stem("luminosas"));
+    }
+
+    @Test
+    void lasPalabrasCortasNoSeRecortan() {
+        assertEquals("mar", AnalizadorTextoEspanol.stem("mar"));
+        assertEquals("mes", AnalizadorTextoEspanol.stem("mes"));
+        assertEquals("rio", AnalizadorTextoEspanol.stem("rio"));
+        assertEquals("rio", AnalizadorTextoEspanol.stem("rios"));
+        assertEquals("gris", AnalizadorTextoEspanol.stem("gris"));
+    }
+
+    @Test
+    void analizarNormalizaYDescartaPalabrasVacias() {
+        List<String> terminos = AnalizadorTextoEspanol.analizar("Casas con vistas al MAR en Málaga");
+
+        assertEquals(List.of("cas", "vist", "mar", "malag"), terminos);
+    }
+
+    @Test
+    void textoVacioNoProduceTerminos() {
+        assertEquals(List.of(), AnalizadorTextoEspanol.analizar(null));
+        assertEquals(List.of(), AnalizadorTextoEspanol.analizar("  "));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.demo.propiedad.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.propiedad.repository.PropiedadRepository;
+import com.example.demo.propiedad.service.IndiceGeograficoService.Vecino;
+
+class IndiceGeograficoServiceTest {
+
+    private PropiedadRepository propiedadRepository;
+    private IndiceGeograficoService indice;
+    private final List<Object[]> filas = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        propiedadRepository = mock(PropiedadRepository.class);
+        when(propiedadRepository.findCoordenadasActivas()).thenReturn(filas);
+        indice = new IndiceGeograficoService();
+        ReflectionTestUtils.setField(indice, "propiedadRepository", propiedadRepository);
+        ReflectionTestUtils.setField(indice, "tamanoCelda", 0.25);
+    }
+
+    @Test
+    void coincideConElRecorridoCompleto() {
+        Random aleatorio = new Random(42);
+        for (long id = 1; id <= 500; id++) {
+            // La mayoría alrededor de la península y algunas repartidas por el mundo
+            double latitud = id % 10 == 0 ? aleatorio.nextDouble() * 160 - 80 : 36 + aleatorio.nextDouble() * 7;
+            double longitud = id % 10 == 0 ? aleatorio.nextDouble() * 360 - 180 : -9 + aleatorio.nextDouble() * 12;
+            punto(id, latitud, longitud);
+        }
+        indice.reindexarTodo();
+
+        for (int consulta = 0; consulta < 50; consulta++) {
+            double latitud = 36 + aleatorio.nextDouble() * 7;
+            double longitud = -9 + aleatorio.nextDouble() * 12;
+            assertEquals(fuerzaBruta(latitud, longitud, 10, null), ids(indice.buscarCercanas(latitud, longitud, 10, null, null)));
+            assertEquals(fuerzaBruta(latitud, longitud, 10, 50.0), ids(indice.buscarCercanas(latitud, longitud, 10, 50.0, null)));
+        }
+    }
+
+    @Test
+    void lasColumnasDanLaVueltaEnElAntimeridiano() {
+        punto(1L, 0, 179.9);
+        punto(2L, 0, -179.9);
+        punto(3L, 0, 170);
+        indice.reindexarTodo();
+
+        List<Vecino> vecinos = indice.buscarCercanas(0, -179.95, 2, null, null);
+
+        assertEquals(List.of(2L, 1L), ids(vecinos));
+        assertTrue(vecinos.get(1).distanciaKm() < 20);
+    }
+
+    @Test
+    void seExcluyeLaPropiedadIndicada() {
+        punto(1L, 40.0, -3.7);
+        punto(2L, 40.1, -3.7);
+        indice.reindexarTodo();
+
+        assertEquals(List.of(2L), ids(indice.buscarCercanas(40.0, -3.7, 5, null, 1L)));
+    }
+
+    private void punto(Long id, double latitud, double longitud) {
+        filas.add(new Object[] { id, BigDecimal.valueOf(latitud), BigDecimal.valueOf(longitud) });
+    }
+
+    private List<Long> fuerzaBruta(double latitud, double longitud, int k, Double radioKm) {
+        return filas.stream()
+                .map(f -> new Vecino((Long) f[0], IndiceGeograficoService.distanciaKm(latitud, longitud,
+                        ((BigDecimal) f[1]).doubleValue(), ((BigDecimal) f[2]).doubleValue())))
+                .filter(v -> radioKm == null || v.distanciaKm() <= radioKm)
+                .sorted(Comparator.comparingDouble(Vecino::distanciaKm).thenComparing(Vecino::propiedadId))
+                .limit(k)
+                .map(Vecino::propiedadId)
+                .toList();
+    }
+
+    private static List<Long> ids(List<Vecino> vecinos) {
+        return vecinos.stream().map(Vecino::propiedadId).toList();
+    }
+}
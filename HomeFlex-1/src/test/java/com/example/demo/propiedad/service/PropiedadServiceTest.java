@@ -0,0 +1,99 @@
+package com.example.demo.propiedad.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.propiedad.model.PropiedadDTO;
+import com.example.demo.propiedad.repository.PropiedadRepository;
+
+class PropiedadServiceTest {
+
+    private PropiedadRepository propiedadRepository;
+    private BusquedaTextoService busquedaTextoService;
+    private PropiedadService servicio;
+
+    @BeforeEach
+    void setUp() {
+        propiedadRepository = mock(PropiedadRepository.class);
+        busquedaTextoService = mock(BusquedaTextoService.class);
+        servicio = new PropiedadService();
+        ReflectionTestUtils.setField(servicio, "propiedadRepository", propiedadRepository);
+        ReflectionTestUtils.setField(servicio, "busquedaTextoService", busquedaTextoService);
+        when(busquedaTextoService.isCargado()).thenReturn(true);
+        ReflectionTestUtils.setField(servicio, "ttlPortadaSegundos", 300L);
+        ReflectionTestUtils.setField(servicio, "maxEntradasPortada", 16);
+        servicio.init();
+    }
+
+    @Test
+    void lasTarjetasSalenEnElOrdenDelIndiceUnaPorPropiedad() {
+        when(busquedaTextoService.buscar(any(), any(), any()))
+                .thenReturn(new PageImpl<>(List.of(3L, 1L, 2L), PageRequest.of(0, 10), 3));
+        when(propiedadRepository.findTarjetasPorIds(List.of(3L, 1L, 2L)))
+                .thenReturn(List.of(tarjeta(1L, "/a.jpg"), tarjeta(2L, "/b.jpg"),
+                                    tarjeta(1L, "/c.jpg"), tarjeta(3L, "/d.jpg")));
+
+        Page<PropiedadDTO> pagina = servicio.buscarPorTexto("piso", null, null, 0, 10);
+
+        assertEquals(List.of(3L, 1L, 2L), pagina.map(PropiedadDTO::getId).getContent());
+        assertEquals("/a.jpg", pagina.getContent().get(1).getFotoPrincipal());
+        assertEquals(3, pagina.getTotalElements());
+    }
+
+    @Test
+    void unaPropiedadQueYaNoExisteSeOmite() {
+        when(busquedaTextoService.buscar(any(), any(), any()))
+                .thenReturn(new PageImpl<>(List.of(4L, 5L), PageRequest.of(0, 10), 2));
+        when(propiedadRepository.findTarjetasPorIds(List.of(4L, 5L)))
+                .thenReturn(List.of(tarjeta(5L, "/e.jpg")));
+
+        Page<PropiedadDTO> pagina = servicio.buscarPorTexto("piso", null, null, 0, 10);
+
+        assertEquals(List.of(5L), pagina.map(PropiedadDTO::getId).getContent());
+    }
+
+    @Test
+    void laPortadaSeSirveDeLaCacheHastaQueSeRefresca() {
+        when(propiedadRepository.findTarjetasActivasSinTotal(any(Pageable.class)))
+                .thenReturn(List.of(tarjeta(1L, "/a.jpg")));
+        when(propiedadRepository.findCiudadesPopulares(any(Pageable.class)))
+                .thenReturn(List.<Object[]>of(new Object[] { "Málaga", 4L }));
+
+        assertEquals(List.of("Málaga"), servicio.obtenerCiudadesPopulares());
+        servicio.obtenerCiudadesPopulares();
+        servicio.obtenerPropiedadesDestacadas();
+        servicio.obtenerPropiedadesDestacadas();
+        verify(propiedadRepository, times(1)).findTarjetasActivasSinTotal(any(Pageable.class));
+        verify(propiedadRepository, times(1)).findCiudadesPopulares(any(Pageable.class));
+
+        servicio.refrescarPortada();
+        servicio.obtenerPropiedadesDestacadas();
+
+        verify(propiedadRepository, times(2)).findTarjetasActivasSinTotal(any(Pageable.class));
+        verify(propiedadRepository, times(2)).findCiudadesPopulares(any(Pageable.class));
+        // La portada no muestra el total: nunca se pide la consulta paginada que cuenta
+        verify(propiedadRepository, never()).findTarjetasActivas(any(Pageable.class));
+    }
+
+    private static PropiedadDTO tarjeta(Long id, String foto) {
+        PropiedadDTO dto = new PropiedadDTO();
+        dto.setId(id);
+        dto.setFotoPrincipal(foto);
+        return dto;
+    }
+}
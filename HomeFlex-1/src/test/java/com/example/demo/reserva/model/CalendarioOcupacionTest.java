@@ -0,0 +1,92 @@
+package com.example.demo.reserva.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CalendarioOcupacionTest {
+
+    @Test
+    void estaOcupadoRespetaLosExtremosInclusivos() {
+        CalendarioOcupacion calendario = new CalendarioOcupacion(30);
+        calendario.marcar(1L, 10, 12);
+
+        assertFalse(calendario.estaOcupado(0, 9));
+        assertTrue(calendario.estaOcupado(0, 10));
+        assertTrue(calendario.estaOcupado(12, 20));
+        assertFalse(calendario.estaOcupado(13, 29));
+    }
+
+    @Test
+    void tramosSolapadosYContiguosSeFusionan() {
+        CalendarioOcupacion calendario = new CalendarioOcupacion(30);
+        calendario.marcar(1L, 2, 5);
+        calendario.marcar(2L, 4, 8);
+        calendario.marcar(3L, 9, 10);
+        calendario.marcar(4L, 20, 21);
+
+        List<int[]> tramos = calendario.tramosOcupados(0, 29);
+
+        assertEquals(2, tramos.size());
+        assertArrayEquals(new int[] { 2, 10 }, tramos.get(0));
+        assertArrayEquals(new int[] { 20, 21 }, tramos.get(1));
+    }
+
+    @Test
+    void tramosSeRecortanALaVentanaPedida() {
+        CalendarioOcupacion calendario = new CalendarioOcupacion(30);
+        calendario.marcar(1L, 2, 10);
+
+        List<int[]> tramos = calendario.tramosOcupados(5, 7);
+
+        assertEquals(1, tramos.size());
+        assertArrayEquals(new int[] { 5, 7 }, tramos.get(0));
+    }
+
+    @Test
+    void liberarConservaLasReservasSolapadas() {
+        CalendarioOcupacion calendario = new CalendarioOcupacion(30);
+        calendario.marcar(1L, 2, 6);
+        calendario.marcar(2L, 5, 9);
+
+        assertTrue(calendario.liberar(1L));
+        assertFalse(calendario.liberar(1L));
+
+        List<int[]> tramos = calendario.tramosOcupados(0, 29);
+        assertEquals(1, tramos.size());
+        assertArrayEquals(new int[] { 5, 9 }, tramos.get(0));
+        assertFalse(calendario.isVacio());
+
+        calendario.liberar(2L);
+        assertTrue(calendario.isVacio());
+        assertFalse(calendario.estaOcupado(0, 29));
+    }
+
+    @Test
+    void volverAMarcarUnaReservaSustituyeSusDias() {
+        CalendarioOcupacion calendario = new CalendarioOcupacion(30);
+        calendario.marcar(1L, 2, 6);
+        calendario.marcar(1L, 15, 16);
+
+        assertFalse(calendario.estaOcupado(0, 14));
+        assertTrue(calendario.estaOcupado(15, 15));
+    }
+
+    @Test
+    void losDiasFueraDelHorizonteSeIgnoran() {
+        CalendarioOcupacion calendario = new CalendarioOcupacion(10);
+        calendario.marcar(1L, -5, 1);
+        calendario.marcar(2L, 8, 40);
+        calendario.marcar(3L, 12, 15);
+
+        List<int[]> tramos = calendario.tramosOcupados(0, 100);
+        assertEquals(2, tramos.size());
+        assertArrayEquals(new int[] { 0, 1 }, tramos.get(0));
+        assertArrayEquals(new int[] { 8, 9 }, tramos.get(1));
+    }
+}
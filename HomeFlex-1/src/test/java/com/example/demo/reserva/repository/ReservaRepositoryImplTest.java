@@ -0,0 +1,130 @@
+package com.example.demo.reserva.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.reserva.model.ReservaDTO;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+
+class ReservaRepositoryImplTest {
+
+    private EntityManager entityManager;
+    private CriteriaBuilder cb;
+    private CriteriaQuery<Tuple> consultaPagina;
+    private CriteriaQuery<Long> consultaTotal;
+    private TypedQuery<Tuple> pagina;
+    private TypedQuery<Long> total;
+    private TypedQuery<Object[]> fotos;
+    private ReservaRepositoryImpl repositorio;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        entityManager = mock(EntityManager.class);
+        cb = mock(CriteriaBuilder.class, RETURNS_DEEP_STUBS);
+        consultaPagina = mock(CriteriaQuery.class, RETURNS_DEEP_STUBS);
+        consultaTotal = mock(CriteriaQuery.class, RETURNS_DEEP_STUBS);
+        pagina = mock(TypedQuery.class);
+        total = mock(TypedQuery.class);
+        fotos = mock(TypedQuery.class);
+
+        when(entityManager.getCriteriaBuilder()).thenReturn(cb);
+        when(cb.createTupleQuery()).thenReturn(consultaPagina);
+        when(cb.createQuery(Long.class)).thenReturn(consultaTotal);
+        when(entityManager.createQuery(consultaPagina)).thenReturn(pagina);
+        when(entityManager.createQuery(consultaTotal)).thenReturn(total);
+        when(entityManager.createQuery(anyString(), eq(Object[].class))).thenReturn(fotos);
+        when(fotos.setParameter(anyString(), any())).thenReturn(fotos);
+
+        repositorio = new ReservaRepositoryImpl();
+        ReflectionTestUtils.setField(repositorio, "entityManager", entityManager);
+    }
+
+    @Test
+    void unaPrimeraPaginaIncompletaNoNecesitaContar() {
+        List<Tuple> filas = List.of(fila(1L, 10L));
+        when(pagina.getResultList()).thenReturn(filas);
+
+        Page<ReservaDTO> resultado = repositorio.buscarDePropietario(5L, null, null, PageRequest.of(0, 2));
+
+        assertEquals(1, resultado.getTotalElements());
+        verify(pagina).setFirstResult(0);
+        verify(pagina).setMaxResults(2);
+        verify(entityManager, never()).createQuery(consultaTotal);
+    }
+
+    @Test
+    void conLaPaginaLlenaSeCuentaElTotal() {
+        List<Tuple> filas = List.of(fila(1L, 10L), fila(2L, 10L));
+        when(pagina.getResultList()).thenReturn(filas);
+        when(total.getSingleResult()).thenReturn(7L);
+
+        Page<ReservaDTO> resultado = repositorio.buscarDeInquilino(5L, null, null, PageRequest.of(1, 2));
+
+        assertEquals(7, resultado.getTotalElements());
+        verify(pagina).setFirstResult(2);
+    }
+
+    @Test
+    void lasFotosPrincipalesSeCarganEnUnaConsultaPorPagina() {
+        List<Tuple> filas = List.of(fila(1L, 10L), fila(2L, 11L), fila(3L, 10L));
+        when(pagina.getResultList()).thenReturn(filas);
+        when(fotos.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 10L, "/media/10.jpg" }));
+
+        List<ReservaDTO> reservas = repositorio.buscarDePropietario(5L, null, null, PageRequest.of(0, 5))
+                .getContent();
+
+        verify(fotos).setParameter("ids", List.of(10L, 11L));
+        assertEquals(List.of(1L, 2L, 3L), reservas.stream().map(ReservaDTO::getId).toList());
+        assertEquals("/media/10.jpg", reservas.get(0).getFotoPropiedad());
+        assertEquals("/images/property-placeholder.jpg", reservas.get(1).getFotoPropiedad());
+        assertEquals("/media/10.jpg", reservas.get(2).getFotoPropiedad());
+    }
+
+    @Test
+    void sinResultadosNoSeConsultanFotos() {
+        when(pagina.getResultList()).thenReturn(List.of());
+
+        repositorio.buscarDeInquilino(5L, null, null, PageRequest.of(0, 5));
+
+        verify(entityManager, never()).createQuery(anyString(), eq(Object[].class));
+    }
+
+    @Test
+    void laBusquedaEscapaLosComodinesDeLike() {
+        when(pagina.getResultList()).thenReturn(List.of());
+
+        repositorio.buscarDeInquilino(5L, null, " 50%_Off ", PageRequest.of(0, 5));
+
+        // Título, ciudad, país y código de reserva
+        verify(cb, times(4)).like(any(), eq("%50\\%\\_off%"), eq('\\'));
+    }
+
+    private static Tuple fila(Long reservaId, Long propiedadId) {
+        Tuple fila = mock(Tuple.class);
+        when(fila.get(0, Long.class)).thenReturn(reservaId);
+        when(fila.get(1, Long.class)).thenReturn(propiedadId);
+        return fila;
+    }
+}
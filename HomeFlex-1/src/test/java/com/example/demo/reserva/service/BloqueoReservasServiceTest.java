@@ -0,0 +1,111 @@
+package com.example.demo.reserva.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BloqueoReservasServiceTest {
+
+    private SimpleMeterRegistry registry;
+    private BloqueoReservasService bloqueo;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        bloqueo = new BloqueoReservasService();
+        ReflectionTestUtils.setField(bloqueo, "meterRegistry",
+                new StaticListableBeanFactory(Map.of("registry", registry)).getBeanProvider(MeterRegistry.class));
+        ReflectionTestUtils.setField(bloqueo, "numeroFranjas", 4);
+        ReflectionTestUtils.setField(bloqueo, "esperaMaxima", 100L);
+        bloqueo.init();
+    }
+
+    @Test
+    void sinCompetenciaNoSeEspera() {
+        assertEquals("ok", bloqueo.conBloqueo(1L, () -> "ok"));
+        assertEquals("ok", bloqueo.conBloqueo(1L, () -> "ok"));
+
+        assertEquals(0, bloqueo.getEsperas());
+        assertEquals(0.0, contador("homeflex.reservas.bloqueo.esperas"));
+    }
+
+    @Test
+    void laSegundaSolicitudDeLaMismaPropiedadEsperaYLuegoEntra() throws Exception {
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch salir = new CountDownLatch(1);
+        CompletableFuture<String> primera = CompletableFuture.supplyAsync(() -> bloqueo.conBloqueo(1L, () -> {
+            dentro.countDown();
+            esperar(salir);
+            return "primera";
+        }));
+        dentro.await(1, TimeUnit.SECONDS);
+
+        CompletableFuture<String> segunda = CompletableFuture.supplyAsync(() -> bloqueo.conBloqueo(1L, () -> "segunda"));
+        ReentrantLock[] franjas = (ReentrantLock[]) ReflectionTestUtils.getField(bloqueo, "franjas");
+        while (!franjas[1].hasQueuedThreads()) {
+            Thread.onSpinWait();
+        }
+        salir.countDown();
+
+        assertEquals("primera", primera.get(1, TimeUnit.SECONDS));
+        assertEquals("segunda", segunda.get(1, TimeUnit.SECONDS));
+        assertEquals(1.0, contador("homeflex.reservas.bloqueo.esperas"));
+        assertEquals(0.0, contador("homeflex.reservas.bloqueo.agotadas"));
+    }
+
+    @Test
+    void siSeAgotaLaEsperaSePideReintentar() throws Exception {
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch salir = new CountDownLatch(1);
+        CompletableFuture<Object> ocupada = CompletableFuture.supplyAsync(() -> bloqueo.conBloqueo(1L, () -> {
+            dentro.countDown();
+            esperar(salir);
+            return null;
+        }));
+        dentro.await(1, TimeUnit.SECONDS);
+
+        try {
+            assertThrows(RuntimeException.class, () -> bloqueo.conBloqueo(1L, () -> "tarde"));
+        } finally {
+            salir.countDown();
+            ocupada.get(1, TimeUnit.SECONDS);
+        }
+
+        assertEquals(1, bloqueo.getAgotadas());
+        assertEquals(1.0, contador("homeflex.reservas.bloqueo.agotadas"));
+    }
+
+    @Test
+    void losConflictosSeCuentanEnElRegistro() {
+        bloqueo.registrarConflicto();
+        bloqueo.registrarConflicto();
+
+        assertEquals(2, bloqueo.getConflictos());
+        assertEquals(2.0, contador("homeflex.reservas.conflictos"));
+    }
+
+    private double contador(String nombre) {
+        return registry.get(nombre).functionCounter().count();
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.demo.reserva.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.propiedad.repository.PropiedadRepository;
+import com.example.demo.reserva.event.ReservaEstadoCambiadoEvent;
+import com.example.demo.reserva.listener.DisponibilidadListener;
+import com.example.demo.reserva.model.EstadoReserva;
+import com.example.demo.reserva.repository.ReservaRepository;
+
+class DisponibilidadIndexServiceTest {
+
+    private final LocalDate hoy = LocalDate.now();
+
+    private ReservaRepository reservaRepository;
+    private DisponibilidadIndexService indice;
+    private DisponibilidadListener listener;
+
+    @BeforeEach
+    void setUp() {
+        reservaRepository = mock(ReservaRepository.class);
+        indice = new DisponibilidadIndexService();
+        ReflectionTestUtils.setField(indice, "reservaRepository", reservaRepository);
+        ReflectionTestUtils.setField(indice, "horizonteDias", 60);
+
+        listener = new DisponibilidadListener();
+        ReflectionTestUtils.setField(listener, "disponibilidadIndex", indice);
+        ReflectionTestUtils.setField(listener, "retencionFechas", mock(RetencionFechasService.class));
+    }
+
+    @Test
+    void laBusquedaEnBaseDeDatosDescartaLasMismasReservasQueElIndice() throws Exception {
+        // El estado se guarda con el nombre del enum: una cancelada no debe ocupar en ninguno de los dos caminos
+        String cancelada = "'" + EstadoReserva.CANCELADA.name() + "'";
+        String cargaIndice = ReservaRepository.class.getMethod("findIntervalosActivosDesde", LocalDate.class)
+                .getAnnotation(Query.class).value();
+
+        assertTrue(cargaIndice.contains("r.estado != " + cancelada));
+        assertTrue(PropiedadRepository.SIN_RESERVA_EN_RANGO.contains("r.estado <> " + cancelada));
+    }
+
+    @Test
+    void unaReservaCanceladaDejaLibresSusDias() {
+        List<Object[]> intervalos = List.of(
+                new Object[] { 1L, 5L, hoy.plusDays(3), hoy.plusDays(6) },
+                new Object[] { 2L, 6L, hoy.plusDays(4), hoy.plusDays(5) });
+        when(reservaRepository.findIntervalosActivosDesde(hoy)).thenReturn(intervalos);
+        indice.reconstruir();
+        assertEquals(Set.of(5L, 6L), indice.propiedadesOcupadas(hoy, hoy.plusDays(10)));
+
+        listener.handleReservaEstadoCambiadoEvent(new ReservaEstadoCambiadoEvent(1L, 5L,
+                hoy.plusDays(3), hoy.plusDays(6), EstadoReserva.CONFIRMADA, EstadoReserva.CANCELADA));
+
+        assertFalse(indice.estaOcupada(5L, hoy, hoy.plusDays(10)));
+        assertEquals(Set.of(6L), indice.propiedadesOcupadas(hoy, hoy.plusDays(10)));
+    }
+}
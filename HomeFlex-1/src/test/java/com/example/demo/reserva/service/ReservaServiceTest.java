@@ -0,0 +1,120 @@
+package com.example.demo.reserva.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.propiedad.service.PropiedadService;
+import com.example.demo.reserva.model.CalendariosOcupacionDTO;
+import com.example.demo.reserva.repository.ReservaRepository;
+
+class ReservaServiceTest {
+
+    private static final LocalDate DESDE = LocalDate.of(2030, 7, 1);
+    private static final LocalDate HASTA = DESDE.plusDays(29);
+
+    private ReservaRepository reservaRepository;
+    private PropiedadService propiedadService;
+    private DisponibilidadIndexService disponibilidadIndex;
+    private ReservaService reservaService;
+
+    @BeforeEach
+    void setUp() {
+        reservaRepository = mock(ReservaRepository.class);
+        propiedadService = mock(PropiedadService.class);
+        disponibilidadIndex = mock(DisponibilidadIndexService.class);
+
+        reservaService = new ReservaService();
+        ReflectionTestUtils.setField(reservaService, "reservaRepository", reservaRepository);
+        ReflectionTestUtils.setField(reservaService, "propiedadService", propiedadService);
+        ReflectionTestUtils.setField(reservaService, "disponibilidadIndex", disponibilidadIndex);
+        ReflectionTestUtils.setField(reservaService, "maxPropiedadesCalendario", 3);
+        ReflectionTestUtils.setField(reservaService, "maxDiasCalendario", 60);
+    }
+
+    @Test
+    void conElIndiceCubriendoLaVentanaNoSeConsultaLaBaseDeDatos() {
+        Map<Long, List<int[]>> delIndice = Map.of(1L, List.<int[]>of(new int[] { 0, 3 }));
+        when(disponibilidadIndex.cubre(DESDE, HASTA)).thenReturn(true);
+        when(disponibilidadIndex.tramosOcupados(Set.of(1L), DESDE, HASTA)).thenReturn(delIndice);
+
+        CalendariosOcupacionDTO calendarios = reservaService.obtenerCalendarios(List.of(1L, 1L), DESDE, HASTA);
+
+        assertSame(delIndice, calendarios.getTramos());
+        verifyNoInteractions(reservaRepository);
+    }
+
+    @Test
+    void losIntervalosDeLaBaseDeDatosSeFusionanYRecortan() {
+        List<Object[]> intervalos = List.of(
+                fila(1L, DESDE.minusDays(3), DESDE.plusDays(1)),
+                fila(1L, DESDE.plusDays(2), DESDE.plusDays(4)),
+                fila(1L, DESDE.plusDays(3), DESDE.plusDays(6)),
+                fila(1L, DESDE.plusDays(10), DESDE.plusDays(40)),
+                fila(2L, DESDE.plusDays(5), DESDE.plusDays(5)));
+        when(reservaRepository.findIntervalosActivosDePropiedades(anyCollection(), any(), any())).thenReturn(intervalos);
+
+        Map<Long, List<int[]>> tramos = reservaService.obtenerCalendarios(List.of(1L, 2L, 3L), DESDE, HASTA)
+                .getTramos();
+
+        assertEquals(List.of(1L, 2L, 3L), new ArrayList<>(tramos.keySet()));
+        assertEquals(2, tramos.get(1L).size());
+        assertArrayEquals(new int[] { 0, 6 }, tramos.get(1L).get(0));
+        assertArrayEquals(new int[] { 10, 29 }, tramos.get(1L).get(1));
+        assertArrayEquals(new int[] { 5, 5 }, tramos.get(2L).get(0));
+        assertTrue(tramos.get(3L).isEmpty());
+    }
+
+    @Test
+    void seRechazanVentanasYListasDemasiadoGrandes() {
+        assertThrows(RuntimeException.class,
+                     () -> reservaService.obtenerCalendarios(List.of(1L), DESDE, DESDE.plusDays(60)));
+        assertThrows(RuntimeException.class,
+                     () -> reservaService.obtenerCalendarios(List.of(1L), HASTA, DESDE));
+        assertThrows(RuntimeException.class,
+                     () -> reservaService.obtenerCalendarios(List.of(1L, 2L, 3L, 4L), DESDE, HASTA));
+        verify(disponibilidadIndex, never()).cubre(any(), any());
+    }
+
+    @Test
+    void lasFechasOcupadasSinIndiceSalenSinRepetir() {
+        when(propiedadService.existePropiedad(1L)).thenReturn(true);
+        List<Object[]> intervalos = List.of(
+                fila(1L, DESDE.plusDays(1), DESDE.plusDays(3)),
+                fila(1L, DESDE.plusDays(2), DESDE.plusDays(4)));
+        when(reservaRepository.findIntervalosActivosDePropiedades(anyCollection(), any(), any())).thenReturn(intervalos);
+
+        List<LocalDate> fechas = reservaService.obtenerFechasOcupadas(1L, DESDE, HASTA);
+
+        assertEquals(DESDE.plusDays(1).datesUntil(DESDE.plusDays(5)).toList(), fechas);
+    }
+
+    @Test
+    void lasFechasOcupadasDeUnaPropiedadInexistenteFallan() {
+        assertThrows(RuntimeException.class, () -> reservaService.obtenerFechasOcupadas(9L, DESDE, HASTA));
+        verifyNoInteractions(reservaRepository);
+    }
+
+    private static Object[] fila(Long propiedadId, LocalDate inicio, LocalDate fin) {
+        return new Object[] { propiedadId, inicio, fin };
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo.reserva.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.reserva.service.RetencionFechasService.Retencion;
+
+class RetencionFechasServiceTest {
+
+    private static final LocalDate DIA = LocalDate.of(2030, 7, 1);
+
+    private RetencionFechasService retenciones;
+
+    @BeforeEach
+    void setUp() {
+        retenciones = new RetencionFechasService();
+        ReflectionTestUtils.setField(retenciones, "meterRegistry", mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(retenciones, "minutosSolicitud", 15L);
+        ReflectionTestUtils.setField(retenciones, "minutosPago", 30L);
+        ReflectionTestUtils.setField(retenciones, "maxPorUsuario", 2);
+    }
+
+    @Test
+    void otroUsuarioNoPuedeRetenerFechasQueSeSolapan() {
+        retenciones.retener(1L, DIA, DIA.plusDays(5), "ana");
+
+        assertThrows(RuntimeException.class, () -> retenciones.retener(1L, DIA.plusDays(5), DIA.plusDays(8), "luis"));
+        retenciones.retener(1L, DIA.plusDays(6), DIA.plusDays(8), "luis");
+        retenciones.retener(2L, DIA, DIA.plusDays(5), "luis");
+
+        assertTrue(retenciones.estaRetenida(1L, DIA.plusDays(2), DIA.plusDays(3), "luis"));
+        assertFalse(retenciones.estaRetenida(1L, DIA.plusDays(2), DIA.plusDays(3), "ana"));
+        assertEquals(Set.of(1L, 2L), retenciones.propiedadesRetenidas(DIA, DIA));
+        assertEquals(Set.of(1L), retenciones.propiedadesRetenidas(DIA.plusDays(7), DIA.plusDays(9)));
+    }
+
+    @Test
+    void cambiarLasFechasConservaElTokenYSueltaLasAnteriores() {
+        Retencion primera = retenciones.retener(1L, DIA, DIA.plusDays(5), "ana");
+        Retencion segunda = retenciones.retener(1L, DIA.plusDays(3), DIA.plusDays(9), "ana");
+
+        assertEquals(primera.token(), segunda.token());
+        assertFalse(retenciones.estaRetenida(1L, DIA, DIA.plusDays(2), null));
+        assertTrue(retenciones.estaRetenida(1L, DIA.plusDays(9), DIA.plusDays(9), null));
+    }
+
+    @Test
+    void unUsuarioNoPuedeAcumularRetencionesSinReserva() {
+        retenciones.retener(1L, DIA, DIA.plusDays(2), "ana");
+        retenciones.retener(2L, DIA, DIA.plusDays(2), "ana");
+        assertThrows(RuntimeException.class, () -> retenciones.retener(3L, DIA, DIA.plusDays(2), "ana"));
+
+        // Las ligadas a una solicitud ya creada no cuentan para el límite
+        retenciones.asociarReserva(50L, 1L, DIA, DIA.plusDays(2), "ana");
+        retenciones.retener(3L, DIA, DIA.plusDays(2), "ana");
+    }
+
+    @Test
+    void soloElTitularLiberaSuRetencion() {
+        Retencion retencion = retenciones.retener(1L, DIA, DIA.plusDays(2), "ana");
+
+        assertFalse(retenciones.liberar(retencion.token(), "luis"));
+        assertTrue(retenciones.liberar(retencion.token(), "ana"));
+        assertFalse(retenciones.liberar(retencion.token(), "ana"));
+        assertFalse(retenciones.estaRetenida(1L, DIA, DIA.plusDays(2), null));
+    }
+
+    @Test
+    void laRetencionDelPagoSeLiberaConLaReserva() {
+        Retencion solicitud = retenciones.retener(1L, DIA, DIA.plusDays(2), "ana");
+        retenciones.asociarReserva(50L, 1L, DIA, DIA.plusDays(2), "ana");
+        Retencion pago = retenciones.retenerParaPago(50L, 1L, DIA, DIA.plusDays(2), "ana");
+
+        assertEquals(solicitud.token(), pago.token());
+        assertNotEquals(solicitud.expira(), pago.expira());
+        assertEquals(50L, pago.reservaId());
+
+        retenciones.liberarDeReserva(50L);
+
+        assertTrue(retenciones.propiedadesRetenidas(DIA, DIA.plusDays(2)).isEmpty());
+    }
+
+    @Test
+    void lasCaducadasNoBloqueanYSeRetiran() throws Exception {
+        ReflectionTestUtils.setField(retenciones, "minutosSolicitud", 0L);
+        Map<?, ?> porToken = (Map<?, ?>) ReflectionTestUtils.getField(retenciones, "porToken");
+        retenciones.init();
+        try {
+            retenciones.retener(1L, DIA, DIA.plusDays(2), "ana");
+
+            assertFalse(retenciones.estaRetenida(1L, DIA, DIA.plusDays(2), null));
+            retenciones.retener(1L, DIA, DIA.plusDays(2), "luis");
+
+            long limite = System.currentTimeMillis() + 5000;
+            while (!porToken.isEmpty() && System.currentTimeMillis() < limite) {
+                Thread.sleep(10);
+            }
+            assertTrue(porToken.isEmpty());
+        } finally {
+            retenciones.detener();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.tarifa.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.propiedad.model.PropiedadVO;
+import com.example.demo.tarifa.model.CotizacionDTO;
+import com.example.demo.tarifa.model.TarifaVO;
+import com.example.demo.tarifa.repository.TarifaRepository;
+
+class MotorPreciosServiceTest {
+
+    private static final LocalDate ENTRADA = LocalDate.now().plusDays(10);
+
+    private TarifaRepository tarifaRepository;
+    private MotorPreciosService motor;
+
+    @BeforeEach
+    void setUp() {
+        tarifaRepository = mock(TarifaRepository.class);
+        motor = new MotorPreciosService();
+        ReflectionTestUtils.setField(motor, "tarifaRepository", tarifaRepository);
+        ReflectionTestUtils.setField(motor, "horizonteDias", 60);
+        ReflectionTestUtils.setField(motor, "diasFinDeSemana", new DayOfWeek[] { DayOfWeek.FRIDAY, DayOfWeek.SATURDAY });
+        ReflectionTestUtils.setField(motor, "maxPropiedadesCache", 10);
+        ReflectionTestUtils.setField(motor, "ttlMinutos", 60L);
+        ReflectionTestUtils.setField(motor, "maxPropiedadesCotizacion", 10);
+        motor.init();
+    }
+
+    @Test
+    void sinTarifasCoincideConElCalculoAnterior() {
+        BigDecimal[][] precios = {
+            { new BigDecimal("85.50"), new BigDecimal("500.00") },
+            { new BigDecimal("100.00"), new BigDecimal("700.00") },
+            { new BigDecimal("33.33"), new BigDecimal("199.99") },
+            { new BigDecimal("60.00"), null },
+        };
+        for (BigDecimal[] par : precios) {
+            precioBase(1L, par[0], par[1]);
+            motor.invalidar(1L);
+            for (int noches = 0; noches <= 100; noches++) {
+                LocalDate salida = ENTRADA.plusDays(noches);
+                assertEquals(calculoAnterior(par[0], par[1], ENTRADA, salida),
+                             motor.cotizar(1L, ENTRADA, salida).getTotal(),
+                             par[0] + "/" + par[1] + " × " + noches + " noches");
+            }
+        }
+    }
+
+    @Test
+    void conTarifasLasSemanasCompletasLlevanLaProporcionDelPrecioSemanal() {
+        precioBase(1L, new BigDecimal("100.00"), new BigDecimal("600.00"));
+        when(tarifaRepository.findByPropiedadIdIn(anyCollection()))
+                .thenReturn(List.of(tarifaAnual(1L, new BigDecimal("200.00"))));
+
+        // 7 noches a 200 con el 600/700 del precio semanal, más 2 noches sueltas a 200
+        assertEquals(new BigDecimal("1600.00"), motor.cotizar(1L, ENTRADA, ENTRADA.plusDays(9)).getTotal());
+    }
+
+    @Test
+    void elLoteSoloCargaLasQueFaltanYOmiteLasInexistentes() {
+        precioBase(1L, new BigDecimal("50.00"), null);
+        motor.cotizar(1L, ENTRADA, ENTRADA.plusDays(2));
+
+        when(tarifaRepository.findPreciosBase(List.of(2L, 3L)))
+                .thenReturn(List.<Object[]>of(new Object[] { 2L, new BigDecimal("70.00"), null }));
+        List<CotizacionDTO> cotizaciones = motor.cotizar(List.of(1L, 2L, 3L), ENTRADA, ENTRADA.plusDays(2));
+
+        assertEquals(List.of(1L, 2L), cotizaciones.stream().map(CotizacionDTO::getPropiedadId).toList());
+        assertEquals(new BigDecimal("140.00"), cotizaciones.get(1).getTotal());
+    }
+
+    @Test
+    void unaInvalidacionDuranteLaCargaDelLoteNoSeQuedaEnCache() {
+        when(tarifaRepository.findPreciosBase(anyCollection())).thenAnswer(inv -> {
+            motor.invalidar(1L);
+            return List.<Object[]>of(new Object[] { 1L, new BigDecimal("50.00"), null });
+        });
+
+        motor.cotizar(List.of(1L), ENTRADA, ENTRADA.plusDays(1));
+        motor.cotizar(List.of(1L), ENTRADA, ENTRADA.plusDays(1));
+
+        verify(tarifaRepository, times(2)).findPreciosBase(anyCollection());
+    }
+
+    private void precioBase(Long id, BigDecimal precioDia, BigDecimal precioSemana) {
+        when(tarifaRepository.findPreciosBase(List.of(id)))
+                .thenReturn(List.<Object[]>of(new Object[] { id, precioDia, precioSemana }));
+    }
+
+    private static TarifaVO tarifaAnual(Long propiedadId, BigDecimal precioNoche) {
+        PropiedadVO propiedad = new PropiedadVO();
+        propiedad.setId(propiedadId);
+        TarifaVO tarifa = new TarifaVO();
+        tarifa.setPropiedad(propiedad);
+        tarifa.setPrecioNoche(precioNoche);
+        return tarifa;
+    }
+
+    // Fórmula anterior al motor de precios: semanas × precio semanal + días sueltos × precio por día
+    private static BigDecimal calculoAnterior(BigDecimal precioDia, BigDecimal precioSemana,
+                                              LocalDate fechaInicio, LocalDate fechaFin) {
+        long dias = ChronoUnit.DAYS.between(fechaInicio, fechaFin);
+        if (precioSemana != null && dias >= 7) {
+            return precioSemana.multiply(BigDecimal.valueOf(dias / 7))
+                    .add(precioDia.multiply(BigDecimal.valueOf(dias % 7)));
+        }
+        return precioDia.multiply(BigDecimal.valueOf(dias));
+    }
+}
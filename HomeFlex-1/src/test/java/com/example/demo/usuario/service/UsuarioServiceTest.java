@@ -0,0 +1,108 @@
+package com.example.demo.usuario.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.foto.repository.FotoRepository;
+import com.example.demo.foto.service.FotoVariantesService;
+import com.example.demo.propiedad.event.PropiedadDeletedEvent;
+import com.example.demo.propiedad.model.PropiedadVO;
+import com.example.demo.propiedad.repository.PropiedadRepository;
+import com.example.demo.reserva.event.ReservaEstadoCambiadoEvent;
+import com.example.demo.reserva.model.EstadoReserva;
+import com.example.demo.reserva.model.ReservaVO;
+import com.example.demo.reserva.repository.ReservaRepository;
+import com.example.demo.usuario.model.UsuarioVO;
+import com.example.demo.usuario.repository.UsuarioRepository;
+import com.example.demo.valoracion.repository.ValoracionRepository;
+
+class UsuarioServiceTest {
+
+    private UsuarioRepository usuarioRepository;
+    private PropiedadRepository propiedadRepository;
+    private ReservaRepository reservaRepository;
+    private ApplicationEventPublisher publicador;
+    private UsuarioService servicio;
+    private UsuarioVO usuario;
+
+    @BeforeEach
+    void setUp() {
+        usuarioRepository = mock(UsuarioRepository.class);
+        propiedadRepository = mock(PropiedadRepository.class);
+        reservaRepository = mock(ReservaRepository.class);
+        publicador = mock(ApplicationEventPublisher.class);
+
+        servicio = new UsuarioService();
+        ReflectionTestUtils.setField(servicio, "usuarioRepository", usuarioRepository);
+        ReflectionTestUtils.setField(servicio, "propiedadRepository", propiedadRepository);
+        ReflectionTestUtils.setField(servicio, "fotoRepository", mock(FotoRepository.class));
+        ReflectionTestUtils.setField(servicio, "fotoVariantesService", mock(FotoVariantesService.class));
+        ReflectionTestUtils.setField(servicio, "valoracionRepository", mock(ValoracionRepository.class));
+        ReflectionTestUtils.setField(servicio, "reservaRepository", reservaRepository);
+        ReflectionTestUtils.setField(servicio, "applicationEventPublisher", publicador);
+
+        usuario = new UsuarioVO();
+        usuario.setId(7L);
+        when(usuarioRepository.findByUsername("ana")).thenReturn(Optional.of(usuario));
+    }
+
+    @Test
+    void eliminarUnUsuarioAvisaDeCadaPropiedadBorrada() {
+        PropiedadVO propiedad = new PropiedadVO();
+        propiedad.setId(3L);
+        when(propiedadRepository.findByPropietario(usuario)).thenReturn(List.of(propiedad));
+
+        servicio.eliminarUsuarioPorUsername("ana");
+
+        ArgumentCaptor<PropiedadDeletedEvent> evento = ArgumentCaptor.forClass(PropiedadDeletedEvent.class);
+        verify(publicador).publishEvent(evento.capture());
+        assertEquals(3L, evento.getValue().getPropiedadId());
+        assertEquals(7L, evento.getValue().getPropietarioId());
+    }
+
+    @Test
+    void lasReservasBorradasSeDanPorCanceladasAntesDeBorrarlas() {
+        List<ReservaVO> reservas = List.of(reserva(1L, EstadoReserva.CONFIRMADA), reserva(2L, EstadoReserva.CANCELADA));
+        when(reservaRepository.findByUsuario(usuario)).thenReturn(reservas);
+
+        servicio.eliminarUsuarioPorUsername("ana");
+
+        ArgumentCaptor<ReservaEstadoCambiadoEvent> evento = ArgumentCaptor.forClass(ReservaEstadoCambiadoEvent.class);
+        InOrder orden = inOrder(publicador, reservaRepository);
+        // La que ya estaba cancelada no cambia nada
+        orden.verify(publicador).publishEvent(evento.capture());
+        orden.verify(reservaRepository).deleteAll(reservas);
+        verify(publicador).publishEvent(any());
+        assertEquals(1L, evento.getValue().getReservaId());
+        assertEquals(5L, evento.getValue().getPropiedadId());
+        assertEquals(EstadoReserva.CONFIRMADA, evento.getValue().getEstadoAnterior());
+        assertEquals(EstadoReserva.CANCELADA, evento.getValue().getEstadoNuevo());
+    }
+
+    private static ReservaVO reserva(Long id, EstadoReserva estado) {
+        PropiedadVO propiedad = new PropiedadVO();
+        propiedad.setId(5L);
+        ReservaVO reserva = new ReservaVO();
+        reserva.setId(id);
+        reserva.setPropiedad(propiedad);
+        reserva.setFechaInicio(LocalDate.of(2030, 7, 1));
+        reserva.setFechaFin(LocalDate.of(2030, 7, 5));
+        reserva.setEstado(estado);
+        return reserva;
+    }
+}
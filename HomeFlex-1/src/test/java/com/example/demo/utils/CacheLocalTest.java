@@ -0,0 +1,130 @@
+package com.example.demo.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class CacheLocalTest {
+
+    private final CacheLocal<Long, String> cache = new CacheLocal<>(10, Duration.ofMinutes(5));
+    private final List<List<Long>> cargas = new ArrayList<>();
+
+    @Test
+    void unaEntradaVigenteNoSeVuelveACargar() {
+        assertEquals("uno", cache.obtener(1L, id -> "uno"));
+        assertEquals("uno", cache.obtener(1L, id -> "otro"));
+
+        assertEquals(1, cache.getAciertos());
+        assertEquals(1, cache.getFallos());
+    }
+
+    @Test
+    void alSuperarElMaximoSeExpulsaLaMenosUsada() {
+        CacheLocal<Long, String> pequena = new CacheLocal<>(2, Duration.ofMinutes(5));
+        pequena.obtener(1L, id -> "uno");
+        pequena.obtener(2L, id -> "dos");
+        pequena.obtener(1L, id -> "uno");
+
+        pequena.obtener(3L, id -> "tres");
+
+        assertEquals("uno", pequena.obtener(1L, id -> "recargado"));
+        assertEquals("recargado", pequena.obtener(2L, id -> "recargado"));
+    }
+
+    @Test
+    void mientrasUnHiloRecargaLosDemasRecibenLaCopiaAnterior() throws Exception {
+        CacheLocal<Long, String> caducada = new CacheLocal<>(10, Duration.ZERO);
+        caducada.obtener(1L, id -> "viejo");
+
+        CountDownLatch cargando = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+        CompletableFuture<String> recarga = CompletableFuture.supplyAsync(() -> caducada.obtener(1L, id -> {
+            cargando.countDown();
+            esperar(terminar);
+            return "nuevo";
+        }));
+        cargando.await(1, TimeUnit.SECONDS);
+
+        assertEquals("viejo", caducada.obtener(1L, id -> "no debería cargarse"));
+        terminar.countDown();
+        assertEquals("nuevo", recarga.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void unaInvalidacionDuranteLaCargaNoGuardaElValor() {
+        assertEquals("uno", cache.obtener(1L, id -> {
+            cache.invalidarTodo();
+            return "uno";
+        }));
+
+        assertEquals(0, cache.getTamano());
+    }
+
+    @Test
+    void elLoteSoloCargaLasClavesQueFaltan() {
+        cache.obtener(1L, id -> "uno");
+
+        Map<Long, String> valores = cache.obtenerTodos(List.of(1L, 2L, 3L), this::cargar);
+
+        assertEquals(Map.of(1L, "uno", 2L, "v2", 3L, "v3"), valores);
+        assertEquals(List.of(List.of(2L, 3L)), cargas);
+        assertEquals(3, cache.getTamano());
+    }
+
+    @Test
+    void lasClavesQueNoDevuelveElCargadorSeOmiten() {
+        Map<Long, String> valores = cache.obtenerTodos(List.of(1L, 2L), claves -> Map.of(2L, "dos"));
+
+        assertEquals(Map.of(2L, "dos"), valores);
+        assertEquals(1, cache.getTamano());
+    }
+
+    @Test
+    void unaInvalidacionDuranteLaCargaDescartaElLote() {
+        Map<Long, String> valores = cache.obtenerTodos(List.of(1L, 2L), claves -> {
+            cache.invalidar(1L);
+            return cargar(claves);
+        });
+
+        assertEquals(2, valores.size());
+        assertEquals(0, cache.getTamano());
+    }
+
+    @Test
+    void siFallaLaCargaSePuedeReintentar() {
+        CacheLocal<Long, String> caducada = new CacheLocal<>(10, Duration.ZERO);
+        caducada.obtener(1L, id -> "viejo");
+
+        assertThrows(IllegalStateException.class, () -> caducada.obtenerTodos(List.of(1L), claves -> {
+            throw new IllegalStateException("sin base de datos");
+        }));
+
+        assertEquals(Map.of(1L, "v1"), caducada.obtenerTodos(List.of(1L), this::cargar));
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Map<Long, String> cargar(Collection<Long> claves) {
+        cargas.add(List.copyOf(claves));
+        Map<Long, String> valores = new HashMap<>();
+        claves.forEach(clave -> valores.put(clave, "v" + clave));
+        return valores;
+    }
+}